@@ -0,0 +1,249 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking pose, trajectory, bone and EEG queries of one collection, every query
+ * runs the synchronous query on a worker thread and returns a Future, so independent
+ * lookups (e.g. the trajectories of all the entities of a scene) overlap their round trips
+ */
+public class MongoRobcogAsyncQueries {
+
+	// default nr of queries running at the same time on the shared workers
+	public static final int DEFAULT_CONCURRENCY = 8;
+
+	// workers shared by the async queries created without executor
+	private static ExecutorService sharedExecutor;
+
+	// queries bound to the collection (safe to use from concurrent threads)
+	private final MongoRobcogQueries queries;
+
+	// runs the queries
+	private final ExecutorService executor;
+
+	/**
+	 * MongoRobcogAsyncQueries constructor using the shared workers,
+	 * the queries should be bound to a collection (ForCollection)
+	 */
+	public MongoRobcogAsyncQueries(MongoRobcogQueries queries) {
+		this(queries, sharedExecutor(queries.getConn()));
+	}
+
+	/**
+	 * MongoRobcogAsyncQueries constructor using the given executor, its nr of threads
+	 * should not exceed the connections per host of the mongo client
+	 */
+	public MongoRobcogAsyncQueries(MongoRobcogQueries queries, ExecutorService executor) {
+		this.queries = queries;
+		this.executor = executor;
+	}
+
+	/**
+	 * Get the pose of the actor at the given timepoint (or the most recent one)
+	 */
+	public Future<double[]> GetActorPoseAt(final String actorName, final double timestamp){
+		return this.executor.submit(new Callable<double[]>() {
+			@Override
+			public double[] call() {
+				return queries.GetActorPoseAt(actorName, timestamp);
+			}
+		});
+	}
+
+	/**
+	 * Get the poses of the actor at the given timepoints (or the most recent ones)
+	 */
+	public Future<double[][]> GetActorPosesAt(final String actorName, final double[] timestamps){
+		return this.executor.submit(new Callable<double[][]>() {
+			@Override
+			public double[][] call() {
+				return queries.GetActorPosesAt(actorName, timestamps);
+			}
+		});
+	}
+
+	/**
+	 * Get the poses of the actors at the given timepoint as flat world state
+	 */
+	public Future<double[]> GetWorldStateAt(final String[] actorNames, final double timestamp){
+		return this.executor.submit(new Callable<double[]>() {
+			@Override
+			public double[] call() {
+				return queries.GetWorldStateAt(actorNames, timestamp);
+			}
+		});
+	}
+
+	/**
+	 * Get the trajectory of the actor between the given timepoints
+	 */
+	public Future<double[][]> GetActorTraj(final String actorName,
+			final double start,
+			final double end,
+			final double deltaT){
+		return this.executor.submit(new Callable<double[][]>() {
+			@Override
+			public double[][] call() {
+				return queries.GetActorTraj(actorName, start, end, deltaT);
+			}
+		});
+	}
+
+	/**
+	 * Get the pose of the actors bone at the given timepoint (or the most recent one)
+	 */
+	public Future<double[]> GetBonePoseAt(final String actorName, final String boneName, final double timestamp){
+		return this.executor.submit(new Callable<double[]>() {
+			@Override
+			public double[] call() {
+				return queries.GetBonePoseAt(actorName, boneName, timestamp);
+			}
+		});
+	}
+
+	/**
+	 * Get the trajectory of the actors bone between the given timepoints
+	 */
+	public Future<double[][]> GetBoneTraj(final String actorName,
+			final String boneName,
+			final double start,
+			final double end,
+			final double deltaT){
+		return this.executor.submit(new Callable<double[][]>() {
+			@Override
+			public double[][] call() {
+				return queries.GetBoneTraj(actorName, boneName, start, end, deltaT);
+			}
+		});
+	}
+
+	/**
+	 * Get the poses of the actors bones at the given timepoint (or the most recent one)
+	 */
+	public Future<double[][]> GetBonesPosesAt(final String actorName, final double timestamp){
+		return this.executor.submit(new Callable<double[][]>() {
+			@Override
+			public double[][] call() {
+				return queries.GetBonesPosesAt(actorName, timestamp);
+			}
+		});
+	}
+
+	/**
+	 * Get the trajectories of the actors bones between the given timepoints
+	 */
+	public Future<double[][][]> GetBonesTrajs(final String actorName,
+			final double start,
+			final double end,
+			final double deltaT){
+		return this.executor.submit(new Callable<double[][][]>() {
+			@Override
+			public double[][][] call() {
+				return queries.GetBonesTrajs(actorName, start, end, deltaT);
+			}
+		});
+	}
+
+	/**
+	 * Get the values of the EEG channels between the timepoints
+	 */
+	public Future<MongoRobcogEEGMatrix> GetEEGMatrix(final String[] channels,
+			final double start,
+			final double end,
+			final double deltaT){
+		return this.executor.submit(new Callable<MongoRobcogEEGMatrix>() {
+			@Override
+			public MongoRobcogEEGMatrix call() {
+				return queries.GetEEGMatrix(channels, start, end, deltaT);
+			}
+		});
+	}
+
+	/**
+	 * Get the trajectories of all the actors between the given timepoints, the queries
+	 * run concurrently, empty trajectory if the query of the actor failed
+	 */
+	public double[][][] GetActorsTrajs(String[] actorNames, double start, double end, double deltaT){
+		List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>(actorNames.length);
+		for (String actor_name : actorNames)
+		{
+			futures.add(this.GetActorTraj(actor_name, start, end, deltaT));
+		}
+		double[][][] trajs = new double[actorNames.length][][];
+		for (int i = 0; i < trajs.length; ++i){
+			trajs[i] = MongoRobcogThreads.Await(futures.get(i), "AsyncQueries", "query of " + actorNames[i]);
+			if(trajs[i] == null)
+			{
+				trajs[i] = new double[0][0];
+			}
+		}
+		return trajs;
+	}
+
+	/**
+	 * Get the bones trajectories of all the actors between the given timepoints, the queries
+	 * run concurrently, empty trajectories if the query of the actor failed
+	 */
+	public double[][][][] GetActorsBonesTrajs(String[] actorNames, double start, double end, double deltaT){
+		List<Future<double[][][]>> futures = new ArrayList<Future<double[][][]>>(actorNames.length);
+		for (String actor_name : actorNames)
+		{
+			futures.add(this.GetBonesTrajs(actor_name, start, end, deltaT));
+		}
+		double[][][][] trajs = new double[actorNames.length][][][];
+		for (int i = 0; i < trajs.length; ++i){
+			trajs[i] = MongoRobcogThreads.Await(futures.get(i), "AsyncQueries", "query of " + actorNames[i]);
+			if(trajs[i] == null)
+			{
+				trajs[i] = new double[0][0][0];
+			}
+		}
+		return trajs;
+	}
+
+	/**
+	 * Helper function returning the shared workers, created at the first use
+	 * and bounded by the connections per host of that connection
+	 */
+	private static synchronized ExecutorService sharedExecutor(MongoRobcogConn conn){
+		if(sharedExecutor == null)
+		{
+			sharedExecutor = MongoRobcogThreads.FixedPool("robcog-async-query", DEFAULT_CONCURRENCY, conn);
+		}
+		return sharedExecutor;
+	}
+}
@@ -0,0 +1,305 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+
+/**
+ * Base of the streaming decoders of the RawData documents, the documents are read
+ * into a reused byte buffer and walked in place by the subclasses (no DBObjects are built),
+ * the cursor only gets an empty placeholder object for every decoded document
+ */
+public abstract class MongoRobcogBSONDecoder extends DefaultDBDecoder implements DBDecoderFactory {
+
+	// BSON element types
+	protected static final byte BSON_DOUBLE = 0x01;
+	protected static final byte BSON_STRING = 0x02;
+	protected static final byte BSON_DOCUMENT = 0x03;
+	protected static final byte BSON_ARRAY = 0x04;
+	protected static final byte BSON_BINARY = 0x05;
+	protected static final byte BSON_UNDEFINED = 0x06;
+	protected static final byte BSON_OBJECT_ID = 0x07;
+	protected static final byte BSON_BOOLEAN = 0x08;
+	protected static final byte BSON_DATE = 0x09;
+	protected static final byte BSON_NULL = 0x0A;
+	protected static final byte BSON_INT32 = 0x10;
+	protected static final byte BSON_TIMESTAMP = 0x11;
+	protected static final byte BSON_INT64 = 0x12;
+	protected static final byte BSON_DECIMAL128 = 0x13;
+	protected static final byte BSON_MIN_KEY = (byte) 0xFF;
+	protected static final byte BSON_MAX_KEY = 0x7F;
+
+	// field names as bytes
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+	protected static final byte[] TIMESTAMP = "timestamp".getBytes(UTF8);
+
+	// placeholder returned to the cursor for every decoded document
+	protected static final DBObject DECODED = new BasicDBObject();
+
+	// bytes of the current document (reused)
+	protected byte[] doc;
+
+	// nr of documents which could not be decoded by the subclass
+	private int nrSkipped;
+
+	/**
+	 * MongoRobcogBSONDecoder constructor
+	 */
+	protected MongoRobcogBSONDecoder() {
+		this.doc = new byte[4096];
+		this.nrSkipped = 0;
+	}
+
+	/**
+	 * The decoder keeps no per response state, the same instance is used for every batch of the cursor
+	 */
+	@Override
+	public DBDecoder create(){
+		MongoRobcogMetrics.AddBatch();
+		return this;
+	}
+
+	/**
+	 * Nr of documents which were returned as regular DBObjects
+	 */
+	public int GetNrSkipped(){
+		return this.nrSkipped;
+	}
+
+	/**
+	 * Read the next document of the response and decode it
+	 */
+	@Override
+	public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+		// read the document length (little endian int32) and the document
+		readFully(in, this.doc, 0, 4);
+		final int len = readInt(this.doc, 0);
+		if(len > this.doc.length)
+		{
+			this.doc = Arrays.copyOf(this.doc, Math.max(len, this.doc.length * 2));
+		}
+		readFully(in, this.doc, 4, len - 4);
+		MongoRobcogMetrics.AddDoc(len);
+		return this.decodeDoc(len, collection);
+	}
+
+	/**
+	 * Decode the given document bytes
+	 */
+	@Override
+	public DBObject decode(byte[] bytes, DBCollection collection) {
+		final int len = readInt(bytes, 0);
+		if(len > this.doc.length)
+		{
+			this.doc = Arrays.copyOf(this.doc, Math.max(len, this.doc.length * 2));
+		}
+		System.arraycopy(bytes, 0, this.doc, 0, len);
+		MongoRobcogMetrics.AddDoc(len);
+		return this.decodeDoc(len, collection);
+	}
+
+	/**
+	 * Decode the document of the given length from the doc buffer
+	 */
+	protected abstract DBObject decodeDoc(int len, DBCollection collection);
+
+	/**
+	 * Decode the document in the doc buffer the default way (e.g. server errors)
+	 */
+	protected DBObject decodeDefault(int len, DBCollection collection){
+		this.nrSkipped++;
+		return super.decode(Arrays.copyOf(this.doc, len), collection);
+	}
+
+	/**
+	 * Position of the value of the given field of the document at the given position, -1 if missing
+	 */
+	protected static int findField(byte[] buf, int docPos, byte[] name, byte expectedType){
+		final int end = docPos + readInt(buf, docPos) - 1;
+		int pos = docPos + 4;
+		while(pos < end)
+		{
+			final byte type = buf[pos];
+			final int value_pos = skipCString(buf, pos + 1);
+			if(type == expectedType && nameEquals(buf, pos + 1, name))
+			{
+				return value_pos;
+			}
+			pos = skipValue(buf, type, value_pos);
+			if(pos < 0)
+			{
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Position of the value of the first element of the array at the given position, -1 if empty
+	 */
+	protected static int firstElement(byte[] buf, int arrayPos, byte expectedType){
+		final int pos = arrayPos + 4;
+		if(buf[pos] != expectedType)
+		{
+			return -1;
+		}
+		return skipCString(buf, pos + 1);
+	}
+
+	/**
+	 * Check if the cstring at the given position equals the name
+	 */
+	protected static boolean nameEquals(byte[] buf, int pos, byte[] name){
+		if(pos + name.length >= buf.length || buf[pos + name.length] != 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < name.length; ++i){
+			if(buf[pos + i] != name[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Position after the cstring starting at the given position
+	 */
+	protected static int skipCString(byte[] buf, int pos){
+		while(buf[pos] != 0)
+		{
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * Position after the value of the given type, -1 if the type is not supported
+	 */
+	protected static int skipValue(byte[] buf, byte type, int pos){
+		switch(type)
+		{
+			case BSON_DOUBLE:
+			case BSON_DATE:
+			case BSON_TIMESTAMP:
+			case BSON_INT64:
+				return pos + 8;
+			case BSON_INT32:
+				return pos + 4;
+			case BSON_DECIMAL128:
+				return pos + 16;
+			case BSON_OBJECT_ID:
+				return pos + 12;
+			case BSON_BOOLEAN:
+				return pos + 1;
+			case BSON_UNDEFINED:
+			case BSON_NULL:
+			case BSON_MIN_KEY:
+			case BSON_MAX_KEY:
+				return pos;
+			case BSON_STRING:
+				return pos + 4 + readInt(buf, pos);
+			case BSON_DOCUMENT:
+			case BSON_ARRAY:
+				return pos + readInt(buf, pos);
+			case BSON_BINARY:
+				return pos + 4 + 1 + readInt(buf, pos);
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Check if the type is a numeric one
+	 */
+	protected static boolean isNumber(byte type){
+		return type == BSON_DOUBLE || type == BSON_INT32 || type == BSON_INT64;
+	}
+
+	/**
+	 * Read the numeric value of the given type as double
+	 */
+	protected static double readNumber(byte[] buf, byte type, int pos){
+		switch(type)
+		{
+			case BSON_DOUBLE:
+				return Double.longBitsToDouble(readLong(buf, pos));
+			case BSON_INT32:
+				return readInt(buf, pos);
+			default:
+				return readLong(buf, pos);
+		}
+	}
+
+	/**
+	 * Read a little endian int32
+	 */
+	protected static int readInt(byte[] buf, int pos){
+		return (buf[pos] & 0xFF)
+				| ((buf[pos + 1] & 0xFF) << 8)
+				| ((buf[pos + 2] & 0xFF) << 16)
+				| ((buf[pos + 3] & 0xFF) << 24);
+	}
+
+	/**
+	 * Read a little endian int64
+	 */
+	protected static long readLong(byte[] buf, int pos){
+		return (readInt(buf, pos) & 0xFFFFFFFFL) | ((long) readInt(buf, pos + 4) << 32);
+	}
+
+	/**
+	 * Read exactly len bytes from the stream
+	 */
+	private static void readFully(InputStream in, byte[] buf, int off, int len) throws IOException {
+		while(len > 0)
+		{
+			final int nr_read = in.read(buf, off, len);
+			if(nr_read < 0)
+			{
+				throw new EOFException("Java - BSONDecoder - unexpected end of the response");
+			}
+			off += nr_read;
+			len -= nr_read;
+		}
+	}
+}
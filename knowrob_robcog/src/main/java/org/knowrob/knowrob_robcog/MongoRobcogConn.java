@@ -29,11 +29,28 @@
 
 package org.knowrob.knowrob_robcog;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
 import java.net.UnknownHostException;
 
 public class MongoRobcogConn{
@@ -46,24 +63,83 @@ public class MongoRobcogConn{
 	private String dbHost;	
 	// selected collection
 	public DBCollection coll;	
+	// create the query indexes when a collection is selected
+	private boolean ensureIndexes = true;
+	// collections (db.coll) with already checked indexes (read without the lock)
+	private final Set<String> indexedColls = 
+			Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	// collection handles (db.coll -> collection) shared by all threads
+	private final ConcurrentMap<String, DBCollection> collections = 
+			new ConcurrentHashMap<String, DBCollection>();
+
+	// prefix of the connection configuration keys 
+	// (system properties or entries of the configuration file)
+	public static final String CONFIG_PREFIX = "knowrob.robcog.mongo.";
 
 	/**
-	 * MongoRobcogConn constructor
+	 * MongoRobcogConn constructor, the connection is configured from 
+	 * (in increasing priority) the MONGO_ROBCOG_CONFIG properties file, 
+	 * the knowrob.robcog.mongo.* system properties and the 
+	 * MONGO_ROBCOG_URI / MONGO_PORT_27017_TCP_* environment variables
 	 */
 	public MongoRobcogConn() {		
+		// read the connection configuration
+		final Properties config = LoadConfig();
+
+		// check if a connection uri is given
+		Map<String, String> env = System.getenv();
+		String uri = config.getProperty(CONFIG_PREFIX + "uri");
+		if(env.containsKey("MONGO_ROBCOG_URI")) {
+			uri = env.get("MONGO_ROBCOG_URI");
+		}
+
+		if(uri != null) {
+			this.Connect(uri, config);
+		}
+		else {
+			this.Connect(config);
+		}
+	}
+
+	/**
+	 * MongoRobcogConn constructor with connection uri 
+	 * (e.g. mongodb://host1,host2/?replicaSet=rs0&readPreference=secondaryPreferred&maxPoolSize=200)
+	 */
+	public MongoRobcogConn(String uri) {
+		this.Connect(uri, LoadConfig());
+	}
+
+	/**
+	 * Connect using the given uri, the options of the uri overwrite the configured ones
+	 */
+	private void Connect(String uri, Properties config){
+		MongoClientURI client_uri = new MongoClientURI(uri, OptionsFromConfig(config));
+		this.dbHost = client_uri.getHosts().toString();
+		try {
+			// create a new DB client
+			this.mongoClient = new MongoClient(client_uri);
+		} catch (UnknownHostException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Connect to the host and port from the environment (or localhost:27017)
+	 */
+	private void Connect(Properties config){
 		// check if MONGO_PORT_27017_TCP_ADDR and MONGO_PORT_27017_TCP_PORT 
 		// environment variables are set		
         Map<String, String> env = System.getenv();
         
         // default port
-        int port = 27017;
+        int port = Integer.valueOf(config.getProperty(CONFIG_PREFIX + "port", "27017"));
         
         // Get host address
         if(env.containsKey("MONGO_PORT_27017_TCP_ADDR")) {
         	this.dbHost = env.get("MONGO_PORT_27017_TCP_ADDR");
         }
         else{
-        	this.dbHost = "localhost";        	
+        	this.dbHost = config.getProperty(CONFIG_PREFIX + "host", "localhost");        	
         }
         
         // Get host port
@@ -73,13 +149,79 @@ public class MongoRobcogConn{
 	
 		try {
 			// create a new DB client
-			this.mongoClient = new MongoClient(this.dbHost , port);
+			this.mongoClient = new MongoClient(this.dbHost + ":" + port, 
+					OptionsFromConfig(config).build());
 
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Read the configuration file (if any), overwritten by the system properties
+	 */
+	private static Properties LoadConfig(){
+		Properties config = new Properties();
+
+		// optional properties file
+		String config_path = System.getProperty(CONFIG_PREFIX + "config", System.getenv("MONGO_ROBCOG_CONFIG"));
+		if(config_path != null) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(config_path);
+				config.load(in);
+			} catch (IOException e) {
+				System.out.println("Java - MongoRobcogConn - could not read " + config_path + ": " + e.getMessage());
+			} finally {
+				if(in != null) {
+					try { in.close(); } catch (IOException e) { }
+				}
+			}
+		}
+
+		// system properties have priority
+		for (String key : System.getProperties().stringPropertyNames()) {
+			if(key.startsWith(CONFIG_PREFIX)) {
+				config.setProperty(key, System.getProperty(key));
+			}
+		}
+		return config;
+	}
+
+	/**
+	 * Build the client options (connection pool, timeouts, read preference) from the configuration
+	 */
+	private static MongoClientOptions.Builder OptionsFromConfig(Properties config){
+		MongoClientOptions.Builder options = MongoClientOptions.builder()
+				// max nr of connections in the pool (shared by all the query threads)
+				.connectionsPerHost(IntConfig(config, "connectionsPerHost", 100))
+				// threads waiting for a connection = multiplier * connectionsPerHost
+				.threadsAllowedToBlockForConnectionMultiplier(
+						IntConfig(config, "threadsAllowedToBlockForConnectionMultiplier", 5))
+				// max time (ms) a thread waits for a free connection
+				.maxWaitTime(IntConfig(config, "maxWaitTime", 120000))
+				// timeouts (ms), 0 means no timeout
+				.connectTimeout(IntConfig(config, "connectTimeout", 10000))
+				.socketTimeout(IntConfig(config, "socketTimeout", 0))
+				// keep the sockets of long running cursors alive
+				.socketKeepAlive(Boolean.valueOf(config.getProperty(CONFIG_PREFIX + "socketKeepAlive", "true")));
+
+		// e.g. secondaryPreferred to spread the reads over a replica set
+		final String read_pref = config.getProperty(CONFIG_PREFIX + "readPreference");
+		if(read_pref != null) {
+			options.readPreference(ReadPreference.valueOf(read_pref));
+		}
+		return options;
+	}
+
+	/**
+	 * Integer value from the configuration
+	 */
+	private static int IntConfig(Properties config, String key, int default_value){
+		final String value = config.getProperty(CONFIG_PREFIX + key);
+		return value == null ? default_value : Integer.valueOf(value.trim());
+	}
+
 	/**
 	 * Set the database to be queried
 	 */
@@ -102,6 +244,131 @@ public class MongoRobcogConn{
 		// set the collection
 		this.coll = this.db.getCollection(coll_name);		
 		System.out.println("Java - Curr selected collection: " + this.coll.getName());
+		
+		// make sure the collection can be queried without full scans
+		if(this.ensureIndexes)
+		{
+			this.EnsureIndexes(this.coll);
+		}
+	}
+	
+	/**
+	 * Get the collection from the current database without selecting it
+	 * (safe to call from concurrent threads), fails if no database is selected
+	 */
+	public DBCollection GetCollection(String coll_name){
+		if(this.db == null)
+		{
+			throw new IllegalStateException("Java - GetCollection - no database selected for "
+					+ coll_name + ", call SetDatabase first");
+		}
+		return this.GetCollection(this.db.getName(), coll_name);
+	}
+	
+	/**
+	 * Get the collection from the given database without selecting it
+	 * (safe to call from concurrent threads)
+	 */
+	public DBCollection GetCollection(String db_name, String coll_name){
+		final String full_name = db_name + "." + coll_name;
+		
+		// create the handle if missing, keep the first one if another thread was faster
+		DBCollection coll = this.collections.get(full_name);
+		if(coll == null)
+		{
+			coll = this.mongoClient.getDB(db_name).getCollection(coll_name);
+			DBCollection prev_coll = this.collections.putIfAbsent(full_name, coll);
+			if(prev_coll != null)
+			{
+				coll = prev_coll;
+			}
+		}
+		
+		// make sure the collection can be queried without full scans
+		// (retried at every call until the indexes exist)
+		if(this.ensureIndexes && !this.indexedColls.contains(full_name))
+		{
+			this.EnsureIndexes(coll);
+		}
+		return coll;
+	}
+	
+	/**
+	 * Max nr of connections in the pool of the client (connectionsPerHost or maxPoolSize of the uri),
+	 * the concurrent query workers are bounded by it
+	 */
+	public int GetConnectionsPerHost(){
+		return this.mongoClient.getMongoClientOptions().getConnectionsPerHost();
+	}
+	
+	/**
+	 * Enable/disable the index creation when a collection is selected
+	 */
+	public void SetEnsureIndexes(boolean ensure){
+		this.ensureIndexes = ensure;
+	}
+	
+	/**
+	 * Create the indexes used by the queries (once per collection, retried 
+	 * on the next call if it failed), warn if the query plan is still a full collection scan
+	 */
+	public synchronized void EnsureIndexes(DBCollection coll){
+		// skip already checked collections
+		if(this.indexedColls.contains(coll.getFullName()))
+		{
+			return;
+		}
+		
+		try {
+			// time range queries (trajectories)
+			coll.createIndex(new BasicDBObject("timestamp", 1),
+					new BasicDBObject("name", "timestamp_1").append("background", true));
+			
+			// most recent pose of an entity / skeletal entity
+			coll.createIndex(new BasicDBObject("entities.id", 1).append("timestamp", -1),
+					new BasicDBObject("name", "entities_id_1_timestamp_-1").append("background", true));
+			coll.createIndex(new BasicDBObject("skel_entities.id", 1).append("timestamp", -1),
+					new BasicDBObject("name", "skel_entities_id_1_timestamp_-1").append("background", true));
+			
+			// only a few documents have eeg data
+			coll.createIndex(new BasicDBObject("eeg", 1),
+					new BasicDBObject("name", "eeg_1").append("sparse", true).append("background", true));
+			
+			// check the plan of a representative pose query
+			this.CheckQueryPlan(coll);
+			
+			// only mark the collection once all the indexes exist
+			this.indexedColls.add(coll.getFullName());
+		} catch (MongoException e) {
+			System.out.println("Java - EnsureIndexes - " + coll.getFullName() + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Explain a pose at timestamp pipeline and warn if it results in a full collection scan
+	 */
+	private void CheckQueryPlan(DBCollection coll){
+		// $match + $sort + $limit as in the pose queries
+		DBObject match = new BasicDBObject("$match", 
+				new BasicDBObject("entities.id", "")
+					.append("timestamp", new BasicDBObject("$lte", Double.MAX_VALUE)));
+		DBObject sort_desc = new BasicDBObject("$sort", new BasicDBObject("timestamp", -1));
+		DBObject limit_result = new BasicDBObject("$limit", 1);
+		List<DBObject> pipeline = Arrays.asList(match, sort_desc, limit_result);
+		
+		AggregationOptions aggregationOptions = AggregationOptions.builder()
+				.outputMode(AggregationOptions.OutputMode.CURSOR)
+				.build();
+		
+		CommandResult explain = coll.explainAggregate(pipeline, aggregationOptions);
+		
+		// COLLSCAN (>= 3.0) or BasicCursor (2.6) in the plan means no index is used
+		final String plan = explain.toString();
+		if(plan.contains("COLLSCAN") || plan.contains("BasicCursor"))
+		{
+			System.out.println("Java - WARNING - queries on " + coll.getFullName() 
+					+ " result in a full collection scan, check the indexes!");
+		}
 	}
 }
 
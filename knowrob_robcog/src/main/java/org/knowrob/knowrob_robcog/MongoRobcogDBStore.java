@@ -0,0 +1,124 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+/**
+ * Episode store reading the RawData collection from mongodb,
+ * created by MongoRobcogQueries.GetDBStore
+ */
+public class MongoRobcogDBStore implements MongoRobcogEpisodeStore {
+
+	// queries bound to the collection, never served from an episode store
+	private final MongoRobcogQueries dbQueries;
+
+	/**
+	 * MongoRobcogDBStore constructor
+	 */
+	MongoRobcogDBStore(MongoRobcogQueries dbQueries) {
+		this.dbQueries = dbQueries;
+	}
+
+	/**
+	 * Queries bound to the collection of the store
+	 */
+	MongoRobcogQueries getQueries(){
+		return this.dbQueries;
+	}
+
+	@Override
+	public double[] GetActorPoseAt(String actorName, double timestamp){
+		return this.dbQueries.GetActorPoseAt(actorName, timestamp);
+	}
+
+	@Override
+	public double[][] GetActorPosesAt(String actorName, double[] timestamps, boolean interpolate){
+		return interpolate ? this.dbQueries.GetActorPosesInterpolatedAt(actorName, timestamps)
+				: this.dbQueries.GetActorPosesAt(actorName, timestamps);
+	}
+
+	@Override
+	public double[][] GetActorTraj(String actorName, double start, double end, double deltaT){
+		return this.dbQueries.GetActorTraj(actorName, start, end, deltaT);
+	}
+
+	@Override
+	public String[] GetBonesNames(String actorName){
+		return this.dbQueries.GetBonesNames(actorName);
+	}
+
+	@Override
+	public double[] GetBonePoseAt(String actorName, String boneName, double timestamp){
+		return this.dbQueries.GetBonePoseAt(actorName, boneName, timestamp);
+	}
+
+	@Override
+	public double[][] GetBonePosesAt(String actorName, String boneName, double[] timestamps, boolean interpolate){
+		return interpolate ? this.dbQueries.GetBonePosesInterpolatedAt(actorName, boneName, timestamps)
+				: this.dbQueries.GetBonePosesAt(actorName, boneName, timestamps);
+	}
+
+	@Override
+	public double[][] GetBoneTraj(String actorName, String boneName, double start, double end, double deltaT){
+		return this.dbQueries.GetBoneTraj(actorName, boneName, start, end, deltaT);
+	}
+
+	@Override
+	public double[][] GetBonesPosesAt(String actorName, double timestamp){
+		return this.dbQueries.GetBonesPosesAt(actorName, timestamp);
+	}
+
+	@Override
+	public double[][][] GetBonesTrajs(String actorName, double start, double end, double deltaT){
+		return this.dbQueries.GetBonesTrajs(actorName, start, end, deltaT);
+	}
+
+	@Override
+	public void CopyTraj(String actorName, boolean bones, String boneName, 
+			double start, double end, double deltaT, MongoRobcogSampleBuffer buffer){
+		this.dbQueries.queryPoses(buffer, bones ? "skel_entities" : "entities", 
+				actorName, bones, boneName, start, end, deltaT);
+	}
+
+	@Override
+	public String[] GetEEGChannels(){
+		return this.dbQueries.GetEEGChannels();
+	}
+
+	@Override
+	public double[] GetAllEEGValuesAt(double timestamp){
+		return this.dbQueries.GetAllEEGValuesAt(timestamp);
+	}
+
+	@Override
+	public MongoRobcogEEGMatrix GetEEGMatrix(String[] channels, double start, double end, double deltaT){
+		return this.dbQueries.GetEEGMatrix(channels, start, end, deltaT);
+	}
+}
@@ -0,0 +1,143 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Streaming decoder of the RawData EEG documents {timestamp, eeg: {c1, c2, ..}},
+ * the values of the given channels are written straight from the BSON bytes
+ * into a MongoRobcogSampleBuffer (one row of nr of channels values per sample)
+ */
+public class MongoRobcogEEGDecoder extends MongoRobcogBSONDecoder {
+
+	// field names as bytes
+	private static final byte[] EEG = "eeg".getBytes(UTF8);
+
+	// buffer the values are written to
+	private final MongoRobcogSampleBuffer buffer;
+
+	// names of the decoded channels, in the order of the row values
+	private final byte[][] channels;
+
+	/**
+	 * Decoder of the given EEG channels
+	 */
+	public MongoRobcogEEGDecoder(MongoRobcogSampleBuffer buffer, String[] channels) {
+		this.buffer = buffer;
+		this.channels = new byte[channels.length][];
+		for (int i = 0; i < channels.length; ++i){
+			this.channels[i] = channels[i].getBytes(UTF8);
+		}
+	}
+
+	/**
+	 * Decode the channel values of the document in the doc buffer, documents without timestamp
+	 * (e.g. server errors) are decoded as regular DBObjects, missing channels are NaN
+	 */
+	@Override
+	protected DBObject decodeDoc(int len, DBCollection collection){
+		// first pass over the top level fields, look for the timestamp and the eeg document
+		double ts = Double.NaN;
+		int eeg_pos = -1;
+		int pos = 4;
+		while(pos < len - 1 && this.doc[pos] != 0)
+		{
+			final byte type = this.doc[pos];
+			final int name_pos = pos + 1;
+			final int value_pos = skipCString(this.doc, name_pos);
+			if(nameEquals(this.doc, name_pos, TIMESTAMP) && isNumber(type))
+			{
+				ts = readNumber(this.doc, type, value_pos);
+			}
+			else if(nameEquals(this.doc, name_pos, EEG) && type == BSON_DOCUMENT)
+			{
+				eeg_pos = value_pos;
+			}
+			pos = skipValue(this.doc, type, value_pos);
+			if(pos < 0)
+			{
+				break;
+			}
+		}
+
+		// not an eeg document, decode it the default way
+		if(Double.isNaN(ts) || pos < 0)
+		{
+			return this.decodeDefault(len, collection);
+		}
+
+		// skipped by the deltaT filter, or without eeg values
+		if(eeg_pos < 0 || !this.buffer.BeginSample(ts))
+		{
+			return DECODED;
+		}
+
+		// write the values of the known channels into the row
+		final int offset = this.buffer.Reserve(this.channels.length);
+		final double[] values = this.buffer.GetValues();
+		final int end = eeg_pos + readInt(this.doc, eeg_pos) - 1;
+		pos = eeg_pos + 4;
+		while(pos < end)
+		{
+			final byte type = this.doc[pos];
+			final int value_pos = skipCString(this.doc, pos + 1);
+			if(isNumber(type))
+			{
+				final int idx = this.channelIndex(pos + 1);
+				if(idx >= 0)
+				{
+					values[offset + idx] = readNumber(this.doc, type, value_pos);
+				}
+			}
+			pos = skipValue(this.doc, type, value_pos);
+			if(pos < 0)
+			{
+				break;
+			}
+		}
+		this.buffer.EndSample();
+		return DECODED;
+	}
+
+	/**
+	 * Index of the channel with the name at the given position, -1 if not decoded
+	 */
+	private int channelIndex(int namePos){
+		for (int i = 0; i < this.channels.length; ++i){
+			if(nameEquals(this.doc, namePos, this.channels[i]))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
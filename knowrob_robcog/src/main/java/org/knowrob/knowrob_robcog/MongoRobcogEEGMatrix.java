@@ -0,0 +1,146 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.Arrays;
+
+/**
+ * EEG values of an episode interval as one contiguous row-major matrix,
+ * one row of nr of channels values per sample, plus the timestamps column
+ */
+public class MongoRobcogEEGMatrix {
+
+	// names of the channels (columns)
+	private final String[] channels;
+
+	// timestamps of the samples (rows)
+	private final double[] timestamps;
+
+	// values[sample * nr of channels + channel]
+	private final double[] values;
+
+	/**
+	 * MongoRobcogEEGMatrix constructor
+	 */
+	public MongoRobcogEEGMatrix(String[] channels, double[] timestamps, double[] values) {
+		this.channels = channels;
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	/**
+	 * Copy the samples of the buffer (with the channels as stride) into a matrix
+	 */
+	public static MongoRobcogEEGMatrix FromBuffer(String[] channels, MongoRobcogSampleBuffer buffer){
+		final int nr_samples = buffer.GetNrSamples();
+		return new MongoRobcogEEGMatrix(channels,
+				Arrays.copyOf(buffer.GetTimestamps(), nr_samples),
+				Arrays.copyOf(buffer.GetValues(), nr_samples * channels.length));
+	}
+
+	/**
+	 * Names of the channels
+	 */
+	public String[] GetChannels(){
+		return this.channels;
+	}
+
+	/**
+	 * Nr of channels
+	 */
+	public int GetNrChannels(){
+		return this.channels.length;
+	}
+
+	/**
+	 * Nr of samples
+	 */
+	public int GetNrSamples(){
+		return this.timestamps.length;
+	}
+
+	/**
+	 * Timestamps of the samples
+	 */
+	public double[] GetTimestamps(){
+		return this.timestamps;
+	}
+
+	/**
+	 * Values in row-major order, values[sample * nr of channels + channel]
+	 */
+	public double[] GetValues(){
+		return this.values;
+	}
+
+	/**
+	 * Value of the channel at the given sample
+	 */
+	public double GetValue(int sampleIdx, int channelIdx){
+		return this.values[sampleIdx * this.channels.length + channelIdx];
+	}
+
+	/**
+	 * Index of the channel with the given name, -1 if missing
+	 */
+	public int GetChannelIndex(String channel){
+		for (int i = 0; i < this.channels.length; ++i){
+			if(this.channels[i].equals(channel))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copy of the values of one channel (column)
+	 */
+	public double[] GetChannelValues(int channelIdx){
+		final int nr_channels = this.channels.length;
+		double[] channel_values = new double[this.timestamps.length];
+		for (int i = 0; i < channel_values.length; ++i){
+			channel_values[i] = this.values[i * nr_channels + channelIdx];
+		}
+		return channel_values;
+	}
+
+	/**
+	 * Copy of the values as one row per sample
+	 */
+	public double[][] ToRows(){
+		final int nr_channels = this.channels.length;
+		double[][] rows = new double[this.timestamps.length][];
+		for (int i = 0; i < rows.length; ++i){
+			rows[i] = Arrays.copyOfRange(this.values, i * nr_channels, (i + 1) * nr_channels);
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,700 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * In-memory cache of the RawData episode collections,
+ * the poses of every entity and bone are stored as primitive
+ * columns sorted by timestamp, a pose lookup is a binary search
+ * (the cache is bounded in memory, episodes are evicted in LRU order)
+ */
+public class MongoRobcogEpisodeCache {
+
+	// default memory bound of the cache (256 MB)
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+
+	// nr of bytes of one sample (timestamp, x, y, z, qx, qy, qz, qw)
+	private static final int SAMPLE_BYTES = 8 * 8;
+
+	// loaded instead of an episode exceeding the memory bound (a failed load gives null)
+	private static final Episode TOO_LARGE = new Episode();
+
+	// max nr of bytes of all the cached episodes
+	private long maxBytes;
+
+	// nr of bytes of the currently cached episodes
+	private long usedBytes;
+
+	// cached episodes in access order (least recently used first)
+	private final LinkedHashMap<String, Episode> episodes;
+
+	// collections which do not fit in the memory bound
+	private final Set<String> uncachable;
+
+	// episodes currently loaded (outside the lock), concurrent requests wait on the same load
+	private final ConcurrentMap<String, FutureTask<Episode>> loading;
+
+	/**
+	 * Pose columns of one entity (or bone), sorted by timestamp
+	 */
+	public static class PoseColumns {
+		// the columns
+		public double[] ts;
+		public double[] x;
+		public double[] y;
+		public double[] z;
+		public double[] qx;
+		public double[] qy;
+		public double[] qz;
+		public double[] qw;
+
+		// nr of samples
+		public int size;
+
+		// true as long as the samples are added in timestamp order
+		private boolean sorted;
+
+		/**
+		 * PoseColumns constructor
+		 */
+		public PoseColumns(int capacity) {
+			this.ts = new double[capacity];
+			this.x = new double[capacity];
+			this.y = new double[capacity];
+			this.z = new double[capacity];
+			this.qx = new double[capacity];
+			this.qy = new double[capacity];
+			this.qz = new double[capacity];
+			this.qw = new double[capacity];
+			this.size = 0;
+			this.sorted = true;
+		}
+
+		/**
+		 * Append a sample to the columns
+		 */
+		public void Add(double t, double px, double py, double pz,
+				double rx, double ry, double rz, double rw){
+			// grow the columns if full
+			if(this.size == this.ts.length)
+			{
+				this.Resize(Math.max(16, this.size * 2));
+			}
+			// check if the order is still kept
+			if(this.size > 0 && t < this.ts[this.size - 1])
+			{
+				this.sorted = false;
+			}
+			this.ts[this.size] = t;
+			this.x[this.size] = px;
+			this.y[this.size] = py;
+			this.z[this.size] = pz;
+			this.qx[this.size] = rx;
+			this.qy[this.size] = ry;
+			this.qz[this.size] = rz;
+			this.qw[this.size] = rw;
+			this.size++;
+		}
+
+		/**
+		 * Sort the samples by timestamp (if needed) and release the unused capacity
+		 */
+		public void Seal(){
+			if(!this.sorted)
+			{
+				this.SortByTimestamp();
+			}
+			if(this.size != this.ts.length)
+			{
+				this.Resize(this.size);
+			}
+		}
+
+		/**
+		 * Index of the most recent sample at or before the timestamp (-1 if none)
+		 */
+		public int FloorIndex(double t){
+			int low = 0;
+			int high = this.size - 1;
+			int floor = -1;
+			while(low <= high)
+			{
+				final int mid = (low + high) >>> 1;
+				if(this.ts[mid] <= t)
+				{
+					floor = mid;
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+			return floor;
+		}
+
+		/**
+		 * Pose (x, y, z, qx, qy, qz, qw) of the sample at the given index
+		 */
+		public double[] GetPose(int i){
+			return new double[] {
+					this.x[i], this.y[i], this.z[i],
+					this.qx[i], this.qy[i], this.qz[i], this.qw[i]};
+		}
+
+		/**
+		 * Copy the pose (x, y, z, qx, qy, qz, qw) of the sample at the given index into the array
+		 */
+		public void CopyPose(int i, double[] dest, int offset){
+			dest[offset] = this.x[i];
+			dest[offset + 1] = this.y[i];
+			dest[offset + 2] = this.z[i];
+			dest[offset + 3] = this.qx[i];
+			dest[offset + 4] = this.qy[i];
+			dest[offset + 5] = this.qz[i];
+			dest[offset + 6] = this.qw[i];
+		}
+
+		/**
+		 * Nr of bytes used by the columns
+		 */
+		public long GetBytes(){
+			return (long) this.ts.length * SAMPLE_BYTES;
+		}
+
+		/**
+		 * Resize all the columns to the given capacity
+		 */
+		private void Resize(int capacity){
+			this.ts = copyOf(this.ts, capacity, this.size);
+			this.x = copyOf(this.x, capacity, this.size);
+			this.y = copyOf(this.y, capacity, this.size);
+			this.z = copyOf(this.z, capacity, this.size);
+			this.qx = copyOf(this.qx, capacity, this.size);
+			this.qy = copyOf(this.qy, capacity, this.size);
+			this.qz = copyOf(this.qz, capacity, this.size);
+			this.qw = copyOf(this.qw, capacity, this.size);
+		}
+
+		/**
+		 * Sort the samples by timestamp, the indices are sorted (stable merge sort)
+		 * and the columns are permuted in one pass
+		 */
+		private void SortByTimestamp(){
+			final double[] keys = this.ts;
+			Integer[] order = new Integer[this.size];
+			for (int i = 0; i < this.size; ++i){
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(keys[a], keys[b]);
+				}
+			});
+			this.ts = permute(this.ts, order);
+			this.x = permute(this.x, order);
+			this.y = permute(this.y, order);
+			this.z = permute(this.z, order);
+			this.qx = permute(this.qx, order);
+			this.qy = permute(this.qy, order);
+			this.qz = permute(this.qz, order);
+			this.qw = permute(this.qw, order);
+			this.sorted = true;
+		}
+
+		/**
+		 * Copy of the array with the values in the given order
+		 */
+		private static double[] permute(double[] arr, Integer[] order){
+			double[] copy = new double[arr.length];
+			for (int i = 0; i < order.length; ++i){
+				copy[i] = arr[order[i]];
+			}
+			return copy;
+		}
+
+		/**
+		 * Copy the first length values of the array into a new array of the given capacity
+		 */
+		private static double[] copyOf(double[] arr, int capacity, int length){
+			double[] copy = new double[capacity];
+			System.arraycopy(arr, 0, copy, 0, Math.min(length, capacity));
+			return copy;
+		}
+	}
+
+	/**
+	 * Cached data of one episode (RawData collection)
+	 */
+	public static class Episode {
+		// entity id -> pose columns
+		public final Map<String, PoseColumns> entities;
+
+		// skeletal entity id -> (bone name -> pose columns)
+		public final Map<String, Map<String, PoseColumns>> bones;
+
+		// nr of bytes used by the episode
+		public long bytes;
+
+		/**
+		 * Episode constructor
+		 */
+		public Episode() {
+			this.entities = new HashMap<String, PoseColumns>();
+			this.bones = new HashMap<String, Map<String, PoseColumns>>();
+			this.bytes = 0;
+		}
+	}
+
+	/**
+	 * MongoRobcogEpisodeCache constructor with the default memory bound
+	 */
+	public MongoRobcogEpisodeCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * MongoRobcogEpisodeCache constructor with the given memory bound
+	 */
+	public MongoRobcogEpisodeCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.usedBytes = 0;
+		this.episodes = new LinkedHashMap<String, Episode>(16, 0.75f, true);
+		this.uncachable = new HashSet<String>();
+		this.loading = new ConcurrentHashMap<String, FutureTask<Episode>>();
+	}
+
+	/**
+	 * Set the memory bound of the cache, evicts episodes if needed
+	 */
+	public synchronized void SetMaxBytes(long maxBytes){
+		this.maxBytes = maxBytes;
+		this.uncachable.clear();
+		this.EvictUntil(this.maxBytes);
+	}
+
+	/**
+	 * Nr of bytes used by the cached episodes
+	 */
+	public synchronized long GetUsedBytes(){
+		return this.usedBytes;
+	}
+
+	/**
+	 * Nr of cached episodes
+	 */
+	public synchronized int GetNrOfEpisodes(){
+		return this.episodes.size();
+	}
+
+	/**
+	 * Remove all episodes from the cache
+	 */
+	public synchronized void Clear(){
+		this.episodes.clear();
+		this.uncachable.clear();
+		this.usedBytes = 0;
+	}
+
+	/**
+	 * Remove the episode of the given collection from the cache
+	 */
+	public synchronized void Remove(DBCollection coll){
+		Episode episode = this.episodes.remove(coll.getFullName());
+		if(episode != null)
+		{
+			this.usedBytes -= episode.bytes;
+		}
+		this.uncachable.remove(coll.getFullName());
+	}
+
+	/**
+	 * Get the episode of the collection, load it if not cached yet
+	 * (returns null if the episode does not fit in the memory bound),
+	 * the collection is streamed outside the lock, concurrent requests
+	 * of the same episode wait for the same load
+	 */
+	public Episode GetEpisode(final DBCollection coll){
+		final String key = coll.getFullName();
+
+		// check if the episode is already cached or known to be too large
+		final long max_bytes;
+		synchronized(this)
+		{
+			Episode episode = this.episodes.get(key);
+			if(episode != null || this.uncachable.contains(key))
+			{
+				return episode;
+			}
+			max_bytes = this.maxBytes;
+		}
+
+		// join a running load or start a new one
+		FutureTask<Episode> task = new FutureTask<Episode>(new Callable<Episode>() {
+			@Override
+			public Episode call() {
+				// the episode could have been added while the lock was released
+				synchronized(MongoRobcogEpisodeCache.this)
+				{
+					Episode episode = episodes.get(key);
+					if(episode != null || uncachable.contains(key))
+					{
+						return episode;
+					}
+				}
+				// stream the collection into the columns (without holding the lock)
+				return Load(coll, max_bytes);
+			}
+		});
+		FutureTask<Episode> running = this.loading.putIfAbsent(key, task);
+		if(running != null)
+		{
+			final Episode episode = Await(key, running);
+			return episode != TOO_LARGE ? episode : null;
+		}
+
+		try
+		{
+			task.run();
+			final Episode episode = Await(key, task);
+			this.Insert(key, episode, max_bytes);
+			return episode != TOO_LARGE ? episode : null;
+		}
+		finally
+		{
+			this.loading.remove(key, task);
+		}
+	}
+
+	/**
+	 * Add the loaded episode to the cache (or mark the collection as too large),
+	 * nothing is done for a failed load (the next query loads the episode again)
+	 */
+	private synchronized void Insert(String key, Episode episode, long maxBytes){
+		if(episode == null || this.uncachable.contains(key) || this.episodes.get(key) == episode)
+		{
+			return;
+		}
+		if(episode == TOO_LARGE)
+		{
+			System.out.println("Java - EpisodeCache - " + key + " does not fit in "
+					+ maxBytes + " bytes, using the db for the queries..");
+			this.uncachable.add(key);
+			return;
+		}
+
+		// make room for the episode and add it
+		this.EvictUntil(this.maxBytes - episode.bytes);
+		Episode prev = this.episodes.put(key, episode);
+		if(prev != null)
+		{
+			this.usedBytes -= prev.bytes;
+		}
+		this.usedBytes += episode.bytes;
+		System.out.println("Java - EpisodeCache - loaded " + key + " (" + episode.bytes + " bytes), "
+				+ this.episodes.size() + " episodes cached, " + this.usedBytes + " bytes in use");
+	}
+
+	/**
+	 * Wait for the load of the episode, returns null if it failed or the thread is interrupted
+	 * (the query falls back to the db)
+	 */
+	private static Episode Await(String key, FutureTask<Episode> task){
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			System.out.println("Java - EpisodeCache - loading " + key + " failed: " + e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Pose of the actor at the given timepoint (or the most recent one),
+	 * returns null if the episode is not cachable, empty array if there is no pose
+	 */
+	public double[] GetActorPoseAt(DBCollection coll, String actorName, double timestamp){
+		final Episode episode = this.GetEpisode(coll);
+		if(episode == null)
+		{
+			return null;
+		}
+		return GetPoseAt(episode.entities.get(actorName), timestamp);
+	}
+
+	/**
+	 * Pose of the actors bone at the given timepoint (or the most recent one),
+	 * returns null if the episode is not cachable, empty array if there is no pose
+	 */
+	public double[] GetBonePoseAt(DBCollection coll, String actorName, String boneName, double timestamp){
+		final Episode episode = this.GetEpisode(coll);
+		if(episode == null)
+		{
+			return null;
+		}
+		final Map<String, PoseColumns> actor_bones = episode.bones.get(actorName);
+		if(actor_bones == null)
+		{
+			return new double[0];
+		}
+		return GetPoseAt(actor_bones.get(boneName), timestamp);
+	}
+
+	/**
+	 * Poses of the actor at the given timepoints (interpolated or the most recent ones),
+	 * returns null if the episode is not cachable, empty poses where there is no pose
+	 */
+	public double[][] GetActorPosesAt(DBCollection coll, String actorName, double[] timestamps, boolean interpolate){
+		final Episode episode = this.GetEpisode(coll);
+		if(episode == null)
+		{
+			return null;
+		}
+		return GetPosesAt(episode.entities.get(actorName), timestamps, interpolate);
+	}
+
+	/**
+	 * Poses of the actors bone at the given timepoints (interpolated or the most recent ones),
+	 * returns null if the episode is not cachable, empty poses where there is no pose
+	 */
+	public double[][] GetBonePosesAt(DBCollection coll, String actorName, String boneName,
+			double[] timestamps, boolean interpolate){
+		final Episode episode = this.GetEpisode(coll);
+		if(episode == null)
+		{
+			return null;
+		}
+		final Map<String, PoseColumns> actor_bones = episode.bones.get(actorName);
+		return GetPosesAt(actor_bones != null ? actor_bones.get(boneName) : null, timestamps, interpolate);
+	}
+
+	/**
+	 * Floor lookups (and interpolation with the next sample) of the poses in the columns
+	 */
+	private static double[][] GetPosesAt(PoseColumns columns, double[] timestamps, boolean interpolate){
+		double[][] poses = new double[timestamps.length][];
+		// the floor and the next pose
+		double[] bracket = new double[14];
+		for (int i = 0; i < timestamps.length; ++i){
+			final int idx = columns != null ? columns.FloorIndex(timestamps[i]) : -1;
+			if(idx < 0)
+			{
+				poses[i] = new double[0];
+			}
+			else if(interpolate && idx + 1 < columns.size && columns.ts[idx] < timestamps[i])
+			{
+				columns.CopyPose(idx, bracket, 0);
+				columns.CopyPose(idx + 1, bracket, 7);
+				poses[i] = new double[7];
+				MongoRobcogInterpolation.InterpolatePose(bracket, 0, columns.ts[idx],
+						7, columns.ts[idx + 1], timestamps[i], poses[i], 0);
+			}
+			else
+			{
+				poses[i] = columns.GetPose(idx);
+			}
+		}
+		return poses;
+	}
+
+	/**
+	 * Floor lookup of the pose in the columns
+	 */
+	private static double[] GetPoseAt(PoseColumns columns, double timestamp){
+		if(columns == null)
+		{
+			return new double[0];
+		}
+		final int idx = columns.FloorIndex(timestamp);
+		if(idx < 0)
+		{
+			return new double[0];
+		}
+		return columns.GetPose(idx);
+	}
+
+	/**
+	 * Evict least recently used episodes until the used bytes are below the limit
+	 */
+	private void EvictUntil(long limit){
+		Iterator<Map.Entry<String, Episode>> e_itr = this.episodes.entrySet().iterator();
+		while(this.usedBytes > limit && e_itr.hasNext())
+		{
+			Map.Entry<String, Episode> eldest = e_itr.next();
+			this.usedBytes -= eldest.getValue().bytes;
+			e_itr.remove();
+			System.out.println("Java - EpisodeCache - evicted " + eldest.getKey());
+		}
+	}
+
+	/**
+	 * One pass over the collection (natural order, no server side sort),
+	 * returns TOO_LARGE if the episode exceeds the memory bound
+	 */
+	private static Episode Load(DBCollection coll, long maxBytes){
+		Episode episode = new Episode();
+
+		// only the pose data is needed
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put("entities", 1);
+		proj_fields.put("skel_entities", 1);
+
+		DBCursor cursor = coll.find(new BasicDBObject(), proj_fields).batchSize(1000);
+
+		// estimated bytes, updated while loading
+		long bytes = 0;
+		try
+		{
+			while(cursor.hasNext())
+			{
+				BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+				final double curr_ts = curr_doc.getDouble("timestamp");
+
+				// add the entities poses
+				BasicDBList entities = (BasicDBList) curr_doc.get("entities");
+				if(entities != null)
+				{
+					for (Object entity_obj : entities)
+					{
+						BasicDBObject entity = (BasicDBObject) entity_obj;
+						PoseColumns columns = episode.entities.get(entity.getString("id"));
+						if(columns == null)
+						{
+							columns = new PoseColumns(64);
+							episode.entities.put(entity.getString("id"), columns);
+						}
+						AddPose(columns, curr_ts, entity);
+						bytes += SAMPLE_BYTES;
+					}
+				}
+
+				// add the skeletal entities bones poses
+				BasicDBList skel_entities = (BasicDBList) curr_doc.get("skel_entities");
+				if(skel_entities != null)
+				{
+					for (Object skel_obj : skel_entities)
+					{
+						BasicDBObject skel_entity = (BasicDBObject) skel_obj;
+						Map<String, PoseColumns> actor_bones = episode.bones.get(skel_entity.getString("id"));
+						if(actor_bones == null)
+						{
+							actor_bones = new HashMap<String, PoseColumns>();
+							episode.bones.put(skel_entity.getString("id"), actor_bones);
+						}
+						BasicDBList bones = (BasicDBList) skel_entity.get("bones");
+						if(bones == null)
+						{
+							continue;
+						}
+						for (Object bone_obj : bones)
+						{
+							BasicDBObject bone = (BasicDBObject) bone_obj;
+							PoseColumns columns = actor_bones.get(bone.getString("name"));
+							if(columns == null)
+							{
+								columns = new PoseColumns(64);
+								actor_bones.put(bone.getString("name"), columns);
+							}
+							AddPose(columns, curr_ts, bone);
+							bytes += SAMPLE_BYTES;
+						}
+					}
+				}
+
+				// stop if the episode cannot fit in the cache
+				if(bytes > maxBytes)
+				{
+					return TOO_LARGE;
+				}
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+
+		// sort and trim the columns, compute the exact size
+		episode.bytes = 0;
+		for (PoseColumns columns : episode.entities.values())
+		{
+			columns.Seal();
+			episode.bytes += columns.GetBytes();
+		}
+		for (Map<String, PoseColumns> actor_bones : episode.bones.values())
+		{
+			for (PoseColumns columns : actor_bones.values())
+			{
+				columns.Seal();
+				episode.bytes += columns.GetBytes();
+			}
+		}
+		return episode.bytes > maxBytes ? null : episode;
+	}
+
+	/**
+	 * Append the loc/rot pose of the document to the columns
+	 */
+	private static void AddPose(PoseColumns columns, double ts, BasicDBObject doc){
+		BasicDBObject loc = (BasicDBObject) doc.get("loc");
+		BasicDBObject rot = (BasicDBObject) doc.get("rot");
+		columns.Add(ts,
+				loc.getDouble("x"), loc.getDouble("y"), loc.getDouble("z"),
+				rot.getDouble("x"), rot.getDouble("y"), rot.getDouble("z"), rot.getDouble("w"));
+	}
+}
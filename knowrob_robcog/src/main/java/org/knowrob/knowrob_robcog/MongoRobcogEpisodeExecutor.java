@@ -0,0 +1,214 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the same query on many episodes (RawData collections) in parallel,
+ * the results are returned in the order of the given collections
+ */
+public class MongoRobcogEpisodeExecutor {
+
+	// default max nr of episodes queried at the same time
+	public static final int DEFAULT_CONCURRENCY = 8;
+
+	/**
+	 * Query run on a single episode
+	 */
+	public interface EpisodeQuery<T> {
+		/**
+		 * Run the query using the queries bound to the episode collection
+		 */
+		T Run(MongoRobcogQueries episodeQueries, int episodeIdx);
+	}
+
+	// queries used to create the episode bound query objects
+	private final MongoRobcogQueries queries;
+
+	// max nr of episodes queried at the same time
+	private final int concurrency;
+
+	// bounded pool running the episode queries
+	private final ExecutorService executor;
+
+	/**
+	 * MongoRobcogEpisodeExecutor constructor with the default concurrency
+	 */
+	public MongoRobcogEpisodeExecutor(MongoRobcogQueries queries) {
+		this(queries, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * MongoRobcogEpisodeExecutor constructor, the concurrency is bounded
+	 * by the connections per host of the mongo client
+	 */
+	public MongoRobcogEpisodeExecutor(MongoRobcogQueries queries, int concurrency) {
+		this.queries = queries;
+		this.concurrency = MongoRobcogThreads.PoolSize(concurrency, queries.getConn());
+		this.executor = MongoRobcogThreads.FixedPool("robcog-episode-query", this.concurrency, queries.getConn());
+	}
+
+	/**
+	 * Max nr of episodes queried at the same time
+	 */
+	public int GetConcurrency(){
+		return this.concurrency;
+	}
+
+	/**
+	 * Stop the worker threads
+	 */
+	public void Shutdown(){
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Run the query on all the given collections, returns one result per collection
+	 * (null if the query of the episode failed)
+	 */
+	public <T> List<T> Run(String[] collNames, final EpisodeQuery<T> query){
+		// submit one task per episode
+		List<Future<T>> futures = new ArrayList<Future<T>>(collNames.length);
+		for (int i = 0; i < collNames.length; ++i){
+			final int episode_idx = i;
+			final MongoRobcogQueries episode_queries = this.queries.ForCollection(collNames[i]);
+			futures.add(this.executor.submit(new Callable<T>() {
+				@Override
+				public T call() {
+					return query.Run(episode_queries, episode_idx);
+				}
+			}));
+		}
+
+		// collect the results in the episodes order
+		List<T> results = new ArrayList<T>(collNames.length);
+		for (int i = 0; i < futures.size(); ++i){
+			results.add(MongoRobcogThreads.Await(futures.get(i), "EpisodeExecutor", "query on " + collNames[i]));
+		}
+		return results;
+	}
+
+	/**
+	 * Get the traveled distance of the actor in every episode between the given timepoints
+	 * (one start and end per episode), NaN if the query of the episode failed
+	 */
+	public double[] GetActorTraveledDistance(String[] collNames,
+			final String actorName,
+			final double[] starts,
+			final double[] ends,
+			final double deltaT){
+		List<Double> distances = this.Run(collNames, new EpisodeQuery<Double>() {
+			@Override
+			public Double Run(MongoRobcogQueries episodeQueries, int episodeIdx) {
+				return episodeQueries.GetActorTraveledDistance(
+						actorName, starts[episodeIdx], ends[episodeIdx], deltaT);
+			}
+		});
+		return toArray(distances);
+	}
+
+	/**
+	 * Get the traveled distance on the XY plane of the actor in every episode between the
+	 * given timepoints (one start and end per episode), NaN if the query of the episode failed
+	 */
+	public double[] GetActorXYTraveledDistance(String[] collNames,
+			final String actorName,
+			final double[] starts,
+			final double[] ends,
+			final double deltaT){
+		List<Double> distances = this.Run(collNames, new EpisodeQuery<Double>() {
+			@Override
+			public Double Run(MongoRobcogQueries episodeQueries, int episodeIdx) {
+				return episodeQueries.GetActorXYTraveledDistance(
+						actorName, starts[episodeIdx], ends[episodeIdx], deltaT);
+			}
+		});
+		return toArray(distances);
+	}
+
+	/**
+	 * Get the trajectory of the actor in every episode between the given timepoints
+	 * (one start and end per episode), empty if the query of the episode failed
+	 */
+	public double[][][] GetActorTraj(String[] collNames,
+			final String actorName,
+			final double[] starts,
+			final double[] ends,
+			final double deltaT){
+		List<double[][]> trajs = this.Run(collNames, new EpisodeQuery<double[][]>() {
+			@Override
+			public double[][] Run(MongoRobcogQueries episodeQueries, int episodeIdx) {
+				return episodeQueries.GetActorTraj(
+						actorName, starts[episodeIdx], ends[episodeIdx], deltaT);
+			}
+		});
+		double[][][] trajs_arr = new double[trajs.size()][][];
+		for (int i = 0; i < trajs.size(); ++i){
+			trajs_arr[i] = trajs.get(i) != null ? trajs.get(i) : new double[0][0];
+		}
+		return trajs_arr;
+	}
+
+	/**
+	 * Get the pose of the actor in every episode at the given timepoint
+	 * (one timepoint per episode), empty if the query of the episode failed
+	 */
+	public double[][] GetActorPoseAt(String[] collNames,
+			final String actorName,
+			final double[] timestamps){
+		List<double[]> poses = this.Run(collNames, new EpisodeQuery<double[]>() {
+			@Override
+			public double[] Run(MongoRobcogQueries episodeQueries, int episodeIdx) {
+				return episodeQueries.GetActorPoseAt(actorName, timestamps[episodeIdx]);
+			}
+		});
+		double[][] poses_arr = new double[poses.size()][];
+		for (int i = 0; i < poses.size(); ++i){
+			poses_arr[i] = poses.get(i) != null ? poses.get(i) : new double[0];
+		}
+		return poses_arr;
+	}
+
+	/**
+	 * Unbox the results, failed queries become NaN
+	 */
+	private static double[] toArray(List<Double> values){
+		double[] arr = new double[values.size()];
+		for (int i = 0; i < values.size(); ++i){
+			arr[i] = values.get(i) != null ? values.get(i) : Double.NaN;
+		}
+		return arr;
+	}
+}
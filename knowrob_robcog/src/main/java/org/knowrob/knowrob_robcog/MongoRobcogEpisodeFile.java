@@ -0,0 +1,346 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.mongodb.DBCollection;
+
+/**
+ * Binary file of one RawData episode collection and its memory mapped reader,
+ * the file is a little endian header with the entities, skeletal entities (with their bones)
+ * and EEG channels dictionaries followed by the 8 byte aligned record sections
+ * of MongoRobcogRecordStore, the queries read the mapped records in place
+ */
+public class MongoRobcogEpisodeFile extends MongoRobcogRecordStore {
+
+	// file identifier ("RCEP") and format version
+	public static final int MAGIC = 0x50454352;
+	public static final int VERSION = 1;
+
+	// strings are stored as length prefixed UTF-8
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// path of the file
+	private final String filePath;
+
+	// name of the exported collection
+	private final String collName;
+
+	/**
+	 * Map the sections of the file
+	 */
+	private MongoRobcogEpisodeFile(String filePath) throws IOException {
+		this.filePath = filePath;
+
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try
+		{
+			final FileChannel channel = file.getChannel();
+
+			// the header is read from the start of the file
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 
+					Math.min(channel.size(), Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getInt() != MAGIC)
+			{
+				throw new IOException(filePath + " is not a robcog episode file");
+			}
+			final int version = header.getInt();
+			if(version != VERSION)
+			{
+				throw new IOException(filePath + " has the unsupported version " + version);
+			}
+			this.collName = getString(header);
+
+			// the entities
+			final int nr_entities = header.getInt();
+			for (int i = 0; i < nr_entities; ++i){
+				final String name = getString(header);
+				this.entities.put(name, mapSection(channel, header, 1 + POSE_SIZE));
+			}
+
+			// the skeletal entities
+			final int nr_skel_entities = header.getInt();
+			for (int i = 0; i < nr_skel_entities; ++i){
+				final String name = getString(header);
+				String[] bones = new String[header.getInt()];
+				for (int j = 0; j < bones.length; ++j){
+					bones[j] = getString(header);
+				}
+				this.bonesNames.put(name, bones);
+				this.skelEntities.put(name, mapSection(channel, header, 1 + POSE_SIZE * bones.length));
+			}
+
+			// the EEG channels
+			this.eegChannels = new String[header.getInt()];
+			for (int i = 0; i < this.eegChannels.length; ++i){
+				this.eegChannels[i] = getString(header);
+			}
+			this.eeg = mapSection(channel, header, 1 + this.eegChannels.length);
+		}
+		finally
+		{
+			// the mappings stay valid after the file is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Open and map the episode file
+	 */
+	public static MongoRobcogEpisodeFile Open(String filePath) throws IOException {
+		return new MongoRobcogEpisodeFile(filePath);
+	}
+
+	/**
+	 * Path of the file
+	 */
+	public String GetFilePath(){
+		return this.filePath;
+	}
+
+	/**
+	 * Name of the exported collection
+	 */
+	public String GetCollName(){
+		return this.collName;
+	}
+
+	/**
+	 * Export the episode collection into the file (overwritten), returns the nr of bytes written;
+	 * the records are gathered in memory (one buffer per entry) before they are written
+	 */
+	public static long Export(DBCollection coll, String[] eegChannels, String filePath) throws IOException {
+		return export(coll.getFullName(), Gather(coll, eegChannels), filePath);
+	}
+
+	/**
+	 * Helper function writing the gathered records of the collection into the file (overwritten),
+	 * returns the nr of bytes written
+	 */
+	static long export(String collName, Gathered gathered, String filePath) throws IOException {
+		// the header is built twice, first to get its size, then with the offsets of the sections
+		ByteBuffer header = buildHeader(collName, gathered, 0);
+		header = buildHeader(collName, gathered, align(header.limit()));
+
+		RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+		try
+		{
+			final FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			final int header_size = writeFully(channel, header, 0);
+
+			// pad the header, the sections start aligned even if they are all empty
+			long pos = align(header_size);
+			writeFully(channel, ByteBuffer.allocate((int) (pos - header_size)), header_size);
+			for (MongoRobcogSampleBuffer buffer : gathered.entities.values())
+			{
+				pos = writeSection(channel, buffer, pos);
+			}
+			for (MongoRobcogSampleBuffer buffer : gathered.skelEntities.values())
+			{
+				pos = writeSection(channel, buffer, pos);
+			}
+			pos = writeSection(channel, gathered.eeg, pos);
+			System.out.println("Java - EpisodeFile - exported " + collName + " to " 
+					+ filePath + " (" + pos + " bytes)");
+			return pos;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Helper function mapping the records of the section described at the header position
+	 */
+	private static Section mapSection(FileChannel channel, ByteBuffer header, int stride) throws IOException {
+		final long offset = header.getLong();
+		final int nr_records = header.getInt();
+		final long size = (long) nr_records * stride * 8;
+		if(offset + size > channel.size())
+		{
+			throw new IOException("truncated robcog episode file");
+		}
+		DoubleBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, size)
+				.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		return new Section(stride, nr_records, data);
+	}
+
+	/**
+	 * Helper function building the header, the sections are written in the header order from dataOffset
+	 */
+	private static ByteBuffer buildHeader(String collName, Gathered gathered, long dataOffset){
+		HeaderWriter writer = new HeaderWriter(dataOffset);
+		writer.putInt(MAGIC);
+		writer.putInt(VERSION);
+		writer.putString(collName);
+		writer.putInt(gathered.entities.size());
+		for (Map.Entry<String, MongoRobcogSampleBuffer> entry : gathered.entities.entrySet())
+		{
+			writer.putString(entry.getKey());
+			writer.putSection(entry.getValue(), 1 + POSE_SIZE);
+		}
+		writer.putInt(gathered.skelEntities.size());
+		for (Map.Entry<String, MongoRobcogSampleBuffer> entry : gathered.skelEntities.entrySet())
+		{
+			final String[] bones = gathered.bonesNames.get(entry.getKey());
+			writer.putString(entry.getKey());
+			writer.putInt(bones.length);
+			for (String bone : bones)
+			{
+				writer.putString(bone);
+			}
+			writer.putSection(entry.getValue(), 1 + POSE_SIZE * bones.length);
+		}
+		writer.putInt(gathered.eegChannels.length);
+		for (String channel : gathered.eegChannels)
+		{
+			writer.putString(channel);
+		}
+		writer.putSection(gathered.eeg, 1 + gathered.eegChannels.length);
+		return writer.toBuffer();
+	}
+
+	/**
+	 * Growable little endian header, the sections offsets are assigned in the order they are put
+	 */
+	private static class HeaderWriter {
+		private ByteBuffer buffer;
+		private long dataOffset;
+
+		HeaderWriter(long dataOffset) {
+			this.buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+			this.dataOffset = dataOffset;
+		}
+
+		void putInt(int value){
+			this.ensure(4);
+			this.buffer.putInt(value);
+		}
+
+		void putString(String value){
+			final byte[] bytes = value.getBytes(UTF8);
+			this.ensure(4 + bytes.length);
+			this.buffer.putInt(bytes.length);
+			this.buffer.put(bytes);
+		}
+
+		void putSection(MongoRobcogSampleBuffer samples, int stride){
+			this.ensure(12);
+			this.buffer.putLong(this.dataOffset);
+			this.buffer.putInt(samples.GetNrSamples());
+			this.dataOffset += (long) samples.GetNrSamples() * stride * 8;
+		}
+
+		ByteBuffer toBuffer(){
+			this.buffer.flip();
+			return this.buffer;
+		}
+
+		private void ensure(int n){
+			if(this.buffer.remaining() < n)
+			{
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + n))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				this.buffer.flip();
+				grown.put(this.buffer);
+				this.buffer = grown;
+			}
+		}
+	}
+
+	/**
+	 * Helper function writing the samples of the buffer as [ts, values] records at the position,
+	 * returns the position after the records
+	 */
+	private static long writeSection(FileChannel channel, MongoRobcogSampleBuffer samples, long pos) throws IOException {
+		final int nr_samples = samples.GetNrSamples();
+		final int stride = samples.GetStride();
+		final double[] timestamps = samples.GetTimestamps();
+		final double[] values = samples.GetValues();
+		ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < nr_samples; ++i){
+			if(chunk.remaining() < (1 + stride) * 8)
+			{
+				chunk.flip();
+				pos += writeFully(channel, chunk, pos);
+				chunk = chunk.capacity() < (1 + stride) * 8
+						? ByteBuffer.allocate((1 + stride) * 8).order(ByteOrder.LITTLE_ENDIAN) : chunk;
+				chunk.clear();
+			}
+			chunk.putDouble(timestamps[i]);
+			for (int j = 0; j < stride; ++j){
+				chunk.putDouble(values[i * stride + j]);
+			}
+		}
+		chunk.flip();
+		pos += writeFully(channel, chunk, pos);
+		return pos;
+	}
+
+	/**
+	 * Helper function writing the remaining bytes of the buffer at the position, returns the nr of bytes
+	 */
+	private static int writeFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+		final int nr_bytes = buffer.remaining();
+		int written = 0;
+		while(written < nr_bytes)
+		{
+			written += channel.write(buffer, pos + written);
+		}
+		return nr_bytes;
+	}
+
+	/**
+	 * Helper function rounding the position up to a multiple of 8 (sections are double aligned)
+	 */
+	private static long align(long pos){
+		return (pos + 7) & ~7L;
+	}
+
+	/**
+	 * Helper function reading a length prefixed UTF-8 string
+	 */
+	private static String getString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
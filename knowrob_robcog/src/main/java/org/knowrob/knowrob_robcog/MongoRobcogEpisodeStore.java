@@ -0,0 +1,113 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+/**
+ * Storage backend of the pose, trajectory, bone and EEG primitives of one episode,
+ * the timestamps are in seconds, the poses are [x, y, z, qx, qy, qz, qw] and the
+ * trajectories keep a sample if it is more than deltaT after the previous kept one
+ */
+public interface MongoRobcogEpisodeStore {
+
+	/**
+	 * Pose of the actor at the given timepoint (or the most recent one), empty if none
+	 */
+	double[] GetActorPoseAt(String actorName, double timestamp);
+
+	/**
+	 * Poses of the actor at the given timepoints (interpolated or the most recent ones),
+	 * empty poses where there is none
+	 */
+	double[][] GetActorPosesAt(String actorName, double[] timestamps, boolean interpolate);
+
+	/**
+	 * Trajectory of the actor between the given timepoints,
+	 * the most recent pose if there are no samples in the interval
+	 */
+	double[][] GetActorTraj(String actorName, double start, double end, double deltaT);
+
+	/**
+	 * Names of the bones of the actor (in the order of the bones poses)
+	 */
+	String[] GetBonesNames(String actorName);
+
+	/**
+	 * Pose of the actors bone at the given timepoint (or the most recent one), empty if none
+	 */
+	double[] GetBonePoseAt(String actorName, String boneName, double timestamp);
+
+	/**
+	 * Poses of the actors bone at the given timepoints (interpolated or the most recent ones),
+	 * empty poses where there is none
+	 */
+	double[][] GetBonePosesAt(String actorName, String boneName, double[] timestamps, boolean interpolate);
+
+	/**
+	 * Trajectory of the actors bone between the given timepoints,
+	 * the most recent pose if there are no samples in the interval
+	 */
+	double[][] GetBoneTraj(String actorName, String boneName, double start, double end, double deltaT);
+
+	/**
+	 * Poses of the actors bones at the given timepoint (or the most recent one), empty if none
+	 */
+	double[][] GetBonesPosesAt(String actorName, double timestamp);
+
+	/**
+	 * Trajectories of the actors bones between the given timepoints as double[sample][bone][pose],
+	 * the most recent poses if there are no samples in the interval
+	 */
+	double[][][] GetBonesTrajs(String actorName, double start, double end, double deltaT);
+
+	/**
+	 * Copy the poses of the actor (of its bone, or of all its bones if the bone name is null)
+	 * between the given timepoints into the buffer (reset first), one sample with its timestamp
+	 * per kept pose (or bones poses)
+	 */
+	void CopyTraj(String actorName, boolean bones, String boneName, 
+			double start, double end, double deltaT, MongoRobcogSampleBuffer buffer);
+
+	/**
+	 * Names of the EEG channels
+	 */
+	String[] GetEEGChannels();
+
+	/**
+	 * Values of all the EEG channels at the given timepoint (or the most recent one),
+	 * in the order of GetEEGChannels, empty if none
+	 */
+	double[] GetAllEEGValuesAt(double timestamp);
+
+	/**
+	 * Values of the given EEG channels between the timepoints (missing channels are NaN)
+	 */
+	MongoRobcogEEGMatrix GetEEGMatrix(String[] channels, double start, double end, double deltaT);
+}
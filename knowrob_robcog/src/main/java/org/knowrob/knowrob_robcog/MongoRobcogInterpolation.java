@@ -0,0 +1,181 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+/**
+ * Pose interpolation helpers, the poses are [x, y, z, qx, qy, qz, qw] at an offset in a values array,
+ * the position is linearly interpolated (LERP) and the rotation spherically (SLERP)
+ */
+public final class MongoRobcogInterpolation {
+
+	// above this quaternion dot product the rotations are interpolated linearly (and normalized)
+	private static final double SLERP_DOT_THRESHOLD = 0.9995;
+
+	/**
+	 * Static helpers only
+	 */
+	private MongoRobcogInterpolation() {
+	}
+
+	/**
+	 * Interpolate between the pose at t0 (src[off0..]) and the pose at t1 (src[off1..])
+	 * at the timepoint t, the result is written to dst[dstOff..]
+	 */
+	public static void InterpolatePose(double[] src, int off0, double t0,
+			int off1, double t1,
+			double t,
+			double[] dst, int dstOff){
+		// interpolation factor, the first pose if the samples have the same timestamp
+		final double a = t1 > t0 ? Math.min(1.0, Math.max(0.0, (t - t0) / (t1 - t0))) : 0.0;
+
+		// LERP of the position
+		for (int i = 0; i < 3; ++i){
+			dst[dstOff + i] = src[off0 + i] + a * (src[off1 + i] - src[off0 + i]);
+		}
+
+		// SLERP of the quaternion
+		final int q0 = off0 + 3;
+		final int q1 = off1 + 3;
+		double dot = src[q0] * src[q1] + src[q0 + 1] * src[q1 + 1]
+				+ src[q0 + 2] * src[q1 + 2] + src[q0 + 3] * src[q1 + 3];
+
+		// take the shortest path
+		double sign = 1.0;
+		if(dot < 0)
+		{
+			sign = -1.0;
+			dot = -dot;
+		}
+
+		double s0;
+		double s1;
+		if(dot > SLERP_DOT_THRESHOLD)
+		{
+			// almost the same rotation, linear interpolation
+			s0 = 1.0 - a;
+			s1 = a * sign;
+		}
+		else
+		{
+			final double theta_0 = Math.acos(dot);
+			final double theta = theta_0 * a;
+			final double sin_theta_0 = Math.sin(theta_0);
+			s0 = Math.cos(theta) - dot * Math.sin(theta) / sin_theta_0;
+			s1 = sign * Math.sin(theta) / sin_theta_0;
+		}
+
+		double norm = 0.0;
+		for (int i = 0; i < 4; ++i){
+			final double q = s0 * src[q0 + i] + s1 * src[q1 + i];
+			dst[dstOff + 3 + i] = q;
+			norm += q * q;
+		}
+		norm = Math.sqrt(norm);
+		if(norm > 0)
+		{
+			for (int i = 0; i < 4; ++i){
+				dst[dstOff + 3 + i] /= norm;
+			}
+		}
+	}
+
+	/**
+	 * Resample the poses (stride 7, sorted by timestamp) at the given timestamps, interpolated
+	 * between the bracketing samples or the most recent sample at or before the timestamp;
+	 * the samples are merged in one pass if the timestamps are ascending (binary search otherwise),
+	 * timestamps before the first sample get an empty pose
+	 */
+	public static double[][] Resample(double[] sampleTs,
+			double[] poses,
+			int nrSamples,
+			double[] timestamps,
+			boolean interpolate){
+		double[][] resampled = new double[timestamps.length][];
+
+		// index of the most recent sample at or before the current timestamp
+		int floor = -1;
+		for (int i = 0; i < timestamps.length; ++i){
+			final double t = timestamps[i];
+			if(i > 0 && t < timestamps[i - 1])
+			{
+				// not ascending, search from scratch
+				floor = FloorIndex(sampleTs, nrSamples, t);
+			}
+			else
+			{
+				// merge, advance to the most recent sample
+				while(floor + 1 < nrSamples && sampleTs[floor + 1] <= t)
+				{
+					floor++;
+				}
+			}
+
+			if(floor < 0)
+			{
+				resampled[i] = new double[0];
+				continue;
+			}
+			resampled[i] = new double[7];
+			if(interpolate && floor + 1 < nrSamples && sampleTs[floor] < t)
+			{
+				InterpolatePose(poses, floor * 7, sampleTs[floor],
+						(floor + 1) * 7, sampleTs[floor + 1], t, resampled[i], 0);
+			}
+			else
+			{
+				System.arraycopy(poses, floor * 7, resampled[i], 0, 7);
+			}
+		}
+		return resampled;
+	}
+
+	/**
+	 * Index of the most recent sample at or before the timestamp (-1 if none)
+	 */
+	public static int FloorIndex(double[] sampleTs, int nrSamples, double t){
+		int low = 0;
+		int high = nrSamples - 1;
+		int floor = -1;
+		while(low <= high)
+		{
+			final int mid = (low + high) >>> 1;
+			if(sampleTs[mid] <= t)
+			{
+				floor = mid;
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return floor;
+	}
+}
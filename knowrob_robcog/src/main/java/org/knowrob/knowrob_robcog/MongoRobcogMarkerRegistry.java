@@ -0,0 +1,194 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the ids of the created rviz markers, every id is registered once
+ * in a namespace (e.g. list markers, skeletal meshes) and a group (e.g. the actor name),
+ * removed ids are forgotten
+ */
+public class MongoRobcogMarkerRegistry {
+
+	// marker ids of every namespace
+	private final Map<String, Set<String>> namespaceIds;
+
+	// marker ids of every group
+	private final Map<String, Set<String>> groupIds;
+
+	// namespace and group of every marker id
+	private final Map<String, String[]> idKeys;
+
+	/**
+	 * MongoRobcogMarkerRegistry constructor
+	 */
+	public MongoRobcogMarkerRegistry() {
+		this.namespaceIds = new HashMap<String, Set<String>>();
+		this.groupIds = new HashMap<String, Set<String>>();
+		this.idKeys = new HashMap<String, String[]>();
+	}
+
+	/**
+	 * Register the marker id, returns false if it was already registered
+	 */
+	public synchronized boolean Add(String namespace, String group, String markerID){
+		if(this.idKeys.containsKey(markerID))
+		{
+			return false;
+		}
+		this.idKeys.put(markerID, new String[] {namespace, group});
+		ids(this.namespaceIds, namespace).add(markerID);
+		ids(this.groupIds, group).add(markerID);
+		return true;
+	}
+
+	/**
+	 * Forget the marker id, returns false if it was not registered
+	 */
+	public synchronized boolean Remove(String markerID){
+		final String[] keys = this.idKeys.remove(markerID);
+		if(keys == null)
+		{
+			return false;
+		}
+		unlink(this.namespaceIds, keys[0], markerID);
+		unlink(this.groupIds, keys[1], markerID);
+		return true;
+	}
+
+	/**
+	 * Forget and return all the marker ids of the namespace
+	 */
+	public synchronized List<String> RemoveNamespace(String namespace){
+		return this.removeAll(this.namespaceIds.get(namespace));
+	}
+
+	/**
+	 * Forget and return all the marker ids of the group
+	 */
+	public synchronized List<String> RemoveGroup(String group){
+		return this.removeAll(this.groupIds.get(group));
+	}
+
+	/**
+	 * Forget and return all the marker ids
+	 */
+	public synchronized List<String> Clear(){
+		List<String> removed = new ArrayList<String>(this.idKeys.keySet());
+		this.namespaceIds.clear();
+		this.groupIds.clear();
+		this.idKeys.clear();
+		return removed;
+	}
+
+	/**
+	 * Check if the marker id is registered
+	 */
+	public synchronized boolean Contains(String markerID){
+		return this.idKeys.containsKey(markerID);
+	}
+
+	/**
+	 * Nr of registered marker ids
+	 */
+	public synchronized int GetSize(){
+		return this.idKeys.size();
+	}
+
+	/**
+	 * Nr of registered marker ids of the namespace
+	 */
+	public synchronized int GetNamespaceSize(String namespace){
+		final Set<String> ids = this.namespaceIds.get(namespace);
+		return ids != null ? ids.size() : 0;
+	}
+
+	/**
+	 * Nr of registered marker ids of the group
+	 */
+	public synchronized int GetGroupSize(String group){
+		final Set<String> ids = this.groupIds.get(group);
+		return ids != null ? ids.size() : 0;
+	}
+
+	/**
+	 * Names of the groups with registered marker ids
+	 */
+	public synchronized String[] GetGroups(){
+		return this.groupIds.keySet().toArray(new String[0]);
+	}
+
+	/**
+	 * Helper function forgetting the given marker ids (copied first, the set is modified)
+	 */
+	private List<String> removeAll(Set<String> ids){
+		if(ids == null)
+		{
+			return new ArrayList<String>(0);
+		}
+		List<String> removed = new ArrayList<String>(ids);
+		for (String marker_id : removed){
+			this.Remove(marker_id);
+		}
+		return removed;
+	}
+
+	/**
+	 * Helper function returning the (created if missing) id set of the key
+	 */
+	private static Set<String> ids(Map<String, Set<String>> keyIds, String key){
+		Set<String> ids = keyIds.get(key);
+		if(ids == null)
+		{
+			// insertion ordered, markers are removed in creation order
+			ids = new LinkedHashSet<String>();
+			keyIds.put(key, ids);
+		}
+		return ids;
+	}
+
+	/**
+	 * Helper function removing the id from the set of the key, empty sets are dropped
+	 */
+	private static void unlink(Map<String, Set<String>> keyIds, String key, String markerID){
+		final Set<String> ids = keyIds.get(key);
+		if(ids != null && ids.remove(markerID) && ids.isEmpty())
+		{
+			keyIds.remove(key);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import com.mongodb.DBCollection;
+
+/**
+ * In-process episode store keeping the records on the heap, loaded from an episode
+ * collection (hot episodes) or filled with fixtures, the Put functions should be called
+ * before the store is shared with the querying threads
+ */
+public class MongoRobcogMemoryStore extends MongoRobcogRecordStore {
+
+	// nr of bytes of the records
+	private long bytes;
+
+	/**
+	 * MongoRobcogMemoryStore constructor of an empty store
+	 */
+	public MongoRobcogMemoryStore() {
+		this.bytes = 0;
+	}
+
+	/**
+	 * Load the episode collection into a new store
+	 */
+	public static MongoRobcogMemoryStore Load(DBCollection coll, String[] eegChannels){
+		final Gathered gathered = Gather(coll, eegChannels);
+		MongoRobcogMemoryStore store = new MongoRobcogMemoryStore();
+		for (Map.Entry<String, MongoRobcogSampleBuffer> entry : gathered.entities.entrySet())
+		{
+			store.entities.put(entry.getKey(), store.toSection(entry.getValue(), 1 + POSE_SIZE));
+		}
+		for (Map.Entry<String, MongoRobcogSampleBuffer> entry : gathered.skelEntities.entrySet())
+		{
+			final String[] bones = gathered.bonesNames.get(entry.getKey());
+			store.bonesNames.put(entry.getKey(), bones);
+			store.skelEntities.put(entry.getKey(), store.toSection(entry.getValue(), 1 + POSE_SIZE * bones.length));
+		}
+		store.eegChannels = eegChannels.clone();
+		store.eeg = store.toSection(gathered.eeg, 1 + eegChannels.length);
+		System.out.println("Java - MemoryStore - loaded " + coll.getFullName() + " (" + store.bytes + " bytes)");
+		return store;
+	}
+
+	/**
+	 * Nr of bytes of the records
+	 */
+	public long GetBytes(){
+		return this.bytes;
+	}
+
+	/**
+	 * Set the poses of the actor, one [x, y, z, qx, qy, qz, qw] pose per timestamp (sorted if needed)
+	 */
+	public void PutActorTraj(String actorName, double[] timestamps, double[][] poses){
+		final Integer[] order = sortedOrder(timestamps);
+		double[] records = new double[timestamps.length * (1 + POSE_SIZE)];
+		for (int i = 0; i < order.length; ++i){
+			records[i * (1 + POSE_SIZE)] = timestamps[order[i]];
+			System.arraycopy(poses[order[i]], 0, records, i * (1 + POSE_SIZE) + 1, POSE_SIZE);
+		}
+		this.putSection(this.entities, actorName, new Section(1 + POSE_SIZE, timestamps.length, DoubleBuffer.wrap(records)));
+	}
+
+	/**
+	 * Set the poses of the actors bones, one [bone][pose] block per timestamp (sorted if needed)
+	 */
+	public void PutBonesTrajs(String actorName, String[] boneNames, double[] timestamps, double[][][] poses){
+		final int stride = 1 + POSE_SIZE * boneNames.length;
+		final Integer[] order = sortedOrder(timestamps);
+		double[] records = new double[timestamps.length * stride];
+		for (int i = 0; i < order.length; ++i){
+			records[i * stride] = timestamps[order[i]];
+			for (int j = 0; j < boneNames.length; ++j){
+				System.arraycopy(poses[order[i]][j], 0, records, i * stride + 1 + j * POSE_SIZE, POSE_SIZE);
+			}
+		}
+		this.bonesNames.put(actorName, boneNames.clone());
+		this.putSection(this.skelEntities, actorName, new Section(stride, timestamps.length, DoubleBuffer.wrap(records)));
+	}
+
+	/**
+	 * Set the EEG values, one value per channel and timestamp (sorted if needed)
+	 */
+	public void PutEEG(String[] channels, double[] timestamps, double[][] values){
+		final int stride = 1 + channels.length;
+		final Integer[] order = sortedOrder(timestamps);
+		double[] records = new double[timestamps.length * stride];
+		for (int i = 0; i < order.length; ++i){
+			records[i * stride] = timestamps[order[i]];
+			System.arraycopy(values[order[i]], 0, records, i * stride + 1, channels.length);
+		}
+		this.bytes -= (long) this.eeg.nrRecords * this.eeg.stride * 8;
+		this.eegChannels = channels.clone();
+		this.eeg = new Section(stride, timestamps.length, DoubleBuffer.wrap(records));
+		this.bytes += (long) records.length * 8;
+	}
+
+	/**
+	 * Helper function replacing the section of the entry
+	 */
+	private void putSection(Map<String, Section> sections, String name, Section section){
+		final Section prev = sections.put(name, section);
+		if(prev != null)
+		{
+			this.bytes -= (long) prev.nrRecords * prev.stride * 8;
+		}
+		this.bytes += (long) section.nrRecords * section.stride * 8;
+	}
+
+	/**
+	 * Helper function copying the samples of the buffer into [ts, values] records
+	 */
+	private Section toSection(MongoRobcogSampleBuffer samples, int stride){
+		final int nr_samples = samples.GetNrSamples();
+		final double[] timestamps = samples.GetTimestamps();
+		final double[] values = samples.GetValues();
+		double[] records = new double[nr_samples * stride];
+		for (int i = 0; i < nr_samples; ++i){
+			records[i * stride] = timestamps[i];
+			System.arraycopy(values, i * (stride - 1), records, i * stride + 1, stride - 1);
+		}
+		this.bytes += (long) records.length * 8;
+		return new Section(stride, nr_samples, DoubleBuffer.wrap(records));
+	}
+
+	/**
+	 * Helper function returning the indices of the timestamps in ascending timestamp order
+	 */
+	private static Integer[] sortedOrder(final double[] timestamps){
+		Integer[] order = new Integer[timestamps.length];
+		for (int i = 0; i < order.length; ++i){
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(timestamps[a], timestamps[b]);
+			}
+		});
+		return order;
+	}
+}
@@ -0,0 +1,453 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms and data volume counters of the instrumented query methods,
+ * a call is measured from Begin to End on the calling thread, the documents, bytes and
+ * cursor batches decoded and the samples kept in between are attributed to the innermost call
+ * (and added to the enclosing calls); when disabled Begin/End and the counters only read a flag
+ */
+public final class MongoRobcogMetrics implements MongoRobcogMetricsMBean {
+
+	// nr of latency histogram buckets, bucket i counts the calls below 2^(i+1) microseconds
+	private static final int NR_BUCKETS = 40;
+
+	// columns of the report rows
+	public static final String[] COLUMNS = new String[] {"method", "calls", "total_ms", "mean_ms", 
+		"p50_ms", "p95_ms", "p99_ms", "max_ms", "docs", "samples", "bytes", "batches"};
+
+	/**
+	 * Counters of one instrumented method
+	 */
+	private static class MethodStats {
+		final AtomicLong calls = new AtomicLong();
+		final AtomicLong totalNs = new AtomicLong();
+		final AtomicLong maxNs = new AtomicLong();
+		final AtomicLong docs = new AtomicLong();
+		final AtomicLong samples = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicLong batches = new AtomicLong();
+		final AtomicLongArray buckets = new AtomicLongArray(NR_BUCKETS);
+	}
+
+	/**
+	 * Counters of the current call of a thread
+	 */
+	private static class Call {
+		final String method;
+		final Call parent;
+		long docs;
+		long samples;
+		long bytes;
+		long batches;
+
+		Call(String method, Call parent) {
+			this.method = method;
+			this.parent = parent;
+		}
+	}
+
+	// the registered MBean
+	private static final MongoRobcogMetrics INSTANCE = new MongoRobcogMetrics();
+
+	// if false nothing is recorded
+	private static volatile boolean enabled;
+
+	// true once the MBean is registered
+	private static boolean registered;
+
+	// counters of every instrumented method
+	private static final ConcurrentMap<String, MethodStats> stats = new ConcurrentHashMap<String, MethodStats>();
+
+	// current call of every thread
+	private static final ThreadLocal<Call> current = new ThreadLocal<Call>();
+
+	// periodic CSV dump (null if not running)
+	private static ScheduledExecutorService dumpExecutor;
+	private static ScheduledFuture<?> dumpTask;
+
+	private MongoRobcogMetrics() {
+	}
+
+	/**
+	 * Start measuring a call of the method, returns the start time to pass to End
+	 * (0 if disabled or if the method is re-entered through one of its overloads)
+	 */
+	public static long Begin(String method){
+		if(!enabled)
+		{
+			return 0;
+		}
+		final Call parent = current.get();
+		if(parent != null && parent.method.equals(method))
+		{
+			return 0;
+		}
+		current.set(new Call(method, parent));
+		return Math.max(1, System.nanoTime());
+	}
+
+	/**
+	 * Stop measuring the call of the method started at startNs
+	 */
+	public static void End(String method, long startNs){
+		if(startNs == 0)
+		{
+			return;
+		}
+		final long elapsed_ns = System.nanoTime() - startNs;
+		final Call call = current.get();
+		current.set(call.parent);
+
+		final MethodStats method_stats = methodStats(method);
+		method_stats.calls.incrementAndGet();
+		method_stats.totalNs.addAndGet(elapsed_ns);
+		long max_ns = method_stats.maxNs.get();
+		while(elapsed_ns > max_ns && !method_stats.maxNs.compareAndSet(max_ns, elapsed_ns))
+		{
+			max_ns = method_stats.maxNs.get();
+		}
+		method_stats.buckets.incrementAndGet(bucket(elapsed_ns));
+		method_stats.docs.addAndGet(call.docs);
+		method_stats.samples.addAndGet(call.samples);
+		method_stats.bytes.addAndGet(call.bytes);
+		method_stats.batches.addAndGet(call.batches);
+
+		// the enclosing call includes the data of the nested one
+		if(call.parent != null)
+		{
+			call.parent.docs += call.docs;
+			call.parent.samples += call.samples;
+			call.parent.bytes += call.bytes;
+			call.parent.batches += call.batches;
+		}
+	}
+
+	/**
+	 * Count a document of the given size received from the server
+	 */
+	public static void AddDoc(long nrBytes){
+		if(!enabled)
+		{
+			return;
+		}
+		final Call call = current.get();
+		if(call != null)
+		{
+			call.docs++;
+			call.bytes += nrBytes;
+		}
+	}
+
+	/**
+	 * Count a cursor batch received from the server
+	 */
+	public static void AddBatch(){
+		if(!enabled)
+		{
+			return;
+		}
+		final Call call = current.get();
+		if(call != null)
+		{
+			call.batches++;
+		}
+	}
+
+	/**
+	 * Count a sample kept in a result
+	 */
+	public static void AddSample(){
+		if(!enabled)
+		{
+			return;
+		}
+		final Call call = current.get();
+		if(call != null)
+		{
+			call.samples++;
+		}
+	}
+
+	/**
+	 * Enable/disable the recording of the metrics (registers the MBean at the first call)
+	 */
+	public static void Enable(boolean enable){
+		register();
+		enabled = enable;
+	}
+
+	/**
+	 * Check if the metrics are recorded
+	 */
+	public static boolean Enabled(){
+		return enabled;
+	}
+
+	/**
+	 * Clear the recorded metrics
+	 */
+	public static void Clear(){
+		stats.clear();
+	}
+
+	/**
+	 * Names of the measured methods, sorted by their total time (slowest first)
+	 */
+	public static String[] Methods(){
+		List<Map.Entry<String, MethodStats>> entries = new ArrayList<Map.Entry<String, MethodStats>>(stats.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, MethodStats>>() {
+			@Override
+			public int compare(Map.Entry<String, MethodStats> a, Map.Entry<String, MethodStats> b) {
+				return Long.compare(b.getValue().totalNs.get(), a.getValue().totalNs.get());
+			}
+		});
+		String[] methods = new String[entries.size()];
+		for (int i = 0; i < methods.length; ++i){
+			methods[i] = entries.get(i).getKey();
+		}
+		return methods;
+	}
+
+	/**
+	 * Metrics of the method as [calls, total_ms, mean_ms, p50_ms, p95_ms, p99_ms, max_ms,
+	 * docs, samples, bytes, batches], empty if the method was not measured
+	 * (the percentiles are the upper bounds of the histogram buckets)
+	 */
+	public static double[] Report(String method){
+		final MethodStats method_stats = stats.get(method);
+		if(method_stats == null)
+		{
+			return new double[0];
+		}
+		final long calls = method_stats.calls.get();
+		final double total_ms = method_stats.totalNs.get() / 1e6;
+		return new double[] {calls, total_ms, calls > 0 ? total_ms / calls : 0,
+				percentile(method_stats, 0.5), percentile(method_stats, 0.95), percentile(method_stats, 0.99),
+				method_stats.maxNs.get() / 1e6, method_stats.docs.get(), method_stats.samples.get(),
+				method_stats.bytes.get(), method_stats.batches.get()};
+	}
+
+	/**
+	 * Metrics of every measured method as CSV lines (with header)
+	 */
+	public static String[] CsvReport(){
+		final String[] methods = Methods();
+		String[] lines = new String[methods.length + 1];
+		lines[0] = join(COLUMNS);
+		for (int i = 0; i < methods.length; ++i){
+			StringBuilder line = new StringBuilder(methods[i]);
+			for (double value : Report(methods[i])){
+				line.append(',').append(value);
+			}
+			lines[i + 1] = line.toString();
+		}
+		return lines;
+	}
+
+	/**
+	 * Append the current metrics to the CSV file, every line is prefixed by the wall clock time
+	 */
+	public static void AppendCsv(String filePath){
+		final String[] lines = CsvReport();
+		final long now = System.currentTimeMillis();
+		// new files start with the header
+		final boolean new_file = !new File(filePath).exists();
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(new FileWriter(filePath, true));
+			if(new_file)
+			{
+				writer.println("time_ms," + lines[0]);
+			}
+			for (int i = 1; i < lines.length; ++i){
+				writer.println(now + "," + lines[i]);
+			}
+		} catch (IOException e) {
+			System.out.println("Java - Metrics - could not write " + filePath + ": " + e.getMessage());
+		} finally {
+			if(writer != null)
+			{
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Append the metrics to the CSV file every periodSec seconds (replaces a running dump)
+	 */
+	public static synchronized void StartCsvDump(final String filePath, long periodSec){
+		StopCsvDump();
+		if(dumpExecutor == null)
+		{
+			dumpExecutor = Executors.newSingleThreadScheduledExecutor(
+					MongoRobcogThreads.DaemonFactory("robcog-metrics-dump"));
+		}
+		dumpTask = dumpExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				AppendCsv(filePath);
+			}
+		}, periodSec, periodSec, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the periodic CSV dump
+	 */
+	public static synchronized void StopCsvDump(){
+		if(dumpTask != null)
+		{
+			dumpTask.cancel(false);
+			dumpTask = null;
+		}
+	}
+
+	@Override
+	public void SetEnabled(boolean enable){
+		Enable(enable);
+	}
+
+	@Override
+	public boolean IsEnabled(){
+		return Enabled();
+	}
+
+	@Override
+	public String[] GetCsvReport(){
+		return CsvReport();
+	}
+
+	@Override
+	public void Reset(){
+		Clear();
+	}
+
+	@Override
+	public void DumpCsv(String filePath){
+		AppendCsv(filePath);
+	}
+
+	/**
+	 * Helper function registering the MBean once
+	 */
+	private static synchronized void register(){
+		if(registered)
+		{
+			return;
+		}
+		registered = true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(INSTANCE, new ObjectName("org.knowrob.knowrob_robcog:type=MongoRobcogMetrics"));
+		} catch (Exception e) {
+			System.out.println("Java - Metrics - could not register the MBean: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Helper function returning the (created if missing) counters of the method
+	 */
+	private static MethodStats methodStats(String method){
+		MethodStats method_stats = stats.get(method);
+		if(method_stats == null)
+		{
+			final MethodStats new_stats = new MethodStats();
+			method_stats = stats.putIfAbsent(method, new_stats);
+			if(method_stats == null)
+			{
+				method_stats = new_stats;
+			}
+		}
+		return method_stats;
+	}
+
+	/**
+	 * Helper function returning the histogram bucket of the duration
+	 */
+	private static int bucket(long elapsedNs){
+		final long elapsed_us = Math.max(1, elapsedNs / 1000);
+		return Math.min(NR_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(elapsed_us));
+	}
+
+	/**
+	 * Helper function returning the upper bound in ms of the bucket containing the given fraction of the calls
+	 */
+	private static double percentile(MethodStats methodStats, double fraction){
+		long total = 0;
+		for (int i = 0; i < NR_BUCKETS; ++i){
+			total += methodStats.buckets.get(i);
+		}
+		final long rank = (long) Math.ceil(total * fraction);
+		long count = 0;
+		for (int i = 0; i < NR_BUCKETS; ++i){
+			count += methodStats.buckets.get(i);
+			if(count >= rank && count > 0)
+			{
+				return (1L << (i + 1)) / 1000.0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Helper function joining the values with commas
+	 */
+	private static String join(String[] values){
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < values.length; ++i){
+			joined.append(i > 0 ? "," : "").append(values[i]);
+		}
+		return joined.toString();
+	}
+}
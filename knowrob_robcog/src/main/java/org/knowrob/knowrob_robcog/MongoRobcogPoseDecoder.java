@@ -0,0 +1,255 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Streaming decoder of the RawData pose documents, the poses are written
+ * straight from the BSON bytes into a MongoRobcogSampleBuffer without building DBObjects,
+ * expects the documents of a find() with an $elemMatch projection on the entities array:
+ * {timestamp, <entities>: [{loc{x,y,z}, rot{x,y,z,w}, bones: [{name, loc, rot}]}]}
+ */
+public class MongoRobcogPoseDecoder extends MongoRobcogBSONDecoder {
+
+	// field names as bytes
+	private static final byte[] LOC = "loc".getBytes(UTF8);
+	private static final byte[] ROT = "rot".getBytes(UTF8);
+	private static final byte[] BONES = "bones".getBytes(UTF8);
+	private static final byte[] NAME = "name".getBytes(UTF8);
+
+	// buffer the poses are written to
+	private final MongoRobcogSampleBuffer buffer;
+
+	// name of the array holding the queried entity (entities or skel_entities)
+	private final byte[] arrayField;
+
+	// if true the poses of the bones are decoded instead of the entity pose
+	private final boolean bones;
+
+	// if not null only the pose of this bone is decoded
+	private final byte[] boneName;
+
+	/**
+	 * Decoder of the entity poses from the given array (entities or skel_entities)
+	 */
+	public MongoRobcogPoseDecoder(MongoRobcogSampleBuffer buffer, String arrayField) {
+		this(buffer, arrayField, false, null);
+	}
+
+	/**
+	 * Decoder of the bone poses of the skeletal entity,
+	 * all the bones are decoded if the bone name is null
+	 */
+	public MongoRobcogPoseDecoder(MongoRobcogSampleBuffer buffer, String arrayField, String boneName) {
+		this(buffer, arrayField, true, boneName);
+	}
+
+	/**
+	 * MongoRobcogPoseDecoder constructor
+	 */
+	private MongoRobcogPoseDecoder(MongoRobcogSampleBuffer buffer, String arrayField,
+			boolean bones, String boneName) {
+		this.buffer = buffer;
+		this.arrayField = arrayField.getBytes(UTF8);
+		this.bones = bones;
+		this.boneName = boneName != null ? boneName.getBytes(UTF8) : null;
+	}
+
+	/**
+	 * Decode the pose(s) of the document in the doc buffer, documents without timestamp
+	 * (e.g. server errors) are decoded as regular DBObjects
+	 */
+	@Override
+	protected DBObject decodeDoc(int len, DBCollection collection){
+		// first pass over the top level fields, look for the timestamp and the entities array
+		double ts = Double.NaN;
+		int array_pos = -1;
+		int pos = 4;
+		while(pos < len - 1 && this.doc[pos] != 0)
+		{
+			final byte type = this.doc[pos];
+			final int name_pos = pos + 1;
+			final int value_pos = skipCString(this.doc, name_pos);
+			if(nameEquals(this.doc, name_pos, TIMESTAMP) && isNumber(type))
+			{
+				ts = readNumber(this.doc, type, value_pos);
+			}
+			else if(nameEquals(this.doc, name_pos, this.arrayField) && type == BSON_ARRAY)
+			{
+				array_pos = value_pos;
+			}
+			pos = skipValue(this.doc, type, value_pos);
+			if(pos < 0)
+			{
+				break;
+			}
+		}
+
+		// not a pose document, decode it the default way
+		if(Double.isNaN(ts) || pos < 0)
+		{
+			return this.decodeDefault(len, collection);
+		}
+
+		// skipped by the deltaT filter, or the entity is not in the document
+		if(array_pos < 0 || !this.buffer.BeginSample(ts))
+		{
+			return DECODED;
+		}
+
+		// the $elemMatch projection leaves only the queried entity in the array
+		final int elem_pos = firstElement(this.doc, array_pos, BSON_DOCUMENT);
+		if(elem_pos >= 0)
+		{
+			if(this.bones)
+			{
+				this.decodeBones(elem_pos);
+			}
+			else
+			{
+				this.decodePose(elem_pos);
+			}
+		}
+		this.buffer.EndSample();
+		return DECODED;
+	}
+
+	/**
+	 * Decode the bones array of the skeletal entity document at the given position
+	 */
+	private void decodeBones(int entityPos){
+		final int bones_pos = findField(this.doc, entityPos, BONES, BSON_ARRAY);
+		if(bones_pos < 0)
+		{
+			return;
+		}
+		final int bones_end = bones_pos + readInt(this.doc, bones_pos) - 1;
+		int pos = bones_pos + 4;
+		while(pos < bones_end)
+		{
+			final byte type = this.doc[pos];
+			final int value_pos = skipCString(this.doc, pos + 1);
+			if(type == BSON_DOCUMENT && (this.boneName == null || this.isBone(value_pos)))
+			{
+				this.decodePose(value_pos);
+			}
+			pos = skipValue(this.doc, type, value_pos);
+			if(pos < 0)
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Check if the name of the bone document at the given position is the queried one
+	 */
+	private boolean isBone(int bonePos){
+		final int name_pos = findField(this.doc, bonePos, NAME, BSON_STRING);
+		if(name_pos < 0)
+		{
+			return false;
+		}
+		// string: int32 length (including the trailing 0) followed by the bytes
+		final int str_len = readInt(this.doc, name_pos) - 1;
+		if(str_len != this.boneName.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < str_len; ++i){
+			if(this.doc[name_pos + 4 + i] != this.boneName[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decode the loc and rot of the document at the given position as [x,y,z,qx,qy,qz,qw]
+	 */
+	private void decodePose(int docPos){
+		final int offset = this.buffer.Reserve(7);
+		final int loc_pos = findField(this.doc, docPos, LOC, BSON_DOCUMENT);
+		if(loc_pos >= 0)
+		{
+			this.decodeAxes(loc_pos, offset, 3);
+		}
+		final int rot_pos = findField(this.doc, docPos, ROT, BSON_DOCUMENT);
+		if(rot_pos >= 0)
+		{
+			this.decodeAxes(rot_pos, offset + 3, 4);
+		}
+	}
+
+	/**
+	 * Write the first nrAxes of the x, y, z, w fields of the document at the given position to the buffer values
+	 */
+	private void decodeAxes(int docPos, int offset, int nrAxes){
+		final double[] values = this.buffer.GetValues();
+		final int end = docPos + readInt(this.doc, docPos) - 1;
+		int pos = docPos + 4;
+		while(pos < end)
+		{
+			final byte type = this.doc[pos];
+			final int value_pos = skipCString(this.doc, pos + 1);
+			// single char names only
+			if(value_pos == pos + 3 && isNumber(type))
+			{
+				final int idx = axisIndex(this.doc[pos + 1]);
+				if(idx >= 0 && idx < nrAxes)
+				{
+					values[offset + idx] = readNumber(this.doc, type, value_pos);
+				}
+			}
+			pos = skipValue(this.doc, type, value_pos);
+			if(pos < 0)
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Index of the axis in the loc/rot part of the pose
+	 */
+	private static int axisIndex(byte name){
+		switch(name)
+		{
+			case 'x': return 0;
+			case 'y': return 1;
+			case 'z': return 2;
+			case 'w': return 3;
+			default: return -1;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the world states (poses of the given actors and bones of the given skeletal actors)
+ * of the time window ahead of the current timeline position on a background thread, the raw samples
+ * of the last loaded windows are kept in a ring buffer and any timepoint inside a window is served 
+ * to the visualization (most recent sample at or before it) without querying the database
+ */
+public class MongoRobcogPrefetcher {
+
+	// default nr of steps covered by two windows
+	public static final int DEFAULT_CAPACITY = 64;
+
+	// nr of windows kept in the ring buffer (the past, the current and the next one)
+	private static final int NR_WINDOWS = 3;
+
+	/**
+	 * Samples of one time window
+	 */
+	private static class Window {
+		// covered time interval
+		final double start;
+		final double end;
+		// pose samples of every actor, the first one is the most recent pose at the window start
+		final MongoRobcogSampleBuffer[] actorSamples;
+		// bone poses samples of every skeletal actor (same as the actor samples)
+		final MongoRobcogSampleBuffer[] bonesSamples;
+
+		Window(double start, double end, MongoRobcogSampleBuffer[] actorSamples, MongoRobcogSampleBuffer[] bonesSamples) {
+			this.start = start;
+			this.end = end;
+			this.actorSamples = actorSamples;
+			this.bonesSamples = bonesSamples;
+		}
+
+		/**
+		 * Check if the timepoint is inside the window
+		 */
+		boolean covers(double timestamp){
+			return this.start <= timestamp && timestamp <= this.end;
+		}
+	}
+
+	// queries bound to the prefetched collection (without pose interpolation)
+	private final MongoRobcogQueries queries;
+
+	// full name of the prefetched collection
+	private final String collName;
+
+	// actors with prefetched poses
+	private final String[] actorNames;
+
+	// skeletal actors with prefetched bone poses
+	private final String[] skelActorNames;
+
+	// length of a window
+	private final double span;
+
+	// ring buffer of the loaded windows
+	private final Window[] windows;
+
+	// write position in the ring buffer
+	private int head;
+
+	// load of the next window (null if none was submitted yet)
+	private Future<?> pending;
+
+	// nr of lookups served from / missing the ring buffer
+	private long nrHits;
+	private long nrMisses;
+
+	// background thread loading the windows
+	private final ExecutorService executor;
+
+	/**
+	 * MongoRobcogPrefetcher constructor, the given queries should be bound to the collection,
+	 * a window covers capacity / 2 steps (seconds) from the timepoint given to Prefetch
+	 */
+	public MongoRobcogPrefetcher(MongoRobcogQueries queries,
+			String collName,
+			String[] actorNames,
+			String[] skelActorNames,
+			double step,
+			int capacity) {
+		this.queries = queries;
+		this.collName = collName;
+		this.actorNames = actorNames;
+		this.skelActorNames = skelActorNames;
+		this.span = step * Math.max(1, capacity / 2);
+		this.windows = new Window[NR_WINDOWS];
+		this.executor = Executors.newSingleThreadExecutor(MongoRobcogThreads.DaemonFactory("robcog-prefetcher"));
+	}
+
+	/**
+	 * Full name of the prefetched collection
+	 */
+	public String GetCollName(){
+		return this.collName;
+	}
+
+	/**
+	 * Load in the background the samples of the next window from the timestamp in the
+	 * playback direction (1 forward, -1 backward), nothing is done while the loaded windows 
+	 * cover at least half a window ahead or while the previous window is still loading
+	 */
+	public synchronized void Prefetch(double timestamp, int direction){
+		if(this.pending != null && !this.pending.isDone())
+		{
+			return;
+		}
+
+		// the next window continues the loaded one covering the timestamp
+		final boolean forward = direction >= 0;
+		double from = timestamp;
+		for (Window window : this.windows){
+			if(window != null && window.covers(timestamp))
+			{
+				from = forward ? Math.max(from, window.end) : Math.min(from, window.start);
+			}
+		}
+		if(forward ? from - timestamp >= this.span / 2 : timestamp - from >= this.span / 2)
+		{
+			return;
+		}
+		final double start = forward ? from : Math.max(0.0, from - this.span);
+		final double end = forward ? from + this.span : from;
+		if(end <= start)
+		{
+			return;
+		}
+		this.pending = this.executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				load(start, end);
+			}
+		});
+	}
+
+	/**
+	 * Get the prefetched pose of the actor at the timestamp (the most recent one), null if no loaded
+	 * window covers the timestamp, the actor is not prefetched or it has no pose yet (queried instead)
+	 */
+	public double[] GetActorPose(String actorName, double timestamp){
+		final int idx = indexOf(this.actorNames, actorName);
+		final Window window = this.lookup(idx, timestamp);
+		double[] pose = null;
+		if(window != null)
+		{
+			final MongoRobcogSampleBuffer samples = window.actorSamples[idx];
+			final int floor = MongoRobcogInterpolation.FloorIndex(
+					samples.GetTimestamps(), samples.GetNrSamples(), timestamp);
+			if(floor >= 0)
+			{
+				pose = Arrays.copyOfRange(samples.GetValues(), floor * 7, floor * 7 + 7);
+			}
+		}
+		this.count(idx, pose != null);
+		return pose;
+	}
+
+	/**
+	 * Get the prefetched bone poses of the skeletal actor at the timestamp (the most recent ones), 
+	 * null if no loaded window covers the timestamp, the actor is not prefetched or it has no bone
+	 * poses yet (queried instead)
+	 */
+	public double[][] GetBonesPoses(String actorName, double timestamp){
+		final int idx = indexOf(this.skelActorNames, actorName);
+		final Window window = this.lookup(idx, timestamp);
+		double[][] poses = null;
+		if(window != null)
+		{
+			final MongoRobcogSampleBuffer samples = window.bonesSamples[idx];
+			final int floor = MongoRobcogInterpolation.FloorIndex(
+					samples.GetTimestamps(), samples.GetNrSamples(), timestamp);
+			if(floor >= 0)
+			{
+				final int stride = samples.GetStride();
+				poses = new double[stride / 7][];
+				for (int i = 0; i < poses.length; ++i){
+					final int offset = floor * stride + i * 7;
+					poses[i] = Arrays.copyOfRange(samples.GetValues(), offset, offset + 7);
+				}
+			}
+		}
+		this.count(idx, poses != null);
+		return poses;
+	}
+
+	/**
+	 * Nr of lookups served from the ring buffer
+	 */
+	public synchronized long GetNrHits(){
+		return this.nrHits;
+	}
+
+	/**
+	 * Nr of lookups of prefetched actors missing the ring buffer
+	 */
+	public synchronized long GetNrMisses(){
+		return this.nrMisses;
+	}
+
+	/**
+	 * Stop the background thread
+	 */
+	public void Shutdown(){
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Helper function loading the samples of the window, one range query per actor
+	 * and skeletal actor, preceded by the most recent poses at the window start
+	 */
+	private void load(double start, double end){
+		MongoRobcogSampleBuffer[] actor_samples = new MongoRobcogSampleBuffer[this.actorNames.length];
+		for (int i = 0; i < this.actorNames.length; ++i){
+			if(Thread.currentThread().isInterrupted())
+			{
+				return;
+			}
+			actor_samples[i] = this.samples(start, end, 
+					this.queries.GetActorPoseAt(this.actorNames[i], start), 
+					"entities", this.actorNames[i], false);
+		}
+
+		MongoRobcogSampleBuffer[] bones_samples = new MongoRobcogSampleBuffer[this.skelActorNames.length];
+		for (int i = 0; i < this.skelActorNames.length; ++i){
+			if(Thread.currentThread().isInterrupted())
+			{
+				return;
+			}
+			final double[][] start_poses = this.queries.GetBonesPosesAt(this.skelActorNames[i], start);
+			double[] start_values = new double[start_poses.length * 7];
+			for (int j = 0; j < start_poses.length; ++j){
+				System.arraycopy(start_poses[j], 0, start_values, j * 7, 7);
+			}
+			bones_samples[i] = this.samples(start, end, start_values, 
+					"skel_entities", this.skelActorNames[i], true);
+		}
+		this.put(new Window(start, end, actor_samples, bones_samples));
+	}
+
+	/**
+	 * Helper function returning the samples of the actor (or of all its bones) in the window,
+	 * the given values at the window start are added first (if any and of the same size)
+	 */
+	private MongoRobcogSampleBuffer samples(double start, double end, double[] startValues,
+			String arrayField, String actorName, boolean bones){
+		MongoRobcogSampleBuffer range = new MongoRobcogSampleBuffer(7 * 1024);
+		this.queries.queryPoses(range, arrayField, actorName, bones, null, start, end, Double.NEGATIVE_INFINITY);
+
+		MongoRobcogSampleBuffer samples = new MongoRobcogSampleBuffer(startValues.length + range.GetNrSamples() * range.GetStride());
+		if(startValues.length > 0 && (range.GetNrSamples() == 0 || startValues.length == range.GetStride()))
+		{
+			samples.BeginSample(start);
+			final int offset = samples.Reserve(startValues.length);
+			System.arraycopy(startValues, 0, samples.GetValues(), offset, startValues.length);
+			samples.EndSample();
+		}
+		samples.Append(range, Double.POSITIVE_INFINITY);
+		return samples;
+	}
+
+	/**
+	 * Helper function adding the window to the ring buffer (overwrites the oldest window)
+	 */
+	private synchronized void put(Window window){
+		this.windows[this.head] = window;
+		this.head = (this.head + 1) % this.windows.length;
+	}
+
+	/**
+	 * Helper function returning the most recently loaded window covering the timestamp 
+	 * for a prefetched actor (null for a miss)
+	 */
+	private synchronized Window lookup(int actorIdx, double timestamp){
+		if(actorIdx < 0)
+		{
+			return null;
+		}
+		for (int i = 1; i <= this.windows.length; ++i){
+			final Window window = this.windows[(this.head - i + this.windows.length) % this.windows.length];
+			if(window != null && window.covers(timestamp))
+			{
+				return window;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Helper function counting the lookup of a prefetched actor as hit or miss
+	 */
+	private synchronized void count(int actorIdx, boolean hit){
+		if(actorIdx < 0)
+		{
+			return;
+		}
+		if(hit)
+		{
+			this.nrHits++;
+		}
+		else
+		{
+			this.nrMisses++;
+		}
+	}
+
+	/**
+	 * Helper function returning the index of the name, -1 if not found
+	 */
+	private static int indexOf(String[] names, String name){
+		for (int i = 0; i < names.length; ++i){
+			if(names[i].equals(name))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -32,9 +32,20 @@ package org.knowrob.knowrob_robcog;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import java.security.SecureRandom;
 import java.lang.StringBuilder;
@@ -57,24 +68,95 @@ import com.mongodb.DBObject;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBList;
 import com.mongodb.Cursor;
+import com.mongodb.DBCursor;
+import com.mongodb.DBCollection;
 import com.mongodb.AggregationOptions;
+import com.mongodb.MongoException;
 
 import org.knowrob.vis.MarkerObject;
 import org.knowrob.vis.MarkerPublisher;
 
+import org.ros.message.MessageFactory;
+
 import visualization_msgs.Marker;
 import geometry_msgs.Point;
 
 public class MongoRobcogQueries {
 	
-	// marker unique ids
-	private Deque<String> markerIDs;
+	// default max nr of points of a list marker
+	public static final int DEFAULT_MARKER_POINT_BUDGET = 20000;
+	
+	// max nr of time ranges a trajectory is split into
+	public static final int MAX_TRAJ_SHARDS = 16;
+	
+	// workers fetching the time ranges of the sharded trajectories (created at the first use)
+	private static ExecutorService shardExecutor;
 	
-	// marker unique ids
-	private Deque<String> skeletalMeshMarkerIDs;
+	// marker registry namespace of the list and mesh markers
+	private static final String MARKERS_NS = "markers";
+	
+	// marker registry namespace of the skeletal mesh markers
+	private static final String SKELETAL_MESHES_NS = "skeletal_meshes";
+	
+	// unique ids of the created markers (by namespace and actor)
+	private MongoRobcogMarkerRegistry markerIDs;
 	
 	// unreal connection to mongodb
 	private MongoRobcogConn MongoRobcogConn;
+	
+	// collection queried by this object (null if the selected collection of the connection is used)
+	private final DBCollection boundColl;
+	
+	// in-memory episode cache for the pose lookups (null if disabled)
+	private MongoRobcogEpisodeCache episodeCache;
+	
+	// storage backends serving the primitives of the collections instead of the db (full name as key)
+	private ConcurrentMap<String, MongoRobcogEpisodeStore> episodeStores;
+	
+	// storage backend of the queries created without a db connection (null otherwise)
+	private final MongoRobcogEpisodeStore boundStore;
+	
+	// background prefetcher of the visualized world states (shared with the collection bound queries)
+	private AtomicReference<MongoRobcogPrefetcher> prefetcher;
+	
+	// memoized query results (null if disabled)
+	private MongoRobcogResultCache resultCache;
+	
+	// if true the deltaT downsampling of the trajectories is done in the pipeline
+	private boolean serverSideDownsampling;
+	
+	// nr of time ranges fetched concurrently for a trajectory (1 for a single cursor)
+	private int trajShards = 1;
+	
+	// if true the pose at a timepoint is interpolated between the bracketing samples
+	private boolean poseInterpolation;
+	
+	// EEG channel names of the queried collections (full name as key)
+	private ConcurrentMap<String, String[]> eegChannels;
+	
+	// bone names of the skeletal actors (collection full name/actor as key)
+	private ConcurrentMap<String, String[]> bonesNames;
+	
+	// index of every bone name in the bones array of the skeletal actors (collection full name/actor as key)
+	private ConcurrentMap<String, Map<String, Integer>> bonesIndices;
+	
+	// if false the server does not support projecting a bone by its index ($filter, $arrayElemAt)
+	private volatile boolean boneIndexProjection = true;
+	
+	// trajectory summaries of the entities (summary collection full name/entity as key)
+	private ConcurrentMap<String, double[]> entitySummaries;
+	
+	// max nr of points of a list marker, larger point lists are decimated (0 for no limit)
+	private int markerPointBudget = DEFAULT_MARKER_POINT_BUDGET;
+	
+	// ros message factory of the marker points (set at the first use)
+	private MessageFactory messageFactory;
+	
+	// if true the markers of the entities keep stable ids and are updated in place
+	private boolean markerAnimation;
+	
+	// last pose pushed to the animated markers (marker id as key)
+	private ConcurrentMap<String, double[]> animatedPoses;
 
 	
 	////////////////////////////////////////////////////////////////
@@ -86,9 +168,31 @@ public class MongoRobcogQueries {
 		// set the connection to unreal
 		MongoRobcogConn MongoRobcogConn = new MongoRobcogConn();
 		
-		// init marker array ids
-		this.markerIDs = new ArrayDeque<String>();
-		this.skeletalMeshMarkerIDs = new ArrayDeque<String>();
+		// use the selected collection of the connection
+		this.boundColl = null;
+		this.boundStore = null;
+		
+		// no episode stores until set
+		this.episodeStores = new ConcurrentHashMap<String, MongoRobcogEpisodeStore>();
+		
+		// EEG channels discovered per collection
+		this.eegChannels = new ConcurrentHashMap<String, String[]>();
+		
+		// bone names and indices queried per collection and actor
+		this.bonesNames = new ConcurrentHashMap<String, String[]>();
+		this.bonesIndices = new ConcurrentHashMap<String, Map<String, Integer>>();
+		
+		// entity summaries loaded per summary collection
+		this.entitySummaries = new ConcurrentHashMap<String, double[]>();
+		
+		// poses of the animated markers
+		this.animatedPoses = new ConcurrentHashMap<String, double[]>();
+		
+		// no prefetching until enabled
+		this.prefetcher = new AtomicReference<MongoRobcogPrefetcher>();
+		
+		// init marker ids registry
+		this.markerIDs = new MongoRobcogMarkerRegistry();
 	}
 	
 	/**
@@ -98,9 +202,815 @@ public class MongoRobcogQueries {
 		// set the connection to unreal
 		this.MongoRobcogConn = MongoRobcogConn;
 		
-		// init marker array ids
-		this.markerIDs = new ArrayDeque<String>();
-		this.skeletalMeshMarkerIDs = new ArrayDeque<String>();
+		// use the selected collection of the connection
+		this.boundColl = null;
+		this.boundStore = null;
+		
+		// no episode stores until set
+		this.episodeStores = new ConcurrentHashMap<String, MongoRobcogEpisodeStore>();
+		
+		// EEG channels discovered per collection
+		this.eegChannels = new ConcurrentHashMap<String, String[]>();
+		
+		// bone names and indices queried per collection and actor
+		this.bonesNames = new ConcurrentHashMap<String, String[]>();
+		this.bonesIndices = new ConcurrentHashMap<String, Map<String, Integer>>();
+		
+		// entity summaries loaded per summary collection
+		this.entitySummaries = new ConcurrentHashMap<String, double[]>();
+		
+		// poses of the animated markers
+		this.animatedPoses = new ConcurrentHashMap<String, double[]>();
+		
+		// no prefetching until enabled
+		this.prefetcher = new AtomicReference<MongoRobcogPrefetcher>();
+		
+		// init marker ids registry
+		this.markerIDs = new MongoRobcogMarkerRegistry();
+	}
+	
+	/**
+	 * MongoRobcogQueries constructor without db connection, the pose, trajectory,
+	 * bone and EEG queries are served from the given store (e.g. local fixtures)
+	 */	
+	public MongoRobcogQueries(MongoRobcogEpisodeStore store) {
+		// no connection and collection
+		this.boundColl = null;
+		this.boundStore = store;
+		this.episodeStores = new ConcurrentHashMap<String, MongoRobcogEpisodeStore>();
+		
+		// EEG channels discovered per collection
+		this.eegChannels = new ConcurrentHashMap<String, String[]>();
+		
+		// bone names and indices queried per collection and actor
+		this.bonesNames = new ConcurrentHashMap<String, String[]>();
+		this.bonesIndices = new ConcurrentHashMap<String, Map<String, Integer>>();
+		
+		// entity summaries loaded per summary collection
+		this.entitySummaries = new ConcurrentHashMap<String, double[]>();
+		
+		// poses of the animated markers
+		this.animatedPoses = new ConcurrentHashMap<String, double[]>();
+		
+		// no prefetching until enabled
+		this.prefetcher = new AtomicReference<MongoRobcogPrefetcher>();
+		
+		// init marker ids registry
+		this.markerIDs = new MongoRobcogMarkerRegistry();
+	}
+	
+	/**
+	 * MongoRobcogQueries constructor bound to the given collection,
+	 * shares the connection, the markers and the per collection metadata of the parent,
+	 * the settings and the enabled caches are a snapshot taken at creation
+	 * (later Set.../Enable... calls on either object do not affect the other one)
+	 */	
+	private MongoRobcogQueries(MongoRobcogQueries parent, DBCollection coll) {
+		// shared with the parent
+		this.MongoRobcogConn = parent.MongoRobcogConn;
+		this.boundColl = coll;
+		this.boundStore = null;
+		this.episodeStores = parent.episodeStores;
+		this.prefetcher = parent.prefetcher;
+		this.eegChannels = parent.eegChannels;
+		this.bonesNames = parent.bonesNames;
+		this.bonesIndices = parent.bonesIndices;
+		this.entitySummaries = parent.entitySummaries;
+		this.animatedPoses = parent.animatedPoses;
+		this.markerIDs = parent.markerIDs;
+		this.messageFactory = parent.messageFactory;
+		
+		// snapshot of the settings, the caches are shared only if enabled before
+		this.episodeCache = parent.episodeCache;
+		this.resultCache = parent.resultCache;
+		this.serverSideDownsampling = parent.serverSideDownsampling;
+		this.trajShards = parent.trajShards;
+		this.poseInterpolation = parent.poseInterpolation;
+		this.boneIndexProjection = parent.boneIndexProjection;
+		this.markerPointBudget = parent.markerPointBudget;
+		this.markerAnimation = parent.markerAnimation;
+	}
+	
+	/**
+	 * Get a query object bound to the given collection of the current database,
+	 * independent of the selected collection (safe to use from concurrent threads),
+	 * it keeps the settings of this object at the time of the call
+	 */	
+	public MongoRobcogQueries ForCollection(String collName){
+		return new MongoRobcogQueries(this, this.conn().GetCollection(collName));
+	}
+	
+	/**
+	 * Get a query object bound to the given database and collection,
+	 * independent of the selected collection (safe to use from concurrent threads),
+	 * it keeps the settings of this object at the time of the call
+	 */	
+	public MongoRobcogQueries ForCollection(String dbName, String collName){
+		return new MongoRobcogQueries(this, this.conn().GetCollection(dbName, collName));
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// EPISODE CACHE
+	/**
+	 * Enable the in-memory episode cache with the default memory bound
+	 */
+	public void EnableEpisodeCache(){
+		this.EnableEpisodeCache(MongoRobcogEpisodeCache.DEFAULT_MAX_BYTES / (1024 * 1024));
+	}
+	
+	/**
+	 * Enable the in-memory episode cache bounded to the given nr of MB
+	 */
+	public void EnableEpisodeCache(long maxMBytes){
+		if(this.episodeCache == null)
+		{
+			this.episodeCache = new MongoRobcogEpisodeCache(maxMBytes * 1024 * 1024);
+		}
+		else
+		{
+			this.episodeCache.SetMaxBytes(maxMBytes * 1024 * 1024);
+		}
+	}
+	
+	/**
+	 * Disable the in-memory episode cache and release its memory
+	 */
+	public void DisableEpisodeCache(){
+		if(this.episodeCache != null)
+		{
+			this.episodeCache.Clear();
+			this.episodeCache = null;
+		}
+	}
+	
+	/**
+	 * Load the current collection into the episode cache (returns false if it does not fit)
+	 */
+	public boolean LoadEpisodeCache(){
+		if(this.episodeCache == null)
+		{
+			System.out.println("Java - LoadEpisodeCache - the episode cache is not enabled..");
+			return false;
+		}
+		return this.episodeCache.GetEpisode(this.getColl()) != null;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// EPISODE FILE
+	/**
+	 * Export the current collection into a binary episode file (see MongoRobcogEpisodeFile),
+	 * returns the nr of bytes written, -1 if the export failed
+	 */
+	public long ExportEpisode(String filePath){
+		try {
+			return MongoRobcogEpisodeFile.Export(this.getColl(), this.GetEEGChannels(), filePath);
+		} catch (IOException e) {
+			System.out.println("Java - ExportEpisode - could not write " + filePath + ": " + e.getMessage());
+			return -1;
+		}
+	}
+	
+	/**
+	 * Open the binary episode file for database free queries
+	 */
+	public MongoRobcogEpisodeFile OpenEpisodeFile(String filePath){
+		try {
+			return MongoRobcogEpisodeFile.Open(filePath);
+		} catch (IOException e) {
+			System.out.println("Java - OpenEpisodeFile - could not read " + filePath + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// EPISODE STORE
+	/**
+	 * Serve the pose, trajectory, bone and EEG queries of the current collection
+	 * from the given store (null to query the db again)
+	 */
+	public void UseEpisodeStore(MongoRobcogEpisodeStore store){
+		if(store == null)
+		{
+			this.episodeStores.remove(this.getColl().getFullName());
+		}
+		else
+		{
+			this.episodeStores.put(this.getColl().getFullName(), store);
+		}
+	}
+	
+	/**
+	 * Load the current collection into an in-memory store and serve its queries from it
+	 */
+	public void UseMemoryStore(){
+		this.UseEpisodeStore(MongoRobcogMemoryStore.Load(this.getColl(), this.GetEEGChannels()));
+	}
+	
+	/**
+	 * Serve the queries of the current collection from the binary episode file,
+	 * returns false if the file could not be opened
+	 */
+	public boolean UseEpisodeFile(String filePath){
+		final MongoRobcogEpisodeFile episode_file = this.OpenEpisodeFile(filePath);
+		if(episode_file != null)
+		{
+			this.UseEpisodeStore(episode_file);
+		}
+		return episode_file != null;
+	}
+	
+	/**
+	 * Get the store reading the given collection of the current database from mongodb
+	 */
+	public MongoRobcogEpisodeStore GetDBStore(String collName){
+		// the store queries are never served from an episode store
+		MongoRobcogQueries db_queries = new MongoRobcogQueries(this, this.conn().GetCollection(collName));
+		db_queries.episodeStores = new ConcurrentHashMap<String, MongoRobcogEpisodeStore>();
+		db_queries.poseInterpolation = false;
+		return new MongoRobcogDBStore(db_queries);
+	}
+	
+	/**
+	 * Helper function returning the store serving the queried collection, null if the db is queried
+	 */
+	private MongoRobcogEpisodeStore episodeStore(){
+		if(this.boundStore != null)
+		{
+			return this.boundStore;
+		}
+		if(this.episodeStores.isEmpty())
+		{
+			return null;
+		}
+		return this.episodeStores.get(this.getColl().getFullName());
+	}
+	
+	/**
+	 * Helper function computing the traveled distance of the trajectory rows (rows without pose are skipped)
+	 */
+	private static double trajDistance(double[][] traj, boolean xyOnly){
+		double traveled_distance = 0.0;
+		double[] prev = null;
+		for (double[] pose : traj){
+			if(pose.length < 3)
+			{
+				continue;
+			}
+			if(prev != null)
+			{
+				final double x1_x0 = pose[0] - prev[0];
+				final double y1_y0 = pose[1] - prev[1];
+				final double z1_z0 = xyOnly ? 0.0 : pose[2] - prev[2];
+				traveled_distance += Math.sqrt((x1_x0 * x1_x0) + (y1_y0 * y1_y0) + (z1_z0 * z1_z0));
+			}
+			prev = pose;
+		}
+		return traveled_distance;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// ASYNC QUERIES
+	/**
+	 * Get the non-blocking queries of the current collection (running on the shared workers)
+	 */
+	public MongoRobcogAsyncQueries Async(){
+		// store only queries have no collection to bind
+		return new MongoRobcogAsyncQueries(this.boundStore != null 
+				? this : new MongoRobcogQueries(this, this.getColl()));
+	}
+	
+	/**
+	 * Get the trajectories of the actors between the given timepoints,
+	 * the actors are queried concurrently
+	 */
+	public double[][][] GetActorsTrajs(String[] actorNames,
+			String start,
+			String end,
+			double deltaT){
+		// transform the knowrob time to double with 3 decimal precision
+		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
+		
+		return this.GetActorsTrajs(actorNames, start_ts, end_ts, deltaT);
+	}
+	
+	/**
+	 * Get the trajectories of the actors between the given timepoints,
+	 * the actors are queried concurrently
+	 */
+	public double[][][] GetActorsTrajs(String[] actorNames,
+			double start,
+			double end,
+			double deltaT){
+		return this.Async().GetActorsTrajs(actorNames, start, end, deltaT);
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// RESULT CACHE
+	/**
+	 * Enable the memoization of the trajectory, distance and EEG query results
+	 * with the default memory bound
+	 */
+	public void EnableResultCache(){
+		this.EnableResultCache(MongoRobcogResultCache.DEFAULT_MAX_BYTES / (1024 * 1024));
+	}
+	
+	/**
+	 * Enable the memoization of the trajectory, distance and EEG query results
+	 * bounded to the given nr of MB (least recently used results are evicted), the cached 
+	 * results are returned as copies (the caller can modify them)
+	 */
+	public void EnableResultCache(long maxMBytes){
+		if(this.resultCache == null)
+		{
+			this.resultCache = new MongoRobcogResultCache(maxMBytes * 1024 * 1024);
+		}
+		else
+		{
+			this.resultCache.SetMaxBytes(maxMBytes * 1024 * 1024);
+		}
+	}
+	
+	/**
+	 * Disable the result cache and release its memory
+	 */
+	public void DisableResultCache(){
+		if(this.resultCache != null)
+		{
+			this.resultCache.Clear();
+			this.resultCache = null;
+		}
+	}
+	
+	/**
+	 * Set the time (ms) the nr of documents of a collection is trusted before its 
+	 * cached results are validated again (0 validates at every lookup)
+	 */
+	public void SetResultCacheValidationPeriod(long periodMs){
+		if(this.resultCache != null)
+		{
+			this.resultCache.SetValidationPeriod(periodMs);
+		}
+	}
+	
+	/**
+	 * Drop the cached results of the current collection (e.g. after re-importing the episode)
+	 */
+	public void InvalidateResultCache(){
+		if(this.resultCache != null)
+		{
+			this.resultCache.Invalidate(this.getColl().getFullName());
+		}
+	}
+	
+	/**
+	 * Get the result cache statistics as [hits, misses, evictions, nr results, bytes, max bytes]
+	 */
+	public long[] GetResultCacheStats(){
+		if(this.resultCache == null)
+		{
+			return new long[6];
+		}
+		return this.resultCache.GetStats();
+	}
+	
+	/**
+	 * Helper function returning the result cache key of the method and arguments on the 
+	 * queried collection, null if the cache is disabled; the cached results of the collection 
+	 * are validated with its nr of documents once per validation period
+	 */
+	private String resultKey(String method, Object... args){
+		if(this.resultCache == null)
+		{
+			return null;
+		}
+		final String coll_name = this.getColl().getFullName();
+		if(this.resultCache.NeedsValidation(coll_name))
+		{
+			this.resultCache.Validate(coll_name, this.getColl().count());
+		}
+		
+		// the downsampling mode changes the kept samples (the sharded queries keep the same ones)
+		StringBuilder key = new StringBuilder(method).append('|').append(coll_name)
+				.append('|').append(this.serverSideDownsampling);
+		for (Object arg : args){
+			key.append('|').append(arg instanceof Object[] ? Arrays.toString((Object[]) arg) : String.valueOf(arg));
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Helper function returning the cached result of the key, null if not cached
+	 */
+	private Object cachedResult(String key){
+		return key != null ? this.resultCache.Get(key) : null;
+	}
+	
+	/**
+	 * Helper function caching and returning the result of the key
+	 */
+	private <T> T cacheResult(String key, T result){
+		if(key != null)
+		{
+			this.resultCache.Put(key, this.getColl().getFullName(), result);
+		}
+		return result;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// PREFETCHING
+	/**
+	 * Enable the background prefetching of the world states of the current collection
+	 * with the default window of DEFAULT_CAPACITY / 2 steps
+	 */
+	public void EnablePrefetch(String[] actorNames, String[] skelActorNames, double step){
+		this.EnablePrefetch(actorNames, skelActorNames, step, MongoRobcogPrefetcher.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Enable the background prefetching of the world states of the current collection, the pose samples of 
+	 * the actors and the bone poses samples of the skeletal actors are loaded for a window of capacity / 2 steps
+	 * (seconds) ahead of the timepoints given to Prefetch, the pose queries at any timepoint inside the
+	 * loaded windows are served from memory (most recent sample)
+	 */
+	public void EnablePrefetch(String[] actorNames, String[] skelActorNames, double step, int capacity){
+		// queries loading the windows, the most recent poses are prefetched (no interpolation)
+		MongoRobcogQueries loader_queries = new MongoRobcogQueries(this, this.getColl());
+		loader_queries.prefetcher = new AtomicReference<MongoRobcogPrefetcher>();
+		loader_queries.poseInterpolation = false;
+		
+		MongoRobcogPrefetcher prev_prefetcher = this.prefetcher.getAndSet(new MongoRobcogPrefetcher(loader_queries,
+				this.getColl().getFullName(), actorNames, skelActorNames, step, capacity));
+		if(prev_prefetcher != null)
+		{
+			prev_prefetcher.Shutdown();
+		}
+	}
+	
+	/**
+	 * Disable the background prefetching and release the loaded windows
+	 */
+	public void DisablePrefetch(){
+		MongoRobcogPrefetcher prev_prefetcher = this.prefetcher.getAndSet(null);
+		if(prev_prefetcher != null)
+		{
+			prev_prefetcher.Shutdown();
+		}
+	}
+	
+	/**
+	 * Start loading the window after (direction 1) or before (direction -1) the given timepoint
+	 */
+	public void Prefetch(String timestampStr, int direction){
+		final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
+		this.Prefetch(timestamp, direction);
+	}
+	
+	/**
+	 * Start loading the window after (direction 1) or before (direction -1) the given timepoint
+	 */
+	public void Prefetch(double timestamp, int direction){
+		final MongoRobcogPrefetcher curr_prefetcher = this.getPrefetcher();
+		if(curr_prefetcher != null)
+		{
+			curr_prefetcher.Prefetch(timestamp, direction);
+		}
+	}
+	
+	/**
+	 * Get the nr of pose lookups served from / missing the prefetched windows
+	 */
+	public long[] GetPrefetchStats(){
+		final MongoRobcogPrefetcher curr_prefetcher = this.prefetcher.get();
+		if(curr_prefetcher == null)
+		{
+			return new long[] {0, 0};
+		}
+		return new long[] {curr_prefetcher.GetNrHits(), curr_prefetcher.GetNrMisses()};
+	}
+	
+	/**
+	 * Helper function returning the prefetcher if it prefetches the queried collection
+	 */
+	private MongoRobcogPrefetcher getPrefetcher(){
+		final MongoRobcogPrefetcher curr_prefetcher = this.prefetcher.get();
+		if(curr_prefetcher != null && curr_prefetcher.GetCollName().equals(this.getColl().getFullName()))
+		{
+			return curr_prefetcher;
+		}
+		return null;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// METRICS
+	/**
+	 * Enable/disable the recording of the latencies and data volumes of the queries
+	 * (shared by all query objects, also exposed as the MongoRobcogMetrics MBean)
+	 */
+	public void EnableMetrics(boolean enable){
+		MongoRobcogMetrics.Enable(enable);
+	}
+	
+	/**
+	 * Names of the measured methods, slowest (total time) first
+	 */
+	public String[] GetMetricsMethods(){
+		return MongoRobcogMetrics.Methods();
+	}
+	
+	/**
+	 * Metrics of the measured methods (in the order of GetMetricsMethods), one row of
+	 * [calls, total_ms, mean_ms, p50_ms, p95_ms, p99_ms, max_ms, docs, samples, bytes, batches] per method
+	 */
+	public double[][] GetMetricsReport(){
+		final String[] methods = MongoRobcogMetrics.Methods();
+		double[][] report = new double[methods.length][];
+		for (int i = 0; i < methods.length; ++i){
+			report[i] = MongoRobcogMetrics.Report(methods[i]);
+		}
+		return report;
+	}
+	
+	/**
+	 * Clear the recorded metrics
+	 */
+	public void ResetMetrics(){
+		MongoRobcogMetrics.Clear();
+	}
+	
+	/**
+	 * Append the current metrics to the CSV file
+	 */
+	public void DumpMetricsCsv(String filePath){
+		MongoRobcogMetrics.AppendCsv(filePath);
+	}
+	
+	/**
+	 * Append the metrics to the CSV file every periodSec seconds
+	 */
+	public void StartMetricsCsvDump(String filePath, long periodSec){
+		MongoRobcogMetrics.StartCsvDump(filePath, periodSec);
+	}
+	
+	/**
+	 * Stop the periodic CSV dump of the metrics
+	 */
+	public void StopMetricsCsvDump(){
+		MongoRobcogMetrics.StopCsvDump();
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// DOWNSAMPLING
+	/**
+	 * Enable/disable the server side deltaT downsampling of the trajectories,
+	 * on the server only the first sample of every deltaT window [start + k*deltaT, start + (k+1)*deltaT)
+	 * is sent, the client then keeps a sample if it is more than deltaT after the previous kept one (default
+	 * is the client filter only), the kept samples keep the same min gap but can be later than the ones
+	 * of the client filter (by less than one window) when the sample after the gap is not the first of its window
+	 */
+	public void SetServerSideDownsampling(boolean enable){
+		this.serverSideDownsampling = enable;
+	}
+	
+	/**
+	 * Check if the deltaT downsampling is done on the server
+	 */
+	public boolean GetServerSideDownsampling(){
+		return this.serverSideDownsampling;
+	}
+	
+	/**
+	 * Split the trajectories into nrShards time ranges fetched concurrently on separate cursors
+	 * (1 for a single cursor), not used with the server side downsampling
+	 */
+	public void SetTrajShards(int nrShards){
+		this.trajShards = Math.max(1, Math.min(MAX_TRAJ_SHARDS, nrShards));
+	}
+	
+	/**
+	 * Nr of time ranges fetched concurrently for a trajectory
+	 */
+	public int GetTrajShards(){
+		return this.trajShards;
+	}
+	
+	/**
+	 * Pipeline stages keeping only the first sample of every deltaT window,
+	 * the given fields are carried over from the first sample of the window
+	 * (the buffer is reset with deltaT, the gap filter is re-applied on the windows)
+	 */
+	private List<DBObject> downsampleStages(double start, double deltaT, String... fields){
+		// sort the results in ascending order on the timestamp (first sample of the window first)
+		DBObject sort_inc = new BasicDBObject(
+				"$sort", new BasicDBObject("timestamp", 1));
+		
+		// window of the sample: (ts - start) - ((ts - start) % deltaT)
+		DBObject offset = new BasicDBObject("$subtract", Arrays.asList("$timestamp", start));
+		DBObject window = new BasicDBObject("$subtract", Arrays.asList(
+				offset, new BasicDBObject("$mod", Arrays.asList(offset, deltaT))));
+		
+		// $group by the window, keep the first sample
+		DBObject group_fields = new BasicDBObject("_id", window);
+		group_fields.put("timestamp", new BasicDBObject("$first", "$timestamp"));
+		for (String field : fields){
+			group_fields.put(field, new BasicDBObject("$first", "$" + field));
+		}
+		DBObject group = new BasicDBObject("$group", group_fields);
+		
+		// $group does not keep the order, sort again on the timestamp
+		DBObject sort_windows = new BasicDBObject(
+				"$sort", new BasicDBObject("timestamp", 1));
+		
+		return Arrays.asList(sort_inc, group, sort_windows);
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// TRAJECTORY SUMMARIES
+	/**
+	 * Build (or rebuild) the trajectory summary (Summary_<tag>) of the current episode,
+	 * returns the nr of summarized entities
+	 */
+	public int BuildSummary(){
+		final long start_ns = MongoRobcogMetrics.Begin("BuildSummary");
+		try {
+			final int nr_entities = MongoRobcogSummary.Build(this.getColl());
+		
+			// drop the cached entity summaries of the rebuilt collection
+			final String summary_prefix = MongoRobcogSummary.SummaryCollection(this.getColl()).getFullName() + "/";
+			for (Iterator<String> it = this.entitySummaries.keySet().iterator(); it.hasNext();){
+				if(it.next().startsWith(summary_prefix))
+				{
+					it.remove();
+				}
+			}
+			return nr_entities;
+		} finally {
+			MongoRobcogMetrics.End("BuildSummary", start_ns);
+		}
+	}
+	
+	/**
+	 * Check if the trajectory summary of the current episode was built
+	 */
+	public boolean HasSummary(){
+		return MongoRobcogSummary.Exists(this.getColl());
+	}
+	
+	/**
+	 * Get the summary of the actor trajectory over the whole episode:
+	 * [start, end, distance, xy distance, max speed, min sample interval, 
+	 *  bbox min x, y, z, bbox max x, y, z], empty if the summary was not built
+	 *  (the skeletal actors are summarized by the location of their entity)
+	 */
+	public double[] GetActorSummary(String actorName){
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorSummary");
+		try {
+			return this.entitySummary(actorName).clone();
+		} finally {
+			MongoRobcogMetrics.End("GetActorSummary", start_ns);
+		}
+	}
+	
+	/**
+	 * Helper function returning the (cached) summary of the entity, empty if missing
+	 */
+	private double[] entitySummary(String actorName){
+		final DBCollection summary_coll = MongoRobcogSummary.SummaryCollection(this.getColl());
+		final String key = summary_coll.getFullName() + "/" + actorName;
+		double[] summary = this.entitySummaries.get(key);
+		if(summary != null)
+		{
+			return summary;
+		}
+		
+		// missing summaries are cached as well (until the summary is rebuilt)
+		summary = new double[0];
+		BasicDBObject summary_doc = (BasicDBObject) summary_coll.findOne(
+				new BasicDBObject("entity", actorName).append("summary", true));
+		if(summary_doc == null)
+		{
+			// the skeletal entities are keyed separately
+			summary_doc = (BasicDBObject) summary_coll.findOne(new BasicDBObject(
+					"entity", MongoRobcogSummary.SkelEntityKey(actorName)).append("summary", true));
+		}
+		if(summary_doc != null)
+		{
+			BasicDBObject bbox_min = (BasicDBObject) ((BasicDBObject) summary_doc.get("bbox")).get("min");
+			BasicDBObject bbox_max = (BasicDBObject) ((BasicDBObject) summary_doc.get("bbox")).get("max");
+			summary = new double[] {
+					summary_doc.getDouble("start"),
+					summary_doc.getDouble("end"),
+					summary_doc.getDouble("dist"),
+					summary_doc.getDouble("dist_xy"),
+					summary_doc.getDouble("max_speed"),
+					summary_doc.getDouble("min_dt"),
+					bbox_min.getDouble("x"), bbox_min.getDouble("y"), bbox_min.getDouble("z"),
+					bbox_max.getDouble("x"), bbox_max.getDouble("y"), bbox_max.getDouble("z")};
+		}
+		this.entitySummaries.put(key, summary);
+		return summary;
+	}
+	
+	/**
+	 * Helper function computing the traveled distance from the cumulative distances of the summary,
+	 * NaN if there is no summary or if the deltaT would skip samples (the summary keeps all samples,
+	 * the samples kept by a larger deltaT depend on the query start, these distances are scanned)
+	 */
+	private double summaryDistance(String actorName, double start, double end, double deltaT, String distField){
+		// a sample is skipped by the deltaT filter only if it is closer than deltaT to the previous one
+		final double[] summary = this.entitySummary(actorName);
+		if(summary.length == 0 || !(deltaT < summary[5]) || start <= deltaT)
+		{
+			return Double.NaN;
+		}
+		
+		final DBCollection summary_coll = MongoRobcogSummary.SummaryCollection(this.getColl());
+		DBObject query = new BasicDBObject("entity", actorName);
+		query.put("timestamp", new BasicDBObject("$gte", start).append("$lte", end));
+		DBObject proj_fields = new BasicDBObject("_id", 0).append(distField, 1);
+		
+		// cumulative distance at the first and at the last sample of the interval
+		DBCursor first_cursor = summary_coll.find(query, proj_fields)
+				.sort(new BasicDBObject("timestamp", 1)).limit(1);
+		DBCursor last_cursor = summary_coll.find(query, proj_fields)
+				.sort(new BasicDBObject("timestamp", -1)).limit(1);
+		final BasicDBObject first_doc = first_cursor.hasNext() ? (BasicDBObject) first_cursor.next() : null;
+		final BasicDBObject last_doc = last_cursor.hasNext() ? (BasicDBObject) last_cursor.next() : null;
+		first_cursor.close();
+		last_cursor.close();
+		
+		if(first_doc == null || last_doc == null)
+		{
+			return 0.0;
+		}
+		return last_doc.getDouble(distField) - first_doc.getDouble(distField);
+	}
+	
+	/**
+	 * Helper function computing the traveled distance by streaming the trajectory
+	 * (the server side downsampled trajectory is small, it is fetched as GetActorTraj does)
+	 */
+	private double scanDistance(String actorName, double start, double end, double deltaT, boolean xyOnly){
+		// same samples as the server side downsampled trajectory
+		if(this.serverSideDownsampling && deltaT > 0)
+		{
+			MongoRobcogSampleBuffer traj_buffer = new MongoRobcogSampleBuffer(7 * 1024);
+			this.queryPoses(traj_buffer, "entities", actorName, false, null, start, end, deltaT);
+			return trajDistance(traj_buffer.ToRows(7), xyOnly);
+		}
+		
+		// traveled distance
+		double traveled_distance = 0.0;
+		
+		// previous point
+		boolean has_prev = false;
+		double prev_x = 0, prev_y = 0, prev_z = 0;
+		
+		MongoRobcogTrajCursor traj_cursor = this.StreamActorTraj(
+				actorName, start, end, deltaT, MongoRobcogTrajCursor.DEFAULT_CHUNK_SIZE);
+		try
+		{
+			while(traj_cursor.HasNext())
+			{
+				final int nr_samples = traj_cursor.Next();
+				final double[] poses = traj_cursor.GetValues();
+				for (int i = 0; i < nr_samples; ++i){
+					final double x = poses[i * 7];
+					final double y = poses[i * 7 + 1];
+					final double z = poses[i * 7 + 2];
+					if(has_prev)
+					{
+						final double x1_x0 = x - prev_x;
+						final double y1_y0 = y - prev_y;
+						final double z1_z0 = xyOnly ? 0.0 : z - prev_z;
+						traveled_distance += Math.sqrt((x1_x0 * x1_x0) + (y1_y0 * y1_y0) + (z1_z0 * z1_z0));
+					}
+					prev_x = x;
+					prev_y = y;
+					prev_z = z;
+					has_prev = true;
+				}
+			}
+		}
+		finally
+		{
+			traj_cursor.Close();
+		}
+		
+		if(!has_prev)
+		{
+			System.out.println("Java - GetActorTraveledDistance - No results found, returning 0.0 ..");
+		}
+		return traveled_distance;
 	}
 	
 	
@@ -198,12 +1108,22 @@ public class MongoRobcogQueries {
 		return Double.valueOf(ts.replaceAll("[^0-9.]", ""));
 	}
 	
+	/**
+	 * Helper function wich parses the knowrob timepoints with 3 decimal precision
+	 */
+	private double[] parseTimes_d(String[] timepoints) {
+		double[] timestamps = new double[timepoints.length];
+		for (int i = 0; i < timepoints.length; ++i){
+			timestamps[i] = (double) Math.round(parseTime_d(timepoints[i]) * 1000) / 1000;
+		}
+		return timestamps;
+	}
+	
 	/**
 	 * Helper function to create a geometry_msgs.Point
 	 */
 	private Point msgPoint(double x, double y, double z){
-		// TODO make node a class attribute?
-		Point p = MarkerPublisher.get().getNode().getTopicMessageFactory().newFromType(Point._TYPE);
+		Point p = this.msgFactory().newFromType(Point._TYPE);
 		p.setX(x);
 		p.setY(y);
 		p.setZ(z);
@@ -214,14 +1134,498 @@ public class MongoRobcogQueries {
 	 * Helper function to create a geometry_msgs.Point
 	 */
 	private Point msgPoint(Vector3d v){
-		// TODO make node a class attribute?
-		Point p = MarkerPublisher.get().getNode().getTopicMessageFactory().newFromType(Point._TYPE);
+		Point p = this.msgFactory().newFromType(Point._TYPE);
 		p.setX(v.x);
 		p.setY(v.y);
 		p.setZ(v.z);
 		return p;
 	}
 	
+	/**
+	 * Helper function returning the message factory of the marker node (looked up once)
+	 */
+	private MessageFactory msgFactory(){
+		if(this.messageFactory == null)
+		{
+			this.messageFactory = MarkerPublisher.get().getNode().getTopicMessageFactory();
+		}
+		return this.messageFactory;
+	}
+	
+	/**
+	 * Helper function creating the marker points from the positions of the rows (x, y, z first),
+	 * evenly decimated to the marker point budget, keeping the first and the last row
+	 */
+	private List<Point> msgPoints(double[][] rows){
+		final int nr_rows = rows.length;
+		final int budget = this.markerPointBudget;
+		final int nr_points = (budget > 0 && nr_rows > budget) ? budget : nr_rows;
+		
+		// look up the factory once for the whole list
+		final MessageFactory factory = this.msgFactory();
+		List<Point> points = new ArrayList<Point>(nr_points);
+		for (int i = 0; i < nr_points; ++i){
+			// index of the row of the i-th point
+			final int row_idx = (nr_points == nr_rows || nr_points == 1) ? i
+					: (int) ((long) i * (nr_rows - 1) / (nr_points - 1));
+			final double[] row = rows[row_idx];
+			// skip empty poses
+			if(row == null || row.length < 3)
+			{
+				continue;
+			}
+			Point p = factory.newFromType(Point._TYPE);
+			p.setX(row[0]);
+			p.setY(row[1]);
+			p.setZ(row[2]);
+			points.add(p);
+		}
+		return points;
+	}
+	
+	/**
+	 * Helper function returning the rows of all the blocks as one array (the rows are not copied)
+	 */
+	private static double[][] flattenBlocks(double[][][] blocks){
+		int nr_rows = 0;
+		for (double[][] block : blocks){
+			nr_rows += block.length;
+		}
+		double[][] rows = new double[nr_rows][];
+		int row_idx = 0;
+		for (double[][] block : blocks){
+			System.arraycopy(block, 0, rows, row_idx, block.length);
+			row_idx += block.length;
+		}
+		return rows;
+	}
+	
+	
+	/**
+	 * Helper function returning the connection (null for the queries created without db connection)
+	 */
+	MongoRobcogConn getConn(){
+		return this.MongoRobcogConn;
+	}
+	
+	/**
+	 * Helper function returning the queried collection
+	 */
+	private DBCollection getColl(){
+		return this.boundColl != null ? this.boundColl : this.conn().coll;
+	}
+	
+	/**
+	 * Helper function returning the connection, fails for the queries created without db connection
+	 * (they only serve the pose, trajectory, bone and EEG queries of their episode store)
+	 */
+	private MongoRobcogConn conn(){
+		if(this.MongoRobcogConn == null)
+		{
+			throw new IllegalStateException("Java - MongoRobcogQueries - no db connection, "
+					+ "the queries created from an episode store only serve the store queries");
+		}
+		return this.MongoRobcogConn;
+	}
+	
+	/**
+	 * Helper function to copy a loc/rot pose into the array at the given offset
+	 */
+	private void putPose(double[] dest, int offset, BasicDBObject loc, BasicDBObject rot){
+		dest[offset] = loc.getDouble("x");
+		dest[offset + 1] = loc.getDouble("y");
+		dest[offset + 2] = loc.getDouble("z");
+		dest[offset + 3] = rot.getDouble("x");
+		dest[offset + 4] = rot.getDouble("y");
+		dest[offset + 5] = rot.getDouble("z");
+		dest[offset + 6] = rot.getDouble("w");
+	}
+
+	
+	/**
+	 * Helper function streaming the poses of the entity (or of its bones) between the given timepoints
+	 * into the buffer, the documents are decoded straight from BSON without creating DBObjects,
+	 * if the bone name is null the poses of all the bones are added to every sample
+	 * (also used by the db stores)
+	 */
+	void queryPoses(MongoRobcogSampleBuffer buffer,
+			String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			double deltaT){
+		// fetch the time ranges concurrently (the server side windows are aligned to the start)
+		if(this.trajShards > 1 && end > start && !Double.isInfinite(end - start)
+				&& !(this.serverSideDownsampling && deltaT > 0))
+		{
+			this.queryPosesSharded(buffer, arrayField, actorName, bones, boneName, start, end, deltaT);
+			return;
+		}
+		
+		// a single bone is projected by its index instead of unwinding the bones
+		if(bones && boneName != null 
+				&& this.aggregateBonePoses(buffer, actorName, boneName, start, end, deltaT))
+		{
+			return;
+		}
+		
+		// keep only one sample per deltaT window on the server, re-filter the gaps on the client
+		if(this.serverSideDownsampling && deltaT > 0)
+		{
+			buffer.Reset(deltaT);
+			this.aggregatePoses(buffer, arrayField, actorName, bones, boneName, start, end, deltaT);
+			return;
+		}
+		
+		// the decoder writes the poses into the buffer while the cursor is iterated
+		DBCursor cursor = this.posesCursor(buffer, arrayField, actorName, bones, boneName, start, end, deltaT);
+		while(cursor.hasNext())
+		{
+			cursor.next();
+		}
+		// close cursor
+		cursor.close();
+	}
+	
+	/**
+	 * Helper function fetching the poses between the given timepoints as trajShards time ranges
+	 * on concurrent cursors, the ranges are fetched unfiltered and stitched in timestamp order
+	 * into the buffer while applying the deltaT filter, so it carries over the seams
+	 * (the same samples as the single cursor query are kept)
+	 */
+	private void queryPosesSharded(MongoRobcogSampleBuffer buffer,
+			final String arrayField,
+			final String actorName,
+			final boolean bones,
+			final String boneName,
+			double start,
+			double end,
+			double deltaT){
+		final int nr_shards = this.trajShards;
+		
+		// range i keeps the samples in [bounds[i], bounds[i + 1]), the last one includes the end
+		final double[] bounds = new double[nr_shards + 1];
+		for (int i = 0; i < nr_shards; ++i){
+			bounds[i] = start + (end - start) * i / nr_shards;
+		}
+		bounds[nr_shards] = end;
+		
+		// queries of the ranges, fetched on a single cursor each
+		final MongoRobcogQueries shard_queries = new MongoRobcogQueries(this, this.getColl());
+		shard_queries.trajShards = 1;
+		
+		// fetch all the samples of every range
+		List<Future<MongoRobcogSampleBuffer>> futures = new ArrayList<Future<MongoRobcogSampleBuffer>>(nr_shards);
+		for (int i = 0; i < nr_shards; ++i){
+			final double shard_start = bounds[i];
+			final double shard_end = bounds[i + 1];
+			futures.add(shardExecutor(this.MongoRobcogConn).submit(new Callable<MongoRobcogSampleBuffer>() {
+				@Override
+				public MongoRobcogSampleBuffer call() {
+					MongoRobcogSampleBuffer shard_buffer = new MongoRobcogSampleBuffer(7 * 1024);
+					shard_queries.queryPoses(shard_buffer, arrayField, actorName, bones, boneName, 
+							shard_start, shard_end, Double.NEGATIVE_INFINITY);
+					return shard_buffer;
+				}
+			}));
+		}
+		
+		// stitch the ranges in order, a sample is kept if it is more than deltaT after the previous kept one
+		// (the sample at a bound belongs to the next range)
+		buffer.Reset(deltaT);
+		for (int i = 0; i < nr_shards; ++i){
+			final MongoRobcogSampleBuffer shard_buffer;
+			try {
+				shard_buffer = futures.get(i).get();
+			} catch (InterruptedException e) {
+				// no partial trajectory, the remaining ranges are not needed anymore
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				throw new MongoException("fetching the poses between " + start 
+						+ " and " + end + " was interrupted", e);
+			} catch (ExecutionException e) {
+				cancelAll(futures);
+				throw new MongoException("fetching the poses between " + bounds[i] 
+						+ " and " + bounds[i + 1] + " failed", e.getCause());
+			}
+			buffer.Append(shard_buffer, i + 1 < nr_shards ? bounds[i + 1] : Double.POSITIVE_INFINITY);
+		}
+	}
+	
+	/**
+	 * Helper function cancelling the tasks which are not done yet
+	 */
+	private static void cancelAll(List<? extends Future<?>> futures){
+		for (Future<?> future : futures){
+			future.cancel(true);
+		}
+	}
+	
+	/**
+	 * Helper function returning the workers of the sharded trajectories, created at the first use
+	 * and bounded by the connections per host of that connection
+	 */
+	private static synchronized ExecutorService shardExecutor(MongoRobcogConn conn){
+		if(shardExecutor == null)
+		{
+			shardExecutor = MongoRobcogThreads.FixedPool("robcog-traj-shard", MAX_TRAJ_SHARDS, conn);
+		}
+		return shardExecutor;
+	}
+	
+	/**
+	 * Helper function creating the cursor over the poses of the entity (or of its bones) between the given
+	 * timepoints, while the cursor is iterated its decoder writes the poses of every fetched batch into the buffer
+	 */
+	private DBCursor posesCursor(MongoRobcogSampleBuffer buffer,
+			String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			double deltaT){
+		// a sample is kept if it is more than deltaT after the previous kept one
+		buffer.Reset(deltaT);
+		
+		// $match the time interval and the entity
+		DBObject query = new BasicDBObject("timestamp", 
+				new BasicDBObject("$gte", start).append("$lte", end));
+		query.put(arrayField + ".id", actorName);
+		
+		// project only the queried entity from the array
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put(arrayField, new BasicDBObject("$elemMatch", new BasicDBObject("id", actorName)));
+		
+		DBCursor cursor = this.getColl().find(query, proj_fields)
+				.sort(new BasicDBObject("timestamp", 1))
+				.batchSize(1000);
+		cursor.setDecoderFactory(bones
+				? new MongoRobcogPoseDecoder(buffer, arrayField, boneName)
+				: new MongoRobcogPoseDecoder(buffer, arrayField));
+		return cursor;
+	}
+	
+	/**
+	 * Helper function copying the poses of the bone between the timepoints into the buffer, every sample
+	 * only carries the bone projected by its index (no $unwind), returns false if the index of the bone
+	 * is unknown, not supported by the server or does not match the bone name (the buffer is then reset)
+	 */
+	private boolean aggregateBonePoses(MongoRobcogSampleBuffer buffer,
+			String actorName,
+			String boneName,
+			double start,
+			double end,
+			double deltaT){
+		final int bone_idx = this.boneIndexProjection ? this.GetBoneIndex(actorName, boneName) : -1;
+		if(bone_idx < 0)
+		{
+			return false;
+		}
+		
+		// $match the time interval and the actor
+		DBObject match_time_and_name = new BasicDBObject("$match", new BasicDBObject("timestamp", 
+				new BasicDBObject("$gte", start).append("$lte", end))
+					.append("skel_entities.id", actorName));
+		
+		List<DBObject> pipeline = new ArrayList<DBObject>();
+		pipeline.add(match_time_and_name);
+		pipeline.addAll(this.projectBoneStages(actorName, bone_idx));
+		
+		// a sample is kept if it is more than deltaT after the previous kept one
+		buffer.Reset(deltaT);
+		if(this.serverSideDownsampling && deltaT > 0)
+		{
+			// keep only the first sample of every deltaT window
+			pipeline.addAll(this.downsampleStages(start, deltaT, "loc", "rot", "name"));
+		}
+		else
+		{
+			pipeline.add(new BasicDBObject("$sort", new BasicDBObject("timestamp", 1)));
+		}
+		return this.copyBonePoses(buffer, pipeline, actorName, boneName);
+	}
+	
+	/**
+	 * Helper function returning the $project stages keeping only the bone at the given index of the actor
+	 * ({timestamp, loc, rot, name})
+	 */
+	private List<DBObject> projectBoneStages(String actorName, int boneIdx){
+		// the actor entry of the skel_entities array
+		DBObject actor_entry = new BasicDBObject("$arrayElemAt", Arrays.asList(
+				new BasicDBObject("$filter", new BasicDBObject("input", "$skel_entities")
+						.append("as", "e")
+						.append("cond", new BasicDBObject("$eq", Arrays.asList("$$e.id", actorName)))),
+				0));
+		
+		// the bone at the index of the actor entry
+		DBObject bone = new BasicDBObject("$let", new BasicDBObject("vars", new BasicDBObject("e", actor_entry))
+				.append("in", new BasicDBObject("$arrayElemAt", Arrays.asList("$$e.bones", boneIdx))));
+		
+		DBObject proj_bone = new BasicDBObject("_id", 0);
+		proj_bone.put("timestamp", 1);
+		proj_bone.put("bone", bone);
+		
+		// flatten the bone fields
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put("loc", "$bone.loc");
+		proj_fields.put("rot", "$bone.rot");
+		proj_fields.put("name", "$bone.name");
+		
+		return Arrays.<DBObject>asList(new BasicDBObject("$project", proj_bone), 
+				new BasicDBObject("$project", proj_fields));
+	}
+	
+	/**
+	 * Helper function running the bone pipeline and copying the poses into the buffer,
+	 * returns false (and resets the buffer) if the server does not support the pipeline
+	 * or a projected bone does not have the given name
+	 */
+	private boolean copyBonePoses(MongoRobcogSampleBuffer buffer,
+			List<DBObject> pipeline,
+			String actorName,
+			String boneName){
+		AggregationOptions aggregationOptions = AggregationOptions.builder()
+				.batchSize(1000)
+				.outputMode(AggregationOptions.OutputMode.CURSOR)
+				.allowDiskUse(true)
+				.build();
+		
+		Cursor cursor;
+		try {
+			cursor = this.getColl().aggregate(pipeline, aggregationOptions);
+		} catch (MongoException e) {
+			// the bones are unwound from now on
+			System.out.println("Java - BonePoses - bone index projection not supported (" 
+					+ e.getMessage() + "), unwinding the bones..");
+			this.boneIndexProjection = false;
+			buffer.Reset(Double.NEGATIVE_INFINITY);
+			return false;
+		}
+		
+		// copy the pose of every sample into the buffer
+		while(cursor.hasNext())
+		{
+			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+			MongoRobcogMetrics.AddDoc(0);
+			if(!boneName.equals(curr_doc.getString("name")))
+			{
+				// the bones of the actor are not logged in the same order, do not use the index anymore
+				System.out.println("Java - BonePoses - " + boneName + " not at its index in every sample, unwinding the bones..");
+				this.bonesIndices.put(this.getColl().getFullName() + "/" + actorName, 
+						Collections.<String, Integer>emptyMap());
+				cursor.close();
+				buffer.Reset(Double.NEGATIVE_INFINITY);
+				return false;
+			}
+			if(!buffer.BeginSample(curr_doc.getDouble("timestamp")))
+			{
+				continue;
+			}
+			final int offset = buffer.Reserve(7);
+			this.putPose(buffer.GetValues(), offset,
+					(BasicDBObject) curr_doc.get("loc"), (BasicDBObject) curr_doc.get("rot"));
+			buffer.EndSample();
+		}
+		// close cursor
+		cursor.close();
+		return true;
+	}
+	
+	/**
+	 * Helper function copying the server side downsampled poses of the entity (or of its bones) into the buffer
+	 */
+	private void aggregatePoses(MongoRobcogSampleBuffer buffer,
+			String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			double deltaT){
+		// create the pipeline operations, first with the $match check the times
+		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
+				new BasicDBObject("$gte", start).append("$lte", end)));
+
+		// $unwind the actors
+		DBObject unwind_actors = new BasicDBObject("$unwind", "$" + arrayField);
+
+		// $match for the given actor name from the unwinded actors
+		DBObject match_actor = new BasicDBObject(
+				"$match", new BasicDBObject(arrayField + ".id", actorName));
+		
+		List<DBObject> pipeline = new ArrayList<DBObject>(
+				Arrays.asList(match_time, unwind_actors, match_actor));
+		
+		// path of the poses in the unwinded documents
+		String pose_path = "$" + arrayField;
+		if(bones)
+		{
+			pose_path += ".bones";
+		}
+		if(bones && boneName != null)
+		{
+			// $unwind the bones and $match the given bone
+			pipeline.add(new BasicDBObject("$unwind", pose_path));
+			pipeline.add(new BasicDBObject("$match", 
+					new BasicDBObject(arrayField + ".bones.name", boneName)));
+		}
+
+		// build the $projection operation
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put("loc", pose_path + ".loc");
+		proj_fields.put("rot", pose_path + ".rot");
+		pipeline.add(new BasicDBObject("$project", proj_fields));
+		
+		// keep only the first sample of every deltaT window
+		pipeline.addAll(this.downsampleStages(start, deltaT, "loc", "rot"));
+
+		AggregationOptions aggregationOptions = AggregationOptions.builder()
+				.batchSize(100)
+				.outputMode(AggregationOptions.OutputMode.CURSOR)
+				.allowDiskUse(true)
+				.build();
+
+		// get results
+		Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
+		
+		// copy the poses of every sample into the buffer
+		while(cursor.hasNext())
+		{
+			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+			MongoRobcogMetrics.AddDoc(0);
+			if(!buffer.BeginSample(curr_doc.getDouble("timestamp")))
+			{
+				continue;
+			}
+			if(bones && boneName == null)
+			{
+				// list of the poses of all the bones
+				BasicDBList loc_list = (BasicDBList) curr_doc.get("loc");
+				BasicDBList rot_list = (BasicDBList) curr_doc.get("rot");
+				for (int i = 0; i < loc_list.size(); ++i)
+				{
+					final int offset = buffer.Reserve(7);
+					this.putPose(buffer.GetValues(), offset,
+							(BasicDBObject) loc_list.get(i), (BasicDBObject) rot_list.get(i));
+				}
+			}
+			else
+			{
+				final int offset = buffer.Reserve(7);
+				this.putPose(buffer.GetValues(), offset,
+						(BasicDBObject) curr_doc.get("loc"), (BasicDBObject) curr_doc.get("rot"));
+			}
+			buffer.EndSample();
+		}
+		// close cursor
+		cursor.close();
+	}	
 	
 	////////////////////////////////////////////////////////////////
 	///// MARKER FUNCTIONS	
@@ -230,13 +1634,43 @@ public class MongoRobcogQueries {
 	 */
 	public void CreateMarkers(ArrayList<Vector3d> pointsArr, String markerID, String markerType, String color, float scale){
 		// List of marker points
-		List<Point> marker_points = new ArrayList<Point>();
+		List<Point> marker_points = new ArrayList<Point>(pointsArr.size());
 		
 		// iterate the 3d vector to create the marker points
 		for (Vector3d p_iter : pointsArr){
 			marker_points.add(this.msgPoint(p_iter));
 		}
-
+		
+		this.createMarkers(marker_points, markerID, markerType, color, scale, markerID);
+	}
+	
+	/**
+	 * Create the rviz markers from the positions of the poses (x, y, z first), 
+	 * the points are decimated to the marker point budget
+	 */
+	public void CreateMarkers(double[][] poses, String markerID, String markerType, String color, float scale){
+		this.createMarkers(this.msgPoints(poses), markerID, markerType, color, scale, markerID);
+	}
+	
+	/**
+	 * Set the max nr of points of a list marker, larger point lists are
+	 * evenly decimated (0 for no limit)
+	 */
+	public void SetMarkerPointBudget(int maxPoints){
+		this.markerPointBudget = Math.max(0, maxPoints);
+	}
+	
+	/**
+	 * Get the max nr of points of a list marker (0 for no limit)
+	 */
+	public int GetMarkerPointBudget(){
+		return this.markerPointBudget;
+	}
+	
+	/**
+	 * Helper function creating the rviz list marker from the points, registered in the group
+	 */
+	private void createMarkers(List<Point> marker_points, String markerID, String markerType, String color, float scale, String group){
 		// check if marker already exists
 		MarkerObject m = MarkerPublisher.get().getMarker(markerID);
 		if(m==null) {			
@@ -250,18 +1684,75 @@ public class MongoRobcogQueries {
 			m.setColor(this.colorFromString(color));
 			// set the scale of the marker
 			m.setScale(new float[] {scale, scale, scale});
+			// add ID to the marker container
+			this.markerIDs.Add(MARKERS_NS, group, markerID);
+		}
+	}
+	
+	/**
+	 * Create the rviz mesh marker
+	 */
+	public void CreateMeshMarker(double pose[], String markerID, String meshPath){		
+		this.meshMarker(pose, markerID, meshPath, this.markerAnimation, MARKERS_NS, markerID);
+	}
+
+	/**
+	 * Create the bones rviz mesh marker
+	 */
+	public void CreateBonesMeshMarkers(
+			double[][] poses,
+			String[] names,
+			String markerID,
+			String meshFolderPath){
+		this.createBonesMeshMarkers(poses, names, markerID, meshFolderPath, 
+				MARKERS_NS, this.markerAnimation, markerID);
+	}
+	
+	/**
+	 * Helper function creating (or if animated moving) the bones rviz mesh markers in the namespace and group
+	 */
+	private void createBonesMeshMarkers(
+			double[][] poses,
+			String[] names,
+			String markerID,
+			String meshFolderPath,
+			String namespace,
+			boolean animate,
+			String group){
+		// create marker for every link mesh (ID + link names)
+		for (int i = 0; i < names.length && i < poses.length; ++i)
+		{
+			this.meshMarker(poses[i], markerID + names[i], meshFolderPath + names[i] + ".dae",
+					animate, namespace, group);
 		}
-		// add ID to the marker container
-		this.markerIDs.add(markerID);
 	}
 	
 	/**
-	 * Create the rviz mesh marker
+	 * Create the bones rviz mesh marker
 	 */
-	public void CreateMeshMarker(double pose[], String markerID, String meshPath){		
+	public void CreateSkeletalMeshMarkers(
+			double[][] poses,
+			String[] names,
+			String markerID,
+			String meshFolderPath){
+		this.createBonesMeshMarkers(poses, names, markerID, meshFolderPath, 
+				SKELETAL_MESHES_NS, this.markerAnimation, markerID);
+	}
+	
+	/**
+	 * Helper function creating the rviz mesh marker registered in the namespace and group, if animated
+	 * an existing marker is moved to the pose (only if the pose changed since the last update)
+	 */
+	private void meshMarker(double[] pose, String markerID, String meshPath, boolean animate, String namespace, String group){
+		// skip empty poses
+		if(pose.length < 7)
+		{
+			return;
+		}
+		
 		// split pose into translation and orientation
 		final double[] translation = new double[] {pose[0], pose[1], pose[2]};
-		final double[] orientation = new double[] {pose[3], pose[4], pose[5], pose[6]};		
+		final double[] orientation = new double[] {pose[3], pose[4], pose[5], pose[6]};
 		
 		// check if marker already exists
 		MarkerObject m = MarkerPublisher.get().getMarker(markerID);
@@ -277,112 +1768,133 @@ public class MongoRobcogQueries {
 			m.setOrientation(orientation);
 			// set scale
 			m.setScale(new float[] {1.0f,1.0f,1.0f});
+			// add ID to the marker container
+			this.markerIDs.Add(namespace, group, markerID);
+		}
+		else if(animate && this.poseChanged(markerID, pose))
+		{
+			// push only the new pos and rotation
+			m.setTranslation(translation);
+			m.setOrientation(orientation);
+		}
+		
+		if(animate)
+		{
+			this.animatedPoses.put(markerID, pose.clone());
 		}
-		// add ID to the marker container
-		this.markerIDs.add(markerID);
 	}
-
+	
 	/**
-	 * Create the bones rviz mesh marker
+	 * Helper function creating a single point rviz marker at the pose, if animated
+	 * the point stays at the origin of the marker and an existing marker is moved to the pose
 	 */
-	public void CreateBonesMeshMarkers(
-			double[][] poses,
-			String[] names,
-			String markerID,
-			String meshFolderPath){
-		// create marker for every link mesh
-		for (int i = 0; i < names.length; ++i)
+	private void pointMarker(double[] pose, String markerID, String markerType, String color, float scale, String group){
+		if(!this.markerAnimation)
 		{
-			// split pose into translation and orientation
-			final double[] translation = new double[] {poses[i][0], poses[i][1], poses[i][2]};
-			final double[] orientation = new double[] {poses[i][3], poses[i][4], poses[i][5], poses[i][6]};
-			
-			final String curr_name = names[i];
-			final String curr_id = markerID + curr_name;
-			// check if marker already exists (ID + link names)
-			MarkerObject m = MarkerPublisher.get().getMarker(curr_id);
-			if(m==null) {
-				// create marker
-				m = MarkerPublisher.get().createMarker(curr_id);
-				// set the type of the marker
-				m.setType(Marker.MESH_RESOURCE);
-				// set the path to the mesh
-				m.setMeshResource(meshFolderPath + curr_name + ".dae");
-				// set pos and rotation
-				m.setTranslation(translation);
-				m.setOrientation(orientation);
-				// set scale
-				m.setScale(new float[] {1.0f,1.0f,1.0f});
-			}
-			// add ID to the marker container
-			this.markerIDs.add(curr_id);		
+			this.createMarkers(this.msgPoints(new double[][] {pose}), markerID, markerType, color, scale, group);
+			return;
+		}
+		
+		// skip empty poses
+		if(pose.length < 3)
+		{
+			return;
+		}
+		final double[] translation = new double[] {pose[0], pose[1], pose[2]};
+		
+		// check if marker already exists
+		MarkerObject m = MarkerPublisher.get().getMarker(markerID);
+		if(m==null) {
+			// create the marker with a point at its origin
+			this.createMarkers(new ArrayList<Point>(Arrays.asList(this.msgPoint(0.0, 0.0, 0.0))), 
+					markerID, markerType, color, scale, group);
+			m = MarkerPublisher.get().getMarker(markerID);
+			m.setTranslation(translation);
+		}
+		else if(this.poseChanged(markerID, translation))
+		{
+			// push only the new position
+			m.setTranslation(translation);
 		}
+		this.animatedPoses.put(markerID, translation);
 	}
 	
 	/**
-	 * Create the bones rviz mesh marker
+	 * Helper function checking if the pose differs from the last one pushed to the animated marker
 	 */
-	public void CreateSkeletalMeshMarkers(
-			double[][] poses,
-			String[] names,
-			String markerID,
-			String meshFolderPath){
-		// create marker for every link mesh
-		for (int i = 0; i < names.length; ++i)
-		{
-			// split pose into translation and orientation
-			final double[] translation = new double[] {poses[i][0], poses[i][1], poses[i][2]};
-			final double[] orientation = new double[] {poses[i][3], poses[i][4], poses[i][5], poses[i][6]};
-			
-			final String curr_name = names[i];
-			final String curr_id = markerID + curr_name;
-			// check if marker already exists (ID + link names)
-			MarkerObject m = MarkerPublisher.get().getMarker(curr_id);
-			if(m==null) {
-				// create marker
-				m = MarkerPublisher.get().createMarker(curr_id);
-				// set the type of the marker
-				m.setType(Marker.MESH_RESOURCE);
-				// set the path to the mesh
-				m.setMeshResource(meshFolderPath + curr_name + ".dae");
-				// set pos and rotation
-				m.setTranslation(translation);
-				m.setOrientation(orientation);
-				// set scale
-				m.setScale(new float[] {1.0f,1.0f,1.0f});
-			}
-			// add ID to the marker container
-			this.skeletalMeshMarkerIDs.add(curr_id);		
-		}
+	private boolean poseChanged(String markerID, double[] pose){
+		return !Arrays.equals(this.animatedPoses.get(markerID), pose);
+	}
+	
+	/**
+	 * Helper function returning the id of a new marker of the entity, 
+	 * stable for the entity and marker kind if animated
+	 */
+	private String markerId(String name, String kind){
+		return this.markerAnimation ? name + "_" + kind : name + "_" + this.randString(4);
+	}
+	
+	/**
+	 * Enable/disable the marker animation, if enabled the markers created without an explicit id keep
+	 * a stable id per entity (and marker kind), repeated views only push the changed poses to the
+	 * existing markers instead of creating new ones
+	 */
+	public void SetMarkerAnimation(boolean enable){
+		this.markerAnimation = enable;
+	}
+	
+	/**
+	 * Check if the marker animation is enabled
+	 */
+	public boolean GetMarkerAnimation(){
+		return this.markerAnimation;
 	}
 	
 	/**
 	 * Remove the rviz marker with the given ID
 	 */
 	public void RemoveMarker(String markerID){
-		MarkerPublisher.get().eraseMarker(markerID);		
+		MarkerPublisher.get().eraseMarker(markerID);
+		this.animatedPoses.remove(markerID);
+		this.markerIDs.Remove(markerID);
 	}
 	
 	/**
 	 * Remove all rviz markers created form sg
 	 */
 	public void RemoveAllMarkers(){
-		// Iterate and remove all markers
-        Iterator m_itr = this.markerIDs.iterator();
-        while (m_itr.hasNext()) {
-                this.RemoveMarker((String)m_itr.next());
-        }
+		this.eraseMarkers(this.markerIDs.RemoveNamespace(MARKERS_NS));
 	}
 	
 	/**
 	 * Remove all skeletal mesh rviz markers created form sg
 	 */
 	public void RemoveAllSkeletalMeshMarkers(){
-		// Iterate and remove all markers
-        Iterator m_itr = this.skeletalMeshMarkerIDs.iterator();
-        while (m_itr.hasNext()) {
-                this.RemoveMarker((String)m_itr.next());
-        }
+		this.eraseMarkers(this.markerIDs.RemoveNamespace(SKELETAL_MESHES_NS));
+	}
+	
+	/**
+	 * Remove all rviz markers (list, mesh and skeletal mesh) created for the actor
+	 */
+	public void RemoveActorMarkers(String actorName){
+		this.eraseMarkers(this.markerIDs.RemoveGroup(actorName));
+	}
+	
+	/**
+	 * Nr of the rviz markers created form sg which are not removed yet
+	 */
+	public int GetNrMarkers(){
+		return this.markerIDs.GetSize();
+	}
+	
+	/**
+	 * Helper function erasing the markers (already removed from the registry)
+	 */
+	private void eraseMarkers(List<String> markerIDs){
+		for (String marker_id : markerIDs){
+			MarkerPublisher.get().eraseMarker(marker_id);
+			this.animatedPoses.remove(marker_id);
+		}
 	}
 	
 	////////////////////////////////////////////////////////////////
@@ -401,173 +1913,419 @@ public class MongoRobcogQueries {
 	 * Query the Pose of the actor at the given timepoint (or the most recent one)
 	 */
 	public double[] GetActorPoseAt(String actorName, double timestamp){
-		// $and list for querying the $match in the aggregation
-		BasicDBList time_and_name = new BasicDBList();
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorPoseAt");
+		try {
+			// interpolate between the bracketing samples if enabled
+			if(this.poseInterpolation)
+			{
+				return this.GetActorPoseInterpolatedAt(actorName, timestamp);
+			}
+		
+			// serve the pose from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetActorPoseAt(actorName, timestamp);
+			}
+		
+			// serve the pose from the prefetched windows if loaded
+			final MongoRobcogPrefetcher curr_prefetcher = this.getPrefetcher();
+			if(curr_prefetcher != null)
+			{
+				final double[] prefetched_pose = curr_prefetcher.GetActorPose(actorName, timestamp);
+				if(prefetched_pose != null)
+				{
+					return prefetched_pose.clone();
+				}
+			}
+		
+			// serve the pose from the episode cache if enabled
+			if(this.episodeCache != null)
+			{
+				final double[] cached_pose = this.episodeCache.GetActorPoseAt(
+						this.getColl(), actorName, timestamp);
+				if(cached_pose != null)
+				{
+					return cached_pose;
+				}
+			}
+		
+			// $and list for querying the $match in the aggregation
+			BasicDBList time_and_name = new BasicDBList();
 
-		// add the timestamp and the actor name
-		time_and_name.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
-		time_and_name.add(new BasicDBObject("entities.id", actorName));
+			// add the timestamp and the actor name
+			time_and_name.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
+			time_and_name.add(new BasicDBObject("entities.id", actorName));
 
-		// create the pipeline operations, first the $match
-		DBObject match_time_and_name = new BasicDBObject(
-				"$match", new BasicDBObject( "$and", time_and_name)); 
+			// create the pipeline operations, first the $match
+			DBObject match_time_and_name = new BasicDBObject(
+					"$match", new BasicDBObject( "$and", time_and_name)); 
 
-		// sort the results in descending order on the timestamp (keep most recent result first)
-		DBObject sort_desc = new BasicDBObject(
-				"$sort", new BasicDBObject("timestamp", -1));
+			// sort the results in descending order on the timestamp (keep most recent result first)
+			DBObject sort_desc = new BasicDBObject(
+					"$sort", new BasicDBObject("timestamp", -1));
 
-		// $limit the result to 1, we only need one pose
-		DBObject limit_result = new BasicDBObject("$limit", 1);
+			// $limit the result to 1, we only need one pose
+			DBObject limit_result = new BasicDBObject("$limit", 1);
 
-		// $unwind actors in order to output only the queried actor
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$entities");
+			// $unwind actors in order to output only the queried actor
+			DBObject unwind_actors = new BasicDBObject("$unwind", "$entities");
 
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("entities.id", actorName));
+			// $match for the given actor name from the unwinded actors
+			DBObject match_actor = new BasicDBObject(
+					"$match", new BasicDBObject("entities.id", actorName));
 
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("pos", "$entities.loc");
-		proj_fields.put("rot", "$entities.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
+			// build the $projection operation
+			DBObject proj_fields = new BasicDBObject("_id", 0);
+			proj_fields.put("timestamp", 1);
+			proj_fields.put("loc", "$entities.loc");
+			proj_fields.put("rot", "$entities.rot");
+			DBObject project = new BasicDBObject("$project", proj_fields);
 
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(
-				match_time_and_name, sort_desc, limit_result, unwind_actors, match_actor, project);
+			// run aggregation
+			List<DBObject> pipeline = Arrays.asList(
+					match_time_and_name, sort_desc, limit_result, unwind_actors, match_actor, project);
 
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
+			AggregationOptions aggregationOptions = AggregationOptions.builder()
+					.batchSize(100)
+					.outputMode(AggregationOptions.OutputMode.CURSOR)
+					.allowDiskUse(true)
+					.build();
 
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+			// get results
+			Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
 
-		// if query has a response, return the pose
-		if(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject first_doc = (BasicDBObject) cursor.next();			
-			// close cursor
-			cursor.close();
-			// get the pose
-			return new double[] {
-					((BasicDBObject) first_doc.get("loc")).getDouble("x"),
-					((BasicDBObject) first_doc.get("loc")).getDouble("y"),
-					((BasicDBObject) first_doc.get("loc")).getDouble("z"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("x"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("y"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("z"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("w")};
+			// if query has a response, return the pose
+			if(cursor.hasNext())
+			{
+				// get the first document as the next cursor and append the metadata to it
+				BasicDBObject first_doc = (BasicDBObject) cursor.next();			
+				// close cursor
+				cursor.close();
+				// get the pose
+				return new double[] {
+						((BasicDBObject) first_doc.get("loc")).getDouble("x"),
+						((BasicDBObject) first_doc.get("loc")).getDouble("y"),
+						((BasicDBObject) first_doc.get("loc")).getDouble("z"),
+						((BasicDBObject) first_doc.get("rot")).getDouble("x"),
+						((BasicDBObject) first_doc.get("rot")).getDouble("y"),
+						((BasicDBObject) first_doc.get("rot")).getDouble("z"),
+						((BasicDBObject) first_doc.get("rot")).getDouble("w")};
+			}
+			else
+			{
+				System.out.println("Java - GetActorPose - No results found, returning empty list..");			
+				return new double[0];
+			}
+		} finally {
+			MongoRobcogMetrics.End("GetActorPoseAt", start_ns);
 		}
-		else
-		{
-			System.out.println("Java - GetActorPose - No results found, returning empty list..");			
-			return new double[0];
+	}
+	
+	/**
+	 * Query the Poses of the actor at the given timepoints (or the most recent ones)
+	 */
+	public double[][] GetActorPosesAt(String actorName, String[] timestampStrs){
+		return this.GetActorPosesAt(actorName, parseTimes_d(timestampStrs));
+	}
+	
+	/**
+	 * Query the Poses of the actor at the given (sorted) timepoints (or the most recent ones),
+	 * all the samples are read with one range query and merge-joined with the timepoints
+	 * (empty poses before the first sample)
+	 */
+	public double[][] GetActorPosesAt(String actorName, double[] timestamps){
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorPosesAt");
+		try {
+			return this.posesAt("entities", actorName, false, null, timestamps, this.poseInterpolation);
+		} finally {
+			MongoRobcogMetrics.End("GetActorPosesAt", start_ns);
 		}
 	}
-
+	
 	/**
-	 * Query the Traj of the actor between the given timepoints
+	 * Query the Poses of the given actors at the given timepoint (or the most recent ones)
 	 */
-	public double[][] GetActorTraj(String actorName,
-			String start,
-			String end,
-			double deltaT){
+	public double[] GetWorldStateAt(String[] actorNames, String timestampStr){
 		// transform the knowrob time to double with 3 decimal precision
-		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
-		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
+		final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
+
+		return GetWorldStateAt(actorNames, timestamp);
+	}
+	
+	/**
+	 * Query the Poses of the given actors at the given timepoint (or the most recent ones),
+	 * returns a flat array where the pose of actorNames[i] is at [7*i, 7*i+7),
+	 * the values are NaN if the actor has no pose before the timepoint
+	 */
+	public double[] GetWorldStateAt(String[] actorNames, double timestamp){
+		final long start_ns = MongoRobcogMetrics.Begin("GetWorldStateAt");
+		try {
+			// world state as flat array, unknown poses are NaN
+			final double[] world_state = new double[actorNames.length * 7];
+			Arrays.fill(world_state, Double.NaN);
 		
-		return GetActorTraj(actorName, start_ts, end_ts, deltaT);
+			// actor name to the row index in the world state
+			Map<String, Integer> actor_idx = new HashMap<String, Integer>();
+			for (int i = 0; i < actorNames.length; ++i){
+				actor_idx.put(actorNames[i], i);
+			}
+		
+			// serve the poses from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				for (int i = 0; i < actorNames.length; ++i){
+					final double[] pose = store.GetActorPoseAt(actorNames[i], timestamp);
+					if(pose.length == 7)
+					{
+						System.arraycopy(pose, 0, world_state, i * 7, 7);
+					}
+				}
+				return world_state;
+			}
+		
+			// actors without a pose yet
+			Set<String> missing = new HashSet<String>(actor_idx.keySet());
+		
+			// serve the poses from the prefetched windows if loaded
+			final MongoRobcogPrefetcher curr_prefetcher = this.getPrefetcher();
+			if(curr_prefetcher != null)
+			{
+				for (int i = 0; i < actorNames.length; ++i){
+					final double[] pose = curr_prefetcher.GetActorPose(actorNames[i], timestamp);
+					if(pose != null && pose.length == 7)
+					{
+						System.arraycopy(pose, 0, world_state, i * 7, 7);
+						missing.remove(actorNames[i]);
+					}
+				}
+			}
+		
+			// serve the poses from the episode cache if enabled
+			if(!missing.isEmpty() && this.episodeCache != null 
+					&& this.episodeCache.GetEpisode(this.getColl()) != null)
+			{
+				for (int i = 0; i < actorNames.length; ++i){
+					if(!missing.contains(actorNames[i]))
+					{
+						continue;
+					}
+					final double[] pose = this.episodeCache.GetActorPoseAt(
+							this.getColl(), actorNames[i], timestamp);
+					if(pose != null && pose.length == 7)
+					{
+						System.arraycopy(pose, 0, world_state, i * 7, 7);
+						missing.remove(actorNames[i]);
+					}
+				}
+			}
+		
+			// the prefetcher and the cache only hold the entities poses, 
+			// the skeletal actors (and the actors without a pose) are queried
+			if(missing.isEmpty())
+			{
+				return world_state;
+			}
+			final List<String> missing_names = new ArrayList<String>(missing);
+		
+			// the most recent document before the timestamp usually contains most of the actors
+			BasicDBList in_entities = new BasicDBList();
+			in_entities.add(new BasicDBObject("entities.id", new BasicDBObject("$in", missing_names)));
+			in_entities.add(new BasicDBObject("skel_entities.id", new BasicDBObject("$in", missing_names)));
+			BasicDBObject query = new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp));
+			query.put("$or", in_entities);
+		
+			DBObject proj_fields = new BasicDBObject("_id", 0);
+			proj_fields.put("entities", 1);
+			proj_fields.put("skel_entities.id", 1);
+			proj_fields.put("skel_entities.loc", 1);
+			proj_fields.put("skel_entities.rot", 1);
+		
+			DBCursor doc_cursor = this.getColl().find(query, proj_fields)
+					.sort(new BasicDBObject("timestamp", -1))
+					.limit(1);
+		
+			if(doc_cursor.hasNext())
+			{
+				BasicDBObject first_doc = (BasicDBObject) doc_cursor.next();
+				this.putPoses(world_state, actor_idx, missing, (BasicDBList) first_doc.get("entities"));
+				this.putPoses(world_state, actor_idx, missing, (BasicDBList) first_doc.get("skel_entities"));
+			}
+			doc_cursor.close();
+		
+			// the remaining actors were not logged in that document, get their most recent
+			// poses one by one, every lookup is a $limit 1 on the {<array>.id, timestamp} index
+			for (String name : missing)
+			{
+				final int offset = actor_idx.get(name) * 7;
+				if(!this.latestPose(world_state, offset, "entities", name, timestamp))
+				{
+					this.latestPose(world_state, offset, "skel_entities", name, timestamp);
+				}
+			}
+		
+			return world_state;
+		} finally {
+			MongoRobcogMetrics.End("GetWorldStateAt", start_ns);
+		}
 	}
 	
 	/**
-	 * Query the Traj of the actor between the given timepoints
+	 * Helper function copying the poses of the listed entities (entities or skel_entities)
+	 * which are still missing into the world state
 	 */
-	public double[][] GetActorTraj(String actorName,
-			double start,
-			double end,
-			double deltaT){
-		// create the pipeline operations, first with the $match check the times
-		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
-				new BasicDBObject("$gte", start).append("$lte", end)));
-
-		// $unwind the actors
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$entities");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("entities.id", actorName));
-
-		// build the $projection operation
+	private void putPoses(double[] worldState, Map<String, Integer> actorIdx, 
+			Set<String> missing, BasicDBList entities){
+		if(entities == null)
+		{
+			return;
+		}
+		for (Object entity_obj : entities)
+		{
+			BasicDBObject entity = (BasicDBObject) entity_obj;
+			final String id = entity.getString("id");
+			final BasicDBObject loc = (BasicDBObject) entity.get("loc");
+			final BasicDBObject rot = (BasicDBObject) entity.get("rot");
+			if(loc != null && rot != null && missing.remove(id))
+			{
+				this.putPose(worldState, actorIdx.get(id) * 7, loc, rot);
+			}
+		}
+	}
+	
+	/**
+	 * Helper function copying the most recent pose of the entity from the given 
+	 * array (entities or skel_entities) into the world state, returns false if none is logged
+	 */
+	private boolean latestPose(double[] worldState, int offset, String arrayField, 
+			String actorName, double timestamp){
+		BasicDBObject query = new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp));
+		query.put(arrayField + ".id", actorName);
+		
+		// only the entry of the actor is returned
 		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("pos", "$entities.loc");
-		proj_fields.put("rot", "$entities.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(match_time, unwind_actors, match_actor, project);
+		proj_fields.put(arrayField, new BasicDBObject("$elemMatch", new BasicDBObject("id", actorName)));
+		
+		DBCursor cursor = this.getColl().find(query, proj_fields)
+				.sort(new BasicDBObject("timestamp", -1))
+				.limit(1);
+		try
+		{
+			if(!cursor.hasNext())
+			{
+				return false;
+			}
+			BasicDBList entities = (BasicDBList) cursor.next().get(arrayField);
+			if(entities == null || entities.isEmpty())
+			{
+				return false;
+			}
+			BasicDBObject entity = (BasicDBObject) entities.get(0);
+			final BasicDBObject loc = (BasicDBObject) entity.get("loc");
+			final BasicDBObject rot = (BasicDBObject) entity.get("rot");
+			if(loc == null || rot == null)
+			{
+				return false;
+			}
+			this.putPose(worldState, offset, loc, rot);
+			return true;
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Query the Poses of the given actors at the given timepoint (or the most recent ones),
+	 * one row per actor, empty row if the actor has no pose before the timepoint
+	 */
+	public double[][] GetWorldStateRowsAt(String[] actorNames, String timestampStr){
+		// transform the knowrob time to double with 3 decimal precision
+		final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
 
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
+		return GetWorldStateRowsAt(actorNames, timestamp);
+	}
+	
+	/**
+	 * Query the Poses of the given actors at the given timepoint (or the most recent ones),
+	 * one row per actor, empty row if the actor has no pose before the timepoint
+	 */
+	public double[][] GetWorldStateRowsAt(String[] actorNames, double timestamp){
+		final double[] world_state = this.GetWorldStateAt(actorNames, timestamp);
+		
+		// split the flat array into rows
+		double[][] rows = new double[actorNames.length][];
+		for (int i = 0; i < actorNames.length; ++i){
+			if(Double.isNaN(world_state[i * 7]))
+			{
+				rows[i] = new double[0];
+			}
+			else
+			{
+				rows[i] = Arrays.copyOfRange(world_state, i * 7, i * 7 + 7);
+			}
+		}
+		return rows;
+	}
 
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+	/**
+	 * Query the Traj of the actor between the given timepoints
+	 */
+	public double[][] GetActorTraj(String actorName,
+			String start,
+			String end,
+			double deltaT){
+		// transform the knowrob time to double with 3 decimal precision
+		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
 		
-		// Traj as dynamic array
-		ArrayList<double[]> traj_list = new ArrayList<double[]>();
+		return GetActorTraj(actorName, start_ts, end_ts, deltaT);
+	}
+	
+	/**
+	 * Query the Traj of the actor between the given timepoints
+	 */
+	public double[][] GetActorTraj(String actorName,
+			double start,
+			double end,
+			double deltaT){
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorTraj");
+		try {
+			// serve the trajectory from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetActorTraj(actorName, start, end, deltaT);
+			}
 		
-		// if the query returned nothing, get the most recent pose
-		if(!cursor.hasNext())
-		{
-			System.out.println("Java - GetActorTraj - No results found, returning most recent pose..");
-			// get the most recent pose
-			traj_list.add(this.GetActorPoseAt(actorName, start));
-			
-			// cast from dynamic array to standard array
-			return traj_list.toArray(new double[traj_list.size()][7]);	
-		}
+			// serve the trajectory from the result cache if enabled
+			final String cache_key = this.resultKey("GetActorTraj", actorName, start, end, deltaT);
+			final double[][] cached_traj = (double[][]) this.cachedResult(cache_key);
+			if(cached_traj != null)
+			{
+				return cached_traj;
+			}
 		
-		// timestamp used for deltaT
-		double prev_ts = 0;
-				
-		// while query has a response, return the pose
-		while(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-			
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
-			{			
-				// get the current pose
-				traj_list.add(new double[] {
-						((BasicDBObject) curr_doc.get("loc")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("y"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("z"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("y"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("z"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("w")});
-				prev_ts = curr_ts;
-				//System.out.println(curr_doc.toString());
+			// poses of the trajectory as primitive buffer
+			MongoRobcogSampleBuffer traj_buffer = new MongoRobcogSampleBuffer(7 * 1024);
+		
+			// stream the poses of the actor into the buffer
+			this.queryPoses(traj_buffer, "entities", actorName, false, null, start, end, deltaT);
+		
+			// if the query returned nothing, get the most recent pose
+			if(traj_buffer.GetNrSamples() == 0)
+			{
+				System.out.println("Java - GetActorTraj - No results found, returning most recent pose..");
+				return new double[][] {this.GetActorPoseAt(actorName, start)};
 			}
-		}
-		// close cursor
-		cursor.close();		
 		
-		// cast from dynamic array to standard array
-		return traj_list.toArray(new double[traj_list.size()][7]);
+			// copy from the buffer to standard array
+			return this.cacheResult(cache_key, traj_buffer.ToRows(7));
+		} finally {
+			MongoRobcogMetrics.End("GetActorTraj", start_ns);
+		}
 	}
 	
 	/**
@@ -591,85 +2349,35 @@ public class MongoRobcogQueries {
 			double start,
 			double end,
 			double deltaT){
-		// traveled distance
-		double traveled_distance = 0.0;		
-		
-		// create the pipeline operations, first with the $match check the times
-		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
-				new BasicDBObject("$gte", start).append("$lte", end)));
-
-		// $unwind the actors
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$actors");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("entities.id", actorName));
-
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("pos", "$entities.loc");
-		proj_fields.put("rot", "$entities.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(match_time, unwind_actors, match_actor, project);
-
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
-
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-		
-		// Traj as dynamic array
-		List<double[]> traj_list_xyz = new ArrayList<double[]>();
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorTraveledDistance");
+		try {
+			// serve the distance from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return trajDistance(store.GetActorTraj(actorName, start, end, deltaT), false);
+			}
 		
-		// if the query returned nothing distance is 0.
-		if(!cursor.hasNext())
-		{
-			System.out.println("Java - GetActorXYTraveledDistance - No results found, returning 0.0 ..");
-			return traveled_distance;	
-		}
+			// two lookups in the precomputed summary (if built and exact for the deltaT)
+			final double summary_distance = this.summaryDistance(actorName, start, end, deltaT, "dist");
+			if(!Double.isNaN(summary_distance))
+			{
+				return summary_distance;
+			}
 		
-		// timestamp used for deltaT
-		double prev_ts = 0;
-				
-		// while query has a response, return the pose
-		while(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-			
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
-			{			
-				// get the current pose
-				traj_list_xyz.add(new double[] {
-						((BasicDBObject) curr_doc.get("loc")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("y"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("z")});
-				prev_ts = curr_ts;
-				//System.out.println(curr_doc.toString());
+			// serve the scanned distance from the result cache if enabled
+			final String cache_key = this.resultKey("scanDistance", actorName, start, end, deltaT, false);
+			final Double cached_distance = (Double) this.cachedResult(cache_key);
+			if(cached_distance != null)
+			{
+				return cached_distance;
 			}
-		}
-		// close cursor
-		cursor.close();
 		
-		// Iterate and calculate the 3D points distance backwards until the second last point
-		for (int i = traj_list_xyz.size() - 1 ; i >= 1 ; i--) {			
-			final double x1_x0 = traj_list_xyz.get(i)[0] - traj_list_xyz.get(i-1)[0];
-			final double y1_y0 = traj_list_xyz.get(i)[1] - traj_list_xyz.get(i-1)[1];
-			final double z1_z0 = traj_list_xyz.get(i)[2] - traj_list_xyz.get(i-1)[2];
-			traveled_distance += Math.sqrt((x1_x0 * x1_x0) + (y1_y0 * y1_y0) + (z1_z0 * z1_z0));
+			// otherwise stream the trajectory
+			return this.cacheResult(cache_key, this.scanDistance(actorName, start, end, deltaT, false));
+		} finally {
+			MongoRobcogMetrics.End("GetActorTraveledDistance", start_ns);
 		}
-		
-		return traveled_distance;
 	}
 	
 	/**
@@ -693,83 +2401,35 @@ public class MongoRobcogQueries {
 			double start,
 			double end,
 			double deltaT){
-		// traveled distance
-		double traveled_distance = 0.0;		
-		
-		// create the pipeline operations, first with the $match check the times
-		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
-				new BasicDBObject("$gte", start).append("$lte", end)));
-
-		// $unwind the actors
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$entities");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("actors.name", actorName));
-
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("pos", "$entities.loc");
-		proj_fields.put("rot", "$entities.loc");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(match_time, unwind_actors, match_actor, project);
-
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
-
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-		
-		// Traj as dynamic array
-		List<double[]> traj_list_xy = new ArrayList<double[]>();
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorXYTraveledDistance");
+		try {
+			// serve the distance from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return trajDistance(store.GetActorTraj(actorName, start, end, deltaT), true);
+			}
 		
-		// if the query returned nothing distance is 0.
-		if(!cursor.hasNext())
-		{
-			System.out.println("Java - GetActorXYTraveledDistance - No results found, returning 0.0 ..");
-			return traveled_distance;	
-		}
+			// two lookups in the precomputed summary (if built and exact for the deltaT)
+			final double summary_distance = this.summaryDistance(actorName, start, end, deltaT, "dist_xy");
+			if(!Double.isNaN(summary_distance))
+			{
+				return summary_distance;
+			}
 		
-		// timestamp used for deltaT
-		double prev_ts = 0;
-				
-		// while query has a response, return the pose
-		while(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-			
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
-			{			
-				// get the current pose
-				traj_list_xy.add(new double[] {
-						((BasicDBObject) curr_doc.get("loc")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("y")});
-				prev_ts = curr_ts;
-				//System.out.println(curr_doc.toString());
+			// serve the scanned distance from the result cache if enabled
+			final String cache_key = this.resultKey("scanDistance", actorName, start, end, deltaT, true);
+			final Double cached_distance = (Double) this.cachedResult(cache_key);
+			if(cached_distance != null)
+			{
+				return cached_distance;
 			}
-		}
-		// close cursor
-		cursor.close();
 		
-		// Iterate and calculate the 2D points distance backwards until the second last point
-		for (int i = traj_list_xy.size() - 1 ; i >= 1 ; i--) {			
-			final double x1_x0 = traj_list_xy.get(i)[0] - traj_list_xy.get(i-1)[0];
-			final double y1_y0 = traj_list_xy.get(i)[1] - traj_list_xy.get(i-1)[1];			
-			traveled_distance += Math.sqrt((x1_x0 * x1_x0) + (y1_y0 * y1_y0));
+			// otherwise stream the trajectory
+			return this.cacheResult(cache_key, this.scanDistance(actorName, start, end, deltaT, true));
+		} finally {
+			MongoRobcogMetrics.End("GetActorXYTraveledDistance", start_ns);
 		}
-		
-		return traveled_distance;
 	}
 	
 	/**
@@ -784,87 +2444,89 @@ public class MongoRobcogQueries {
 	 * Query the Pose of the actors bone at the given timepoint (or the most recent one)
 	 */
 	public double[] GetBonePoseAt(String actorName, String boneName, double timestamp){		
-		// $and list for querying the $match in the aggregation
-		BasicDBList time_and_name = new BasicDBList();
-
-		// add the timestamp and the actor name
-		time_and_name.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
-		time_and_name.add(new BasicDBObject("entities.id", actorName));
-
-		// create the pipeline operations, first the $match
-		DBObject match_time_and_name = new BasicDBObject(
-				"$match", new BasicDBObject( "$and", time_and_name)); 
-
-		// sort the results in descending order on the timestamp (keep most recent result first)
-		DBObject sort_desc = new BasicDBObject(
-				"$sort", new BasicDBObject("timestamp", -1));
-
-		// $limit the result to 1, we only need one pose
-		DBObject limit_result = new BasicDBObject("$limit", 1);
-
-		// $unwind actors in order to output only the queried actor
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$entities");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("entities.id", actorName));
-
-		// build the $projection operation
-		DBObject proj_bone_fields = new BasicDBObject("_id", 0);
-		proj_bone_fields.put("timestamp", 1);
-		proj_bone_fields.put("actors.bones", 1);
-		DBObject project_bones = new BasicDBObject("$project", proj_bone_fields);
-
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonePoseAt");
+		try {
 		
-		// $unwind the bones
-		DBObject unwind_bones = new BasicDBObject("$unwind", "$skel_entities.bones");
-
-		// $match for the given bone name from the unwinded bones
-		DBObject match_bone = new BasicDBObject(
-				"$match", new BasicDBObject("skel_entities.bones.name", boneName));
-
-		// build the final $projection operation
-		DBObject proj_fields = new BasicDBObject("timestamp", 1);
-		proj_fields.put("pos", "$skel_entities.bones.loc");
-		proj_fields.put("rot", "$skel_entities.bones.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(
-				match_time_and_name, sort_desc, limit_result, unwind_actors, match_actor,
-				project_bones, unwind_bones, match_bone, project);
-				
-
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
-
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-
-		// if query has a response, return the pose
-		if(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject first_doc = (BasicDBObject) cursor.next();	
-			// close cursor since we only care about one value
-			cursor.close();
-			// get the pose
-			return new double[] {
-					((BasicDBObject) first_doc.get("loc")).getDouble("x"),
-					((BasicDBObject) first_doc.get("loc")).getDouble("y"),
-					((BasicDBObject) first_doc.get("loc")).getDouble("z"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("x"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("y"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("z"),
-					((BasicDBObject) first_doc.get("rot")).getDouble("w")};
+			// interpolate between the bracketing samples if enabled
+			if(this.poseInterpolation)
+			{
+				return this.GetBonePoseInterpolatedAt(actorName, boneName, timestamp);
+			}
+		
+			// serve the pose from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetBonePoseAt(actorName, boneName, timestamp);
+			}
+		
+			// serve the pose from the episode cache if enabled
+			if(this.episodeCache != null)
+			{
+				final double[] cached_pose = this.episodeCache.GetBonePoseAt(
+						this.getColl(), actorName, boneName, timestamp);
+				if(cached_pose != null)
+				{
+					return cached_pose;
+				}
+			}
+		
+			// most recent sample of the actor, only the bone at its index is projected
+			final int bone_idx = this.boneIndexProjection ? this.GetBoneIndex(actorName, boneName) : -1;
+			if(bone_idx >= 0)
+			{
+				DBObject match_time_and_name = new BasicDBObject("$match", new BasicDBObject("timestamp", 
+						new BasicDBObject("$lte", timestamp)).append("skel_entities.id", actorName));
+			
+				List<DBObject> pipeline = new ArrayList<DBObject>();
+				pipeline.add(match_time_and_name);
+				pipeline.add(new BasicDBObject("$sort", new BasicDBObject("timestamp", -1)));
+				pipeline.add(new BasicDBObject("$limit", 1));
+				pipeline.addAll(this.projectBoneStages(actorName, bone_idx));
+			
+				MongoRobcogSampleBuffer pose_buffer = new MongoRobcogSampleBuffer(7);
+				pose_buffer.Reset(Double.NEGATIVE_INFINITY);
+				if(this.copyBonePoses(pose_buffer, pipeline, actorName, boneName))
+				{
+					if(pose_buffer.GetNrSamples() == 0)
+					{
+						System.out.println("Java - GetBonePose - No results found, returning empty list..");
+						return new double[0];
+					}
+					return Arrays.copyOf(pose_buffer.GetValues(), 7);
+				}
+			}
+		
+			// otherwise pick the bone from the most recent sample of the actor
+			final double[] pose = this.posesAt("skel_entities", actorName, true, boneName, 
+					new double[] {timestamp}, false)[0];
+			if(pose.length == 0)
+			{
+				System.out.println("Java - GetBonePose - No results found, returning empty list..");
+			}
+			return pose;
+		} finally {
+			MongoRobcogMetrics.End("GetBonePoseAt", start_ns);
 		}
-		else
-		{
-			System.out.println("Java - GetBonePose - No results found, returning empty list..");
-			return new double[0];
+	}
+	
+	/**
+	 * Query the Poses of the actors bone at the given timepoints (or the most recent ones)
+	 */
+	public double[][] GetBonePosesAt(String actorName, String boneName, String[] timestampStrs){
+		return this.GetBonePosesAt(actorName, boneName, parseTimes_d(timestampStrs));
+	}
+	
+	/**
+	 * Query the Poses of the actors bone at the given (sorted) timepoints (or the most recent ones),
+	 * all the samples are read with one range query and merge-joined with the timepoints
+	 */
+	public double[][] GetBonePosesAt(String actorName, String boneName, double[] timestamps){
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonePosesAt");
+		try {
+			return this.posesAt("skel_entities", actorName, true, boneName, timestamps, this.poseInterpolation);
+		} finally {
+			MongoRobcogMetrics.End("GetBonePosesAt", start_ns);
 		}
 	}
 	
@@ -891,90 +2553,102 @@ public class MongoRobcogQueries {
 			double start,
 			double end,
 			double deltaT){		
+		final long start_ns = MongoRobcogMetrics.Begin("GetBoneTraj");
+		try {
 		
-		// create the pipeline operations, first with the $match check the times
-		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
-				new BasicDBObject("$gte", start).append("$lte", end)));
-
-		// $unwind the actors
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$skel_entities");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("skel_entities.id", actorName));
-
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("pos", "$skel_entities.loc");
-		proj_fields.put("rot", "$skel_entities.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(match_time, unwind_actors, match_actor, project);
-
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
-
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+			// serve the trajectory from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetBoneTraj(actorName, boneName, start, end, deltaT);
+			}
 		
-		// Traj as dynamic array
-		ArrayList<double[]> traj_list = new ArrayList<double[]>();	
+			// serve the trajectory from the result cache if enabled
+			final String cache_key = this.resultKey("GetBoneTraj", actorName, boneName, start, end, deltaT);
+			final double[][] cached_traj = (double[][]) this.cachedResult(cache_key);
+			if(cached_traj != null)
+			{
+				return cached_traj;
+			}
 		
-		// if the query returned nothing, get the most recent pose
-		if(!cursor.hasNext())
-		{
-			System.out.println("Java - GetBoneTraj - No results found, returning most recent pose..");
-			// get the most recent pose
-			traj_list.add(this.GetBonePoseAt(actorName, boneName, start));
-			
-			// cast from dynamic array to standard array
-			return traj_list.toArray(new double[traj_list.size()][7]);	
-		}
+			// poses of the trajectory as primitive buffer
+			MongoRobcogSampleBuffer traj_buffer = new MongoRobcogSampleBuffer(7 * 1024);
 		
-		// timestamp used for deltaT
-		double prev_ts = 0;
+			// stream the poses of the bone into the buffer
+			this.queryPoses(traj_buffer, "skel_entities", actorName, true, boneName, start, end, deltaT);
 		
-		// if query has a response, return the pose
-		while(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();			
-			
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
+			// if the query returned nothing, get the most recent pose
+			if(traj_buffer.GetNrSamples() == 0)
+			{
+				System.out.println("Java - GetBoneTraj - No results found, returning most recent pose..");
+				return new double[][] {this.GetBonePoseAt(actorName, boneName, start)};
+			}
+		
+			// copy from the buffer to standard array
+			return this.cacheResult(cache_key, traj_buffer.ToRows(7));
+		} finally {
+			MongoRobcogMetrics.End("GetBoneTraj", start_ns);
+		}
+	}
+	
+	/**
+	 * Query the Names of the actor bones (queried once per collection and actor)
+	 */
+	public String[] GetBonesNames(String actorName){
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonesNames");
+		try {
+			// serve the names from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetBonesNames(actorName);
+			}
+		
+			final String actor_key = this.getColl().getFullName() + "/" + actorName;
+			String[] names = this.bonesNames.get(actor_key);
+			if(names == null)
+			{
+				names = this.queryBonesNames(actorName);
+				// actors without skeletal data are checked again at the next call
+				if(names.length > 0)
+				{
+					this.bonesNames.put(actor_key, names);
+				}
+			}
+			return names;
+		} finally {
+			MongoRobcogMetrics.End("GetBonesNames", start_ns);
+		}
+	}
+	
+	/**
+	 * Get the index of the bone in the bones array of the actor, -1 if unknown
+	 */
+	public int GetBoneIndex(String actorName, String boneName){
+		final String actor_key = this.getColl().getFullName() + "/" + actorName;
+		Map<String, Integer> indices = this.bonesIndices.get(actor_key);
+		if(indices == null)
+		{
+			// the bones are logged in the same order in every sample
+			final String[] names = this.GetBonesNames(actorName);
+			if(names.length == 0)
 			{
-				// get the current pose
-				traj_list.add(new double[] {
-						((BasicDBObject) curr_doc.get("loc")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("y"),
-						((BasicDBObject) curr_doc.get("loc")).getDouble("z"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("x"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("y"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("z"),
-						((BasicDBObject) curr_doc.get("rot")).getDouble("w")});
-				prev_ts = curr_ts;
-				//System.out.println(curr_doc.toString());
+				return -1;
+			}
+			indices = new HashMap<String, Integer>();
+			for (int i = 0; i < names.length; ++i){
+				indices.put(names[i], i);
 			}
+			this.bonesIndices.put(actor_key, indices);
 		}
-		// close cursor
-		cursor.close();		
-		
-		// cast from dynamic array to standard array
-		return traj_list.toArray(new double[traj_list.size()][7]);
+		final Integer idx = indices.get(boneName);
+		return idx != null ? idx : -1;
 	}
 	
 	/**
-	 * Query the Names of the actor bones
+	 * Helper function querying the Names of the actor bones from the first sample of the actor
 	 */
-	public String[] GetBonesNames(String actorName){
+	private String[] queryBonesNames(String actorName){
 		// create the pipeline operations, first the $match
 		DBObject match_name = new BasicDBObject(
 				"$match", new BasicDBObject("skel_entities.id", actorName)); 
@@ -1006,7 +2680,7 @@ public class MongoRobcogQueries {
 				.build();
 
 		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+		Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
 		
 		// if query has a response, return the names
 		if(cursor.hasNext())
@@ -1041,87 +2715,109 @@ public class MongoRobcogQueries {
 	 * Query the Poses of the actor bones at the given timepoint (or the most recent one)
 	 */
 	public double[][] GetBonesPosesAt(String actorName, double timestamp){
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonesPosesAt");
+		try {
+			// serve the poses from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetBonesPosesAt(actorName, timestamp);
+			}
 		
-		// $and list for querying the $match in the aggregation
-		BasicDBList time_and_name = new BasicDBList();
+			// serve the poses from the prefetched windows if loaded
+			final MongoRobcogPrefetcher curr_prefetcher = this.getPrefetcher();
+			if(curr_prefetcher != null)
+			{
+				final double[][] prefetched_poses = curr_prefetcher.GetBonesPoses(actorName, timestamp);
+				if(prefetched_poses != null)
+				{
+					return prefetched_poses.clone();
+				}
+			}
+		
+			// $and list for querying the $match in the aggregation
+			BasicDBList time_and_name = new BasicDBList();
 
-		// add the timestamp and the actor name
-		time_and_name.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
-		time_and_name.add(new BasicDBObject("skel_entities.id", actorName));
+			// add the timestamp and the actor name
+			time_and_name.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
+			time_and_name.add(new BasicDBObject("skel_entities.id", actorName));
 
-		// create the pipeline operations, first the $match
-		DBObject match_time_and_name = new BasicDBObject(
-				"$match", new BasicDBObject( "$and", time_and_name)); 
+			// create the pipeline operations, first the $match
+			DBObject match_time_and_name = new BasicDBObject(
+					"$match", new BasicDBObject( "$and", time_and_name)); 
 
-		// sort the results in descending order on the timestamp (keep most recent result first)
-		DBObject sort_desc = new BasicDBObject(
-				"$sort", new BasicDBObject("timestamp", -1));
+			// sort the results in descending order on the timestamp (keep most recent result first)
+			DBObject sort_desc = new BasicDBObject(
+					"$sort", new BasicDBObject("timestamp", -1));
 
-		// $limit the result to 1, we only need one pose
-		DBObject limit_result = new BasicDBObject("$limit", 1);
+			// $limit the result to 1, we only need one pose
+			DBObject limit_result = new BasicDBObject("$limit", 1);
 
-		// $unwind actors in order to output only the queried actor
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$skel_entities");
+			// $unwind actors in order to output only the queried actor
+			DBObject unwind_actors = new BasicDBObject("$unwind", "$skel_entities");
 
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("skel_entities.id", actorName));
+			// $match for the given actor name from the unwinded actors
+			DBObject match_actor = new BasicDBObject(
+					"$match", new BasicDBObject("skel_entities.id", actorName));
 
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("bones_pos", "$skel_entities.bones.loc");
-		proj_fields.put("bones_rot", "$skel_entities.bones.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
+			// build the $projection operation
+			DBObject proj_fields = new BasicDBObject("_id", 0);
+			proj_fields.put("timestamp", 1);
+			proj_fields.put("bones_pos", "$skel_entities.bones.loc");
+			proj_fields.put("bones_rot", "$skel_entities.bones.rot");
+			DBObject project = new BasicDBObject("$project", proj_fields);
 
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(
-				match_time_and_name, sort_desc, limit_result, unwind_actors, match_actor, project);
+			// run aggregation
+			List<DBObject> pipeline = Arrays.asList(
+					match_time_and_name, sort_desc, limit_result, unwind_actors, match_actor, project);
 				
 
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
+			AggregationOptions aggregationOptions = AggregationOptions.builder()
+					.batchSize(100)
+					.outputMode(AggregationOptions.OutputMode.CURSOR)
+					.allowDiskUse(true)
+					.build();
 
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+			// get results
+			Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
 
-		// Poses as dynamic array
-		ArrayList<double[]> pose_list = new ArrayList<double[]>();	
+			// Poses as dynamic array
+			ArrayList<double[]> pose_list = new ArrayList<double[]>();	
 		
-		// if query has a response, return the pose
-		if(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject first_doc = (BasicDBObject) cursor.next();	
-			// close cursor since we only care about one value
-			cursor.close();
-			// get the pose
+			// if query has a response, return the pose
+			if(cursor.hasNext())
+			{
+				// get the first document as the next cursor and append the metadata to it
+				BasicDBObject first_doc = (BasicDBObject) cursor.next();	
+				// close cursor since we only care about one value
+				cursor.close();
+				// get the pose
 			
-			BasicDBList pos_list = (BasicDBList) first_doc.get("bones_pos");
-			BasicDBList rot_list = (BasicDBList) first_doc.get("bones_rot");
+				BasicDBList pos_list = (BasicDBList) first_doc.get("bones_pos");
+				BasicDBList rot_list = (BasicDBList) first_doc.get("bones_rot");
 			
-			// pos_list and rot_list length should be always the same
-			for (int i = 0; i < pos_list.size(); ++i)
-			{				
-				pose_list.add(new double[]{
-					((BasicDBObject) pos_list.get(i)).getDouble("x"),
-					((BasicDBObject) pos_list.get(i)).getDouble("y"),
-					((BasicDBObject) pos_list.get(i)).getDouble("z"),
-					((BasicDBObject) rot_list.get(i)).getDouble("x"),
-					((BasicDBObject) rot_list.get(i)).getDouble("y"),
-					((BasicDBObject) rot_list.get(i)).getDouble("z"),
-					((BasicDBObject) rot_list.get(i)).getDouble("w")});		
+				// pos_list and rot_list length should be always the same
+				for (int i = 0; i < pos_list.size(); ++i)
+				{				
+					pose_list.add(new double[]{
+						((BasicDBObject) pos_list.get(i)).getDouble("x"),
+						((BasicDBObject) pos_list.get(i)).getDouble("y"),
+						((BasicDBObject) pos_list.get(i)).getDouble("z"),
+						((BasicDBObject) rot_list.get(i)).getDouble("x"),
+						((BasicDBObject) rot_list.get(i)).getDouble("y"),
+						((BasicDBObject) rot_list.get(i)).getDouble("z"),
+						((BasicDBObject) rot_list.get(i)).getDouble("w")});		
+				}
+				// cast from dynamic array to standard array
+				return pose_list.toArray(new double[pose_list.size()][7]);
 			}
-			// cast from dynamic array to standard array
-			return pose_list.toArray(new double[pose_list.size()][7]);
-		}
-		else
-		{
-			System.out.println("Java - GetBonesPoses - No results found, returning empty list..");
-			return new double[0][0];
+			else
+			{
+				System.out.println("Java - GetBonesPoses - No results found, returning empty list..");
+				return new double[0][0];
+			}
+		} finally {
+			MongoRobcogMetrics.End("GetBonesPosesAt", start_ns);
 		}
 	}
 	
@@ -1146,106 +2842,346 @@ public class MongoRobcogQueries {
 			double start,
 			double end,
 			double deltaT){	
-		// create the pipeline operations, first with the $match check the times
-		DBObject match_time = new BasicDBObject("$match", new BasicDBObject("timestamp", 
-				new BasicDBObject("$gte", start).append("$lte", end)));
-
-		// $unwind actors in order to output only the queried actor
-		DBObject unwind_actors = new BasicDBObject("$unwind", "$skel_entities");
-
-		// $match for the given actor name from the unwinded actors
-		DBObject match_actor = new BasicDBObject(
-				"$match", new BasicDBObject("skel_entities.id", actorName));
-
-		// build the $projection operation
-		DBObject proj_fields = new BasicDBObject("_id", 0);
-		proj_fields.put("timestamp", 1);
-		proj_fields.put("bones_pos", "$skel_entities.bones.loc");
-		proj_fields.put("bones_rot", "$skel_entities.bones.rot");
-		DBObject project = new BasicDBObject("$project", proj_fields);
-
-		// run aggregation
-		List<DBObject> pipeline = Arrays.asList(
-				match_time, unwind_actors, match_actor, project);				
-
-		AggregationOptions aggregationOptions = AggregationOptions.builder()
-				.batchSize(100)
-				.outputMode(AggregationOptions.OutputMode.CURSOR)
-				.allowDiskUse(true)
-				.build();
-
-		// get results
-		Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-
-		// Trajectories as dynamic array (dynamic on the time part)
-		ArrayList<double[][]> bone_trajs = new ArrayList<double[][]>();
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonesTrajs");
+		try {
+	
+			// serve the trajectories from the episode store if set
+			final MongoRobcogEpisodeStore store = this.episodeStore();
+			if(store != null)
+			{
+				return store.GetBonesTrajs(actorName, start, end, deltaT);
+			}
+		
+			// serve the trajectories from the result cache if enabled
+			final String cache_key = this.resultKey("GetBonesTrajs", actorName, start, end, deltaT);
+			final double[][][] cached_trajs = (double[][][]) this.cachedResult(cache_key);
+			if(cached_trajs != null)
+			{
+				return cached_trajs;
+			}
+		
+			// poses of all the bones of every sample as primitive buffer
+			MongoRobcogSampleBuffer trajs_buffer = new MongoRobcogSampleBuffer(7 * 64 * 1024);
+		
+			// stream the poses of the bones into the buffer
+			this.queryPoses(trajs_buffer, "skel_entities", actorName, true, null, start, end, deltaT);
+		
+			// if the query returned nothing, get the most recent pose
+			if(trajs_buffer.GetNrSamples() == 0)
+			{
+				System.out.println("Java - GetBonesTrajs - No results found, returning most recent poses..");
+				return new double[][][] {this.GetBonesPosesAt(actorName, start)};
+			}
+		
+			// return the actor bones trajectories as double[sample][bone][pose]
+			return this.cacheResult(cache_key, trajs_buffer.ToBlocks(7));
+		} finally {
+			MongoRobcogMetrics.End("GetBonesTrajs", start_ns);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////
+	///// INTERPOLATED POSE QUERY FUNCTIONS
+	/**
+	 * Enable/disable the interpolation of GetActorPoseAt and GetBonePoseAt, if enabled the pose
+	 * is interpolated between the bracketing samples instead of the most recent sample
+	 */
+	public void SetPoseInterpolation(boolean enable){
+		this.poseInterpolation = enable;
+	}
+	
+	/**
+	 * Check if GetActorPoseAt and GetBonePoseAt interpolate the poses
+	 */
+	public boolean GetPoseInterpolation(){
+		return this.poseInterpolation;
+	}
+	
+	/**
+	 * Query the Pose of the actor at the given timepoint, interpolated between the bracketing samples
+	 * (LERP of the position, SLERP of the rotation), the most recent pose after the last sample
+	 */
+	public double[] GetActorPoseInterpolatedAt(String actorName, String timestampStr){
+		final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
+		return GetActorPoseInterpolatedAt(actorName, timestamp);
+	}
+	
+	/**
+	 * Query the Pose of the actor at the given timepoint, interpolated between the bracketing samples
+	 * (LERP of the position, SLERP of the rotation), the most recent pose after the last sample
+	 */
+	public double[] GetActorPoseInterpolatedAt(String actorName, double timestamp){
+		return this.GetActorPosesInterpolatedAt(actorName, new double[] {timestamp})[0];
+	}
+	
+	/**
+	 * Query the Poses of the actor at the given timepoints, interpolated between the bracketing samples,
+	 * all the samples are read with one range query (empty poses before the first sample)
+	 */
+	public double[][] GetActorPosesInterpolatedAt(String actorName, double[] timestamps){
+		final long start_ns = MongoRobcogMetrics.Begin("GetActorPosesInterpolatedAt");
+		try {
+			return this.posesAt("entities", actorName, false, null, timestamps, true);
+		} finally {
+			MongoRobcogMetrics.End("GetActorPosesInterpolatedAt", start_ns);
+		}
+	}
+	
+	/**
+	 * Query the Pose of the actors bone at the given timepoint, interpolated between the bracketing samples
+	 */
+	public double[] GetBonePoseInterpolatedAt(String actorName, String boneName, String timestampStr){
+		final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
+		return GetBonePoseInterpolatedAt(actorName, boneName, timestamp);
+	}
+	
+	/**
+	 * Query the Pose of the actors bone at the given timepoint, interpolated between the bracketing samples
+	 */
+	public double[] GetBonePoseInterpolatedAt(String actorName, String boneName, double timestamp){
+		return this.GetBonePosesInterpolatedAt(actorName, boneName, new double[] {timestamp})[0];
+	}
+	
+	/**
+	 * Query the Poses of the actors bone at the given timepoints, interpolated between the bracketing samples,
+	 * all the samples are read with one range query (empty poses before the first sample)
+	 */
+	public double[][] GetBonePosesInterpolatedAt(String actorName, String boneName, double[] timestamps){
+		final long start_ns = MongoRobcogMetrics.Begin("GetBonePosesInterpolatedAt");
+		try {
+			return this.posesAt("skel_entities", actorName, true, boneName, timestamps, true);
+		} finally {
+			MongoRobcogMetrics.End("GetBonePosesInterpolatedAt", start_ns);
+		}
+	}
+	
+	/**
+	 * Helper function returning the poses of the entity (or of its bone) at the given timepoints,
+	 * interpolated or the most recent ones, from the episode cache or from one range query
+	 * covering the samples from the floor of the first timepoint to the ceil of the last one
+	 */
+	private double[][] posesAt(String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double[] timestamps,
+			boolean interpolate){
+		if(timestamps.length == 0)
+		{
+			return new double[0][];
+		}
 		
-		// the number of bones
-		int nr_bones = 0;
+		// serve the poses from the episode store if set
+		final MongoRobcogEpisodeStore store = this.episodeStore();
+		if(store != null)
+		{
+			return bones ? store.GetBonePosesAt(actorName, boneName, timestamps, interpolate)
+					: store.GetActorPosesAt(actorName, timestamps, interpolate);
+		}
 		
-		// if the query returned nothing, get the most recent pose
-		if(!cursor.hasNext())
+		// serve the poses from the episode cache if enabled
+		if(this.episodeCache != null)
 		{
-			System.out.println("Java - GetBonesTrajs - No results found, returning most recent poses..");
-			// get the most recent pose
-			bone_trajs.add(this.GetBonesPosesAt(actorName, start));
-			
-			// set the nr of bones
-			nr_bones = bone_trajs.get(0).length;
-			
-			// cast from dynamic array to standard array
-			return bone_trajs.toArray(new double[bone_trajs.size()][nr_bones][7]);
+			final double[][] cached_poses = bones
+					? this.episodeCache.GetBonePosesAt(this.getColl(), actorName, boneName, timestamps, interpolate)
+					: this.episodeCache.GetActorPosesAt(this.getColl(), actorName, timestamps, interpolate);
+			if(cached_poses != null)
+			{
+				return cached_poses;
+			}
+		}
+		
+		// interval covered by the timestamps
+		double min_ts = timestamps[0];
+		double max_ts = timestamps[0];
+		for (double ts : timestamps){
+			min_ts = Math.min(min_ts, ts);
+			max_ts = Math.max(max_ts, ts);
 		}
 		
-		// timestamp used for deltaT
-		double prev_ts = 0;
+		// read the bracketing samples, with a single timestamp only the floor and the ceil sample are needed
+		MongoRobcogSampleBuffer poses_buffer = new MongoRobcogSampleBuffer(7 * 64);
+		this.bracketingPoses(poses_buffer, arrayField, actorName, bones, boneName, 
+				min_ts, max_ts, timestamps.length == 1 ? 2 : 0);
+		
+		return MongoRobcogInterpolation.Resample(poses_buffer.GetTimestamps(), poses_buffer.GetValues(),
+				poses_buffer.GetNrSamples(), timestamps, interpolate);
+	}
+	
+	/**
+	 * Helper function reading the poses of the entity (or of its bone) from the most recent sample
+	 * at or before the start, until (and including) the first sample at or after the end,
+	 * maxSamples limits the nr of read samples (0 for no limit)
+	 */
+	private void bracketingPoses(MongoRobcogSampleBuffer buffer,
+			String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			int maxSamples){
+		// timestamp of the most recent sample at or before the start (index lookup)
+		DBObject floor_query = new BasicDBObject(arrayField + ".id", actorName);
+		floor_query.put("timestamp", new BasicDBObject("$lte", start));
+		DBCursor floor_cursor = this.getColl().find(floor_query, new BasicDBObject("_id", 0).append("timestamp", 1))
+				.sort(new BasicDBObject("timestamp", -1))
+				.limit(1);
+		final double floor_ts = floor_cursor.hasNext()
+				? ((BasicDBObject) floor_cursor.next()).getDouble("timestamp") : start;
+		floor_cursor.close();
+		
+		// one range query from the floor sample, every sample is kept
+		DBCursor cursor = this.posesCursor(buffer, arrayField, actorName, bones, boneName, 
+				floor_ts, Double.MAX_VALUE, Double.NEGATIVE_INFINITY);
+		if(maxSamples > 0)
+		{
+			cursor.limit(maxSamples).batchSize(maxSamples);
+		}
 		
-		// if query has a response, return the pose
+		// stop reading once the ceil sample of the end is in the buffer
 		while(cursor.hasNext())
 		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
+			cursor.next();
+			final int nr_samples = buffer.GetNrSamples();
+			if(nr_samples > 0 && buffer.GetTimestamps()[nr_samples - 1] >= end)
 			{
-				// get the list of bones pos and rot
-				BasicDBList pos_list = (BasicDBList) curr_doc.get("bones_pos");
-				BasicDBList rot_list = (BasicDBList) curr_doc.get("bones_rot");
-				
-				// set the nr of bones
-				nr_bones = pos_list.size();
-				
-				// Poses as dynamic array (dynamic on the nr of bones part)
-				ArrayList<double[]> pose_list = new ArrayList<double[]>();
-				
-				// pos_list and rot_list length should be always the same
-				for (int i = 0; i < nr_bones; ++i)
-				{				
-					pose_list.add(new double[]{
-							((BasicDBObject) pos_list.get(i)).getDouble("x"),
-							((BasicDBObject) pos_list.get(i)).getDouble("y"),
-							((BasicDBObject) pos_list.get(i)).getDouble("z"),
-							((BasicDBObject) rot_list.get(i)).getDouble("x"),
-							((BasicDBObject) rot_list.get(i)).getDouble("y"),
-							((BasicDBObject) rot_list.get(i)).getDouble("z"),
-							((BasicDBObject) rot_list.get(i)).getDouble("w")});
-				}
-				// cast from dynamic array to standard array
-				bone_trajs.add(pose_list.toArray(new double[nr_bones][7]));				
-				prev_ts = curr_ts;
+				break;
 			}
 		}
 		// close cursor
-		cursor.close();	
+		cursor.close();
+	}
+	
+	
+	////////////////////////////////////////////////////////////////
+	///// STREAMING QUERY FUNCTIONS
+	/**
+	 * Stream the Traj of the actor between the given timepoints in chunks of max chunkSize poses
+	 */
+	public MongoRobcogTrajCursor StreamActorTraj(String actorName,
+			String start,
+			String end,
+			double deltaT,
+			int chunkSize){
+		// transform the knowrob time to double with 3 decimal precision
+		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
+		
+		return StreamActorTraj(actorName, start_ts, end_ts, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Stream the Traj of the actor between the given timepoints in chunks of max chunkSize poses,
+	 * served from the episode store if set, otherwise from the db (the deltaT downsampling
+	 * is always done on the client and the chunks are never cached, see streamPoses)
+	 */
+	public MongoRobcogTrajCursor StreamActorTraj(String actorName,
+			double start,
+			double end,
+			double deltaT,
+			int chunkSize){
+		return this.streamPoses(7 * chunkSize, "entities", actorName, false, null, start, end, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Stream the Traj of the actors bone between the given timepoints in chunks of max chunkSize poses
+	 */
+	public MongoRobcogTrajCursor StreamBoneTraj(String actorName,
+			String boneName,
+			String start,
+			String end,
+			double deltaT,
+			int chunkSize){
+		// transform the knowrob time to double with 3 decimal precision
+		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
+		
+		return StreamBoneTraj(actorName, boneName, start_ts, end_ts, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Stream the Traj of the actors bone between the given timepoints in chunks of max chunkSize poses,
+	 * served from the episode store if set, otherwise from the db (the deltaT downsampling
+	 * is always done on the client and the chunks are never cached, see streamPoses)
+	 */
+	public MongoRobcogTrajCursor StreamBoneTraj(String actorName,
+			String boneName,
+			double start,
+			double end,
+			double deltaT,
+			int chunkSize){
+		return this.streamPoses(7 * chunkSize, "skel_entities", actorName, true, boneName, start, end, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Stream the Trajectories of the actor bones between the given timepoints,
+	 * in chunks of max chunkSize samples (every sample holds the poses of all the bones)
+	 */
+	public MongoRobcogTrajCursor StreamBonesTrajs(String actorName,
+			String start,
+			String end,
+			double deltaT,
+			int chunkSize){
+		// transform the knowrob time to double with 3 decimal precision
+		final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+		final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
+		
+		return StreamBonesTrajs(actorName, start_ts, end_ts, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Stream the Trajectories of the actor bones between the given timepoints,
+	 * in chunks of max chunkSize samples (every sample holds the poses of all the bones),
+	 * served from the episode store if set, otherwise from the db (the deltaT downsampling
+	 * is always done on the client and the chunks are never cached, see streamPoses)
+	 */
+	public MongoRobcogTrajCursor StreamBonesTrajs(String actorName,
+			double start,
+			double end,
+			double deltaT,
+			int chunkSize){
+		return this.streamPoses(7 * 64 * chunkSize, "skel_entities", actorName, true, null, start, end, deltaT, chunkSize);
+	}
+	
+	/**
+	 * Helper function creating the streaming cursor over the poses of the entity (or of its bones),
+	 * a db store streams its own collection, the trajectory of the other episode stores is copied
+	 * with its timestamps, otherwise the db is streamed: the result cache and the episode cache are bypassed 
+	 * on purpose (they hold whole trajectories without timestamps, a stream keeps only one chunk in 
+	 * memory) and the server side downsampling is not used (the aggregation windows are not streamed)
+	 */
+	private MongoRobcogTrajCursor streamPoses(int capacity,
+			String arrayField,
+			String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			double deltaT,
+			int chunkSize){
+		MongoRobcogSampleBuffer buffer = new MongoRobcogSampleBuffer(capacity);
+		
+		// the db store can wrap another collection, it is streamed by the queries of that collection
+		final MongoRobcogEpisodeStore store = this.episodeStore();
+		if(store instanceof MongoRobcogDBStore)
+		{
+			return ((MongoRobcogDBStore) store).getQueries().streamPoses(capacity, 
+					arrayField, actorName, bones, boneName, start, end, deltaT, chunkSize);
+		}
 		
-		// return the actor bones trajectories as float[][][] 
-		return bone_trajs.toArray(new double[bone_trajs.size()][nr_bones][7]);
+		// the trajectory of the other stores is handed out in chunks
+		if(store != null)
+		{
+			store.CopyTraj(actorName, bones, boneName, start, end, deltaT, buffer);
+			return new MongoRobcogTrajCursor(buffer, chunkSize);
+		}
+		return new MongoRobcogTrajCursor(
+				this.posesCursor(buffer, arrayField, actorName, bones, boneName, start, end, deltaT),
+				buffer, chunkSize);
 	}
 	
+	
 	////////////////////////////////////////////////////////////////
 	///// VIS QUERY FUNCTIONS	
 	/**
@@ -1257,7 +3193,7 @@ public class MongoRobcogQueries {
 			String color,
 			float scale){
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "pose");
 		// create the marker
 		this.ViewActorPoseAt(actorName, timestampStr, marker_id, markerType, color, scale);
 	}
@@ -1271,7 +3207,7 @@ public class MongoRobcogQueries {
 			String color,
 			float scale){
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "pose");
 		// create the marker
 		this.ViewActorPoseAt(actorName, timestamp, marker_id, markerType, color, scale);
 	}
@@ -1285,15 +3221,16 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){
-		// get the pose of the actor
-		final double[] pose = this.GetActorPoseAt(actorName, timestampStr);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorPoseAt");
+		try {
+			// get the pose of the actor
+			final double[] pose = this.GetActorPoseAt(actorName, timestampStr);
 	
-		// return position as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
-		pos.add(new Vector3d(pose[0],pose[1],pose[2]));
-		
-		// create the marker
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// create the marker
+			this.pointMarker(pose, markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorPoseAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1305,15 +3242,16 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){
-		// get the pose of the actor
-		final double[] pose = this.GetActorPoseAt(actorName, timestamp);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorPoseAt");
+		try {
+			// get the pose of the actor
+			final double[] pose = this.GetActorPoseAt(actorName, timestamp);
 	
-		// return position as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
-		pos.add(new Vector3d(pose[0],pose[1],pose[2]));
-		
-		// create the marker
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// create the marker
+			this.pointMarker(pose, markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorPoseAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1324,7 +3262,7 @@ public class MongoRobcogQueries {
 			String timestampStr,
 			String meshPath){
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "mesh");
 		// create the marker
 		this.ViewActorMeshAt(actorName, timestampStr, marker_id, meshPath);
 	}
@@ -1337,7 +3275,7 @@ public class MongoRobcogQueries {
 			double timestamp,
 			String meshPath){
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "mesh");
 		// create the marker
 		this.ViewActorMeshAt(actorName, timestamp, marker_id, meshPath);
 	}
@@ -1350,11 +3288,16 @@ public class MongoRobcogQueries {
 			String timestampStr, 
 			String markerID,
 			String meshPath){
-		// get the pose of the actor
-		final double[] pose = this.GetActorPoseAt(actorName, timestampStr);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorMeshAt");
+		try {
+			// get the pose of the actor
+			final double[] pose = this.GetActorPoseAt(actorName, timestampStr);
 		
-		// create mesh marker
-		this.CreateMeshMarker(pose, markerID, meshPath);
+			// create mesh marker
+			this.meshMarker(pose, markerID, meshPath, this.markerAnimation, MARKERS_NS, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorMeshAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1365,13 +3308,18 @@ public class MongoRobcogQueries {
 			double timestamp, 
 			String markerID,
 			String meshPath){
-		// get the pose of the actor
-		final double[] pose = this.GetActorPoseAt(actorName, timestamp);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorMeshAt");
+		try {
+			// get the pose of the actor
+			final double[] pose = this.GetActorPoseAt(actorName, timestamp);
 		
-		// create mesh marker
-		this.CreateMeshMarker(pose, markerID, meshPath);
+			// create mesh marker
+			this.meshMarker(pose, markerID, meshPath, this.markerAnimation, MARKERS_NS, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorMeshAt", start_ns);
+		}
 	}
-
+	
 	/**
 	 * Get the poses of the actorss bones meshes at the given timestamp
 	 * view results as rviz markers
@@ -1380,7 +3328,7 @@ public class MongoRobcogQueries {
 			String timestampStr,
 			String meshFolderPath){	
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "bones");
 		// create the marker
 		this.ViewBonesMeshesAt(actorName, timestampStr, marker_id, meshFolderPath);
 	}
@@ -1393,7 +3341,7 @@ public class MongoRobcogQueries {
 			double timestamp,
 			String meshFolderPath){	
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "bones");
 		// create the marker
 		this.ViewBonesMeshesAt(actorName, timestamp, marker_id, meshFolderPath);
 	}
@@ -1406,14 +3354,21 @@ public class MongoRobcogQueries {
 			String timestampStr,
 			String markerID,
 			String meshFolderPath){		
-		// get the names of the bones
-		final String[] names = this.GetBonesNames(actorName); 
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesMeshesAt");
+		try {
+		
+			// get the names of the bones
+			final String[] names = this.GetBonesNames(actorName); 
 	
-		// pos xyz rot wxyz for every bone
-		final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestampStr);
-
-		// create the bones mesh markers
-		this.CreateBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath);
+			// pos xyz rot wxyz for every bone
+			final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestampStr);
+
+			// create the bones mesh markers
+			this.createBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath, 
+					MARKERS_NS, this.markerAnimation, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesMeshesAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1424,14 +3379,21 @@ public class MongoRobcogQueries {
 			double timestamp,
 			String markerID,
 			String meshFolderPath){		
-		// get the names of the bones
-		final String[] names = this.GetBonesNames(actorName); 
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesMeshesAt");
+		try {
+		
+			// get the names of the bones
+			final String[] names = this.GetBonesNames(actorName); 
 	
-		// pos xyz rot wxyz for every bone
-		final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestamp);
-
-		// create the bones mesh markers
-		this.CreateBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath);
+			// pos xyz rot wxyz for every bone
+			final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestamp);
+
+			// create the bones mesh markers
+			this.createBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath, 
+					MARKERS_NS, this.markerAnimation, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesMeshesAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1442,7 +3404,7 @@ public class MongoRobcogQueries {
 			String timestampStr,
 			String meshFolderPath){	
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "skel");
 		// create the marker
 		this.ViewSkeletalMeshAt(actorName, timestampStr, marker_id, meshFolderPath);
 	}
@@ -1455,7 +3417,7 @@ public class MongoRobcogQueries {
 			double timestamp,
 			String meshFolderPath){	
 		// gen id
-		final String marker_id = actorName + "_" + this.randString(4);
+		final String marker_id = this.markerId(actorName, "skel");
 		// create the marker
 		this.ViewSkeletalMeshAt(actorName, timestamp, marker_id, meshFolderPath);
 	}
@@ -1468,14 +3430,21 @@ public class MongoRobcogQueries {
 			String timestampStr,
 			String markerID,
 			String meshFolderPath){		
-		// get the names of the bones
-		final String[] names = this.GetBonesNames(actorName); 
+		final long start_ns = MongoRobcogMetrics.Begin("ViewSkeletalMeshAt");
+		try {
+		
+			// get the names of the bones
+			final String[] names = this.GetBonesNames(actorName); 
 	
-		// pos xyz rot wxyz for every bone
-		final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestampStr);
-
-		// create the bones mesh markers
-		this.CreateSkeletalMeshMarkers(bone_poses, names, markerID, meshFolderPath);
+			// pos xyz rot wxyz for every bone
+			final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestampStr);
+
+			// create the bones mesh markers
+			this.createBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath, 
+					SKELETAL_MESHES_NS, this.markerAnimation, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewSkeletalMeshAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1486,16 +3455,62 @@ public class MongoRobcogQueries {
 			double timestamp,
 			String markerID,
 			String meshFolderPath){		
-		// get the names of the bones
-		final String[] names = this.GetBonesNames(actorName); 
+		final long start_ns = MongoRobcogMetrics.Begin("ViewSkeletalMeshAt");
+		try {
+		
+			// get the names of the bones
+			final String[] names = this.GetBonesNames(actorName); 
 	
-		// pos xyz rot wxyz for every bone
-		final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestamp);
-
-		// create the bones mesh markers
-		this.CreateSkeletalMeshMarkers(bone_poses, names, markerID, meshFolderPath);
+			// pos xyz rot wxyz for every bone
+			final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestamp);
+
+			// create the bones mesh markers
+			this.createBonesMeshMarkers(bone_poses, names, markerID, meshFolderPath, 
+					SKELETAL_MESHES_NS, this.markerAnimation, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewSkeletalMeshAt", start_ns);
+		}
 	}
-
+	
+	/**
+	 * Animate the skeletal mesh of the actor at the given timestamp, the bone markers keep
+	 * stable ids and only the changed bone poses are pushed (independent of the marker animation mode)
+	 */
+	public void AnimateSkeletalMeshAt(String actorName,
+			String timestampStr,
+			String meshFolderPath){
+		final long start_ns = MongoRobcogMetrics.Begin("AnimateSkeletalMeshAt");
+		try {
+			final double timestamp = (double) Math.round(parseTime_d(timestampStr) * 1000) / 1000;
+			this.AnimateSkeletalMeshAt(actorName, timestamp, meshFolderPath);
+		} finally {
+			MongoRobcogMetrics.End("AnimateSkeletalMeshAt", start_ns);
+		}
+	}
+	
+	/**
+	 * Animate the skeletal mesh of the actor at the given timestamp, the bone markers keep
+	 * stable ids and only the changed bone poses are pushed (independent of the marker animation mode)
+	 */
+	public void AnimateSkeletalMeshAt(String actorName,
+			double timestamp,
+			String meshFolderPath){
+		final long start_ns = MongoRobcogMetrics.Begin("AnimateSkeletalMeshAt");
+		try {
+			// get the names of the bones
+			final String[] names = this.GetBonesNames(actorName); 
+	
+			// pos xyz rot wxyz for every bone
+			final double[][] bone_poses = this.GetBonesPosesAt(actorName, timestamp);
+
+			// create or move the bones mesh markers
+			this.createBonesMeshMarkers(bone_poses, names, actorName + "_skel", meshFolderPath, 
+					SKELETAL_MESHES_NS, true, actorName);
+		} finally {
+			MongoRobcogMetrics.End("AnimateSkeletalMeshAt", start_ns);
+		}
+	}
+	
 	/**
 	 * View and return the Pose of the actors bone at the given timepoint (or the most recent one)
 	 */
@@ -1506,7 +3521,7 @@ public class MongoRobcogQueries {
 			String color,
 			float scale){	
 		// gen id
-		final String marker_id = boneName + "_" + this.randString(4);
+		final String marker_id = this.markerId(boneName, "bone");
 		// create the marker
 		this.ViewBonePoseAt(actorName, boneName, timestampStr, marker_id, markerType, color, scale);
 	}
@@ -1521,7 +3536,7 @@ public class MongoRobcogQueries {
 			String color,
 			float scale){	
 		// gen id
-		final String marker_id = boneName + "_" + this.randString(4);
+		final String marker_id = this.markerId(boneName, "bone");
 		// create the marker
 		this.ViewBonePoseAt(actorName, boneName, timestamp, marker_id, markerType, color, scale);
 	}
@@ -1536,15 +3551,17 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){	
-		// get the pose of the actor
-		final double[] pose = this.GetBonePoseAt(actorName, boneName, timestampStr);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonePoseAt");
+		try {
 	
-		// return position as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
-		pos.add(new Vector3d(pose[0],pose[1],pose[2]));
-		
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// get the pose of the actor
+			final double[] pose = this.GetBonePoseAt(actorName, boneName, timestampStr);
+	
+			// create the markers
+			this.pointMarker(pose, markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonePoseAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1557,15 +3574,17 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){	
-		// get the pose of the actor
-		final double[] pose = this.GetBonePoseAt(actorName, boneName, timestamp);
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonePoseAt");
+		try {
 	
-		// return position as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
-		pos.add(new Vector3d(pose[0],pose[1],pose[2]));
-		
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// get the pose of the actor
+			final double[] pose = this.GetBonePoseAt(actorName, boneName, timestamp);
+	
+			// create the markers
+			this.pointMarker(pose, markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonePoseAt", start_ns);
+		}
 	}
 	
 	/**
@@ -1611,18 +3630,17 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){		
-		// get the trajectory
-		final double[][] traj = this.GetActorTraj(actorName, start, end, deltaT);
-
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorTraj");
+		try {
+		
+			// get the trajectory
+			final double[][] traj = this.GetActorTraj(actorName, start, end, deltaT);
 
-		// add trajectory points
-		for (int i = 0; i < traj.length; i++){
-			pos.add(new Vector3d(traj[i][0], traj[i][1], traj[i][2]));
+			// create the markers
+			this.createMarkers(this.msgPoints(traj), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorTraj", start_ns);
 		}
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
 	
 	/**
@@ -1636,20 +3654,19 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){		
-		// get the trajectory
-		final double[][] traj = this.GetActorTraj(actorName, start, end, deltaT);
-
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewActorTraj");
+		try {
+		
+			// get the trajectory
+			final double[][] traj = this.GetActorTraj(actorName, start, end, deltaT);
 
-		// add trajectory points
-		for (int i = 0; i < traj.length; i++){
-			pos.add(new Vector3d(traj[i][0], traj[i][1], traj[i][2]));
+			// create the markers
+			this.createMarkers(this.msgPoints(traj), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewActorTraj", start_ns);
 		}
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
-
+	
 	/**
 	 * View and return the Pose of the actor between the given timepoints
 	 */
@@ -1696,19 +3713,16 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){
-		// get the trajectory
-		final double[][] traj = this.GetBoneTraj(actorName, boneName, start, end, deltaT);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBoneTraj");
+		try {
+			// get the trajectory
+			final double[][] traj = this.GetBoneTraj(actorName, boneName, start, end, deltaT);
 		
-		// add trajectory points
-		for (int i = 0; i < traj.length; i++){
-			pos.add(new Vector3d(traj[i][0], traj[i][1], traj[i][2]));
-		}	
-	
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// create the markers
+			this.createMarkers(this.msgPoints(traj), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBoneTraj", start_ns);
+		}
 	}
 	
 	/**
@@ -1723,21 +3737,18 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){
-		// get the trajectory
-		final double[][] traj = this.GetBoneTraj(actorName, boneName, start, end, deltaT);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBoneTraj");
+		try {
+			// get the trajectory
+			final double[][] traj = this.GetBoneTraj(actorName, boneName, start, end, deltaT);
 		
-		// add trajectory points
-		for (int i = 0; i < traj.length; i++){
-			pos.add(new Vector3d(traj[i][0], traj[i][1], traj[i][2]));
-		}	
-	
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
+			// create the markers
+			this.createMarkers(this.msgPoints(traj), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBoneTraj", start_ns);
+		}
 	}
-
+	
 	/**
 	 * View and return the Poses of the actor bones at the given timepoint (or the most recent one)
 	 */
@@ -1775,19 +3786,16 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){
-		// get the bones poses
-		final double[][] poses = this.GetBonesPosesAt(actorName, timestampStr);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesPoses");
+		try {
+			// get the bones poses
+			final double[][] poses = this.GetBonesPosesAt(actorName, timestampStr);
 		
-		// add bones points
-		for (int i = 0; i < poses.length; i++){
-			pos.add(new Vector3d(poses[i][0], poses[i][1], poses[i][2]));
+			// create the markers
+			this.createMarkers(this.msgPoints(poses), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesPoses", start_ns);
 		}
-	
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
 	
 	/**
@@ -1799,21 +3807,18 @@ public class MongoRobcogQueries {
 			String markerType,
 			String color,
 			float scale){
-		// get the bones poses
-		final double[][] poses = this.GetBonesPosesAt(actorName, timestamp);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesPoses");
+		try {
+			// get the bones poses
+			final double[][] poses = this.GetBonesPosesAt(actorName, timestamp);
 		
-		// add bones points
-		for (int i = 0; i < poses.length; i++){
-			pos.add(new Vector3d(poses[i][0], poses[i][1], poses[i][2]));
+			// create the markers
+			this.createMarkers(this.msgPoints(poses), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesPoses", start_ns);
 		}
-	
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
-
+	
 	/**
 	 * View and return the Trajectories of the actor bones at the given timepoint (or the most recent one)
 	 */
@@ -1857,21 +3862,16 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){
-		// call further using double for timestamps
-		final double[][][] trajs = this.GetBonesTrajs(actorName, start, end, deltaT);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesTrajs");
+		try {
+			// call further using double for timestamps
+			final double[][][] trajs = this.GetBonesTrajs(actorName, start, end, deltaT);
 		
-		// add trajectory points to the marker
-		for (int i = 0; i < trajs.length; i++){
-			for(int j = 0; j < trajs[i].length; j++){				
-				pos.add(new Vector3d(trajs[i][j][0], trajs[i][j][1], trajs[i][j][2]));
-			}
+			// create the markers from the poses of all the samples and bones
+			this.createMarkers(this.msgPoints(flattenBlocks(trajs)), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesTrajs", start_ns);
 		}
-		
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
 	
 	/**
@@ -1885,23 +3885,18 @@ public class MongoRobcogQueries {
 			String color,
 			float scale,
 			double deltaT){
-		// call further using double for timestamps
-		final double[][][] trajs = this.GetBonesTrajs(actorName, start, end, deltaT);
-		
-		// positions as arraylist
-		ArrayList<Vector3d> pos = new ArrayList<Vector3d>();
+		final long start_ns = MongoRobcogMetrics.Begin("ViewBonesTrajs");
+		try {
+			// call further using double for timestamps
+			final double[][][] trajs = this.GetBonesTrajs(actorName, start, end, deltaT);
 		
-		// add trajectory points to the marker
-		for (int i = 0; i < trajs.length; i++){
-			for(int j = 0; j < trajs[i].length; j++){				
-				pos.add(new Vector3d(trajs[i][j][0], trajs[i][j][1], trajs[i][j][2]));
-			}
+			// create the markers from the poses of all the samples and bones
+			this.createMarkers(this.msgPoints(flattenBlocks(trajs)), markerID, markerType, color, scale, actorName);
+		} finally {
+			MongoRobcogMetrics.End("ViewBonesTrajs", start_ns);
 		}
-		
-		// create the markers
-		this.CreateMarkers(pos, markerID, markerType, color, scale);
 	}
-
+	
 	////////////////////////////////////////////////////////////////
 	///// ADD RATING
 	public void AddRating(String RatingInst,
@@ -1959,62 +3954,76 @@ public class MongoRobcogQueries {
     }
 
     public double GetEEGValueAt(int channelNr, double timestamp){
-        // EEG channel name
-        final String eeg_channel_path = "eeg.c" + Integer.toString(channelNr);
+        final long start_ns = MongoRobcogMetrics.Begin("GetEEGValueAt");
+        try {
+            // serve the value from the episode store if set
+            final MongoRobcogEpisodeStore store = this.episodeStore();
+            if(store != null)
+            {
+                final int channel_idx = Arrays.asList(store.GetEEGChannels()).indexOf("c" + channelNr);
+                final double[] values = store.GetAllEEGValuesAt(timestamp);
+                return channel_idx >= 0 && channel_idx < values.length ? values[channel_idx] : 0;
+            }
+        
+            // EEG channel name
+            final String eeg_channel_path = "eeg.c" + Integer.toString(channelNr);
 
-        // $and list for querying the $match in the aggregation
-        BasicDBList time_and_channel = new BasicDBList();
+            // $and list for querying the $match in the aggregation
+            BasicDBList time_and_channel = new BasicDBList();
 
-        // add the timestamp and the actor name
-        time_and_channel.add(new BasicDBObject(eeg_channel_path, new BasicDBObject("$exists", true)));
-        time_and_channel.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
+            // add the timestamp and the actor name
+            time_and_channel.add(new BasicDBObject(eeg_channel_path, new BasicDBObject("$exists", true)));
+            time_and_channel.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
 
-        // create the pipeline operations, first the $match
-        DBObject match_time_and_channel = new BasicDBObject(
-                "$match", new BasicDBObject( "$and", time_and_channel)); 
+            // create the pipeline operations, first the $match
+            DBObject match_time_and_channel = new BasicDBObject(
+                    "$match", new BasicDBObject( "$and", time_and_channel)); 
 
-                // sort the results in descending order on the timestamp (keep most recent result first)
-        DBObject sort_desc = new BasicDBObject(
-                "$sort", new BasicDBObject("timestamp", -1));
+                    // sort the results in descending order on the timestamp (keep most recent result first)
+            DBObject sort_desc = new BasicDBObject(
+                    "$sort", new BasicDBObject("timestamp", -1));
 
-        // $limit the result to 1, we only need one pose
-        DBObject limit_result = new BasicDBObject("$limit", 1);
+            // $limit the result to 1, we only need one pose
+            DBObject limit_result = new BasicDBObject("$limit", 1);
 
-        // build the $projection operation
-        DBObject proj_fields = new BasicDBObject("_id", 0);
-        proj_fields.put("timestamp", 1);
-        proj_fields.put("eeg", "$" + eeg_channel_path);        
-        DBObject project = new BasicDBObject("$project", proj_fields);
+            // build the $projection operation
+            DBObject proj_fields = new BasicDBObject("_id", 0);
+            proj_fields.put("timestamp", 1);
+            proj_fields.put("eeg", "$" + eeg_channel_path);        
+            DBObject project = new BasicDBObject("$project", proj_fields);
 
-        // run aggregation
-        List<DBObject> pipeline = Arrays.asList(match_time_and_channel, sort_desc, limit_result, project);
+            // run aggregation
+            List<DBObject> pipeline = Arrays.asList(match_time_and_channel, sort_desc, limit_result, project);
         
-        AggregationOptions aggregationOptions = AggregationOptions.builder()
-                .batchSize(100)
-                .outputMode(AggregationOptions.OutputMode.CURSOR)
-                .allowDiskUse(true)
-                .build();
-
-        // get results
-        Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-
-        // if query has a response, return the pose
-        if(cursor.hasNext())
-        {
-            // get the first document as the next cursor and append the metadata to it
-            BasicDBObject first_doc = (BasicDBObject) cursor.next();            
-            // close cursor
-            cursor.close();
-            // get the pose
-            return first_doc.getDouble("eeg");
-        }
-        else
-        {
-            System.out.println("Java - GetEEGValueAt - No results found, returning empty list..");           
-            return 0;
+            AggregationOptions aggregationOptions = AggregationOptions.builder()
+                    .batchSize(100)
+                    .outputMode(AggregationOptions.OutputMode.CURSOR)
+                    .allowDiskUse(true)
+                    .build();
+
+            // get results
+            Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
+
+            // if query has a response, return the pose
+            if(cursor.hasNext())
+            {
+                // get the first document as the next cursor and append the metadata to it
+                BasicDBObject first_doc = (BasicDBObject) cursor.next();            
+                // close cursor
+                cursor.close();
+                // get the pose
+                return first_doc.getDouble("eeg");
+            }
+            else
+            {
+                System.out.println("Java - GetEEGValueAt - No results found, returning empty list..");           
+                return 0;
+            }
+        } finally {
+            MongoRobcogMetrics.End("GetEEGValueAt", start_ns);
         }
     }
-
+    
 
     /**
      * Query the values of the EEG channel between the timestamps
@@ -2023,105 +4032,69 @@ public class MongoRobcogQueries {
             String start,
             String end,
             double deltaT){
-        // transform the knowrob time to double with 3 decimal precision
-        final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
-        final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
-        
-        // EEG channel name
-        final String eeg_channel_path = "eeg.c" + Integer.toString(channelNr);
-
-        // $and list for querying the $match in the aggregation
-        BasicDBList time_and_channel = new BasicDBList();
-
-        // add the timestamp and the actor name
-        time_and_channel.add(new BasicDBObject(eeg_channel_path, new BasicDBObject("$exists", true)));
-        time_and_channel.add(new BasicDBObject("timestamp", new BasicDBObject("$gte", start_ts).append("$lte", end_ts)));
-
-        // create the pipeline operations, first the $match
-        DBObject match_time_and_channel = new BasicDBObject(
-                "$match", new BasicDBObject( "$and", time_and_channel)); 
-
-                // sort the results in descending order on the timestamp (keep most recent result first)
-        DBObject sort_inc = new BasicDBObject(
-                "$sort", new BasicDBObject("timestamp", 1));
-
-
-        // build the $projection operation
-        DBObject proj_fields = new BasicDBObject("_id", 0);
-        proj_fields.put("timestamp", 1);
-        proj_fields.put("eeg", "$" + eeg_channel_path);        
-        DBObject project = new BasicDBObject("$project", proj_fields);
-
-        // run aggregation
-        List<DBObject> pipeline = Arrays.asList(match_time_and_channel, sort_inc, project);
-
-        AggregationOptions aggregationOptions = AggregationOptions.builder()
-                .batchSize(100)
-                .outputMode(AggregationOptions.OutputMode.CURSOR)
-                .allowDiskUse(true)
-                .build();
-
-        // get results
-        Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+        final long start_ns = MongoRobcogMetrics.Begin("GetEEGValues");
+        try {
+            // transform the knowrob time to double with 3 decimal precision
+            final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+            final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
         
-        // Traj as dynamic array
-        ArrayList<Double> traj_list = new ArrayList<Double>();
+            // EEG channel name
+            final String eeg_channel = "c" + Integer.toString(channelNr);
         
-        // if the query returned nothing, get the most recent pose
-        if(!cursor.hasNext())
-        {
-            System.out.println("Java - GetEEGValues - No results found, returning most recent pose..");
-            // get the most recent pose
-            traj_list.add(this.GetEEGValueAt(channelNr, start));
-            
-            // cast from dynamic array to standard array
-            // java does not support this, has to be Double (as class)
-            //return traj_list.toArray(new double[traj_list.size()]);  
-            double[] traj_arr = new double[traj_list.size()];
-            for (int i = 0; i < traj_list.size(); i++) {
-                traj_arr[i] = traj_list.get(i);                // java 1.5+ style (outboxing)
-            }
-            return traj_arr;
-        }
+            // matrix with the single channel
+            MongoRobcogEEGMatrix eeg_matrix = this.GetEEGMatrix(
+                    new String[] {eeg_channel}, start_ts, end_ts, deltaT);
         
-        // timestamp used for deltaT
-        double prev_ts = 0;
-                
-        // while query has a response, return the pose
-        while(cursor.hasNext())
-        {
-            // get the first document as the next cursor and append the metadata to it
-            BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-            
-            // get the curr timestamp
-            double curr_ts = curr_doc.getDouble("timestamp");
-            
-            // if time diff > then deltaT add position to trajectory
-            if(curr_ts - prev_ts > deltaT)
-            {           
-                // get the current pose
-                traj_list.add(curr_doc.getDouble("eeg"));
-                prev_ts = curr_ts;
-                //System.out.println(curr_doc.toString());
+            // if the query returned nothing, get the most recent value
+            if(eeg_matrix.GetNrSamples() == 0)
+            {
+                System.out.println("Java - GetEEGValues - No results found, returning most recent pose..");
+                return new double[] {this.GetEEGValueAt(channelNr, start)};
             }
-        }
-        // close cursor
-        cursor.close();     
         
-        // cast from dynamic array to standard array
-        // java does not support this, has to be Double (as class)
-        //return traj_list.toArray(new double[traj_list.size()]);  
-        double[] traj_arr = new double[traj_list.size()];
-        for (int i = 0; i < traj_list.size(); i++) {
-            traj_arr[i] = traj_list.get(i);                // java 1.5+ style (outboxing)
+            // with one channel the row-major values are the channel values
+            return eeg_matrix.GetValues();
+        } finally {
+            MongoRobcogMetrics.End("GetEEGValues", start_ns);
         }
-        return traj_arr;
     }
-
+    
 	// ======================== ALL EEG Channels ============================
 
     /**
-     * Query the all channel EEG values at the given timepoint (or the most recent one)
+     * Query the names of the EEG channels of the episode, discovered from the data
+     * and sorted by the channel nr (c1, c2, .., c10, ..)
+     */
+    public String[] GetEEGChannels(){
+        final long start_ns = MongoRobcogMetrics.Begin("GetEEGChannels");
+        try {
+            // serve the channels from the episode store if set
+            final MongoRobcogEpisodeStore store = this.episodeStore();
+            if(store != null)
+            {
+                return store.GetEEGChannels();
+            }
+        
+            final String coll_name = this.getColl().getFullName();
+            String[] channels = this.eegChannels.get(coll_name);
+            if(channels == null)
+            {
+                channels = this.discoverEEGChannels();
+                // episodes without eeg data are checked again at the next call
+                if(channels.length > 0)
+                {
+                    this.eegChannels.put(coll_name, channels);
+                }
+            }
+            return channels;
+        } finally {
+            MongoRobcogMetrics.End("GetEEGChannels", start_ns);
+        }
+    }
+    
+    /**
+     * Query the values of all the EEG channels at the given timepoint (or the most recent one),
+     * in the order of GetEEGChannels
      */ 
     public double[] GetAllEEGValuesAt(String timestampStr){
         // transform the knowrob time to double with 3 decimal precision
@@ -2130,78 +4103,142 @@ public class MongoRobcogQueries {
         return GetAllEEGValuesAt(timestamp);
     }
 
+    /**
+     * Query the values of all the EEG channels at the given timepoint (or the most recent one),
+     * in the order of GetEEGChannels
+     */ 
     public double[] GetAllEEGValuesAt(double timestamp){
-        // $and list for querying the $match in the aggregation
-        BasicDBList time_and_channel = new BasicDBList();
-
-        // add the timestamp and the actor name
-        time_and_channel.add(new BasicDBObject("eeg", new BasicDBObject("$exists", true)));
-        time_and_channel.add(new BasicDBObject("timestamp", new BasicDBObject("$lte", timestamp)));
-
-        // create the pipeline operations, first the $match
-        DBObject match_time_and_channel = new BasicDBObject(
-                "$match", new BasicDBObject( "$and", time_and_channel)); 
+        final long start_ns = MongoRobcogMetrics.Begin("GetAllEEGValuesAt");
+        try {
+            // serve the values from the episode store if set
+            final MongoRobcogEpisodeStore store = this.episodeStore();
+            if(store != null)
+            {
+                return store.GetAllEEGValuesAt(timestamp);
+            }
+        
+            // the channels of the episode
+            final String[] channels = this.GetEEGChannels();
+
+            // $match the most recent eeg document
+            DBObject query = new BasicDBObject("eeg", new BasicDBObject("$exists", true));
+            query.put("timestamp", new BasicDBObject("$lte", timestamp));
+
+            // decode the values straight into the buffer
+            MongoRobcogSampleBuffer eeg_buffer = new MongoRobcogSampleBuffer(channels.length);
+            DBCursor cursor = this.getColl().find(query, this.eegProjection(channels))
+                    .sort(new BasicDBObject("timestamp", -1))
+                    .limit(1);
+            cursor.setDecoderFactory(new MongoRobcogEEGDecoder(eeg_buffer, channels));
+            while(cursor.hasNext())
+            {
+                cursor.next();
+            }
+            // close cursor
+            cursor.close();
 
-                // sort the results in descending order on the timestamp (keep most recent result first)
-        DBObject sort_desc = new BasicDBObject(
-                "$sort", new BasicDBObject("timestamp", -1));
+            if(eeg_buffer.GetNrSamples() == 0)
+            {
+                System.out.println("Java - GetAllEEGValuesAt - No results found, returning empty list..");
+                return new double[0];
+            }
+            return Arrays.copyOf(eeg_buffer.GetValues(), channels.length);
+        } finally {
+            MongoRobcogMetrics.End("GetAllEEGValuesAt", start_ns);
+        }
+    }
+    
+    /**
+     * Query the values of all the EEG channels between the timestamps as one row-major matrix
+     */
+    public MongoRobcogEEGMatrix GetEEGMatrix(String start,
+            String end,
+            double deltaT){
+        // transform the knowrob time to double with 3 decimal precision
+        final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
+        final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
 
-        // $limit the result to 1, we only need one pose
-        DBObject limit_result = new BasicDBObject("$limit", 1);
+        return GetEEGMatrix(this.GetEEGChannels(), start_ts, end_ts, deltaT);
+    }
 
-        // build the $projection operation
-        DBObject proj_fields = new BasicDBObject("_id", 0);
-        proj_fields.put("timestamp", 1);
-        proj_fields.put("eeg", "$eeg");        
-        DBObject project = new BasicDBObject("$project", proj_fields);
+    /**
+     * Query the values of all the EEG channels between the timestamps as one row-major matrix
+     */
+    public MongoRobcogEEGMatrix GetEEGMatrix(double start,
+            double end,
+            double deltaT){
+        return GetEEGMatrix(this.GetEEGChannels(), start, end, deltaT);
+    }
 
-        // run aggregation
-        List<DBObject> pipeline = Arrays.asList(match_time_and_channel, sort_desc, limit_result, project);
+    /**
+     * Query the values of the given EEG channels between the timestamps as one row-major matrix,
+     * missing values are NaN
+     */
+    public MongoRobcogEEGMatrix GetEEGMatrix(String[] channels,
+            double start,
+            double end,
+            double deltaT){
+        final long start_ns = MongoRobcogMetrics.Begin("GetEEGMatrix");
+        try {
+            // serve the matrix from the episode store if set
+            final MongoRobcogEpisodeStore store = this.episodeStore();
+            if(store != null)
+            {
+                return store.GetEEGMatrix(channels, start, end, deltaT);
+            }
         
-        AggregationOptions aggregationOptions = AggregationOptions.builder()
-                .batchSize(100)
-                .outputMode(AggregationOptions.OutputMode.CURSOR)
-                .allowDiskUse(true)
-                .build();
-
-        // get results
-        Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
+            // serve the matrix from the result cache if enabled
+            final String cache_key = this.resultKey("GetEEGMatrix", channels, start, end, deltaT);
+            final MongoRobcogEEGMatrix cached_matrix = (MongoRobcogEEGMatrix) this.cachedResult(cache_key);
+            if(cached_matrix != null)
+            {
+                return cached_matrix;
+            }
 
-		// if query has a response, return the pose
-		if(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject first_doc = (BasicDBObject) cursor.next();			
-			// close cursor
-			cursor.close();
+            // one row of channel values per sample
+            MongoRobcogSampleBuffer eeg_buffer = new MongoRobcogSampleBuffer(Math.max(1, channels.length) * 1024);
+            if(channels.length == 0)
+            {
+                System.out.println("Java - GetEEGMatrix - No EEG channels found, returning empty matrix..");
+                return MongoRobcogEEGMatrix.FromBuffer(channels, eeg_buffer);
+            }
 
-			// get all the channels // TODO hardcoded
-			return new double[] {
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c1"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c2"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c3"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c4"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c5"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c6"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c7"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c8"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c9"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c10"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c11"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c12"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c13"),
-					((BasicDBObject) first_doc.get("eeg")).getDouble("c14")};
-		}
-		else
-		{
-			System.out.println("Java - GetAllEEGValuesAt - No results found, returning empty list..");			
-			return new double[0];
-		}
-    }
+            // keep only one sample per deltaT window on the server, re-filter the gaps on the client
+            if(this.serverSideDownsampling && deltaT > 0)
+            {
+                eeg_buffer.Reset(deltaT);
+                this.aggregateEEG(eeg_buffer, channels, start, end, deltaT);
+                return this.cacheResult(cache_key, MongoRobcogEEGMatrix.FromBuffer(channels, eeg_buffer));
+            }
 
+            // a sample is kept if it is more than deltaT after the previous kept one
+            eeg_buffer.Reset(deltaT);
+
+            // $match the eeg documents of the interval
+            DBObject query = new BasicDBObject("eeg", new BasicDBObject("$exists", true));
+            query.put("timestamp", new BasicDBObject("$gte", start).append("$lte", end));
+
+            // the decoder writes the values into the buffer while the cursor is iterated
+            DBCursor cursor = this.getColl().find(query, this.eegProjection(channels))
+                    .sort(new BasicDBObject("timestamp", 1))
+                    .batchSize(1000);
+            cursor.setDecoderFactory(new MongoRobcogEEGDecoder(eeg_buffer, channels));
+            while(cursor.hasNext())
+            {
+                cursor.next();
+            }
+            // close cursor
+            cursor.close();
 
+            return this.cacheResult(cache_key, MongoRobcogEEGMatrix.FromBuffer(channels, eeg_buffer));
+        } finally {
+            MongoRobcogMetrics.End("GetEEGMatrix", start_ns);
+        }
+    }
+    
     /**
-     * Query the values of all the EEG channels between the timestamps
+     * Query the values of all the EEG channels between the timestamps,
+     * one [[start, end, deltaT], [values]] per channel (in the order of GetEEGChannels)
      */
     public double[][][] GetAllEEGValues(String start,
             String end,
@@ -2210,21 +4247,51 @@ public class MongoRobcogQueries {
         final double start_ts = (double) Math.round(parseTime_d(start) * 1000) / 1000;
         final double end_ts = (double) Math.round(parseTime_d(end) * 1000) / 1000;
 
-        // $and list for querying the $match in the aggregation
-        BasicDBList time_and_channel = new BasicDBList();
+        return GetAllEEGValues(start_ts, end_ts, deltaT);
+    }
 
-        // add the timestamp and the actor name
-        time_and_channel.add(new BasicDBObject("eeg", new BasicDBObject("$exists", true)));
-        time_and_channel.add(new BasicDBObject("timestamp", new BasicDBObject("$gte", start_ts).append("$lte", end_ts)));
+    /**
+     * Query the values of all the EEG channels between the timestamps,
+     * one [[start, end, deltaT], [values]] per channel (in the order of GetEEGChannels)
+     */
+    public double[][][] GetAllEEGValues(double start,
+            double end,
+            double deltaT){
+        final long start_ns = MongoRobcogMetrics.Begin("GetAllEEGValues");
+        try {
+            MongoRobcogEEGMatrix eeg_matrix = this.GetEEGMatrix(start, end, deltaT);
+
+            // if the query returned nothing, return empty
+            if(eeg_matrix.GetNrSamples() == 0)
+            {
+                System.out.println("Java - GetAllEEGValues - No results found, returning empty list..");
+                return new double[0][0][0];
+            }
 
+            // split the matrix into the channel columns
+            final double[] ts_arr = new double[]{start, end, deltaT};
+            double[][][] eeg_channels_values = new double[eeg_matrix.GetNrChannels()][][];
+            for (int i = 0; i < eeg_channels_values.length; ++i){
+                eeg_channels_values[i] = new double[][] {ts_arr, eeg_matrix.GetChannelValues(i)};
+            }
+            return eeg_channels_values;
+        } finally {
+            MongoRobcogMetrics.End("GetAllEEGValues", start_ns);
+        }
+    }
+    
+    /**
+     * Helper function copying the server side downsampled values of the EEG channels into the buffer
+     */
+    private void aggregateEEG(MongoRobcogSampleBuffer buffer,
+            String[] channels,
+            double start,
+            double end,
+            double deltaT){
         // create the pipeline operations, first the $match
-        DBObject match_time_and_channel = new BasicDBObject(
-                "$match", new BasicDBObject( "$and", time_and_channel)); 
-
-                // sort the results in descending order on the timestamp (keep most recent result first)
-        DBObject sort_inc = new BasicDBObject(
-                "$sort", new BasicDBObject("timestamp", 1));
-
+        DBObject match_time = new BasicDBObject("$match", new BasicDBObject("eeg", 
+                new BasicDBObject("$exists", true)).append("timestamp", 
+                new BasicDBObject("$gte", start).append("$lte", end)));
 
         // build the $projection operation
         DBObject proj_fields = new BasicDBObject("_id", 0);
@@ -2232,8 +4299,9 @@ public class MongoRobcogQueries {
         proj_fields.put("eeg", "$eeg");        
         DBObject project = new BasicDBObject("$project", proj_fields);
 
-        // run aggregation
-        List<DBObject> pipeline = Arrays.asList(match_time_and_channel, sort_inc, project);
+        // run aggregation, keep only the first sample of every deltaT window
+        List<DBObject> pipeline = new ArrayList<DBObject>(Arrays.asList(match_time, project));
+        pipeline.addAll(this.downsampleStages(start, deltaT, "eeg"));
 
         AggregationOptions aggregationOptions = AggregationOptions.builder()
                 .batchSize(100)
@@ -2242,186 +4310,89 @@ public class MongoRobcogQueries {
                 .build();
 
         // get results
-        Cursor cursor = this.MongoRobcogConn.coll.aggregate(pipeline, aggregationOptions);
-        
-		// Traj as dynamic array
-		ArrayList<double[][]> eeg_channels_values = new ArrayList<double[][]>();
+        Cursor cursor = this.getColl().aggregate(pipeline, aggregationOptions);
 
-		ArrayList<double[]> timestap_values_list = new ArrayList<double[]>();
-		
-		// if the query returned nothing, get the most recent pose
-		if(!cursor.hasNext())
-		{
-			System.out.println("Java - GetAllEEGValues - No results found, returning most recent pose..");
-			// get the most recent pose
-			//eeg_channels_values.add(this.GetAllEEGValuesAt(start));
-			
-			// cast from dynamic array to standard array
-			//return eeg_channels_values.toArray(new double[eeg_channels_values.size()][2][14]);
-			return new double[0][0][0];
-		}
-		
-		// timestamp used for deltaT
-		double prev_ts = 0;
-		
-		ArrayList<Double> c1 = new ArrayList<Double>();
-		ArrayList<Double> c2 = new ArrayList<Double>();
-		ArrayList<Double> c3 = new ArrayList<Double>();
-		ArrayList<Double> c4 = new ArrayList<Double>();
-		ArrayList<Double> c5 = new ArrayList<Double>();
-		ArrayList<Double> c6 = new ArrayList<Double>();
-		ArrayList<Double> c7 = new ArrayList<Double>();
-		ArrayList<Double> c8 = new ArrayList<Double>();
-		ArrayList<Double> c9 = new ArrayList<Double>();
-		ArrayList<Double> c10 = new ArrayList<Double>();
-		ArrayList<Double> c11 = new ArrayList<Double>();
-		ArrayList<Double> c12 = new ArrayList<Double>();
-		ArrayList<Double> c13 = new ArrayList<Double>();
-		ArrayList<Double> c14 = new ArrayList<Double>();
-		
-		// while query has a response, return the pose
-		while(cursor.hasNext())
-		{
-			// get the first document as the next cursor and append the metadata to it
-			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
-			
-			// get the curr timestamp
-			double curr_ts = curr_doc.getDouble("timestamp");
-			
-			// if time diff > then deltaT add position to trajectory
-			if(curr_ts - prev_ts > deltaT)
-			{				
-				c1.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c1"));
-				c2.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c2"));
-				c3.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c3"));
-				c4.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c4"));
-				c5.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c5"));
-				c6.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c6"));
-				c7.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c7"));
-				c8.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c8"));
-				c9.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c9"));
-				c10.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c10"));
-				c11.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c11"));
-				c12.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c12"));
-				c13.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c13"));
-				c14.add(((BasicDBObject) curr_doc.get("eeg")).getDouble("c14"));
-
-				prev_ts = curr_ts;
-			}
-		}
+        // copy the values of the channels into the buffer
+        while(cursor.hasNext())
+        {
+            BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+            MongoRobcogMetrics.AddDoc(0);
+            if(!buffer.BeginSample(curr_doc.getDouble("timestamp")))
+            {
+                continue;
+            }
+            final int offset = buffer.Reserve(channels.length);
+            final double[] values = buffer.GetValues();
+            BasicDBObject eeg = (BasicDBObject) curr_doc.get("eeg");
+            for (int i = 0; i < channels.length; ++i){
+                Object value = eeg.get(channels[i]);
+                if(value instanceof Number)
+                {
+                    values[offset + i] = ((Number) value).doubleValue();
+                }
+            }
+            buffer.EndSample();
+        }
+        // close cursor
+        cursor.close();
+    }
 
-		double[] ts_arr = new double[]{start_ts, end_ts, deltaT};
-
-        // cast from dynamic array to standard array
-        // java does not support this, has to be Double (as class)
-        //return traj_list.toArray(new double[traj_list.size()]);  
-        double[] c1_arr = new double[c1.size()];
-        double[] c2_arr = new double[c2.size()];
-        double[] c3_arr = new double[c3.size()];
-        double[] c4_arr = new double[c4.size()];
-        double[] c5_arr = new double[c5.size()];
-        double[] c6_arr = new double[c6.size()];
-        double[] c7_arr = new double[c7.size()];
-        double[] c8_arr = new double[c8.size()];
-        double[] c9_arr = new double[c9.size()];
-        double[] c10_arr = new double[c10.size()];
-        double[] c11_arr = new double[c11.size()];
-        double[] c12_arr = new double[c12.size()];
-        double[] c13_arr = new double[c13.size()];
-        double[] c14_arr = new double[c14.size()];
-
-        for (int i = 0; i < c1.size(); i++) {
-            c1_arr[i] = c1.get(i);                // java 1.5+ style (outboxing)
-			c2_arr[i] = c2.get(i);
-			c3_arr[i] = c3.get(i); 
-			c4_arr[i] = c4.get(i); 
-			c5_arr[i] = c5.get(i); 
-			c6_arr[i] = c6.get(i); 
-			c7_arr[i] = c7.get(i); 
-			c8_arr[i] = c8.get(i); 
-			c9_arr[i] = c9.get(i); 
-			c10_arr[i] = c10.get(i); 
-			c11_arr[i] = c11.get(i); 
-			c12_arr[i] = c12.get(i); 
-			c13_arr[i] = c13.get(i); 
-			c14_arr[i] = c14.get(i); 
+    /**
+     * Helper function projecting the timestamp and the given EEG channels
+     */
+    private DBObject eegProjection(String[] channels){
+        DBObject proj_fields = new BasicDBObject("_id", 0);
+        proj_fields.put("timestamp", 1);
+        for (String channel : channels){
+            proj_fields.put("eeg." + channel, 1);
         }
-		
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c1_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c1_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c2_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c2_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c3_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c3_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c4_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c4_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c5_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c5_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c6_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c6_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c7_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c7_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c8_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c8_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c9_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c9_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c10_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c10_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c11_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c11_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c12_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c12_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c13_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c13_arr.length]));
-		timestap_values_list.clear();
-
-		timestap_values_list.add(ts_arr);
-		timestap_values_list.add(c14_arr);
-		eeg_channels_values.add(timestap_values_list.toArray(new double[2][c14_arr.length]));
-		timestap_values_list.clear();
-		// close cursor
-		cursor.close();		
-		
-		// cast from dynamic array to standard array
-		return eeg_channels_values.toArray(
-			new double[eeg_channels_values.size()][timestap_values_list.size()][c1_arr.length]);
-	}
-}
+        return proj_fields;
+    }
+
+    /**
+     * Helper function reading the EEG channel names from the first eeg document
+     */
+    private String[] discoverEEGChannels(){
+        DBObject first_doc = this.getColl().findOne(
+                new BasicDBObject("eeg", new BasicDBObject("$exists", true)),
+                new BasicDBObject("_id", 0).append("eeg", 1));
+        if(first_doc == null || !(first_doc.get("eeg") instanceof DBObject))
+        {
+            System.out.println("Java - GetEEGChannels - No EEG data found..");
+            return new String[0];
+        }
+        List<String> channels = new ArrayList<String>(((DBObject) first_doc.get("eeg")).keySet());
+
+        // sort by the name prefix, then by the channel nr
+        Collections.sort(channels, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                final int a_digits = trailingDigitsPos(a);
+                final int b_digits = trailingDigitsPos(b);
+                final int prefix_cmp = a.substring(0, a_digits).compareTo(b.substring(0, b_digits));
+                if(prefix_cmp != 0)
+                {
+                    return prefix_cmp;
+                }
+                if(a_digits == a.length() || b_digits == b.length())
+                {
+                    return a.compareTo(b);
+                }
+                return Long.valueOf(a.substring(a_digits)).compareTo(Long.valueOf(b.substring(b_digits)));
+            }
+        });
+        return channels.toArray(new String[channels.size()]);
+    }
 
+    /**
+     * Helper function returning the start index of the trailing digits of the name
+     */
+    private static int trailingDigitsPos(String name){
+        int pos = name.length();
+        while(pos > 0 && Character.isDigit(name.charAt(pos - 1)) && name.length() - pos < 18)
+        {
+            pos--;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,662 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Episode store keeping one section of fixed stride float64 records per entry, sorted by timestamp:
+ *   entity: [ts, x, y, z, qx, qy, qz, qw]
+ *   skeletal entity: [ts, 7 pose values per bone (in the order of the bones names)]
+ *   EEG: [ts, one value per channel]
+ * the subclasses provide the records (memory mapped file or heap arrays),
+ * the queries read them in place
+ */
+public abstract class MongoRobcogRecordStore implements MongoRobcogEpisodeStore {
+
+	// values of a pose
+	protected static final int POSE_SIZE = 7;
+
+	/**
+	 * Records of one entry of the store
+	 */
+	protected static class Section {
+		// nr of values of a record (timestamp included)
+		final int stride;
+
+		// nr of records
+		final int nrRecords;
+
+		// the records
+		final DoubleBuffer data;
+
+		/**
+		 * Section constructor
+		 */
+		protected Section(int stride, int nrRecords, DoubleBuffer data) {
+			this.stride = stride;
+			this.nrRecords = nrRecords;
+			this.data = data;
+		}
+
+		/**
+		 * Timestamp of the record
+		 */
+		double ts(int i){
+			return this.data.get(i * this.stride);
+		}
+
+		/**
+		 * Index of the most recent record at or before the timestamp (-1 if none)
+		 */
+		int floorIndex(double t){
+			int low = 0;
+			int high = this.nrRecords - 1;
+			while(low <= high)
+			{
+				final int mid = (low + high) >>> 1;
+				if(this.ts(mid) <= t)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+			return high;
+		}
+
+		/**
+		 * Index of the first record at or after the timestamp (nrRecords if none)
+		 */
+		int ceilIndex(double t){
+			int low = 0;
+			int high = this.nrRecords;
+			while(low < high)
+			{
+				final int mid = (low + high) >>> 1;
+				if(this.ts(mid) < t)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Copy of length values of the record starting at the given value offset
+		 */
+		double[] values(int i, int offset, int length){
+			double[] values = new double[length];
+			for (int j = 0; j < length; ++j){
+				values[j] = this.data.get(i * this.stride + 1 + offset + j);
+			}
+			return values;
+		}
+
+		/**
+		 * Indices of the records between the timepoints, a record is kept
+		 * if it is more than deltaT after the previous kept one (as MongoRobcogSampleBuffer)
+		 */
+		int[] indices(double start, double end, double deltaT){
+			int[] indices = new int[16];
+			int nr_indices = 0;
+			double prev_ts = 0;
+			for (int i = this.ceilIndex(start); i < this.nrRecords && this.ts(i) <= end; ++i){
+				final double ts = this.ts(i);
+				if(ts - prev_ts <= deltaT)
+				{
+					continue;
+				}
+				if(nr_indices == indices.length)
+				{
+					indices = Arrays.copyOf(indices, nr_indices * 2);
+				}
+				indices[nr_indices++] = i;
+				prev_ts = ts;
+			}
+			return Arrays.copyOf(indices, nr_indices);
+		}
+
+		/**
+		 * Poses at the timepoints of the pose starting at the value offset,
+		 * interpolated between the bracketing records or the most recent ones
+		 */
+		double[][] posesAt(int offset, double[] timestamps, boolean interpolate){
+			double[][] poses = new double[timestamps.length][];
+			// the floor and the next pose
+			double[] bracket = new double[2 * POSE_SIZE];
+			for (int i = 0; i < timestamps.length; ++i){
+				final int idx = this.floorIndex(timestamps[i]);
+				if(idx < 0)
+				{
+					poses[i] = new double[0];
+				}
+				else if(interpolate && idx + 1 < this.nrRecords && this.ts(idx) < timestamps[i])
+				{
+					for (int j = 0; j < POSE_SIZE; ++j){
+						bracket[j] = this.data.get(idx * this.stride + 1 + offset + j);
+						bracket[POSE_SIZE + j] = this.data.get((idx + 1) * this.stride + 1 + offset + j);
+					}
+					poses[i] = new double[POSE_SIZE];
+					MongoRobcogInterpolation.InterpolatePose(bracket, 0, this.ts(idx),
+							POSE_SIZE, this.ts(idx + 1), timestamps[i], poses[i], 0);
+				}
+				else
+				{
+					poses[i] = this.values(idx, offset, POSE_SIZE);
+				}
+			}
+			return poses;
+		}
+	}
+
+	/**
+	 * Records of an episode gathered in memory, one sample buffer per entry
+	 */
+	protected static class Gathered {
+		// entity id -> poses
+		final Map<String, MongoRobcogSampleBuffer> entities = new LinkedHashMap<String, MongoRobcogSampleBuffer>();
+
+		// skeletal entity id -> bones poses
+		final Map<String, MongoRobcogSampleBuffer> skelEntities = new LinkedHashMap<String, MongoRobcogSampleBuffer>();
+
+		// skeletal entity id -> bones names (in the order of the records)
+		final Map<String, String[]> bonesNames = new HashMap<String, String[]>();
+
+		// EEG channels and values
+		final String[] eegChannels;
+		final MongoRobcogSampleBuffer eeg;
+
+		Gathered(String[] eegChannels) {
+			this.eegChannels = eegChannels;
+			this.eeg = new MongoRobcogSampleBuffer(Math.max(1, eegChannels.length) * 1024);
+		}
+	}
+
+	// entity id -> pose records
+	protected final Map<String, Section> entities;
+
+	// skeletal entity id -> bones poses records
+	protected final Map<String, Section> skelEntities;
+
+	// skeletal entity id -> bones names (in the order of the records)
+	protected final Map<String, String[]> bonesNames;
+
+	// EEG channels and their records
+	protected String[] eegChannels;
+	protected Section eeg;
+
+	/**
+	 * MongoRobcogRecordStore constructor, the subclass adds the sections
+	 */
+	protected MongoRobcogRecordStore() {
+		this.entities = new LinkedHashMap<String, Section>();
+		this.skelEntities = new LinkedHashMap<String, Section>();
+		this.bonesNames = new HashMap<String, String[]>();
+		this.eegChannels = new String[0];
+		this.eeg = new Section(1, 0, DoubleBuffer.allocate(0));
+	}
+
+	/**
+	 * Ids of the entities
+	 */
+	public String[] GetActorNames(){
+		return this.entities.keySet().toArray(new String[this.entities.size()]);
+	}
+
+	/**
+	 * Ids of the skeletal entities
+	 */
+	public String[] GetSkelActorNames(){
+		return this.skelEntities.keySet().toArray(new String[this.skelEntities.size()]);
+	}
+
+	@Override
+	public double[] GetActorPoseAt(String actorName, double timestamp){
+		final Section section = this.entities.get(actorName);
+		final int idx = section != null ? section.floorIndex(timestamp) : -1;
+		if(idx < 0)
+		{
+			System.out.println("Java - RecordStore - GetActorPose - No results found, returning empty list..");
+			return new double[0];
+		}
+		return section.values(idx, 0, POSE_SIZE);
+	}
+
+	@Override
+	public double[][] GetActorPosesAt(String actorName, double[] timestamps, boolean interpolate){
+		final Section section = this.entities.get(actorName);
+		if(section == null)
+		{
+			return emptyPoses(timestamps.length);
+		}
+		return section.posesAt(0, timestamps, interpolate);
+	}
+
+	@Override
+	public double[][] GetActorTraj(String actorName, double start, double end, double deltaT){
+		final Section section = this.entities.get(actorName);
+		final int[] indices = section != null ? section.indices(start, end, deltaT) : new int[0];
+		if(indices.length == 0)
+		{
+			return new double[][] {this.GetActorPoseAt(actorName, start)};
+		}
+		double[][] traj = new double[indices.length][];
+		for (int i = 0; i < indices.length; ++i){
+			traj[i] = section.values(indices[i], 0, POSE_SIZE);
+		}
+		return traj;
+	}
+
+	/**
+	 * Get the traveled distance of the actor between the given timepoints
+	 */
+	public double GetActorTraveledDistance(String actorName, double start, double end, double deltaT){
+		return this.traveledDistance(actorName, start, end, deltaT, false);
+	}
+
+	/**
+	 * Get the traveled distance on the XY plane of the actor between the given timepoints
+	 */
+	public double GetActorXYTraveledDistance(String actorName, double start, double end, double deltaT){
+		return this.traveledDistance(actorName, start, end, deltaT, true);
+	}
+
+	@Override
+	public String[] GetBonesNames(String actorName){
+		final String[] names = this.bonesNames.get(actorName);
+		return names != null ? names.clone() : new String[0];
+	}
+
+	@Override
+	public double[] GetBonePoseAt(String actorName, String boneName, double timestamp){
+		final Section section = this.skelEntities.get(actorName);
+		final int bone_idx = this.boneIndex(actorName, boneName);
+		final int idx = section != null && bone_idx >= 0 ? section.floorIndex(timestamp) : -1;
+		if(idx < 0)
+		{
+			System.out.println("Java - RecordStore - GetBonePose - No results found, returning empty list..");
+			return new double[0];
+		}
+		return section.values(idx, bone_idx * POSE_SIZE, POSE_SIZE);
+	}
+
+	@Override
+	public double[][] GetBonePosesAt(String actorName, String boneName, double[] timestamps, boolean interpolate){
+		final Section section = this.skelEntities.get(actorName);
+		final int bone_idx = this.boneIndex(actorName, boneName);
+		if(section == null || bone_idx < 0)
+		{
+			return emptyPoses(timestamps.length);
+		}
+		return section.posesAt(bone_idx * POSE_SIZE, timestamps, interpolate);
+	}
+
+	@Override
+	public double[][] GetBoneTraj(String actorName, String boneName, double start, double end, double deltaT){
+		final Section section = this.skelEntities.get(actorName);
+		final int bone_idx = this.boneIndex(actorName, boneName);
+		final int[] indices = section != null && bone_idx >= 0 
+				? section.indices(start, end, deltaT) : new int[0];
+		if(indices.length == 0)
+		{
+			return new double[][] {this.GetBonePoseAt(actorName, boneName, start)};
+		}
+		double[][] traj = new double[indices.length][];
+		for (int i = 0; i < indices.length; ++i){
+			traj[i] = section.values(indices[i], bone_idx * POSE_SIZE, POSE_SIZE);
+		}
+		return traj;
+	}
+
+	@Override
+	public double[][] GetBonesPosesAt(String actorName, double timestamp){
+		final Section section = this.skelEntities.get(actorName);
+		final int idx = section != null ? section.floorIndex(timestamp) : -1;
+		if(idx < 0)
+		{
+			System.out.println("Java - RecordStore - GetBonesPoses - No results found, returning empty list..");
+			return new double[0][0];
+		}
+		return bonesPoses(section, idx);
+	}
+
+	@Override
+	public double[][][] GetBonesTrajs(String actorName, double start, double end, double deltaT){
+		final Section section = this.skelEntities.get(actorName);
+		final int[] indices = section != null ? section.indices(start, end, deltaT) : new int[0];
+		if(indices.length == 0)
+		{
+			return new double[][][] {this.GetBonesPosesAt(actorName, start)};
+		}
+		double[][][] trajs = new double[indices.length][][];
+		for (int i = 0; i < indices.length; ++i){
+			trajs[i] = bonesPoses(section, indices[i]);
+		}
+		return trajs;
+	}
+
+	@Override
+	public String[] GetEEGChannels(){
+		return this.eegChannels.clone();
+	}
+
+	/**
+	 * Get the value of the EEG channel (c<channelNr>) at the given timepoint (or the most recent one), 
+	 * NaN if none
+	 */
+	public double GetEEGValueAt(int channelNr, double timestamp){
+		final int channel_idx = Arrays.asList(this.eegChannels).indexOf("c" + channelNr);
+		final int idx = channel_idx >= 0 ? this.eeg.floorIndex(timestamp) : -1;
+		if(idx < 0)
+		{
+			System.out.println("Java - RecordStore - GetEEGValueAt - No results found, returning NaN..");
+			return Double.NaN;
+		}
+		return this.eeg.values(idx, channel_idx, 1)[0];
+	}
+
+	@Override
+	public double[] GetAllEEGValuesAt(double timestamp){
+		final int idx = this.eeg.floorIndex(timestamp);
+		if(idx < 0)
+		{
+			System.out.println("Java - RecordStore - GetAllEEGValuesAt - No results found, returning empty list..");
+			return new double[0];
+		}
+		return this.eeg.values(idx, 0, this.eegChannels.length);
+	}
+
+	/**
+	 * Get the values of all the EEG channels between the timepoints
+	 */
+	public MongoRobcogEEGMatrix GetEEGMatrix(double start, double end, double deltaT){
+		return this.GetEEGMatrix(this.eegChannels, start, end, deltaT);
+	}
+
+	@Override
+	public MongoRobcogEEGMatrix GetEEGMatrix(String[] channels, double start, double end, double deltaT){
+		final List<String> store_channels = Arrays.asList(this.eegChannels);
+		final int[] indices = this.eeg.indices(start, end, deltaT);
+		double[] timestamps = new double[indices.length];
+		double[] values = new double[indices.length * channels.length];
+		Arrays.fill(values, Double.NaN);
+		for (int j = 0; j < channels.length; ++j){
+			final int channel_idx = store_channels.indexOf(channels[j]);
+			if(channel_idx < 0)
+			{
+				continue;
+			}
+			for (int i = 0; i < indices.length; ++i){
+				values[i * channels.length + j] = this.eeg.data.get(indices[i] * this.eeg.stride + 1 + channel_idx);
+			}
+		}
+		for (int i = 0; i < indices.length; ++i){
+			timestamps[i] = this.eeg.ts(indices[i]);
+		}
+		return new MongoRobcogEEGMatrix(channels.clone(), timestamps, values);
+	}
+
+	/**
+	 * Gather the records of the episode collection in memory (sorted by timestamp),
+	 * bones missing from a sample and missing EEG channels are NaN
+	 */
+	protected static Gathered Gather(DBCollection coll, String[] eegChannels){
+		Gathered gathered = new Gathered(eegChannels);
+		// skeletal entity id -> bones names -> position in the records
+		Map<String, Map<String, Integer>> bones_indices = new HashMap<String, Map<String, Integer>>();
+
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put("entities", 1);
+		proj_fields.put("skel_entities", 1);
+		if(eegChannels.length > 0)
+		{
+			proj_fields.put("eeg", 1);
+		}
+
+		DBCursor cursor = coll.find(new BasicDBObject(), proj_fields)
+				.sort(new BasicDBObject("timestamp", 1))
+				.batchSize(1000);
+		try
+		{
+			while(cursor.hasNext())
+			{
+				BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+				final double curr_ts = curr_doc.getDouble("timestamp");
+
+				// add the entities poses
+				BasicDBList entities_list = (BasicDBList) curr_doc.get("entities");
+				if(entities_list != null)
+				{
+					for (Object entity_obj : entities_list)
+					{
+						BasicDBObject entity = (BasicDBObject) entity_obj;
+						MongoRobcogSampleBuffer buffer = gathered.entities.get(entity.getString("id"));
+						if(buffer == null)
+						{
+							buffer = new MongoRobcogSampleBuffer(POSE_SIZE * 1024);
+							gathered.entities.put(entity.getString("id"), buffer);
+						}
+						buffer.BeginSample(curr_ts);
+						putPose(buffer.GetValues(), buffer.Reserve(POSE_SIZE), entity);
+						buffer.EndSample();
+					}
+				}
+
+				// add the bones poses of the skeletal entities
+				BasicDBList skel_list = (BasicDBList) curr_doc.get("skel_entities");
+				if(skel_list != null)
+				{
+					for (Object skel_obj : skel_list)
+					{
+						BasicDBObject skel_entity = (BasicDBObject) skel_obj;
+						BasicDBList bones = (BasicDBList) skel_entity.get("bones");
+						if(bones == null || bones.isEmpty())
+						{
+							continue;
+						}
+						final String skel_id = skel_entity.getString("id");
+						MongoRobcogSampleBuffer buffer = gathered.skelEntities.get(skel_id);
+						Map<String, Integer> indices = bones_indices.get(skel_id);
+						if(buffer == null)
+						{
+							// the bones of the first sample set the order of the records
+							indices = new LinkedHashMap<String, Integer>();
+							for (Object bone_obj : bones)
+							{
+								indices.put(((BasicDBObject) bone_obj).getString("name"), indices.size());
+							}
+							buffer = new MongoRobcogSampleBuffer(POSE_SIZE * indices.size() * 1024);
+							gathered.skelEntities.put(skel_id, buffer);
+							gathered.bonesNames.put(skel_id, indices.keySet().toArray(new String[indices.size()]));
+							bones_indices.put(skel_id, indices);
+						}
+						buffer.BeginSample(curr_ts);
+						final int offset = buffer.Reserve(POSE_SIZE * indices.size());
+						for (Object bone_obj : bones)
+						{
+							BasicDBObject bone = (BasicDBObject) bone_obj;
+							final Integer bone_idx = indices.get(bone.getString("name"));
+							if(bone_idx != null)
+							{
+								putPose(buffer.GetValues(), offset + bone_idx * POSE_SIZE, bone);
+							}
+						}
+						buffer.EndSample();
+					}
+				}
+
+				// add the eeg values
+				Object eeg_obj = curr_doc.get("eeg");
+				if(eeg_obj instanceof DBObject)
+				{
+					DBObject eeg_doc = (DBObject) eeg_obj;
+					gathered.eeg.BeginSample(curr_ts);
+					final int offset = gathered.eeg.Reserve(eegChannels.length);
+					for (int i = 0; i < eegChannels.length; ++i){
+						Object value = eeg_doc.get(eegChannels[i]);
+						if(value instanceof Number)
+						{
+							gathered.eeg.GetValues()[offset + i] = ((Number) value).doubleValue();
+						}
+					}
+					gathered.eeg.EndSample();
+				}
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+		return gathered;
+	}
+
+	@Override
+	public void CopyTraj(String actorName,
+			boolean bones,
+			String boneName,
+			double start,
+			double end,
+			double deltaT,
+			MongoRobcogSampleBuffer buffer){
+		buffer.Reset(Double.NEGATIVE_INFINITY);
+		final Section section = bones ? this.skelEntities.get(actorName) : this.entities.get(actorName);
+		if(section == null)
+		{
+			return;
+		}
+		
+		// values of the record copied into a sample
+		int offset = 0;
+		int length = section.stride - 1;
+		if(bones && boneName != null)
+		{
+			final int bone_idx = this.boneIndex(actorName, boneName);
+			if(bone_idx < 0)
+			{
+				return;
+			}
+			offset = bone_idx * POSE_SIZE;
+			length = POSE_SIZE;
+		}
+		
+		for (int idx : section.indices(start, end, deltaT)){
+			buffer.BeginSample(section.ts(idx));
+			final int dest = buffer.Reserve(length);
+			final double[] values = buffer.GetValues();
+			for (int j = 0; j < length; ++j){
+				values[dest + j] = section.data.get(idx * section.stride + 1 + offset + j);
+			}
+			buffer.EndSample();
+		}
+	}
+
+	/**
+	 * Helper function computing the traveled distance between the poses of the actor
+	 */
+	private double traveledDistance(String actorName, double start, double end, double deltaT, boolean xyOnly){
+		final Section section = this.entities.get(actorName);
+		final int[] indices = section != null ? section.indices(start, end, deltaT) : new int[0];
+		double traveled_distance = 0.0;
+		for (int i = 1; i < indices.length; ++i){
+			final int prev = indices[i - 1] * section.stride + 1;
+			final int curr = indices[i] * section.stride + 1;
+			final double x1_x0 = section.data.get(curr) - section.data.get(prev);
+			final double y1_y0 = section.data.get(curr + 1) - section.data.get(prev + 1);
+			final double z1_z0 = xyOnly ? 0.0 : section.data.get(curr + 2) - section.data.get(prev + 2);
+			traveled_distance += Math.sqrt((x1_x0 * x1_x0) + (y1_y0 * y1_y0) + (z1_z0 * z1_z0));
+		}
+		return traveled_distance;
+	}
+
+	/**
+	 * Helper function returning the position of the bone in the records of the actor, -1 if missing
+	 */
+	private int boneIndex(String actorName, String boneName){
+		final String[] names = this.bonesNames.get(actorName);
+		return names != null ? Arrays.asList(names).indexOf(boneName) : -1;
+	}
+
+	/**
+	 * Helper function copying the poses of all the bones of the record
+	 */
+	private static double[][] bonesPoses(Section section, int idx){
+		double[][] poses = new double[(section.stride - 1) / POSE_SIZE][];
+		for (int i = 0; i < poses.length; ++i){
+			poses[i] = section.values(idx, i * POSE_SIZE, POSE_SIZE);
+		}
+		return poses;
+	}
+
+	/**
+	 * Helper function returning one empty pose per timepoint
+	 */
+	private static double[][] emptyPoses(int n){
+		double[][] poses = new double[n][];
+		for (int i = 0; i < n; ++i){
+			poses[i] = new double[0];
+		}
+		return poses;
+	}
+
+	/**
+	 * Helper function writing the loc/rot pose of the document into the values
+	 */
+	private static void putPose(double[] values, int offset, BasicDBObject doc){
+		BasicDBObject loc = (BasicDBObject) doc.get("loc");
+		BasicDBObject rot = (BasicDBObject) doc.get("rot");
+		values[offset] = loc.getDouble("x");
+		values[offset + 1] = loc.getDouble("y");
+		values[offset + 2] = loc.getDouble("z");
+		values[offset + 3] = rot.getDouble("x");
+		values[offset + 4] = rot.getDouble("y");
+		values[offset + 5] = rot.getDouble("z");
+		values[offset + 6] = rot.getDouble("w");
+	}
+}
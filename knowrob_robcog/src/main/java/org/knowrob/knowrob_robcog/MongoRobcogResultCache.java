@@ -0,0 +1,280 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Byte bounded LRU cache of query results, keyed by method, collection and arguments,
+ * the RawData collections are write-once, so the results of a collection stay valid 
+ * as long as its nr of documents does not change (checked at most once per validation
+ * period and collection), the results are handed out as copies
+ */
+public class MongoRobcogResultCache {
+
+	// default memory bound of the cached results
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	// default time (ms) the nr of documents of a validated collection is trusted
+	public static final long DEFAULT_VALIDATION_PERIOD_MS = 1000;
+
+	/**
+	 * Cached result with its collection and estimated size
+	 */
+	private static class Entry {
+		final String collName;
+		final Object result;
+		final long bytes;
+
+		Entry(String collName, Object result, long bytes) {
+			this.collName = collName;
+			this.result = result;
+			this.bytes = bytes;
+		}
+	}
+
+	// cached results in access order (least recently used first)
+	private final LinkedHashMap<String, Entry> entries;
+
+	// nr of documents of every collection with cached results when they were cached
+	private final Map<String, Long> collFingerprints;
+
+	// time (ms) every collection was validated last
+	private final Map<String, Long> validationTimes;
+
+	// time (ms) the nr of documents of a validated collection is trusted
+	private long validationPeriodMs;
+
+	// memory bound of the cached results
+	private long maxBytes;
+
+	// estimated size of the cached results
+	private long bytes;
+
+	// nr of lookups served from / missing the cache and nr of evicted results
+	private long nrHits;
+	private long nrMisses;
+	private long nrEvictions;
+
+	/**
+	 * MongoRobcogResultCache constructor with the memory bound in bytes
+	 */
+	public MongoRobcogResultCache(long maxBytes) {
+		this.entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+		this.collFingerprints = new HashMap<String, Long>();
+		this.validationTimes = new HashMap<String, Long>();
+		this.validationPeriodMs = DEFAULT_VALIDATION_PERIOD_MS;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Set the time (ms) the nr of documents of a validated collection is trusted
+	 * (0 validates the collection at every lookup)
+	 */
+	public synchronized void SetValidationPeriod(long periodMs){
+		this.validationPeriodMs = Math.max(0, periodMs);
+	}
+
+	/**
+	 * Set the memory bound in bytes, evicts the least recently used results if needed
+	 */
+	public synchronized void SetMaxBytes(long maxBytes){
+		this.maxBytes = maxBytes;
+		this.evict();
+	}
+
+	/**
+	 * Get a copy of the cached result of the key, null if not cached
+	 */
+	public synchronized Object Get(String key){
+		final Entry entry = this.entries.get(key);
+		if(entry == null)
+		{
+			this.nrMisses++;
+			return null;
+		}
+		this.nrHits++;
+		return CopyOf(entry.result);
+	}
+
+	/**
+	 * Cache a copy of the result of the key (results larger than the memory bound are not cached)
+	 */
+	public synchronized void Put(String key, String collName, Object result){
+		final long result_bytes = SizeOf(result) + 2L * key.length() + 64;
+		if(result == null || result_bytes > this.maxBytes)
+		{
+			return;
+		}
+		final Entry prev = this.entries.put(key, new Entry(collName, CopyOf(result), result_bytes));
+		if(prev != null)
+		{
+			this.bytes -= prev.bytes;
+		}
+		this.bytes += result_bytes;
+		this.evict();
+	}
+
+	/**
+	 * Check if the collection has to be validated before serving its results,
+	 * true if it was not validated within the validation period
+	 */
+	public synchronized boolean NeedsValidation(String collName){
+		final Long validation_time = this.validationTimes.get(collName);
+		return validation_time == null 
+				|| System.currentTimeMillis() - validation_time >= this.validationPeriodMs;
+	}
+
+	/**
+	 * Validate the cached results of the collection with its current nr of documents,
+	 * the results are dropped if the nr of documents changed since they were cached
+	 */
+	public synchronized void Validate(String collName, long nrDocs){
+		final Long prev_nr_docs = this.collFingerprints.put(collName, nrDocs);
+		if(prev_nr_docs != null && prev_nr_docs != nrDocs)
+		{
+			System.out.println("Java - ResultCache - " + collName + " changed, dropping its cached results..");
+			this.Invalidate(collName);
+			this.collFingerprints.put(collName, nrDocs);
+		}
+		this.validationTimes.put(collName, System.currentTimeMillis());
+	}
+
+	/**
+	 * Drop the cached results of the collection
+	 */
+	public synchronized void Invalidate(String collName){
+		for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext();){
+			final Entry entry = it.next();
+			if(entry.collName.equals(collName))
+			{
+				this.bytes -= entry.bytes;
+				it.remove();
+			}
+		}
+		this.collFingerprints.remove(collName);
+		this.validationTimes.remove(collName);
+	}
+
+	/**
+	 * Drop all the cached results
+	 */
+	public synchronized void Clear(){
+		this.entries.clear();
+		this.collFingerprints.clear();
+		this.validationTimes.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Get the cache statistics as [hits, misses, evictions, nr results, bytes, max bytes]
+	 */
+	public synchronized long[] GetStats(){
+		return new long[] {this.nrHits, this.nrMisses, this.nrEvictions, 
+				this.entries.size(), this.bytes, this.maxBytes};
+	}
+
+	/**
+	 * Estimated heap size of the result (arrays of primitives, strings, numbers and nested arrays)
+	 */
+	public static long SizeOf(Object result){
+		if(result == null)
+		{
+			return 0;
+		}
+		if(result instanceof double[])
+		{
+			return 16 + 8L * ((double[]) result).length;
+		}
+		if(result instanceof String)
+		{
+			return 40 + 2L * ((String) result).length();
+		}
+		if(result instanceof Number)
+		{
+			return 16;
+		}
+		if(result instanceof MongoRobcogEEGMatrix)
+		{
+			final MongoRobcogEEGMatrix matrix = (MongoRobcogEEGMatrix) result;
+			return 32 + SizeOf(matrix.GetTimestamps()) + SizeOf(matrix.GetValues()) + SizeOf(matrix.GetChannels());
+		}
+		if(result instanceof Object[])
+		{
+			final Object[] arr = (Object[]) result;
+			long arr_bytes = 16 + 4L * arr.length;
+			for (Object elem : arr){
+				arr_bytes += SizeOf(elem);
+			}
+			return arr_bytes;
+		}
+		return 16;
+	}
+
+	/**
+	 * Deep copy of the result (arrays and EEG matrices, strings and numbers are immutable)
+	 */
+	public static Object CopyOf(Object result){
+		if(result instanceof double[])
+		{
+			return ((double[]) result).clone();
+		}
+		if(result instanceof MongoRobcogEEGMatrix)
+		{
+			final MongoRobcogEEGMatrix matrix = (MongoRobcogEEGMatrix) result;
+			return new MongoRobcogEEGMatrix(matrix.GetChannels().clone(), 
+					matrix.GetTimestamps().clone(), matrix.GetValues().clone());
+		}
+		if(result instanceof Object[])
+		{
+			final Object[] copy = ((Object[]) result).clone();
+			for (int i = 0; i < copy.length; ++i){
+				copy[i] = CopyOf(copy[i]);
+			}
+			return copy;
+		}
+		return result;
+	}
+
+	/**
+	 * Helper function evicting the least recently used results until the memory bound is met
+	 */
+	private void evict(){
+		for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext() && this.bytes > this.maxBytes;){
+			this.bytes -= it.next().bytes;
+			it.remove();
+			this.nrEvictions++;
+		}
+	}
+}
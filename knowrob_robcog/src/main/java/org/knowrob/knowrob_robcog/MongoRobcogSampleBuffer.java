@@ -0,0 +1,230 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive buffer of timestamped samples, every sample
+ * has the same nr of values (stride) stored contiguously in row-major order
+ */
+public class MongoRobcogSampleBuffer {
+
+	// timestamps of the samples
+	private double[] timestamps;
+
+	// values of the samples (nrSamples * stride)
+	private double[] values;
+
+	// nr of committed samples
+	private int nrSamples;
+
+	// nr of values of one sample (0 until the first sample is committed)
+	private int stride;
+
+	// write position of the values of the current sample
+	private int writePos;
+
+	// min time between two kept samples (NEGATIVE_INFINITY keeps every sample)
+	private double deltaT;
+
+	// timestamp of the last kept sample
+	private double prevTs;
+
+	/**
+	 * MongoRobcogSampleBuffer constructor with the initial capacity in values
+	 */
+	public MongoRobcogSampleBuffer(int capacity) {
+		this.timestamps = new double[Math.max(16, capacity / 7)];
+		this.values = new double[Math.max(16, capacity)];
+		this.Reset(Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Remove all the samples (keeps the capacity), a sample is kept only
+	 * if it is more than deltaT after the previous kept one
+	 */
+	public void Reset(double deltaT){
+		this.nrSamples = 0;
+		this.stride = 0;
+		this.writePos = 0;
+		this.deltaT = deltaT;
+		this.prevTs = 0;
+	}
+
+	/**
+	 * Start a new sample, returns false if the sample is skipped by the deltaT filter
+	 */
+	public boolean BeginSample(double ts){
+		if(ts - this.prevTs <= this.deltaT)
+		{
+			return false;
+		}
+		// grow the timestamps if full
+		if(this.nrSamples == this.timestamps.length)
+		{
+			this.timestamps = Arrays.copyOf(this.timestamps, this.nrSamples * 2);
+		}
+		this.timestamps[this.nrSamples] = ts;
+		this.writePos = this.nrSamples * this.stride;
+		return true;
+	}
+
+	/**
+	 * Reserve n values of the current sample (initialized with NaN),
+	 * returns the offset of the first reserved value in the values array
+	 */
+	public int Reserve(int n){
+		// grow the values if full
+		if(this.writePos + n > this.values.length)
+		{
+			this.values = Arrays.copyOf(this.values, Math.max(this.values.length * 2, this.writePos + n));
+		}
+		final int offset = this.writePos;
+		Arrays.fill(this.values, offset, offset + n, Double.NaN);
+		this.writePos += n;
+		return offset;
+	}
+
+	/**
+	 * Commit the current sample, it is dropped if its nr of values
+	 * differs from the previous samples
+	 */
+	public boolean EndSample(){
+		final int nr_values = this.writePos - this.nrSamples * this.stride;
+		if(this.nrSamples == 0 && nr_values > 0)
+		{
+			// the first sample sets the stride
+			this.stride = nr_values;
+		}
+		else if(nr_values != this.stride || nr_values == 0)
+		{
+			System.out.println("Java - SampleBuffer - dropping sample at " + this.timestamps[this.nrSamples]
+					+ " with " + nr_values + " values instead of " + this.stride);
+			this.writePos = this.nrSamples * this.stride;
+			return false;
+		}
+		this.prevTs = this.timestamps[this.nrSamples];
+		this.nrSamples++;
+		MongoRobcogMetrics.AddSample();
+		return true;
+	}
+
+	/**
+	 * Append the samples of the other buffer before the end timestamp, every sample is filtered
+	 * by the deltaT of this buffer (as by BeginSample), so the filter carries over from the
+	 * previous samples, returns the nr of appended samples
+	 */
+	public int Append(MongoRobcogSampleBuffer other, double end){
+		final int stride = other.stride;
+		int nr_appended = 0;
+		for (int i = 0; i < other.nrSamples && other.timestamps[i] < end; ++i){
+			if(this.BeginSample(other.timestamps[i]))
+			{
+				final int offset = this.Reserve(stride);
+				System.arraycopy(other.values, i * stride, this.values, offset, stride);
+				if(this.EndSample())
+				{
+					nr_appended++;
+				}
+			}
+		}
+		return nr_appended;
+	}
+
+	/**
+	 * Remove the first n committed samples, the deltaT filter state is kept
+	 */
+	public void Drop(int n){
+		n = Math.min(n, this.nrSamples);
+		final int nr_left = this.nrSamples - n;
+		System.arraycopy(this.timestamps, n, this.timestamps, 0, nr_left);
+		System.arraycopy(this.values, n * this.stride, this.values, 0, nr_left * this.stride);
+		this.nrSamples = nr_left;
+		this.writePos = nr_left * this.stride;
+	}
+
+	/**
+	 * Nr of committed samples
+	 */
+	public int GetNrSamples(){
+		return this.nrSamples;
+	}
+
+	/**
+	 * Nr of values of one sample
+	 */
+	public int GetStride(){
+		return this.stride;
+	}
+
+	/**
+	 * Timestamps of the samples (the array can be larger than the nr of samples)
+	 */
+	public double[] GetTimestamps(){
+		return this.timestamps;
+	}
+
+	/**
+	 * Values of the samples in row-major order (the array can be larger than nrSamples * stride)
+	 */
+	public double[] GetValues(){
+		return this.values;
+	}
+
+	/**
+	 * Copy the values of the samples into rows of the given width,
+	 * e.g. width 7 gives one [x,y,z,qx,qy,qz,qw] row per pose
+	 */
+	public double[][] ToRows(int width){
+		final int nr_rows = this.nrSamples * this.stride / width;
+		double[][] rows = new double[nr_rows][];
+		for (int i = 0; i < nr_rows; ++i){
+			rows[i] = Arrays.copyOfRange(this.values, i * width, (i + 1) * width);
+		}
+		return rows;
+	}
+
+	/**
+	 * Copy the values of the samples into one block of rows of the given width per sample,
+	 * e.g. width 7 gives [sample][bone][x,y,z,qx,qy,qz,qw]
+	 */
+	public double[][][] ToBlocks(int width){
+		final int nr_rows = this.stride / width;
+		double[][][] blocks = new double[this.nrSamples][nr_rows][];
+		for (int i = 0; i < this.nrSamples; ++i){
+			for (int j = 0; j < nr_rows; ++j){
+				final int offset = i * this.stride + j * width;
+				blocks[i][j] = Arrays.copyOfRange(this.values, offset, offset + width);
+			}
+		}
+		return blocks;
+	}
+}
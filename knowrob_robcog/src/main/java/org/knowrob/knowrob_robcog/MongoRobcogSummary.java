@@ -0,0 +1,294 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Precomputed trajectory summaries of a RawData episode collection, written to Summary_<tag>:
+ * one {entity, timestamp, dist, dist_xy} document per logged sample of every entity with the
+ * cumulative traveled distance (3D and XY), and one {entity, summary: true, ..} document per entity
+ * with its time interval, total distances, max speed, min sample interval and bounding box,
+ * the traveled distance between two timepoints is then the difference of two cumulative lookups
+ * (skeletal entities are summarized as skel:<id>), the cumulative distances keep every sample,
+ * so they only answer the queries with a deltaT below the min sample interval (the samples kept
+ * by a larger deltaT depend on the start of the query and cannot be precomputed)
+ */
+public class MongoRobcogSummary {
+
+	// prefix of the RawData collections
+	public static final String RAW_DATA_PREFIX = "RawData_";
+
+	// prefix of the summary collections
+	public static final String SUMMARY_PREFIX = "Summary_";
+
+	// prefix of the summarized skeletal entities
+	public static final String SKEL_PREFIX = "skel:";
+
+	// suffix of the collection the summary is built in before replacing the summary
+	private static final String BUILD_SUFFIX = "_build";
+
+	// nr of documents inserted at once
+	private static final int INSERT_BATCH_SIZE = 1000;
+
+	/**
+	 * Running summary of one entity
+	 */
+	private static class EntityState {
+		double start;
+		double prevTs;
+		double prevX;
+		double prevY;
+		double prevZ;
+		double dist;
+		double distXY;
+		double maxSpeed;
+		double minDeltaT = Double.POSITIVE_INFINITY;
+		double[] min = new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		double[] max = new double[] {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		long nrSamples;
+	}
+
+	/**
+	 * Name of the summary collection of the given RawData collection
+	 * (RawData_<tag> -> Summary_<tag>)
+	 */
+	public static String SummaryName(String rawCollName){
+		final String tag = rawCollName.startsWith(RAW_DATA_PREFIX)
+				? rawCollName.substring(RAW_DATA_PREFIX.length()) : rawCollName;
+		return SUMMARY_PREFIX + tag;
+	}
+
+	/**
+	 * Summary collection of the given RawData collection (in the same database)
+	 */
+	public static DBCollection SummaryCollection(DBCollection rawColl){
+		return rawColl.getDB().getCollection(SummaryName(rawColl.getName()));
+	}
+
+	/**
+	 * Check if the summary of the RawData collection was built
+	 */
+	public static boolean Exists(DBCollection rawColl){
+		return rawColl.getDB().collectionExists(SummaryName(rawColl.getName()));
+	}
+
+	/**
+	 * Summary key of the skeletal entity
+	 */
+	public static String SkelEntityKey(String id){
+		return SKEL_PREFIX + id;
+	}
+
+	/**
+	 * Build (or rebuild) the summary of the RawData collection in one pass over the episode,
+	 * returns the nr of summarized entities, the summary is written into a separate collection
+	 * which then replaces the previous summary (it stays usable while rebuilding)
+	 */
+	public static int Build(DBCollection rawColl){
+		final String summary_name = SummaryName(rawColl.getName());
+		final DBCollection build_coll = rawColl.getDB().getCollection(summary_name + BUILD_SUFFIX);
+		System.out.println("Java - Summary - building " + rawColl.getDB().getName() + "." + summary_name
+				+ " from " + rawColl.getFullName() + "..");
+
+		// start from an empty collection (left over by a failed build)
+		build_coll.drop();
+		try
+		{
+			final int nr_entities = build(rawColl, build_coll);
+
+			// replace the previous summary
+			build_coll.rename(summary_name, true);
+			System.out.println("Java - Summary - summarized " + nr_entities + " entities in " 
+					+ rawColl.getDB().getName() + "." + summary_name);
+			return nr_entities;
+		}
+		finally
+		{
+			// no-op after the rename
+			build_coll.drop();
+		}
+	}
+
+	/**
+	 * Write the summary documents of the RawData collection into the given collection
+	 */
+	private static int build(DBCollection rawColl, DBCollection summary_coll){
+
+		// running state of every entity
+		Map<String, EntityState> states = new HashMap<String, EntityState>();
+
+		// cumulative distance documents waiting for insert
+		List<DBObject> batch = new ArrayList<DBObject>(INSERT_BATCH_SIZE);
+
+		// only the locations of the entities are needed
+		DBObject proj_fields = new BasicDBObject("_id", 0);
+		proj_fields.put("timestamp", 1);
+		proj_fields.put("entities.id", 1);
+		proj_fields.put("entities.loc", 1);
+		proj_fields.put("skel_entities.id", 1);
+		proj_fields.put("skel_entities.loc", 1);
+
+		// one pass in timestamp order
+		DBCursor cursor = rawColl.find(new BasicDBObject("timestamp", new BasicDBObject("$exists", true)), proj_fields)
+				.sort(new BasicDBObject("timestamp", 1))
+				.batchSize(1000);
+		while(cursor.hasNext())
+		{
+			BasicDBObject curr_doc = (BasicDBObject) cursor.next();
+			final double ts = curr_doc.getDouble("timestamp");
+			addSamples(states, batch, (BasicDBList) curr_doc.get("entities"), "", ts);
+			addSamples(states, batch, (BasicDBList) curr_doc.get("skel_entities"), SKEL_PREFIX, ts);
+			if(batch.size() >= INSERT_BATCH_SIZE)
+			{
+				summary_coll.insert(batch);
+				batch.clear();
+			}
+		}
+		// close cursor
+		cursor.close();
+		if(!batch.isEmpty())
+		{
+			summary_coll.insert(batch);
+			batch.clear();
+		}
+
+		// one summary document per entity
+		for (Map.Entry<String, EntityState> entry : states.entrySet()){
+			final EntityState state = entry.getValue();
+			DBObject summary_doc = new BasicDBObject("entity", entry.getKey());
+			summary_doc.put("summary", true);
+			summary_doc.put("start", state.start);
+			summary_doc.put("end", state.prevTs);
+			summary_doc.put("nr_samples", state.nrSamples);
+			summary_doc.put("dist", state.dist);
+			summary_doc.put("dist_xy", state.distXY);
+			summary_doc.put("max_speed", state.maxSpeed);
+			summary_doc.put("min_dt", state.minDeltaT);
+			summary_doc.put("bbox", new BasicDBObject("min", xyz(state.min)).append("max", xyz(state.max)));
+			batch.add(summary_doc);
+		}
+		if(!batch.isEmpty())
+		{
+			summary_coll.insert(batch);
+		}
+
+		// index for the cumulative distance lookups
+		summary_coll.createIndex(new BasicDBObject("entity", 1).append("timestamp", 1));
+		return states.size();
+	}
+
+	/**
+	 * Update the running state of the logged entities and create their cumulative distance documents,
+	 * the entities are keyed by <prefix><id>
+	 */
+	private static void addSamples(Map<String, EntityState> states,
+			List<DBObject> batch,
+			BasicDBList entities,
+			String prefix,
+			double ts){
+		if(entities == null)
+		{
+			return;
+		}
+		for (Object entity_obj : entities){
+			final BasicDBObject entity = (BasicDBObject) entity_obj;
+			final BasicDBObject loc = (BasicDBObject) entity.get("loc");
+			if(loc == null)
+			{
+				continue;
+			}
+			final String id = prefix + entity.getString("id");
+			final double x = loc.getDouble("x");
+			final double y = loc.getDouble("y");
+			final double z = loc.getDouble("z");
+
+			EntityState state = states.get(id);
+			if(state == null)
+			{
+				// first sample of the entity
+				state = new EntityState();
+				state.start = ts;
+				states.put(id, state);
+			}
+			else
+			{
+				// distance to the previous sample of the entity
+				final double dx = x - state.prevX;
+				final double dy = y - state.prevY;
+				final double dz = z - state.prevZ;
+				final double dist_xy = Math.sqrt(dx * dx + dy * dy);
+				final double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				state.dist += dist;
+				state.distXY += dist_xy;
+				final double dt = ts - state.prevTs;
+				if(dt > 0)
+				{
+					state.maxSpeed = Math.max(state.maxSpeed, dist / dt);
+				}
+				state.minDeltaT = Math.min(state.minDeltaT, dt);
+			}
+			state.prevTs = ts;
+			state.prevX = x;
+			state.prevY = y;
+			state.prevZ = z;
+			state.nrSamples++;
+			state.min[0] = Math.min(state.min[0], x);
+			state.min[1] = Math.min(state.min[1], y);
+			state.min[2] = Math.min(state.min[2], z);
+			state.max[0] = Math.max(state.max[0], x);
+			state.max[1] = Math.max(state.max[1], y);
+			state.max[2] = Math.max(state.max[2], z);
+
+			// cumulative distance up to this sample
+			DBObject dist_doc = new BasicDBObject("entity", id);
+			dist_doc.put("timestamp", ts);
+			dist_doc.put("dist", state.dist);
+			dist_doc.put("dist_xy", state.distXY);
+			batch.add(dist_doc);
+		}
+	}
+
+	/**
+	 * Location document from the array
+	 */
+	private static DBObject xyz(double[] v){
+		return new BasicDBObject("x", v[0]).append("y", v[1]).append("z", v[2]);
+	}
+}
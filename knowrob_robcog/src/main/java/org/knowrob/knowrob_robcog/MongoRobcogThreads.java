@@ -0,0 +1,104 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads of the concurrent queries (episode executor, async queries,
+ * trajectory shards, prefetcher), the pools are sized from the connection pool
+ * of the mongo client so the workers do not wait for a free connection
+ */
+final class MongoRobcogThreads {
+
+	/**
+	 * Static helpers only
+	 */
+	private MongoRobcogThreads() {
+	}
+
+	/**
+	 * Factory of daemon threads named <prefix>-<nr>, daemon threads do not
+	 * block the shutdown of the prolog process
+	 */
+	static ThreadFactory DaemonFactory(final String prefix){
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Fixed pool of daemon threads, at most nrThreads and at most the connections
+	 * per host of the connection (if any)
+	 */
+	static ExecutorService FixedPool(String prefix, int nrThreads, MongoRobcogConn conn){
+		return Executors.newFixedThreadPool(PoolSize(nrThreads, conn), DaemonFactory(prefix));
+	}
+
+	/**
+	 * Nr of threads of a pool, the wanted nr bounded by the connections per host
+	 * of the connection (not bounded without connection)
+	 */
+	static int PoolSize(int nrThreads, MongoRobcogConn conn){
+		int size = Math.max(1, nrThreads);
+		if(conn != null)
+		{
+			size = Math.min(size, Math.max(1, conn.GetConnectionsPerHost()));
+		}
+		return size;
+	}
+
+	/**
+	 * Wait for the result of the task, null if it failed (the failure is printed
+	 * as "Java - <component> - <task> failed") or the waiting thread is interrupted
+	 */
+	static <T> T Await(Future<T> future, String component, String task){
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			System.out.println("Java - " + component + " - " + task + " failed: " + e.getCause());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.mongodb.DBCursor;
+
+/**
+ * Streaming cursor over a trajectory, the samples are handed out in chunks
+ * of a fixed max size from reusable buffers, so only one chunk (plus one
+ * mongo batch) is held in memory independent of the trajectory length
+ */
+public class MongoRobcogTrajCursor {
+
+	// default max nr of samples of a chunk
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * Callback receiving the chunks of the trajectory
+	 */
+	public interface ChunkHandler {
+		/**
+		 * Process the chunk (the arrays are reused for the next chunk and can be
+		 * larger than the chunk), return false to stop the streaming
+		 */
+		boolean OnChunk(double[] timestamps, double[] values, int nrSamples, int stride);
+	}
+
+	// mongo cursor with the pose decoder writing into the sample buffer (null for in-memory samples)
+	private final DBCursor cursor;
+
+	// samples decoded from the mongo batches, not yet handed out
+	private final MongoRobcogSampleBuffer buffer;
+
+	// max nr of samples of a chunk
+	private final int chunkSize;
+
+	// timestamps of the current chunk
+	private final double[] chunkTimestamps;
+
+	// values of the current chunk in row-major order
+	private double[] chunkValues;
+
+	// nr of samples of the current chunk
+	private int chunkNrSamples;
+
+	// nr of values of one sample
+	private int stride;
+
+	// true if all the documents were read from the cursor
+	private boolean exhausted;
+
+	/**
+	 * MongoRobcogTrajCursor constructor over the samples already in the buffer (e.g. from an episode store)
+	 */
+	MongoRobcogTrajCursor(MongoRobcogSampleBuffer buffer, int chunkSize) {
+		this(null, buffer, chunkSize);
+		this.exhausted = true;
+	}
+
+	/**
+	 * MongoRobcogTrajCursor constructor, the cursor decoder has to write into the given buffer
+	 */
+	MongoRobcogTrajCursor(DBCursor cursor, MongoRobcogSampleBuffer buffer, int chunkSize) {
+		this.cursor = cursor;
+		this.buffer = buffer;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.chunkTimestamps = new double[this.chunkSize];
+		this.chunkValues = new double[0];
+		this.chunkNrSamples = 0;
+		this.stride = 0;
+		this.exhausted = false;
+	}
+
+	/**
+	 * Check if there are samples left
+	 */
+	public boolean HasNext(){
+		this.fill();
+		return this.buffer.GetNrSamples() > 0;
+	}
+
+	/**
+	 * Move to the next chunk, returns its nr of samples
+	 */
+	public int Next(){
+		if(!this.HasNext())
+		{
+			throw new NoSuchElementException("Java - TrajCursor - no samples left");
+		}
+		// move the first samples of the buffer into the chunk
+		this.stride = this.buffer.GetStride();
+		this.chunkNrSamples = Math.min(this.chunkSize, this.buffer.GetNrSamples());
+		if(this.chunkValues.length < this.chunkSize * this.stride)
+		{
+			this.chunkValues = new double[this.chunkSize * this.stride];
+		}
+		System.arraycopy(this.buffer.GetTimestamps(), 0, this.chunkTimestamps, 0, this.chunkNrSamples);
+		System.arraycopy(this.buffer.GetValues(), 0, this.chunkValues, 0, this.chunkNrSamples * this.stride);
+		this.buffer.Drop(this.chunkNrSamples);
+		return this.chunkNrSamples;
+	}
+
+	/**
+	 * Move to the next chunk and return a copy of it as rows of the given width,
+	 * e.g. width 7 gives one [x,y,z,qx,qy,qz,qw] row per pose
+	 */
+	public double[][] NextRows(int width){
+		this.Next();
+		final int nr_rows = this.chunkNrSamples * this.stride / width;
+		double[][] rows = new double[nr_rows][];
+		for (int i = 0; i < nr_rows; ++i){
+			rows[i] = Arrays.copyOfRange(this.chunkValues, i * width, (i + 1) * width);
+		}
+		return rows;
+	}
+
+	/**
+	 * Move to the next chunk and return a copy of it as one block of rows of the given width
+	 * per sample, e.g. width 7 gives [sample][bone][x,y,z,qx,qy,qz,qw]
+	 */
+	public double[][][] NextBlocks(int width){
+		this.Next();
+		final int nr_rows = this.stride / width;
+		double[][][] blocks = new double[this.chunkNrSamples][nr_rows][];
+		for (int i = 0; i < this.chunkNrSamples; ++i){
+			for (int j = 0; j < nr_rows; ++j){
+				final int offset = i * this.stride + j * width;
+				blocks[i][j] = Arrays.copyOfRange(this.chunkValues, offset, offset + width);
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Timestamps of the current chunk (the array can be larger than the chunk)
+	 */
+	public double[] GetTimestamps(){
+		return this.chunkTimestamps;
+	}
+
+	/**
+	 * Values of the current chunk in row-major order (the array can be larger than the chunk)
+	 */
+	public double[] GetValues(){
+		return this.chunkValues;
+	}
+
+	/**
+	 * Nr of samples of the current chunk
+	 */
+	public int GetNrSamples(){
+		return this.chunkNrSamples;
+	}
+
+	/**
+	 * Nr of values of one sample (e.g. 7 for a pose, 7 * nr of bones for the bones poses)
+	 */
+	public int GetStride(){
+		return this.stride;
+	}
+
+	/**
+	 * Hand all the chunks to the handler (until it returns false) and close the cursor
+	 */
+	public void ForEach(ChunkHandler handler){
+		try
+		{
+			while(this.HasNext())
+			{
+				final int nr_samples = this.Next();
+				if(!handler.OnChunk(this.chunkTimestamps, this.chunkValues, nr_samples, this.stride))
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			this.Close();
+		}
+	}
+
+	/**
+	 * Close the mongo cursor and drop the remaining samples
+	 */
+	public void Close(){
+		this.exhausted = true;
+		if(this.cursor != null)
+		{
+			this.cursor.close();
+		}
+		this.buffer.Drop(this.buffer.GetNrSamples());
+	}
+
+	/**
+	 * Read documents until the buffer holds a full chunk or the cursor is exhausted,
+	 * the decoder adds a whole mongo batch to the buffer when it is fetched
+	 */
+	private void fill(){
+		while(!this.exhausted && this.buffer.GetNrSamples() < this.chunkSize)
+		{
+			if(this.cursor.hasNext())
+			{
+				this.cursor.next();
+			}
+			else
+			{
+				this.exhausted = true;
+				this.cursor.close();
+			}
+		}
+	}
+}
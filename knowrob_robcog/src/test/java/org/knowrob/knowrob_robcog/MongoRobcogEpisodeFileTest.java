@@ -0,0 +1,180 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Records written by the export and read back from the mapped episode file
+ */
+public class MongoRobcogEpisodeFileTest {
+
+	// tolerance of the compared values
+	private static final double EPS = 1e-9;
+
+	// exported file
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("robcog_episode", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		MongoRobcogRecordStore.Gathered gathered = new MongoRobcogRecordStore.Gathered(new String[] {"c0", "c1"});
+		
+		// the actor moves 1 along x per second
+		MongoRobcogSampleBuffer actor = new MongoRobcogSampleBuffer(64);
+		for (int i = 0; i < 3; ++i){
+			addSample(actor, 10.0 + i, pose(i, 0, 0), null);
+		}
+		gathered.entities.put("Actor1", actor);
+		
+		// the head is missing from the second sample
+		MongoRobcogSampleBuffer skel = new MongoRobcogSampleBuffer(64);
+		addSample(skel, 10.0, pose(1, 0, 0), pose(0, 0, 10));
+		addSample(skel, 11.0, pose(2, 0, 0), nan());
+		gathered.skelEntities.put("Skel1", skel);
+		gathered.bonesNames.put("Skel1", new String[] {"hand", "head"});
+		
+		addSample(gathered.eeg, 10.0, new double[] {1.0, -1.0}, null);
+		addSample(gathered.eeg, 10.5, new double[] {2.0, Double.NaN}, null);
+		
+		final long nr_bytes = MongoRobcogEpisodeFile.export("RobCoG.ep_1", gathered, this.file.getPath());
+		assertEquals(this.file.length(), nr_bytes);
+		
+		MongoRobcogEpisodeFile episode = MongoRobcogEpisodeFile.Open(this.file.getPath());
+		assertEquals("RobCoG.ep_1", episode.GetCollName());
+		
+		assertArrayEquals(pose(1, 0, 0), episode.GetActorPoseAt("Actor1", 11.5), EPS);
+		assertEquals(2.0, episode.GetActorTraveledDistance("Actor1", 10.0, 12.0, 0.0), EPS);
+		assertEquals(3, episode.GetActorTraj("Actor1", 0.0, 20.0, 0.0).length);
+		
+		assertArrayEquals(new String[] {"hand", "head"}, episode.GetBonesNames("Skel1"));
+		assertArrayEquals(pose(0, 0, 10), episode.GetBonePoseAt("Skel1", "head", 10.0), EPS);
+		assertArrayEquals(pose(2, 0, 0), episode.GetBonePoseAt("Skel1", "hand", 11.0), EPS);
+		assertTrue(Double.isNaN(episode.GetBonePoseAt("Skel1", "head", 11.0)[0]));
+		
+		assertArrayEquals(new String[] {"c0", "c1"}, episode.GetEEGChannels());
+		MongoRobcogEEGMatrix matrix = episode.GetEEGMatrix(10.0, 11.0, 0.0);
+		assertArrayEquals(new double[] {10.0, 10.5}, matrix.GetTimestamps(), EPS);
+		assertEquals(-1.0, matrix.GetValue(0, 1), EPS);
+		assertTrue(Double.isNaN(matrix.GetValue(1, 1)));
+	}
+
+	@Test
+	public void emptyEpisode() throws IOException {
+		MongoRobcogEpisodeFile.export("RobCoG.ep_2", 
+				new MongoRobcogRecordStore.Gathered(new String[0]), this.file.getPath());
+		MongoRobcogEpisodeFile episode = MongoRobcogEpisodeFile.Open(this.file.getPath());
+		assertEquals(0, episode.GetActorPoseAt("Actor1", 10.0).length);
+		assertEquals(0, episode.GetEEGChannels().length);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+		try
+		{
+			raf.writeInt(42);
+			raf.writeInt(MongoRobcogEpisodeFile.VERSION);
+		}
+		finally
+		{
+			raf.close();
+		}
+		MongoRobcogEpisodeFile.Open(this.file.getPath());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsTruncatedFiles() throws IOException {
+		MongoRobcogRecordStore.Gathered gathered = new MongoRobcogRecordStore.Gathered(new String[0]);
+		MongoRobcogSampleBuffer actor = new MongoRobcogSampleBuffer(64);
+		addSample(actor, 10.0, pose(0, 0, 0), null);
+		gathered.entities.put("Actor1", actor);
+		final long nr_bytes = MongoRobcogEpisodeFile.export("RobCoG.ep_3", gathered, this.file.getPath());
+		
+		RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+		try
+		{
+			raf.setLength(nr_bytes - 8);
+		}
+		finally
+		{
+			raf.close();
+		}
+		MongoRobcogEpisodeFile.Open(this.file.getPath());
+	}
+
+	/**
+	 * Helper function adding a sample with the values (followed by the more values if any)
+	 */
+	private static void addSample(MongoRobcogSampleBuffer buffer, double ts, double[] values, double[] moreValues){
+		buffer.BeginSample(ts);
+		final int nr_values = values.length + (moreValues != null ? moreValues.length : 0);
+		final int offset = buffer.Reserve(nr_values);
+		System.arraycopy(values, 0, buffer.GetValues(), offset, values.length);
+		if(moreValues != null)
+		{
+			System.arraycopy(moreValues, 0, buffer.GetValues(), offset + values.length, moreValues.length);
+		}
+		buffer.EndSample();
+	}
+
+	/**
+	 * Helper function returning a pose without rotation
+	 */
+	private static double[] pose(double x, double y, double z){
+		return new double[] {x, y, z, 0.0, 0.0, 0.0, 1.0};
+	}
+
+	/**
+	 * Helper function returning a missing pose
+	 */
+	private static double[] nan(){
+		return new double[] {Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+	}
+}
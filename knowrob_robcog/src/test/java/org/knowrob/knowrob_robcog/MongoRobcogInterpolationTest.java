@@ -0,0 +1,128 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * LERP / SLERP of the poses and resampling of the trajectories
+ */
+public class MongoRobcogInterpolationTest {
+
+	// tolerance of the compared values
+	private static final double EPS = 1e-9;
+
+	// rotations around z: none, 45 and 90 degrees
+	private static final double[] ROT_0 = {0.0, 0.0, 0.0, 1.0};
+	private static final double[] ROT_45 = {0.0, 0.0, Math.sin(Math.PI / 8), Math.cos(Math.PI / 8)};
+	private static final double[] ROT_90 = {0.0, 0.0, Math.sin(Math.PI / 4), Math.cos(Math.PI / 4)};
+
+	@Test
+	public void interpolatesPositionAndRotation() {
+		double[] src = concat(pose(0, 0, 0, ROT_0), pose(2, 4, -2, ROT_90));
+		double[] dst = new double[9];
+		MongoRobcogInterpolation.InterpolatePose(src, 0, 1.0, 7, 3.0, 2.0, dst, 2);
+		assertArrayEquals(concat(new double[2], pose(1, 2, -1, ROT_45)), dst, EPS);
+	}
+
+	@Test
+	public void takesTheShortestRotationPath() {
+		// the negated quaternion is the same rotation
+		double[] rot_90_neg = {-ROT_90[0], -ROT_90[1], -ROT_90[2], -ROT_90[3]};
+		double[] src = concat(pose(0, 0, 0, ROT_0), pose(0, 0, 0, rot_90_neg));
+		double[] dst = new double[7];
+		MongoRobcogInterpolation.InterpolatePose(src, 0, 0.0, 7, 1.0, 0.5, dst, 0);
+		assertArrayEquals(pose(0, 0, 0, ROT_45), dst, EPS);
+	}
+
+	@Test
+	public void clampsOutsideTheSamples() {
+		double[] src = concat(pose(0, 0, 0, ROT_0), pose(2, 0, 0, ROT_90));
+		double[] dst = new double[7];
+		MongoRobcogInterpolation.InterpolatePose(src, 0, 1.0, 7, 2.0, 5.0, dst, 0);
+		assertArrayEquals(pose(2, 0, 0, ROT_90), dst, EPS);
+		
+		// samples with the same timestamp give the first pose
+		MongoRobcogInterpolation.InterpolatePose(src, 0, 1.0, 7, 1.0, 1.0, dst, 0);
+		assertArrayEquals(pose(0, 0, 0, ROT_0), dst, EPS);
+	}
+
+	@Test
+	public void floorIndex() {
+		double[] ts = {1.0, 2.0, 2.0, 4.0, 99.0};
+		assertEquals(-1, MongoRobcogInterpolation.FloorIndex(ts, 4, 0.5));
+		assertEquals(0, MongoRobcogInterpolation.FloorIndex(ts, 4, 1.0));
+		assertEquals(2, MongoRobcogInterpolation.FloorIndex(ts, 4, 3.0));
+		// the samples after nrSamples are ignored
+		assertEquals(3, MongoRobcogInterpolation.FloorIndex(ts, 4, 100.0));
+	}
+
+	@Test
+	public void resamplesAscendingAndUnorderedTimestamps() {
+		double[] sample_ts = {1.0, 3.0};
+		double[] poses = concat(pose(0, 0, 0, ROT_0), pose(2, 0, 0, ROT_0));
+		double[][] resampled = MongoRobcogInterpolation.Resample(sample_ts, poses, 2,
+				new double[] {0.5, 2.0, 3.5, 1.5}, true);
+		assertEquals(0, resampled[0].length);
+		assertArrayEquals(pose(1, 0, 0, ROT_0), resampled[1], EPS);
+		assertArrayEquals(pose(2, 0, 0, ROT_0), resampled[2], EPS);
+		assertArrayEquals(pose(0.5, 0, 0, ROT_0), resampled[3], EPS);
+	}
+
+	@Test
+	public void resamplesTheMostRecentSampleWithoutInterpolation() {
+		double[] sample_ts = {1.0, 3.0};
+		double[] poses = concat(pose(0, 0, 0, ROT_0), pose(2, 0, 0, ROT_90));
+		double[][] resampled = MongoRobcogInterpolation.Resample(sample_ts, poses, 2,
+				new double[] {2.9, 3.0}, false);
+		assertArrayEquals(pose(0, 0, 0, ROT_0), resampled[0], EPS);
+		assertArrayEquals(pose(2, 0, 0, ROT_90), resampled[1], EPS);
+	}
+
+	/**
+	 * Helper function returning the [x, y, z, qx, qy, qz, qw] pose
+	 */
+	private static double[] pose(double x, double y, double z, double[] rot){
+		return new double[] {x, y, z, rot[0], rot[1], rot[2], rot[3]};
+	}
+
+	/**
+	 * Helper function concatenating the values
+	 */
+	private static double[] concat(double[] a, double[] b){
+		double[] values = new double[a.length + b.length];
+		System.arraycopy(a, 0, values, 0, a.length);
+		System.arraycopy(b, 0, values, a.length, b.length);
+		return values;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Marker ids registered by namespace and group
+ */
+public class MongoRobcogMarkerRegistryTest {
+
+	// registry with the markers of two actors
+	private MongoRobcogMarkerRegistry registry;
+
+	@Before
+	public void setUp() {
+		this.registry = new MongoRobcogMarkerRegistry();
+		this.registry.Add("list", "Actor1", "m1");
+		this.registry.Add("list", "Actor2", "m2");
+		this.registry.Add("mesh", "Actor1", "m3");
+		this.registry.Add("list", "Actor1", "m4");
+	}
+
+	@Test
+	public void registersEveryIdOnce() {
+		assertFalse(this.registry.Add("mesh", "Actor2", "m1"));
+		assertEquals(4, this.registry.GetSize());
+		assertEquals(3, this.registry.GetNamespaceSize("list"));
+		assertEquals(0, this.registry.GetNamespaceSize("other"));
+		assertEquals(3, this.registry.GetGroupSize("Actor1"));
+		assertTrue(this.registry.Contains("m3"));
+	}
+
+	@Test
+	public void removeUnlinksNamespaceAndGroup() {
+		assertTrue(this.registry.Remove("m2"));
+		assertFalse(this.registry.Remove("m2"));
+		assertFalse(this.registry.Contains("m2"));
+		assertEquals(2, this.registry.GetNamespaceSize("list"));
+		
+		// the empty group is dropped
+		assertEquals(0, this.registry.GetGroupSize("Actor2"));
+		assertArrayEquals(new String[] {"Actor1"}, this.registry.GetGroups());
+	}
+
+	@Test
+	public void removeNamespaceInCreationOrder() {
+		assertEquals(Arrays.asList("m1", "m2", "m4"), this.registry.RemoveNamespace("list"));
+		assertEquals(1, this.registry.GetSize());
+		assertEquals(1, this.registry.GetGroupSize("Actor1"));
+		assertTrue(this.registry.RemoveNamespace("list").isEmpty());
+	}
+
+	@Test
+	public void removeGroup() {
+		assertEquals(Arrays.asList("m1", "m3", "m4"), this.registry.RemoveGroup("Actor1"));
+		assertEquals(1, this.registry.GetNamespaceSize("list"));
+		assertEquals(0, this.registry.GetNamespaceSize("mesh"));
+		assertTrue(this.registry.Contains("m2"));
+	}
+
+	@Test
+	public void clearForgetsAllIds() {
+		assertEquals(4, this.registry.Clear().size());
+		assertEquals(0, this.registry.GetSize());
+		assertEquals(0, this.registry.GetGroups().length);
+		
+		// the ids can be registered again
+		assertTrue(this.registry.Add("list", "Actor1", "m1"));
+	}
+}
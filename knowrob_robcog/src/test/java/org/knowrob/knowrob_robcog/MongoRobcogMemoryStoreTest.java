@@ -0,0 +1,167 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Queries without db connection, served from the fixtures of a memory store
+ */
+public class MongoRobcogMemoryStoreTest {
+
+	// tolerance of the compared values
+	private static final double EPS = 1e-9;
+
+	// queries of the fixtures
+	private MongoRobcogQueries queries;
+
+	/**
+	 * Fill the store, the samples are given out of order on purpose
+	 */
+	@Before
+	public void setUp() {
+		MongoRobcogMemoryStore store = new MongoRobcogMemoryStore();
+		
+		// the actor moves 1 along x per second
+		store.PutActorTraj("Actor1",
+				new double[] {12.0, 10.0, 13.0, 11.0},
+				new double[][] {pose(2, 0, 0), pose(0, 0, 0), pose(3, 0, 0), pose(1, 0, 0)});
+		
+		// the hand moves along x, the head along z
+		store.PutBonesTrajs("Skel1", new String[] {"hand", "head"},
+				new double[] {11.0, 10.0},
+				new double[][][] {
+					{pose(1, 0, 0), pose(0, 0, 11)},
+					{pose(0, 0, 0), pose(0, 0, 10)}});
+		
+		// c1 is the negated c0
+		store.PutEEG(new String[] {"c0", "c1"},
+				new double[] {10.0, 11.0, 12.0},
+				new double[][] {{10.0, -10.0}, {11.0, -11.0}, {12.0, -12.0}});
+		
+		this.queries = new MongoRobcogQueries(store);
+	}
+
+	@Test
+	public void actorPoseAtIsTheMostRecentSample() {
+		assertArrayEquals(pose(1, 0, 0), this.queries.GetActorPoseAt("Actor1", 11.5), EPS);
+		assertArrayEquals(pose(3, 0, 0), this.queries.GetActorPoseAt("Actor1", 20.0), EPS);
+		assertEquals(0, this.queries.GetActorPoseAt("Actor1", 9.0).length);
+	}
+
+	@Test
+	public void actorTrajKeepsSamplesMoreThanDeltaTApart() {
+		double[][] traj = this.queries.GetActorTraj("Actor1", 10.0, 13.0, 0.0);
+		assertEquals(4, traj.length);
+		for (int i = 0; i < traj.length; ++i){
+			assertEquals(i, traj[i][0], EPS);
+		}
+		
+		// 11 and 13 are only 1 after the kept samples
+		traj = this.queries.GetActorTraj("Actor1", 10.0, 13.0, 1.5);
+		assertEquals(2, traj.length);
+		assertEquals(0.0, traj[0][0], EPS);
+		assertEquals(2.0, traj[1][0], EPS);
+	}
+
+	@Test
+	public void actorTraveledDistance() {
+		assertEquals(3.0, this.queries.GetActorTraveledDistance("Actor1", 10.0, 13.0, 0.0), EPS);
+		assertEquals(1.0, this.queries.GetActorTraveledDistance("Actor1", 11.0, 12.0, 0.0), EPS);
+	}
+
+	@Test
+	public void bonesPoses() {
+		assertArrayEquals(pose(0, 0, 11), this.queries.GetBonePoseAt("Skel1", "head", 11.0), EPS);
+		assertArrayEquals(pose(0, 0, 0), this.queries.GetBonePoseAt("Skel1", "hand", 10.5), EPS);
+		
+		double[][][] trajs = this.queries.GetBonesTrajs("Skel1", 10.0, 11.0, 0.0);
+		assertEquals(2, trajs.length);
+		assertArrayEquals(pose(1, 0, 0), trajs[1][0], EPS);
+		assertArrayEquals(pose(0, 0, 11), trajs[1][1], EPS);
+	}
+
+	@Test
+	public void eegMatrixFillsMissingChannelsWithNaN() {
+		MongoRobcogEEGMatrix matrix = this.queries.GetEEGMatrix(new String[] {"c1", "c7"}, 10.5, 12.0, 0.0);
+		assertEquals(2, matrix.GetNrSamples());
+		assertArrayEquals(new double[] {11.0, 12.0}, matrix.GetTimestamps(), EPS);
+		assertEquals(-11.0, matrix.GetValue(0, 0), EPS);
+		assertTrue(Double.isNaN(matrix.GetValue(1, 1)));
+	}
+
+	@Test
+	public void streamActorTrajInChunks() {
+		MongoRobcogTrajCursor cursor = this.queries.StreamActorTraj("Actor1", 10.0, 13.0, 0.0, 3);
+		try
+		{
+			assertTrue(cursor.HasNext());
+			assertEquals(3, cursor.Next());
+			assertEquals(7, cursor.GetStride());
+			assertEquals(12.0, cursor.GetTimestamps()[2], EPS);
+			assertEquals(2.0, cursor.GetValues()[2 * 7], EPS);
+			
+			assertArrayEquals(new double[][] {pose(3, 0, 0)}, cursor.NextRows(7));
+			assertFalse(cursor.HasNext());
+		}
+		finally
+		{
+			cursor.Close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void summaryNeedsConnection() {
+		this.queries.GetActorSummary("Actor1");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void forCollectionNeedsConnection() {
+		this.queries.ForCollection("RobCoG", "ep_1");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void useEpisodeStoreNeedsConnection() {
+		this.queries.UseEpisodeStore(null);
+	}
+
+	/**
+	 * Helper function returning a pose without rotation
+	 */
+	private static double[] pose(double x, double y, double z){
+		return new double[] {x, y, z, 0.0, 0.0, 0.0, 1.0};
+	}
+}
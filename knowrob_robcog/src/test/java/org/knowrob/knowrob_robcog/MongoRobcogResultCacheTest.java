@@ -0,0 +1,140 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Byte bounded LRU eviction, copies and validation of the cached results
+ */
+public class MongoRobcogResultCacheTest {
+
+	// tolerance of the compared values
+	private static final double EPS = 1e-9;
+
+	// estimated size of a cached 10 values result with a one char key
+	private static final long RESULT_BYTES = MongoRobcogResultCache.SizeOf(new double[10]) + 2 + 64;
+
+	@Test
+	public void evictsTheLeastRecentlyUsedResults() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(2 * RESULT_BYTES);
+		cache.Put("a", "ep_1", new double[10]);
+		cache.Put("b", "ep_1", new double[10]);
+		
+		// a is used more recently than b
+		assertNotNull(cache.Get("a"));
+		cache.Put("c", "ep_1", new double[10]);
+		assertNull(cache.Get("b"));
+		assertNotNull(cache.Get("a"));
+		assertNotNull(cache.Get("c"));
+		
+		// [hits, misses, evictions, nr results, bytes, max bytes]
+		assertArrayEquals(new long[] {3, 1, 1, 2, 2 * RESULT_BYTES, 2 * RESULT_BYTES}, cache.GetStats());
+	}
+
+	@Test
+	public void shrinkingTheBoundEvicts() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(2 * RESULT_BYTES);
+		cache.Put("a", "ep_1", new double[10]);
+		cache.Put("b", "ep_1", new double[10]);
+		cache.SetMaxBytes(RESULT_BYTES);
+		assertNull(cache.Get("a"));
+		assertNotNull(cache.Get("b"));
+	}
+
+	@Test
+	public void doesNotCacheResultsLargerThanTheBound() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(RESULT_BYTES);
+		cache.Put("a", "ep_1", new double[11]);
+		assertNull(cache.Get("a"));
+		assertEquals(0, cache.GetStats()[4]);
+	}
+
+	@Test
+	public void handsOutCopies() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(MongoRobcogResultCache.DEFAULT_MAX_BYTES);
+		double[][] traj = {{1.0, 2.0}, {3.0, 4.0}};
+		cache.Put("traj", "ep_1", traj);
+		
+		// neither the cached nor the returned result is shared
+		traj[0][0] = -1.0;
+		double[][] cached = (double[][]) cache.Get("traj");
+		assertEquals(1.0, cached[0][0], EPS);
+		cached[1][1] = -1.0;
+		assertEquals(4.0, ((double[][]) cache.Get("traj"))[1][1], EPS);
+		
+		MongoRobcogEEGMatrix matrix = new MongoRobcogEEGMatrix(new String[] {"c0"}, 
+				new double[] {1.0}, new double[] {5.0});
+		cache.Put("eeg", "ep_1", matrix);
+		matrix.GetValues()[0] = -1.0;
+		assertEquals(5.0, ((MongoRobcogEEGMatrix) cache.Get("eeg")).GetValue(0, 0), EPS);
+	}
+
+	@Test
+	public void changedCollectionsDropTheirResults() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(MongoRobcogResultCache.DEFAULT_MAX_BYTES);
+		cache.Validate("ep_1", 100);
+		cache.Validate("ep_2", 100);
+		cache.Put("a", "ep_1", new double[10]);
+		cache.Put("b", "ep_2", new double[10]);
+		
+		cache.Validate("ep_1", 100);
+		assertNotNull(cache.Get("a"));
+		cache.Validate("ep_1", 101);
+		assertNull(cache.Get("a"));
+		assertNotNull(cache.Get("b"));
+	}
+
+	@Test
+	public void validatesOncePerPeriod() {
+		MongoRobcogResultCache cache = new MongoRobcogResultCache(MongoRobcogResultCache.DEFAULT_MAX_BYTES);
+		cache.SetValidationPeriod(60 * 1000);
+		assertTrue(cache.NeedsValidation("ep_1"));
+		cache.Validate("ep_1", 100);
+		assertFalse(cache.NeedsValidation("ep_1"));
+		assertTrue(cache.NeedsValidation("ep_2"));
+		
+		// a zero period validates at every lookup
+		cache.SetValidationPeriod(0);
+		assertTrue(cache.NeedsValidation("ep_1"));
+		
+		// invalidated collections are validated again
+		cache.SetValidationPeriod(60 * 1000);
+		cache.Invalidate("ep_1");
+		assertTrue(cache.NeedsValidation("ep_1"));
+	}
+}
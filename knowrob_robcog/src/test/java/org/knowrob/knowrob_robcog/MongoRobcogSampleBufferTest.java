@@ -0,0 +1,169 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Samples kept by the deltaT filter, within a buffer and across the seams of the sharded queries
+ */
+public class MongoRobcogSampleBufferTest {
+
+	// tolerance of the compared values
+	private static final double EPS = 1e-9;
+
+	@Test
+	public void keepsSamplesMoreThanDeltaTAfterTheLastKeptOne() {
+		MongoRobcogSampleBuffer buffer = filled(0.5, 1.0, 1.2, 1.6, 2.0, 2.2);
+		assertArrayEquals(new double[] {1.0, 1.6, 2.2}, timestamps(buffer), EPS);
+		assertArrayEquals(new double[] {1.0, 1.6, 2.2}, Arrays.copyOf(buffer.GetValues(), 3), EPS);
+	}
+
+	@Test
+	public void noFilterKeepsEverySample() {
+		MongoRobcogSampleBuffer buffer = filled(Double.NEGATIVE_INFINITY, 0.0, 0.1, 0.1);
+		assertEquals(3, buffer.GetNrSamples());
+	}
+
+	@Test
+	public void dropsSamplesWithAnotherStride() {
+		MongoRobcogSampleBuffer buffer = new MongoRobcogSampleBuffer(16);
+		assertTrue(buffer.BeginSample(1.0));
+		buffer.Reserve(2);
+		assertTrue(buffer.EndSample());
+		assertTrue(buffer.BeginSample(2.0));
+		buffer.Reserve(3);
+		assertFalse(buffer.EndSample());
+		assertEquals(1, buffer.GetNrSamples());
+	}
+
+	@Test
+	public void shardedSamplesMatchTheUnshardedOnes() {
+		// irregular samples, the seams at 1.0 and 2.05 split the deltaT windows
+		double[] ts = new double[30];
+		for (int i = 0; i < ts.length; ++i){
+			ts[i] = 0.1 * i + (i % 3 == 0 ? 0.03 : 0.0);
+		}
+		final double[] bounds = {0.0, 1.0, 2.05, 3.0};
+		
+		for (double delta_t : new double[] {Double.NEGATIVE_INFINITY, 0.0, 0.15, 0.35, 0.5}){
+			MongoRobcogSampleBuffer unsharded = filled(delta_t, ts);
+			
+			// the ranges are fetched unfiltered (both ends included) and stitched in order
+			MongoRobcogSampleBuffer sharded = new MongoRobcogSampleBuffer(16);
+			sharded.Reset(delta_t);
+			for (int i = 0; i + 1 < bounds.length; ++i){
+				MongoRobcogSampleBuffer shard = filled(Double.NEGATIVE_INFINITY, range(ts, bounds[i], bounds[i + 1]));
+				sharded.Append(shard, i + 2 < bounds.length ? bounds[i + 1] : Double.POSITIVE_INFINITY);
+			}
+			assertArrayEquals(timestamps(unsharded), timestamps(sharded), EPS);
+			assertArrayEquals(Arrays.copyOf(unsharded.GetValues(), unsharded.GetNrSamples()),
+					Arrays.copyOf(sharded.GetValues(), sharded.GetNrSamples()), EPS);
+		}
+	}
+
+	@Test
+	public void appendFiltersAcrossTheSeam() {
+		MongoRobcogSampleBuffer buffer = filled(0.5, 1.0, 1.6);
+		
+		// 1.8 and 2.0 are too close to 1.6, 2.4 would be kept by the unfiltered range on its own
+		assertEquals(2, buffer.Append(filled(Double.NEGATIVE_INFINITY, 1.8, 2.0, 2.2, 2.4, 3.0), Double.POSITIVE_INFINITY));
+		assertArrayEquals(new double[] {1.0, 1.6, 2.2, 3.0}, timestamps(buffer), EPS);
+	}
+
+	@Test
+	public void appendStopsAtTheNextRange() {
+		MongoRobcogSampleBuffer buffer = filled(Double.NEGATIVE_INFINITY);
+		assertEquals(2, buffer.Append(filled(Double.NEGATIVE_INFINITY, 0.0, 1.0, 2.0), 2.0));
+		assertEquals(1, buffer.Append(filled(Double.NEGATIVE_INFINITY, 2.0), Double.POSITIVE_INFINITY));
+		assertArrayEquals(new double[] {0.0, 1.0, 2.0}, timestamps(buffer), EPS);
+	}
+
+	@Test
+	public void appendGrowsTheBuffer() {
+		MongoRobcogSampleBuffer buffer = new MongoRobcogSampleBuffer(16);
+		buffer.Reset(Double.NEGATIVE_INFINITY);
+		double[] ts = new double[100];
+		for (int i = 0; i < ts.length; ++i){
+			ts[i] = i;
+		}
+		assertEquals(100, buffer.Append(filled(Double.NEGATIVE_INFINITY, ts), Double.POSITIVE_INFINITY));
+		assertEquals(100, buffer.GetNrSamples());
+		assertEquals(99.0, buffer.GetValues()[99], EPS);
+	}
+
+	/**
+	 * Helper function filling a buffer with one value (the timestamp) per sample
+	 */
+	private static MongoRobcogSampleBuffer filled(double deltaT, double... timestamps){
+		MongoRobcogSampleBuffer buffer = new MongoRobcogSampleBuffer(16);
+		buffer.Reset(deltaT);
+		for (double ts : timestamps){
+			if(buffer.BeginSample(ts))
+			{
+				final int offset = buffer.Reserve(1);
+				buffer.GetValues()[offset] = ts;
+				buffer.EndSample();
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Helper function returning the timestamps in [start, end]
+	 */
+	private static double[] range(double[] timestamps, double start, double end){
+		int first = 0;
+		while(first < timestamps.length && timestamps[first] < start)
+		{
+			first++;
+		}
+		int last = first;
+		while(last < timestamps.length && timestamps[last] <= end)
+		{
+			last++;
+		}
+		return Arrays.copyOfRange(timestamps, first, last);
+	}
+
+	/**
+	 * Helper function returning the timestamps of the kept samples
+	 */
+	private static double[] timestamps(MongoRobcogSampleBuffer buffer){
+		return Arrays.copyOf(buffer.GetTimestamps(), buffer.GetNrSamples());
+	}
+}
@@ -0,0 +1,136 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.knowrob.knowrob_robcog.MongoRobcogConn;
+import org.knowrob.knowrob_robcog.MongoRobcogQueries;
+
+/**
+ * Latency (sample time percentiles), throughput and allocation rate (-prof gc)
+ * of the MongoRobcogQueries hot paths for different episode sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MongoRobcogQueriesBenchmark {
+
+	// nr of samples (documents) of the episode
+	@Param({"1000", "10000", "100000"})
+	public int nrSamples;
+
+	// length of the queried trajectories (seconds)
+	@Param({"10"})
+	public double trajDuration;
+
+	// deltaT of the trajectory queries (seconds)
+	@Param({"0.0", "0.5"})
+	public double deltaT;
+
+	// queries bound to the generated collection
+	private MongoRobcogQueries queries;
+
+	// random query timepoints
+	private Random rand;
+
+	// duration of the episode
+	private double duration;
+
+	/**
+	 * Generate the data (if needed) and bind the queries to it
+	 */
+	@Setup(Level.Trial)
+	public void Setup(){
+		MongoRobcogConn conn = new MongoRobcogConn();
+		RobcogBenchmarkData.Ensure(conn, this.nrSamples);
+		this.queries = new MongoRobcogQueries(conn).ForCollection(
+				RobcogBenchmarkData.DB_NAME, RobcogBenchmarkData.CollName(this.nrSamples));
+		this.duration = RobcogBenchmarkData.Duration(this.nrSamples);
+		this.rand = new Random(42);
+	}
+
+	/**
+	 * Random timepoint in the episode
+	 */
+	private double RandomTs(){
+		return this.rand.nextDouble() * this.duration;
+	}
+
+	/**
+	 * Random start of a trajectory fitting in the episode
+	 */
+	private double RandomStart(){
+		return this.rand.nextDouble() * Math.max(0.0, this.duration - this.trajDuration);
+	}
+
+	@Benchmark
+	public double[] GetActorPoseAt(){
+		return this.queries.GetActorPoseAt(RobcogBenchmarkData.EntityName(0), this.RandomTs());
+	}
+
+	@Benchmark
+	public double[][] GetActorTraj(){
+		final double start = this.RandomStart();
+		return this.queries.GetActorTraj(RobcogBenchmarkData.EntityName(0),
+				start, start + this.trajDuration, this.deltaT);
+	}
+
+	@Benchmark
+	public double[][][] GetBonesTrajs(){
+		final double start = this.RandomStart();
+		return this.queries.GetBonesTrajs(RobcogBenchmarkData.SKEL_ENTITY,
+				start, start + this.trajDuration, this.deltaT);
+	}
+
+	@Benchmark
+	public double[][][] GetAllEEGValues(){
+		final double start = this.RandomStart();
+		return this.queries.GetAllEEGValues(Double.toString(start),
+				Double.toString(start + this.trajDuration), this.deltaT);
+	}
+}
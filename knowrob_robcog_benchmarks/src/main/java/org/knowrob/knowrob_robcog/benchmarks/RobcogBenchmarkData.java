@@ -0,0 +1,164 @@
+/*
+  Copyright (C) 2014-17 by Andrei Haidu
+
+  Redistribution and use in source and binary forms, with or without
+  modification, are permitted provided that the following conditions are met:
+      * Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+      * Redistributions in binary form must reproduce the above copyright
+        notice, this list of conditions and the following disclaimer in the
+        documentation and/or other materials provided with the distribution.
+      * Neither the name of the <organization> nor the
+        names of its contributors may be used to endorse or promote products
+        derived from this software without specific prior written permission.
+
+  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+  DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+  @author Andrei Haidu
+  @license BSD
+*/
+
+package org.knowrob.knowrob_robcog.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+import org.knowrob.knowrob_robcog.MongoRobcogConn;
+
+/**
+ * Generates synthetic RawData collections shaped like the logged episodes
+ * (timestamp, entities[] with loc/rot, skel_entities[].bones[], eeg.c1..c14)
+ */
+public class RobcogBenchmarkData {
+
+	// database of the generated collections
+	public static final String DB_NAME = "robcog_jmh";
+
+	// logging frequency of the generated data (Hz)
+	public static final double FREQUENCY = 60.0;
+
+	// nr of entities logged in every document
+	public static final int NR_ENTITIES = 20;
+
+	// nr of bones of the skeletal entity
+	public static final int NR_BONES = 60;
+
+	// nr of eeg channels
+	public static final int NR_EEG_CHANNELS = 14;
+
+	// name of the skeletal entity
+	public static final String SKEL_ENTITY = "Hand";
+
+	/**
+	 * Name of the collection with the given nr of samples
+	 */
+	public static String CollName(int nrSamples){
+		return "RawData_jmh_" + nrSamples;
+	}
+
+	/**
+	 * Name of the entity with the given index
+	 */
+	public static String EntityName(int idx){
+		return "Entity_" + idx;
+	}
+
+	/**
+	 * Name of the bone with the given index
+	 */
+	public static String BoneName(int idx){
+		return "bone_" + idx;
+	}
+
+	/**
+	 * Duration of the episode with the given nr of samples (seconds)
+	 */
+	public static double Duration(int nrSamples){
+		return nrSamples / FREQUENCY;
+	}
+
+	/**
+	 * Generate the collection if it does not exist yet (or has a different size)
+	 */
+	public static void Ensure(MongoRobcogConn conn, int nrSamples){
+		DBCollection coll = conn.GetCollection(DB_NAME, CollName(nrSamples));
+		if(coll.count() == nrSamples)
+		{
+			return;
+		}
+		coll.drop();
+		System.out.println("Java - RobcogBenchmarkData - generating " + nrSamples + " samples..");
+
+		// fixed seed, same data on every run
+		Random rand = new Random(nrSamples);
+		List<DBObject> batch = new ArrayList<DBObject>();
+		for (int i = 0; i < nrSamples; ++i){
+			BasicDBObject doc = new BasicDBObject("timestamp", i / FREQUENCY);
+
+			// entities
+			BasicDBList entities = new BasicDBList();
+			for (int e = 0; e < NR_ENTITIES; ++e){
+				entities.add(Pose(new BasicDBObject("id", EntityName(e)), rand));
+			}
+			doc.put("entities", entities);
+
+			// skeletal entity with its bones
+			BasicDBList bones = new BasicDBList();
+			for (int b = 0; b < NR_BONES; ++b){
+				bones.add(Pose(new BasicDBObject("name", BoneName(b)), rand));
+			}
+			BasicDBObject skel_entity = Pose(new BasicDBObject("id", SKEL_ENTITY), rand);
+			skel_entity.put("bones", bones);
+			BasicDBList skel_entities = new BasicDBList();
+			skel_entities.add(skel_entity);
+			doc.put("skel_entities", skel_entities);
+
+			// eeg channels
+			BasicDBObject eeg = new BasicDBObject();
+			for (int c = 1; c <= NR_EEG_CHANNELS; ++c){
+				eeg.put("c" + c, 4000.0 + rand.nextGaussian() * 50.0);
+			}
+			doc.put("eeg", eeg);
+
+			batch.add(doc);
+			if(batch.size() == 500)
+			{
+				coll.insert(batch);
+				batch.clear();
+			}
+		}
+		if(!batch.isEmpty())
+		{
+			coll.insert(batch);
+		}
+	}
+
+	/**
+	 * Add a random loc/rot pose to the document
+	 */
+	private static BasicDBObject Pose(BasicDBObject doc, Random rand){
+		doc.put("loc", new BasicDBObject("x", rand.nextDouble())
+				.append("y", rand.nextDouble())
+				.append("z", rand.nextDouble()));
+		doc.put("rot", new BasicDBObject("x", 0.0)
+				.append("y", 0.0)
+				.append("z", 0.0)
+				.append("w", 1.0));
+		return doc;
+	}
+}
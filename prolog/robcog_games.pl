@@ -41,6 +41,7 @@
         sem_map_inst/1,
         sem_map_inst/2,
         show_world_state/2,
+        show_world_state/3,
         rating_score/3,
         u_task_context/2,
         u_occurs/2,
@@ -88,6 +89,7 @@
     u_inst_name(r,r),
     show_ep_sem_map(+),
     show_world_state(+,+),
+    show_world_state(+,+,+),
     u_ep_timeline(r,r,+,+),
     sem_map_inst(r, r),
     rating_score(r, r, r),
@@ -145,23 +147,30 @@ sem_map_inst(EpInst, MapInst) :-
     rdf_has(MapInst, rdf:type, knowrob:'SemanticEnvironmentMap').
 
 % Update all the loaded visual marker positions at the given timestamp
+% (the poses of all the dynamic entities are fetched with a single query,
+% the skeletal mesh markers are moved in place instead of being recreated)
 show_world_state(EpInst, Timestamp) :-
-    findall(_, (
+    findall(EntityName-MarkerObject, (
                 rdf_has(DynamicEntity, knowrob_u:'dynamicEntity', literal(type(xsd:boolean, '1'))),
                 marker(object(DynamicEntity), MarkerObject),
-                % rdf_has(DynamicEntity, knowrob_u:'dynamicEntity', literal(type(xsd:boolean, '1'))),
-                rdf_split_url(_, EntityName, DynamicEntity),
-                actor_pose(EpInst, EntityName, Timestamp, Pose),
-                u_split_pose(Pose, Pos, Quat),
-                marker_pose(MarkerObject, pose(Pos, Quat))
-            ), _),
-    u_marker_remove_skel,
+                rdf_split_url(_, EntityName, DynamicEntity)
+            ), EntityMarkers),
+    pairs_keys_values(EntityMarkers, EntityNames, MarkerObjects),
+    world_state(EpInst, EntityNames, Timestamp, Poses),
+    maplist(u_marker_pose, MarkerObjects, Poses),
     findall(_, (
                 rdf_has(SkelEntity, knowrob_u:'pathToSkeletalMesh', literal(type(xsd:string, SkelMeshPath))),
                 rdf_split_url(_, EntityName, SkelEntity),
-                view_skeletal_mesh(EpInst, EntityName, Timestamp, SkelMeshPath)
+                animate_skeletal_mesh(EpInst, EntityName, Timestamp, SkelMeshPath)
             ), _).
 
+% Update the visual markers at the given timestamp while stepping through the episode,
+% then load in the background the next world states in the playback direction (1 / -1)
+% (requires enable_prefetch/4, the prefetched world states are served from memory)
+show_world_state(EpInst, Timestamp, Direction) :-
+    show_world_state(EpInst, Timestamp),
+    prefetch_world_states(EpInst, Timestamp, Direction).
+
 
 % get the score of the rating
 rating_score(EpInst, RatingType, RatingScore) :- 
@@ -430,3 +439,10 @@ maplist_arr_to_list(ObjsArr, List) :-
 u_split_pose(Pose, Pos, Quat) :-
     [X,Y,Z|Quat] = Pose,
     Pos = [X,Y,Z].
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Move the marker to the pose (markers without a pose are left unchanged)
+u_marker_pose(_, []) :- !.
+u_marker_pose(MarkerObject, Pose) :-
+    u_split_pose(Pose, Pos, Quat),
+    marker_pose(MarkerObject, pose(Pos, Quat)).
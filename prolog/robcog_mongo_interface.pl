@@ -32,7 +32,10 @@
 :- module(robcog_mongo_interface,
   [
 		mongo_robcog_conn/1,
-        mongo_robcog_query/1
+        mongo_robcog_query/1,
+        mongo_robcog_query/2,
+        mongo_robcog_executor/1,
+        mongo_robcog_executor_concurrency/1
   ]).
 
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %
@@ -78,4 +81,40 @@ mongo_robcog_query(MongoQuery) :-
 
 % if set, return object
 mongo_robcog_query(MongoQuery) :-
-    query_flag(MongoQuery).
\ No newline at end of file
+    query_flag(MongoQuery).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %
+% Get a query object bound to the given collection
+% (does not change the selected collection, safe to use from concurrent threads)
+mongo_robcog_query(CollName, MongoQuery) :-
+    mongo_robcog_query(Query),
+    jpl_call(Query, 'ForCollection', [CollName], MongoQuery).
+
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %
+% Create the parallel multi-episode query executor
+% (makes sure the executor is only created once)
+
+% set flag
+:- assert(executor_flag(fail)).
+
+% check flag, then init executor
+mongo_robcog_executor(Executor) :-
+    executor_flag(fail),
+    mongo_robcog_query(MongoQuery),
+    jpl_new('org.knowrob.knowrob_robcog.MongoRobcogEpisodeExecutor', [MongoQuery], Executor),
+    retract(executor_flag(fail)),
+    assert(executor_flag(Executor)),!.
+
+% if set, return object
+mongo_robcog_executor(Executor) :-
+    executor_flag(Executor).
+
+% recreate the executor with the given max nr of episodes queried in parallel
+% Concurrency = 16 (should not exceed the mongo connections per host)
+mongo_robcog_executor_concurrency(Concurrency) :-
+    retract(executor_flag(PrevExecutor)),
+    (PrevExecutor \== fail -> jpl_call(PrevExecutor, 'Shutdown', [], @void) ; true),
+    mongo_robcog_query(MongoQuery),
+    jpl_new('org.knowrob.knowrob_robcog.MongoRobcogEpisodeExecutor', [MongoQuery, Concurrency], Executor),
+    assert(executor_flag(Executor)).
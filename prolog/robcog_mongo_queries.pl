@@ -33,8 +33,39 @@
         connect_to_db/1,
         set_mongo_coll/1,
 
+        enable_episode_cache/0,
+        enable_episode_cache/1,
+        disable_episode_cache/0,
+        load_episode_cache/1,
+        set_server_downsampling/1,
+        set_traj_shards/1,
+        set_pose_interpolation/1,
+        set_marker_point_budget/1,
+        set_marker_animation/1,
+        enable_prefetch/4,
+        disable_prefetch/0,
+        enable_result_cache/1,
+        result_cache_stats/1,
+        enable_metrics/1,
+        metrics_report/2,
+        reset_metrics/0,
+        dump_metrics_csv/1,
+        start_metrics_csv_dump/2,
+        stop_metrics_csv_dump/0,
+        prefetch_world_states/3,
+        build_summary/2,
+        export_episode/3,
+        use_memory_store/1,
+        use_episode_file/2,
+        use_db_store/1,
+        actor_summary/3,
+
         actor_pose/3,
         actor_pose/4,
+        actor_pose_interpolated/4,
+        actor_poses_interpolated/4,
+        actor_poses/4,
+        world_state/4,
         comp_contact_roles/3,
         view_actor_pose/6,
         view_actor_pose/7,
@@ -45,19 +76,29 @@
         view_bones_meshes/5,
         view_skeletal_mesh/4,
         view_skeletal_mesh/5,
+        animate_skeletal_mesh/4,
 
         actor_traveled_distance/6,
         actor_traveled_distance_xy/6,
+        episodes_traveled_distance/6,
+        episodes_traveled_distance_xy/6,
+        episodes_actor_traj/6,
 
         actor_traj/6,
+        actors_trajs/6,
+        actor_traj_chunk/7,
         view_actor_traj/8,
         view_actor_traj/9,
 
         bone_pose/5,
+        bone_pose_interpolated/5,
+        bone_poses_interpolated/5,
+        bone_poses/5,
         view_bone_pose/7,
         view_bone_pose/8,
 
         bone_traj/7,
+        bone_traj_chunk/8,
         view_bone_traj/9,
         view_bone_traj/10,
 
@@ -67,6 +108,7 @@
         view_bones_poses/7,
 
         bones_trajs/6,
+        bones_trajs_chunk/7,
         view_bones_trajs/8,
         view_bones_trajs/9,
 
@@ -74,13 +116,17 @@
         u_marker_remove_all/0,
         u_marker_remove_trajs/0,
         u_marker_remove_skel/0,
+        u_marker_remove_actor/1,
+        u_marker_count/1,
 
         add_rating/4,
 
         eeg_value/4,
         eeg_values/6,
         eeg_all_channels_value/3,
-        eeg_all_channels_values/5
+        eeg_all_channels_values/5,
+        eeg_channels/2,
+        eeg_matrix/7
     ]).
 
 :-  rdf_meta
@@ -100,6 +146,202 @@ set_mongo_coll(Coll) :-
     mongo_robcog_conn(MongoRobcog),
     jpl_call(MongoRobcog, 'SetCollection', [Coll], @void).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Serve the pose lookups from an in-memory copy of the episodes
+% MaxMB = 512 (memory bound, least recently used episodes are evicted)
+enable_episode_cache :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'EnableEpisodeCache', [], @void).
+%%
+enable_episode_cache(MaxMB) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'EnableEpisodeCache', [MaxMB], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Disable the episode cache and release its memory
+disable_episode_cache :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'DisableEpisodeCache', [], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Load the raw data of the episode into the cache
+% (fails if the episode does not fit in the memory bound)
+load_episode_cache(EpInst) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'LoadEpisodeCache', [], @(true)).
+
+
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Downsample the trajectories (DT) in the db pipeline instead of the client
+% Enable = true / false
+set_server_downsampling(Enable) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'SetServerSideDownsampling', [@(Enable)], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Fetch the trajectories as NrShards time ranges on concurrent cursors
+% NrShards = 4 (1 for a single cursor)
+set_traj_shards(NrShards) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'SetTrajShards', [NrShards], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Interpolate the poses of actor_pose and bone_pose between the bracketing samples
+% Enable = true / false
+set_pose_interpolation(Enable) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'SetPoseInterpolation', [@(Enable)], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Max nr of points of a trajectory marker, longer trajectories are decimated
+% MaxPoints = 20000 (0 for no limit)
+set_marker_point_budget(MaxPoints) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'SetMarkerPointBudget', [MaxPoints], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Markers viewed without a MarkerID keep a stable id per entity and are moved in place
+% Enable = true / false
+set_marker_animation(Enable) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'SetMarkerAnimation', [@(Enable)], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Memoize the trajectory, distance and EEG query results
+% MaxMBytes = 256
+enable_result_cache(MaxMBytes) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'EnableResultCache', [MaxMBytes], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Result cache statistics [Hits, Misses, Evictions, NrResults, Bytes, MaxBytes]
+result_cache_stats(Stats) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'GetResultCacheStats', [], JavaArr),
+    jpl_array_to_list(JavaArr, Stats).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Record the latencies and data volumes of the queries
+% Enable = true / false
+enable_metrics(Enable) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'EnableMetrics', [@(Enable)], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Metrics of the measured methods, slowest first
+% Methods = ['GetActorTraj', 'GetBonesPosesAt', ..]
+% Rows = one [Calls, TotalMs, MeanMs, P50Ms, P95Ms, P99Ms, MaxMs, Docs, Samples, Bytes, Batches] per method
+metrics_report(Methods, Rows) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'GetMetricsMethods', [], JavaMethodsArr),
+    jpl_array_to_list(JavaMethodsArr, Methods),
+    jpl_call(MongoQuery, 'GetMetricsReport', [], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Rows).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Clear the recorded metrics
+reset_metrics :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'ResetMetrics', [], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Append the current metrics to the CSV file
+% FilePath = '/tmp/robcog_metrics.csv'
+dump_metrics_csv(FilePath) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'DumpMetricsCsv', [FilePath], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Append the metrics to the CSV file every PeriodSec seconds
+% FilePath = '/tmp/robcog_metrics.csv'
+% PeriodSec = 60
+start_metrics_csv_dump(FilePath, PeriodSec) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'StartMetricsCsvDump', [FilePath, PeriodSec], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Stop the periodic CSV dump of the metrics
+stop_metrics_csv_dump :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'StopMetricsCsvDump', [], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Prefetch in the background the world states of the episode at every Step seconds
+% Actors = ['LeftHand', 'RightHand']
+% SkelActors = ['LeftHand'] (actors with prefetched bone poses)
+% Step = 0.1 (seconds)
+enable_prefetch(EpInst, Actors, SkelActors, Step) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_list_to_array(Actors, ActorsArr),
+    jpl_list_to_array(SkelActors, SkelActorsArr),
+    jpl_call(MongoQuery, 'EnablePrefetch', [ActorsArr, SkelActorsArr, Step], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Stop prefetching the world states
+disable_prefetch :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'DisablePrefetch', [], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Start loading the world states after (Direction = 1) or before (Direction = -1) the timestamp
+prefetch_world_states(EpInst, Ts, Direction) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'Prefetch', [Ts, Direction], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Precompute the trajectory summary (Summary_<tag>) of the episode,
+% afterwards the traveled distances are two lookups instead of a scan
+build_summary(EpInst, NrEntities) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'BuildSummary', [], NrEntities).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Export the episode into a binary file which can be queried without the db
+% (MongoRobcogEpisodeFile), NrBytes = -1 if the export failed
+% FilePath = '/tmp/episode.rcep'
+export_episode(EpInst, FilePath, NrBytes) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'ExportEpisode', [FilePath], NrBytes).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Load the episode into memory, its pose, trajectory, bone and EEG queries
+% are served locally afterwards
+use_memory_store(EpInst) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'UseMemoryStore', [], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Serve the queries of the episode from its exported binary file
+% FilePath = '/tmp/episode.rcep'
+use_episode_file(EpInst, FilePath) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'UseEpisodeFile', [FilePath], @(true)).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Query the episode from the db again
+use_db_store(EpInst) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'UseEpisodeStore', [@(null)], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %   
+% Get the summary of the actor trajectory (fails if the summary was not built)
+% Summary = [Start, End, Dist, DistXY, MaxSpeed, MinDT, MinX, MinY, MinZ, MaxX, MaxY, MaxZ]
+actor_summary(EpInst, Actor, Summary) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'GetActorSummary', [Actor], JavaArr),
+    jpl_array_to_list(JavaArr, Summary),
+    Summary \== [].
 
 
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
@@ -107,9 +349,8 @@ set_mongo_coll(Coll) :-
 % Actor = 'LeftHand'
 actor_pose(Actor, Ts, Pose) :-
     get_ep(EpInst),
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetActorPoseAt', [Actor, Ts], JavaArr),
     jpl_array_to_list(JavaArr, Pose).
 
@@ -117,12 +358,59 @@ actor_pose(Actor, Ts, Pose) :-
 % Get the pose of the actor at the given timestamp
 % Actor = 'LeftHand'
 actor_pose(EpInst, Actor, Ts, Pose) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetActorPoseAt', [Actor, Ts], JavaArr),
     jpl_array_to_list(JavaArr, Pose).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the pose of the actor at the given timestamp, interpolated between the bracketing samples
+% Actor = 'LeftHand'
+actor_pose_interpolated(EpInst, Actor, Ts, Pose) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'GetActorPoseInterpolatedAt', [Actor, Ts], JavaArr),
+    jpl_array_to_list(JavaArr, Pose).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the poses of the actor at the given numeric timestamps (e.g. resampled at a fixed rate),
+% interpolated between the bracketing samples, all read with one range query
+% Actor = 'LeftHand'
+% Timestamps = [1.0, 1.1, 1.2]
+actor_poses_interpolated(EpInst, Actor, Timestamps, Poses) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    u_double_array(Timestamps, TimestampsArr),
+    jpl_call(MongoQuery, 'GetActorPosesInterpolatedAt', [Actor, TimestampsArr], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Poses).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the poses of the actor at the given (sorted) timepoints with a single range query,
+% e.g. the start and end of every grasp event
+% Actor = 'LeftHand'
+% Timepoints = ['timepoint_1.1', 'timepoint_2.3']
+% Poses = one pose per timepoint, [] if the actor has no pose yet
+actor_poses(EpInst, Actor, Timepoints, Poses) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_list_to_array(Timepoints, TimepointsArr),
+    jpl_call(MongoQuery, 'GetActorPosesAt', [Actor, TimepointsArr], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Poses).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the poses of the actors at the given timestamp with a single query
+% Actors = ['LeftHand', 'RightHand']
+% Poses = one pose per actor, [] if the actor has no pose yet
+world_state(EpInst, Actors, Ts, Poses) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_list_to_array(Actors, ActorsArr),
+    jpl_call(MongoQuery, 'GetWorldStateRowsAt', [ActorsArr, Ts], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Poses).
+
 comp_contact_roles(EpInst, TouchEvent, CollisionEvent) :-
     findall(Object, rdf_has(TouchEvent, 'http://knowrob.org/kb/knowrob_u.owl#inContact', Object), Objects),
     nth0(0, Objects, FirstObject, [SecondObject]),
@@ -151,16 +439,14 @@ comp_contact_roles(EpInst, TouchEvent, CollisionEvent) :-
 % Color = 'blue'
 % Scale = 0.01 (meters)
 view_actor_pose(EpInst, Actor, Ts, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorPoseAt',
         [Actor, Ts, MarkerType, Color, Scale], @void).
 %%
 view_actor_pose(EpInst, Actor, Ts, MarkerID, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorPoseAt',
         [Actor, Ts, MarkerID, MarkerType, Color, Scale], @void).
 
@@ -170,16 +456,14 @@ view_actor_pose(EpInst, Actor, Ts, MarkerID, MarkerType, Color, Scale) :-
 % MeshPath = 'path to the mesh'
 % MarkerID = 'hand_marker_id1'
 view_mesh(EpInst, Actor, Ts, MeshPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorMeshAt',
         [Actor, Ts, MeshPath], @void).
 %%
 view_mesh(EpInst, Actor, Ts, MarkerID, MeshPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorMeshAt',
         [Actor, Ts, MarkerID, MeshPath], @void).
 
@@ -189,16 +473,14 @@ view_mesh(EpInst, Actor, Ts, MarkerID, MeshPath) :-
 % MeshPath = 'path to the mesh'
 % MarkerID = 'hand_marker_id1'
 view_bones_meshes(EpInst, Actor, Ts, MeshFolderPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesMeshesAt',
         [Actor, Ts, MeshFolderPath], @void).
 %%
 view_bones_meshes(EpInst, Actor, Ts, MarkerID, MeshFolderPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesMeshesAt',
         [Actor, Ts, MarkerID, MeshFolderPath], @void).
 
@@ -208,28 +490,36 @@ view_bones_meshes(EpInst, Actor, Ts, MarkerID, MeshFolderPath) :-
 % MeshPath = 'path to the mesh'
 % MarkerID = 'hand_marker_id1'
 view_skeletal_mesh(EpInst, Actor, Ts, MeshFolderPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewSkeletalMeshAt',
         [Actor, Ts, MeshFolderPath], @void).
 %%
 view_skeletal_mesh(EpInst, Actor, Ts, MarkerID, MeshFolderPath) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewSkeletalMeshAt',
         [Actor, Ts, MarkerID, MeshFolderPath], @void).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Move the skeletal mesh markers to the given timestamp (created at the first call,
+% later calls only push the changed bone poses)
+% Actor = 'LeftHand'
+% MeshPath = 'path to the mesh'
+animate_skeletal_mesh(EpInst, Actor, Ts, MeshFolderPath) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'AnimateSkeletalMeshAt',
+        [Actor, Ts, MeshFolderPath], @void).
+
 
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % Get the distance traveled by the actor between the timestamps
 % Actor = 'LeftHand'
 % DT = 0.01 (seconds)
 actor_traveled_distance(EpInst, Actor, Start, End, DT, Distance) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetActorTraveledDistance', [Actor, Start, End, DT], Distance).
 
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
@@ -237,23 +527,88 @@ actor_traveled_distance(EpInst, Actor, Start, End, DT, Distance) :-
 % Actor = 'LeftHand'
 % DT = 0.01 (seconds)
 actor_traveled_distance_xy(EpInst, Actor, Start, End, DT, Distance) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetActorXYTraveledDistance', [Actor, Start, End, DT], Distance).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the distance traveled by the actor in every episode (queried in parallel)
+% EpInsts = list of episodes
+% Starts, Ends = one numeric timestamp per episode
+% DT = 0.01 (seconds)
+episodes_traveled_distance(EpInsts, Actor, Starts, Ends, DT, Distances) :-
+    mongo_robcog_executor(Executor),
+    u_episodes_args(EpInsts, Starts, Ends, CollsArr, StartsArr, EndsArr),
+    jpl_call(Executor, 'GetActorTraveledDistance',
+        [CollsArr, Actor, StartsArr, EndsArr, DT], JavaArr),
+    jpl_array_to_list(JavaArr, Distances).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the distance traveled by the actor in the XY plane in every episode (queried in parallel)
+% EpInsts = list of episodes
+% Starts, Ends = one numeric timestamp per episode
+% DT = 0.01 (seconds)
+episodes_traveled_distance_xy(EpInsts, Actor, Starts, Ends, DT, Distances) :-
+    mongo_robcog_executor(Executor),
+    u_episodes_args(EpInsts, Starts, Ends, CollsArr, StartsArr, EndsArr),
+    jpl_call(Executor, 'GetActorXYTraveledDistance',
+        [CollsArr, Actor, StartsArr, EndsArr, DT], JavaArr),
+    jpl_array_to_list(JavaArr, Distances).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the trajectory of the actor in every episode (queried in parallel)
+% EpInsts = list of episodes
+% Starts, Ends = one numeric timestamp per episode
+% DT = 0.01 (seconds)
+episodes_actor_traj(EpInsts, Actor, Starts, Ends, DT, Trajs) :-
+    mongo_robcog_executor(Executor),
+    u_episodes_args(EpInsts, Starts, Ends, CollsArr, StartsArr, EndsArr),
+    jpl_call(Executor, 'GetActorTraj',
+        [CollsArr, Actor, StartsArr, EndsArr, DT], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, JavaPoseObjs),
+    maplist(maplist_arr_to_list, JavaPoseObjs, Trajs).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % Get the trajectory of actor at between the given timestamps
 % Actor = 'LeftHand'
 % DT = 0.01 (seconds)
 actor_traj(EpInst, Actor, Start, End, DT, Traj) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetActorTraj', [Actor, Start, End, DT], JavaMultiArr),
     jpl_array_to_list(JavaMultiArr, JavaObjList),
     maplist(jpl_array_to_list, JavaObjList, Traj).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the trajectories of the actors between the given timestamps,
+% the actors are queried concurrently
+% Actors = ['LeftHand', 'RightHand']
+% DT = 0.01 (seconds)
+% Trajs = one trajectory per actor
+actors_trajs(EpInst, Actors, Start, End, DT, Trajs) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_list_to_array(Actors, ActorsArr),
+    jpl_call(MongoQuery, 'GetActorsTrajs', [ActorsArr, Start, End, DT], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, JavaPoseObjs),
+    maplist(maplist_arr_to_list, JavaPoseObjs, Trajs).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the trajectory of the actor in chunks of max ChunkSize poses (on backtracking),
+% only one chunk is held in memory
+% Actor = 'LeftHand'
+% DT = 0.01 (seconds)
+% ChunkSize = 1000
+actor_traj_chunk(EpInst, Actor, Start, End, DT, ChunkSize, Chunk) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    setup_call_cleanup(
+        jpl_call(MongoQuery, 'StreamActorTraj', [Actor, Start, End, DT, ChunkSize], Cursor),
+        u_traj_chunk(Cursor, rows, Chunk),
+        jpl_call(Cursor, 'Close', [], @void)).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % View trajectory of actor at between the given timestamps 
 % Actor = 'LeftHand'
@@ -263,16 +618,14 @@ actor_traj(EpInst, Actor, Start, End, DT, Traj) :-
 % Scale = 0.01 (meters)
 % DT = 0.01 (seconds)
 view_actor_traj(EpInst, Actor, Start, End, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorTraj',
         [Actor, Start, End, MarkerType, Color, Scale, DT], @void).
 %%
 view_actor_traj(EpInst, Actor, Start, End, MarkerID, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewActorTraj',
         [Actor, Start, End, MarkerID, MarkerType, Color, Scale, DT], @void).
 
@@ -282,12 +635,48 @@ view_actor_traj(EpInst, Actor, Start, End, MarkerID, MarkerType, Color, Scale, D
 % Actor = 'LeftHand'
 % Bone = 'index_3_l'
 bone_pose(EpInst, Actor, Bone, Ts, Pose) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetBonePoseAt', [Actor, Ts, Bone], JavaArr),
     jpl_array_to_list(JavaArr, Pose).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the poses of the bone at the given (sorted) timepoints with a single range query
+% Actor = 'LeftHand'
+% Bone = 'index_3_l'
+% Timepoints = ['timepoint_1.1', 'timepoint_2.3']
+bone_poses(EpInst, Actor, Bone, Timepoints, Poses) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_list_to_array(Timepoints, TimepointsArr),
+    jpl_call(MongoQuery, 'GetBonePosesAt', [Actor, Bone, TimepointsArr], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Poses).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the pose of the bone at the given timestamp, interpolated between the bracketing samples
+% Actor = 'LeftHand'
+% Bone = 'index_3_l'
+bone_pose_interpolated(EpInst, Actor, Bone, Ts, Pose) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'GetBonePoseInterpolatedAt', [Actor, Bone, Ts], JavaArr),
+    jpl_array_to_list(JavaArr, Pose).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the poses of the bone at the given numeric timestamps,
+% interpolated between the bracketing samples, all read with one range query
+% Actor = 'LeftHand'
+% Bone = 'index_3_l'
+% Timestamps = [1.0, 1.1, 1.2]
+bone_poses_interpolated(EpInst, Actor, Bone, Timestamps, Poses) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    u_double_array(Timestamps, TimestampsArr),
+    jpl_call(MongoQuery, 'GetBonePosesInterpolatedAt', [Actor, Bone, TimestampsArr], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Poses).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % View the pose of the bone at the given timestamp 
 % Actor = 'LeftHand'
@@ -297,16 +686,14 @@ bone_pose(EpInst, Actor, Bone, Ts, Pose) :-
 % Color = 'blue'
 % Scale = 0.01 (meters)
 view_bone_pose(EpInst, Actor, Bone, Ts, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonePose',
         [Actor, Bone, Ts, MarkerType, Color, Scale], @void).
 %%
 view_bone_pose(EpInst, Actor, Bone, Ts, MarkerID, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonePose',
         [Actor, Bone, Ts, MarkerID, MarkerType, Color, Scale], @void).
 
@@ -317,13 +704,27 @@ view_bone_pose(EpInst, Actor, Bone, Ts, MarkerID, MarkerType, Color, Scale) :-
 % Bone = 'index_3_l'
 % DT = 0.01 (seconds)
 bone_traj(EpInst, Actor, Bone, Start, End, DT, Traj) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetBoneTraj', [Actor, Bone, Start, End, DT], JavaMultiArr),
     jpl_array_to_list(JavaMultiArr, JavaObjList),
     maplist(jpl_array_to_list, JavaObjList, Traj).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the trajectory of the bone in chunks of max ChunkSize poses (on backtracking),
+% only one chunk is held in memory
+% Actor = 'LeftHand'
+% Bone = 'index_3_l'
+% DT = 0.01 (seconds)
+% ChunkSize = 1000
+bone_traj_chunk(EpInst, Actor, Bone, Start, End, DT, ChunkSize, Chunk) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    setup_call_cleanup(
+        jpl_call(MongoQuery, 'StreamBoneTraj', [Actor, Bone, Start, End, DT, ChunkSize], Cursor),
+        u_traj_chunk(Cursor, rows, Chunk),
+        jpl_call(Cursor, 'Close', [], @void)).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % View trajectory of the bone at between the given timestamps 
 % Actor = 'LeftHand'
@@ -334,16 +735,14 @@ bone_traj(EpInst, Actor, Bone, Start, End, DT, Traj) :-
 % Scale = 0.01 (meters)
 % DT = 0.01 (seconds)
 view_bone_traj(EpInst, Actor, Bone, Start, End, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBoneTraj', 
         [Actor, Bone, Start, End, MarkerType, Color, Scale, DT], @void).
 %%
 view_bone_traj(EpInst, Actor, Bone, Start, End, MarkerID, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBoneTraj', 
         [Actor, Bone, Start, End, MarkerID, MarkerType, Color, Scale, DT], @void).
 
@@ -352,9 +751,8 @@ view_bone_traj(EpInst, Actor, Bone, Start, End, MarkerID, MarkerType, Color, Sca
 % Get the names of the actor bones
 % Actor = 'LeftHand'
 bones_names(EpInst, Actor, Bones) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetBonesNames', [Actor], JavaArr),
     jpl_array_to_list(JavaArr, Bones).
 
@@ -362,9 +760,8 @@ bones_names(EpInst, Actor, Bones) :-
 % Get the poses of the actor bones at the given timestamp
 % Actor = 'LeftHand'
 bones_poses(EpInst, Actor, Ts, Poses) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetBonesPoses', [Actor, Ts], JavaMultiArr),
     jpl_array_to_list(JavaMultiArr, JavaObjList),
     maplist(jpl_array_to_list, JavaObjList, Poses).
@@ -377,16 +774,14 @@ bones_poses(EpInst, Actor, Ts, Poses) :-
 % Color = 'blue'
 % Scale = 0.01 (meters)
 view_bones_poses(EpInst, Actor, Ts, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesPoses',
         [Actor, Ts, MarkerType, Color, Scale], @void).
 %%
 view_bones_poses(EpInst, Actor, Ts, MarkerID, MarkerType, Color, Scale) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesPoses',
         [Actor, Ts, MarkerID, MarkerType, Color, Scale], @void).
 
@@ -395,14 +790,27 @@ view_bones_poses(EpInst, Actor, Ts, MarkerID, MarkerType, Color, Scale) :-
 % Actor = 'LeftHand'
 % DT = 0.01 (seconds)
 bones_trajs(EpInst, Actor, Start, End, DT, Trajs) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetBonesTrajs', [Actor, Start, End, DT], JavaMultiArr),
     jpl_array_to_list(JavaMultiArr, JavaObjList),
     maplist(jpl_array_to_list, JavaObjList, JavaPoseObjs),
     maplist(maplist_arr_to_list, JavaPoseObjs, Trajs).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the trajectories of the actor bones in chunks of max ChunkSize samples (on backtracking),
+% only one chunk is held in memory
+% Actor = 'LeftHand'
+% DT = 0.01 (seconds)
+% ChunkSize = 100
+bones_trajs_chunk(EpInst, Actor, Start, End, DT, ChunkSize, Chunk) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    setup_call_cleanup(
+        jpl_call(MongoQuery, 'StreamBonesTrajs', [Actor, Start, End, DT, ChunkSize], Cursor),
+        u_traj_chunk(Cursor, blocks, Chunk),
+        jpl_call(Cursor, 'Close', [], @void)).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % Get the poses of the actor bones between the given timestamps 
 % Actor = 'LeftHand'
@@ -412,16 +820,14 @@ bones_trajs(EpInst, Actor, Start, End, DT, Trajs) :-
 % Scale = 0.01 (meters)
 % DT = 0.01 (seconds)
 view_bones_trajs(EpInst, Actor, Start, End, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesTrajs',
         [Actor, Start, End, MarkerType, Color, Scale, DT], @void).
 %%
 view_bones_trajs(EpInst, Actor, Start, End, MarkerID, MarkerType, Color, Scale, DT) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'ViewBonesTrajs',
         [Actor, Start, End, MarkerID, MarkerType, Color, Scale, DT], @void).
 
@@ -457,6 +863,19 @@ u_marker_remove_skel :-
     mongo_robcog_query(MongoQuery),
     jpl_call(MongoQuery, 'RemoveAllSkeletalMeshMarkers', [], @void).    
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Remove all markers of the actor created with the knowrob_robcog package
+% Actor = 'LeftHand'
+u_marker_remove_actor(Actor) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'RemoveActorMarkers', [Actor], @void).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Nr of markers created with the knowrob_robcog package which are not removed yet
+u_marker_count(Count) :-
+    mongo_robcog_query(MongoQuery),
+    jpl_call(MongoQuery, 'GetNrMarkers', [], Count).
+
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
 % Add rating to file
 % check for rating instance
@@ -478,9 +897,8 @@ add_rating(EpInst, RatingType, Score, EpisodesPath) :-
 % Get the value of the EEG at the timestamp
 % Channel = 1
 eeg_value(EpInst, Channel, Ts, Value) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetEEGValueAt', [Channel, Ts], Value).
 
 
@@ -489,9 +907,8 @@ eeg_value(EpInst, Channel, Ts, Value) :-
 % Channel = 1
 % DT = 0.01 (seconds)
 eeg_values(EpInst, Channel, Start, End, DT, Values) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetEEGValues', [Channel, Start, End, DT], JavaArr),
     jpl_array_to_list(JavaArr, Values).
 
@@ -500,9 +917,8 @@ eeg_values(EpInst, Channel, Start, End, DT, Values) :-
 % Get the value of the EEG at the timestamp
 % Channel = all
 eeg_all_channels_value(EpInst, Ts, Value) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetAllEEGValuesAt', [Ts], JavaArr),
     jpl_array_to_list(JavaArr, Value).
 
@@ -511,14 +927,38 @@ eeg_all_channels_value(EpInst, Ts, Value) :-
 % Channel = all
 % DT = 0.01 (seconds)
 eeg_all_channels_values(EpInst, Start, End, DT, Values) :-
-    mongo_robcog_query(MongoQuery),
     get_mongo_coll_name(EpInst, CollName),
-    set_mongo_coll(CollName),
+    mongo_robcog_query(CollName, MongoQuery),
     jpl_call(MongoQuery, 'GetAllEEGValues', [Start, End, DT], JavaMultiArr),
     jpl_array_to_list(JavaMultiArr, JavaObjList),
     maplist(jpl_array_to_list, JavaObjList, ValuesMulti),
     maplist(maplist_arr_to_list, ValuesMulti, Values).
 
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the names of the EEG channels of the episode (discovered from the data)
+% Channels = ['c1', 'c2', .., 'c14']
+eeg_channels(EpInst, Channels) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'GetEEGChannels', [], JavaArr),
+    jpl_array_to_list(JavaArr, Channels).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Get the values of all the EEG channels between the given timestamps,
+% one row of channel values per timestamp (in the order of Channels)
+% DT = 0.01 (seconds)
+eeg_matrix(EpInst, Start, End, DT, Channels, Timestamps, Rows) :-
+    get_mongo_coll_name(EpInst, CollName),
+    mongo_robcog_query(CollName, MongoQuery),
+    jpl_call(MongoQuery, 'GetEEGMatrix', [Start, End, DT], Matrix),
+    jpl_call(Matrix, 'GetChannels', [], ChannelsArr),
+    jpl_array_to_list(ChannelsArr, Channels),
+    jpl_call(Matrix, 'GetTimestamps', [], TimestampsArr),
+    jpl_array_to_list(TimestampsArr, Timestamps),
+    jpl_call(Matrix, 'ToRows', [], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Rows).
+
 
 % =================================================================================
 % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
@@ -531,3 +971,39 @@ maplist_arr_to_list(ObjsArr, List) :-
 u_split_pose(Pose, Pos, Quat) :-
     [X,Y,Z|Quat] = Pose,
     Pos = [X,Y,Z].
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Java arrays of the episodes collections and of their start/end timestamps
+u_episodes_args(EpInsts, Starts, Ends, CollsArr, StartsArr, EndsArr) :-
+    maplist(get_mongo_coll_name, EpInsts, CollNames),
+    jpl_list_to_array(CollNames, CollsArr),
+    u_double_array(Starts, StartsArr),
+    u_double_array(Ends, EndsArr).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Java double[] from a list of numbers
+u_double_array(List, JavaArr) :-
+    maplist(u_float, List, Floats),
+    jpl_new('[D', Floats, JavaArr).
+
+u_float(Number, Float) :-
+    Float is float(Number).
+
+% % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % % %  
+% Chunks of the trajectory cursor on backtracking (rows of poses or blocks of bones poses)
+u_traj_chunk(Cursor, Shape, Chunk) :-
+    repeat,
+    (   jpl_call(Cursor, 'HasNext', [], @(true))
+    ->  u_traj_next_chunk(Cursor, Shape, Chunk)
+    ;   !, fail
+    ).
+
+u_traj_next_chunk(Cursor, rows, Chunk) :-
+    jpl_call(Cursor, 'NextRows', [7], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, Chunk).
+u_traj_next_chunk(Cursor, blocks, Chunk) :-
+    jpl_call(Cursor, 'NextBlocks', [7], JavaMultiArr),
+    jpl_array_to_list(JavaMultiArr, JavaObjList),
+    maplist(jpl_array_to_list, JavaObjList, JavaPoseObjs),
+    maplist(maplist_arr_to_list, JavaPoseObjs, Chunk).